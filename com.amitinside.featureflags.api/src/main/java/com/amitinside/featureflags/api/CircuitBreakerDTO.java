@@ -0,0 +1,50 @@
+package com.amitinside.featureflags.api;
+
+import org.osgi.dto.DTO;
+
+/**
+ * Data Transfer Object for the state of the circuit breaker of a feature.
+ *
+ * @noextend This class is not intended to be extended by consumers.
+ *
+ * @see FeatureManager#getCircuitBreakers()
+ *
+ * @NotThreadSafe
+ * @since 1.1
+ */
+public class CircuitBreakerDTO extends DTO {
+
+    /**
+     * The ID of the guarded feature
+     */
+    public String id;
+
+    /**
+     * The state of the circuit breaker which is either {@code CLOSED} (the
+     * feature is guarded), {@code OPEN} (the feature has been disabled) or
+     * {@code HALF_OPEN} (the feature is being probed)
+     */
+    public String state;
+
+    /**
+     * The number of successful calls within the sliding window
+     */
+    public long   successes;
+
+    /**
+     * The number of failed calls within the sliding window
+     */
+    public long   failures;
+
+    /**
+     * The number of times the circuit breaker has disabled the feature
+     */
+    public long   trips;
+
+    /**
+     * The time the circuit breaker has last disabled the feature in
+     * milliseconds since the epoch or {@code 0} if it has never been tripped
+     */
+    public long   lastTripped;
+
+}
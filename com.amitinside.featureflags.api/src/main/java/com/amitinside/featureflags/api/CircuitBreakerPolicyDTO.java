@@ -0,0 +1,54 @@
+package com.amitinside.featureflags.api;
+
+import org.osgi.dto.DTO;
+
+/**
+ * Data Transfer Object for the policy of the circuit breaker of a feature.
+ *
+ * <p>
+ * The circuit breaker disables the feature as soon as the rate of the failures
+ * reported within the sliding window reaches the threshold. Once the open
+ * duration has elapsed, the feature is enabled again to probe whether it has
+ * recovered. The feature stays enabled after the specified number of
+ * successful probe calls whereas a single failed probe call disables it again.
+ * </p>
+ *
+ * @noextend This class is not intended to be extended by consumers.
+ *
+ * @see FeatureManager#setCircuitBreaker(String, CircuitBreakerPolicyDTO)
+ *
+ * @NotThreadSafe
+ * @since 1.1
+ */
+public class CircuitBreakerPolicyDTO extends DTO {
+
+    /**
+     * The rate of the failures within the sliding window (between {@code 0}
+     * exclusive and {@code 1} inclusive) which disables the feature
+     */
+    public double failureRateThreshold = 0.5;
+
+    /**
+     * The minimum number of calls within the sliding window before the failure
+     * rate is evaluated
+     */
+    public int    minimumCalls         = 20;
+
+    /**
+     * The duration of the sliding window in milliseconds
+     */
+    public long   window               = 10_000;
+
+    /**
+     * The duration in milliseconds for which the feature stays disabled before
+     * it is probed
+     */
+    public long   openDuration         = 30_000;
+
+    /**
+     * The number of successful calls while probing which are required to keep
+     * the feature enabled
+     */
+    public int    probeCalls           = 5;
+
+}
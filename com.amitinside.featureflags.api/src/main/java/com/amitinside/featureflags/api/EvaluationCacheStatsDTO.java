@@ -0,0 +1,62 @@
+package com.amitinside.featureflags.api;
+
+import org.osgi.dto.DTO;
+
+/**
+ * Data Transfer Object for the statistics of the cache of contextual feature
+ * evaluations.
+ *
+ * <p>
+ * The results of {@link FeatureManager#isEnabled(String, java.util.Map)} are
+ * cached per feature and per values of the context attributes that are
+ * referenced by the rules of the feature. The cached results of a feature are
+ * invalidated whenever the feature or any feature it references changes.
+ * </p>
+ *
+ * @noextend This class is not intended to be extended by consumers.
+ *
+ * @see FeatureManager#getEvaluationCacheStats()
+ *
+ * @NotThreadSafe
+ * @since 1.1
+ */
+public class EvaluationCacheStatsDTO extends DTO {
+
+    /**
+     * The maximum number of cached results or {@code 0} if the cache is
+     * disabled
+     */
+    public int    capacity;
+
+    /**
+     * The number of currently cached results
+     */
+    public int    size;
+
+    /**
+     * The number of evaluations answered by a cached result
+     */
+    public long   hits;
+
+    /**
+     * The number of evaluations that could not be answered by a cached result
+     */
+    public long   misses;
+
+    /**
+     * The number of cached results evicted due to the capacity
+     */
+    public long   evictions;
+
+    /**
+     * The number of invalidations
+     */
+    public long   invalidations;
+
+    /**
+     * The ratio of the hits to all evaluations or {@code 0} if no evaluation
+     * has yet been performed
+     */
+    public double hitRatio;
+
+}
@@ -0,0 +1,55 @@
+package com.amitinside.featureflags.api;
+
+import org.osgi.dto.DTO;
+
+/**
+ * Data Transfer Object for a change of a feature.
+ *
+ * @noextend This class is not intended to be extended by consumers.
+ *
+ * @see FeatureManager#subscribe(FeatureChangeSubscriber, String, int,
+ *      OverflowPolicy)
+ *
+ * @NotThreadSafe
+ * @since 1.1
+ */
+public class FeatureChangeEvent extends DTO {
+
+    /**
+     * The type of a feature change
+     */
+    public enum Type {
+        /** The feature has become known */
+        ADDED,
+        /** The state of the feature has changed */
+        UPDATED,
+        /** The feature is no longer known */
+        REMOVED
+    }
+
+    /**
+     * The type of the change
+     */
+    public Type    type;
+
+    /**
+     * The identifier of the feature
+     */
+    public String  id;
+
+    /**
+     * The bundle identifier containing the feature
+     */
+    public long    bundleId;
+
+    /**
+     * The (effective) enablement of the feature after the change
+     */
+    public boolean isEnabled;
+
+    /**
+     * The time of the change in milliseconds since the epoch
+     */
+    public long    timestamp;
+
+}
@@ -0,0 +1,52 @@
+package com.amitinside.featureflags.api;
+
+import org.osgi.annotation.versioning.ConsumerType;
+
+/**
+ * Receives {@link FeatureChangeEvent}s. The contract follows the Reactive
+ * Streams {@code Subscriber} specification: {@link #onSubscribe} is invoked
+ * first, followed by at most as many {@link #onNext} invocations as have been
+ * requested through the {@link FeatureChangeSubscription} and optionally by a
+ * single {@link #onError} or {@link #onComplete} invocation.
+ *
+ * <p>
+ * All methods of a subscriber are invoked sequentially but not necessarily by
+ * the same thread.
+ * </p>
+ *
+ * @see FeatureManager#subscribe(FeatureChangeSubscriber, String, int,
+ *      OverflowPolicy)
+ *
+ * @since 1.1
+ */
+@ConsumerType
+public interface FeatureChangeSubscriber {
+
+    /**
+     * Invoked once the subscription has been established
+     *
+     * @param subscription the subscription to request events with
+     */
+    void onSubscribe(FeatureChangeSubscription subscription);
+
+    /**
+     * Invoked for every requested {@link FeatureChangeEvent}
+     *
+     * @param event the event
+     */
+    void onNext(FeatureChangeEvent event);
+
+    /**
+     * Invoked if the subscription has been terminated due to an error
+     *
+     * @param throwable the error
+     */
+    void onError(Throwable throwable);
+
+    /**
+     * Invoked if the subscription has been terminated since the
+     * {@link FeatureManager} is not available anymore
+     */
+    void onComplete();
+
+}
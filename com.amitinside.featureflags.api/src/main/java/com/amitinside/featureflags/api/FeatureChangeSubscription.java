@@ -0,0 +1,32 @@
+package com.amitinside.featureflags.api;
+
+import org.osgi.annotation.versioning.ProviderType;
+
+/**
+ * Links a {@link FeatureChangeSubscriber} to the {@link FeatureManager}.
+ *
+ * @noimplement This interface is not intended to be implemented by consumers.
+ *
+ * @ThreadSafe
+ * @since 1.1
+ */
+@ProviderType
+public interface FeatureChangeSubscription {
+
+    /**
+     * Requests the specified number of additional events. A non-positive number
+     * terminates the subscription with an {@link IllegalArgumentException}
+     * passed to {@link FeatureChangeSubscriber#onError(Throwable)}.
+     *
+     * @param n the number of additional events ({@link Long#MAX_VALUE} for an
+     *            unbounded number)
+     */
+    void request(long n);
+
+    /**
+     * Cancels the subscription. Events that are buffered but not yet delivered
+     * are discarded.
+     */
+    void cancel();
+
+}
@@ -0,0 +1,50 @@
+package com.amitinside.featureflags.api;
+
+import java.util.List;
+
+import org.osgi.dto.DTO;
+
+/**
+ * Data Transfer Object for the changes of the feature registry since a
+ * specific registry version.
+ *
+ * <p>
+ * The feature registry increments its version with every change and keeps the
+ * most recent changes in a bounded log. Clients can therefore poll only the
+ * changes since the version they have last seen instead of all features. If the
+ * requested changes are no longer available, {@link #isResyncRequired} is set
+ * and the client is required to retrieve all features using
+ * {@link FeatureManager#getFeatures()} and to continue polling from
+ * {@link #version}.
+ * </p>
+ *
+ * @noextend This class is not intended to be extended by consumers.
+ *
+ * @see FeatureManager#getChangesSince(long)
+ *
+ * @NotThreadSafe
+ * @since 1.1
+ */
+public class FeatureChangesDTO extends DTO {
+
+    /**
+     * The current version of the feature registry which is to be used for the
+     * next poll
+     */
+    public long                     version;
+
+    /**
+     * The flag denoting whether the changes since the requested version are no
+     * longer available such that all features have to be retrieved again
+     */
+    public boolean                  isResyncRequired;
+
+    /**
+     * The changes in the order of their occurrence whereby only the latest
+     * change of every feature of a bundle is contained. A feature that has been
+     * added and updated afterwards is reported as {@code ADDED}. The list is
+     * empty if a resync is required.
+     */
+    public List<FeatureChangeEvent> changes;
+
+}
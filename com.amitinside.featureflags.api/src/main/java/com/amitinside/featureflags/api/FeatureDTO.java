@@ -54,4 +54,31 @@ public class FeatureDTO extends DTO {
      */
     public boolean isEnabled;
 
+    /**
+     * The boolean expression over other feature identifiers if the feature is a
+     * composite feature, otherwise {@code null}
+     *
+     * @see FeatureManager#METATYPE_COMPOSITE_FEATURE_ID_PREFIX
+     * @since 1.1
+     */
+    public String  expression;
+
+    /**
+     * The flag denoting whether the feature is essential and is therefore exempt
+     * from the kill switch
+     *
+     * @see FeatureManager#engageKillSwitch()
+     * @since 1.1
+     */
+    public boolean isEssential;
+
+    /**
+     * The current variant if the feature is a multivariate feature, otherwise
+     * {@code null}
+     *
+     * @see FeatureManager#getVariant(String)
+     * @since 1.1
+     */
+    public String  variant;
+
 }
@@ -0,0 +1,63 @@
+package com.amitinside.featureflags.api;
+
+import org.osgi.dto.DTO;
+
+/**
+ * Data Transfer Object for an event recorded by the feature manager.
+ *
+ * <p>
+ * The feature manager records the toggles, the feature updates and the
+ * configuration changes in a bounded buffer to support troubleshooting. The
+ * oldest events are overwritten once the buffer is full.
+ * </p>
+ *
+ * @noextend This class is not intended to be extended by consumers.
+ *
+ * @see FeatureManager#getRecentEvents(int)
+ *
+ * @NotThreadSafe
+ * @since 1.1
+ */
+public class FeatureEventDTO extends DTO {
+
+    /**
+     * The sequence number of the event which is increasing without gaps unless
+     * events have been overwritten
+     */
+    public long   sequence;
+
+    /**
+     * The time of the event in milliseconds since the epoch
+     */
+    public long   timestamp;
+
+    /**
+     * The type of the event, such as {@code FEATURE_UPDATED} or
+     * {@code CONFIGURATION_REVERTED}
+     */
+    public String type;
+
+    /**
+     * The subject of the event which is the feature ID, the configuration PID
+     * or the bundle symbolic name depending on the type
+     */
+    public String subject;
+
+    /**
+     * The detail of the event, such as the configuration PID of a feature or
+     * its new variant, otherwise {@code null}
+     */
+    public String detail;
+
+    /**
+     * The value of the event, such as the new state of a feature ({@code 1} if
+     * enabled, otherwise {@code 0}) or the bundle identifier
+     */
+    public long   value;
+
+    /**
+     * The human-readable message of the event
+     */
+    public String message;
+
+}
@@ -0,0 +1,34 @@
+package com.amitinside.featureflags.api;
+
+import java.util.List;
+
+import org.osgi.dto.DTO;
+
+/**
+ * Data Transfer Object for the result of an import of feature states.
+ *
+ * @noextend This class is not intended to be extended by consumers.
+ *
+ * @see FeatureManager#importFeatures(java.io.Reader)
+ *
+ * @NotThreadSafe
+ * @since 1.1
+ */
+public class FeatureImportDTO extends DTO {
+
+    /**
+     * The number of imported feature states
+     */
+    public long         imported;
+
+    /**
+     * The number of rejected feature states
+     */
+    public long         rejected;
+
+    /**
+     * The descriptions of the first errors that occurred during the import
+     */
+    public List<String> errors;
+
+}
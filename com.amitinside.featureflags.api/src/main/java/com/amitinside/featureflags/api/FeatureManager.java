@@ -1,8 +1,16 @@
 package com.amitinside.featureflags.api;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Stream;
 
 import org.osgi.annotation.versioning.ProviderType;
+import org.osgi.util.promise.Promise;
 
 /**
  * The {@link FeatureManager} service is the application access point to the
@@ -33,7 +41,47 @@ public interface FeatureManager {
      * the feature id in OSGi Metatype XML Configuration to identify unique features
      * in an OSGi configuration.
      */
-    String METATYPE_FEATURE_ID_PREFIX = "osgi.feature.";
+    String METATYPE_FEATURE_ID_PREFIX           = "osgi.feature.";
+
+    /**
+     * The prefix of the composite feature identifier pattern. A composite feature
+     * is not toggled directly. Its enablement is derived from a boolean expression
+     * over other feature identifiers, for example
+     * {@code newCheckout && !legacyPayments}. The expression is specified as the
+     * (default) value of the attribute definition or as the configured value in
+     * the OSGi configuration.
+     *
+     * <p>
+     * The expression supports the operators {@code !}, {@code &&} and
+     * {@code ||}, parentheses and the literals {@code true} and {@code false}.
+     * A referenced feature is considered to be enabled if any known feature with
+     * that identifier is enabled.
+     * </p>
+     *
+     * <p>
+     * The expression can also refer to attributes of an evaluation context. The
+     * predicate {@code @name} holds if the context contains the attribute and
+     * the predicates {@code @name == 'value'} and {@code @name != 'value'}
+     * compare the string representation of the attribute value. Without any
+     * context, all attributes are absent.
+     * </p>
+     *
+     * @see #isEnabled(String, Map)
+     * @since 1.1
+     */
+    String METATYPE_COMPOSITE_FEATURE_ID_PREFIX = "osgi.composite.feature.";
+
+    /**
+     * The prefix of the essential feature marker pattern. A boolean attribute
+     * definition or configuration property with an identifier of format
+     * {@code osgi.essential.feature.X} set to {@code true} marks the feature
+     * {@code X} of the same configuration as essential. Essential features are
+     * exempt from the kill switch.
+     *
+     * @see #engageKillSwitch()
+     * @since 1.1
+     */
+    String METATYPE_ESSENTIAL_FEATURE_ID_PREFIX = "osgi.essential.feature.";
 
     /**
      * Capability name for feature
@@ -48,7 +96,7 @@ public interface FeatureManager {
      *  filter:="(&amp;(osgi.extender=osgi.feature)(version&gt;=1.0)(!(version&gt;=2.0)))"
      * </pre>
      */
-    String FEATURE_CAPABILITY_NAME    = "osgi.feature";
+    String FEATURE_CAPABILITY_NAME              = "osgi.feature";
 
     /**
      * Retrieve all (known) {@link FeatureDTO} instances registered in the runtime
@@ -75,6 +123,104 @@ public interface FeatureManager {
      */
     Stream<FeatureDTO> getFeatures(String featureID);
 
+    /**
+     * Retrieve all (known) {@link FeatureDTO} instances registered in the
+     * runtime with their names and descriptions localized in the specified
+     * locale
+     *
+     * <p>
+     * The locale is specified in the format of
+     * {@code org.osgi.service.metatype.MetaTypeInformation#getLocales()}, for
+     * example {@code en_US}. If the metatype of a feature is not localized in the
+     * specified locale, the default localization is used.
+     * </p>
+     *
+     * @param locale The locale or {@code null} for the default localization
+     * @return The known {@link FeatureDTO} instances
+     * @see #getFeatures()
+     * @since 1.1
+     */
+    Stream<FeatureDTO> getLocalizedFeatures(String locale);
+
+    /**
+     * Returns all (known) {@link FeatureDTO} instances registered with the
+     * specified feature ID with their names and descriptions localized in the
+     * specified locale
+     *
+     * @param featureID The feature ID
+     * @param locale The locale or {@code null} for the default localization
+     * @return The known {@link FeatureDTO} instances
+     * @throws NullPointerException if {@code featureID} is {@code null}
+     * @throws IllegalArgumentException if {@code featureID} is empty
+     * @see #getLocalizedFeatures(String)
+     * @since 1.1
+     */
+    Stream<FeatureDTO> getFeatures(String featureID, String locale);
+
+    /**
+     * Returns the (known) {@link FeatureDTO} instance with the specified feature
+     * ID that is registered by the specified bundle. If the bundle registers the
+     * feature in multiple configurations, any of them is returned.
+     *
+     * @param bundleId The identifier of the bundle registering the feature
+     * @param featureID The feature ID
+     * @return The known {@link FeatureDTO} instance or an empty
+     *         {@link Optional} if the bundle does not register such a feature
+     * @throws NullPointerException if {@code featureID} is {@code null}
+     * @throws IllegalArgumentException if {@code featureID} is empty
+     * @since 1.1
+     */
+    Optional<FeatureDTO> getFeature(long bundleId, String featureID);
+
+    /**
+     * Returns all (known) {@link FeatureDTO} instances registered in the
+     * configuration with the specified PID
+     *
+     * @param pid The configuration PID
+     * @return The known {@link FeatureDTO} instances
+     * @throws NullPointerException if {@code pid} is {@code null}
+     * @throws IllegalArgumentException if {@code pid} is empty
+     * @since 1.1
+     */
+    Stream<FeatureDTO> getFeaturesByPid(String pid);
+
+    /**
+     * Returns all (known) {@link FeatureDTO} instances registered by the
+     * specified bundle
+     *
+     * @param bundleId The identifier of the bundle registering the features
+     * @return The known {@link FeatureDTO} instances
+     * @since 1.1
+     */
+    Stream<FeatureDTO> getFeaturesByBundle(long bundleId);
+
+    /**
+     * Returns the current variant of the specified multivariate feature.
+     *
+     * <p>
+     * A feature is multivariate if its attribute definition is of type
+     * {@code STRING}, {@code INTEGER} or {@code LONG} instead of
+     * {@code BOOLEAN}. If the attribute definition declares option values,
+     * only these are valid variants. Configured values that are no valid
+     * variants are ignored. As long as the kill switch is engaged, a
+     * non-essential multivariate feature is served with its default variant.
+     * </p>
+     *
+     * <p>
+     * Variants are looked up without any allocation such that this method can
+     * be invoked on hot paths.
+     * </p>
+     *
+     * @param featureID The feature ID
+     * @return the variant or {@code null} if no multivariate feature with the
+     *         specified ID is known. If there exist multiple multivariate
+     *         features with the same ID, the variant of any of them is returned.
+     * @throws NullPointerException if {@code featureID} is {@code null}
+     * @throws IllegalArgumentException if {@code featureID} is empty
+     * @since 1.1
+     */
+    String getVariant(String featureID);
+
     /**
      * Updates the specified feature. If there exists multiple features with the
      * same identifier, all feature instances will therefore be updated to the
@@ -86,4 +232,450 @@ public interface FeatureManager {
      * @throws IllegalArgumentException if {@code featureID} is empty
      */
     void updateFeature(String featureID, boolean isEnabled);
+
+    /**
+     * Updates the specified feature only in the configuration with the
+     * specified PID. Features with the same identifier in other configurations
+     * are not updated.
+     *
+     * @param pid The configuration PID
+     * @param featureID The feature ID
+     * @param isEnabled the value for the enablement of the feature
+     * @throws NullPointerException if {@code pid} or {@code featureID} is
+     *             {@code null}
+     * @throws IllegalArgumentException if {@code pid} or {@code featureID} is
+     *             empty or if the configuration does not contain such a
+     *             (non-composite) feature
+     * @since 1.1
+     */
+    void updateFeature(String pid, String featureID, boolean isEnabled);
+
+    /**
+     * Updates the specified feature only in the configurations of the specified
+     * bundle. Features with the same identifier that are registered by other
+     * bundles are not updated.
+     *
+     * @param bundleId The identifier of the bundle registering the feature
+     * @param featureID The feature ID
+     * @param isEnabled the value for the enablement of the feature
+     * @throws NullPointerException if {@code featureID} is {@code null}
+     * @throws IllegalArgumentException if {@code featureID} is empty or if the
+     *             bundle does not register such a (non-composite) feature
+     * @since 1.1
+     */
+    void updateFeature(long bundleId, String featureID, boolean isEnabled);
+
+    /**
+     * Updates the specified feature asynchronously. If there exists multiple
+     * features with the same identifier, all feature instances will therefore
+     * be updated to the specified enablement flag.
+     *
+     * <p>
+     * Concurrent updates of features that are specified in the same OSGi
+     * configuration are merged into a single configuration update.
+     * </p>
+     *
+     * @param featureID The feature ID
+     * @param isEnabled the value for the enablement of the feature
+     * @return the promise that is resolved once the update has been persisted
+     *         or that fails if the update cannot be persisted. The promise is
+     *         resolved immediately if no such feature is known.
+     * @throws NullPointerException if {@code featureID} is {@code null}
+     * @throws IllegalArgumentException if {@code featureID} is empty
+     * @since 1.1
+     */
+    Promise<Void> updateFeatureAsync(String featureID, boolean isEnabled);
+
+    /**
+     * Overrides the specified feature transiently for the specified duration.
+     * If there exists multiple features with the same identifier, all feature
+     * instances will therefore be overridden.
+     *
+     * <p>
+     * The override is applied immediately and is kept in memory only, that is,
+     * it is neither written to the configurations nor retained on restart. Until
+     * the override expires or is {@link #resetOverride(String) reset}, it takes
+     * precedence over the configured state of the feature and, if enabled, it is
+     * injected into the configurations delivered to the managed services.
+     * Overriding the feature again replaces the existing override.
+     * </p>
+     *
+     * @param featureID The feature ID
+     * @param isEnabled the value for the enablement of the feature
+     * @param ttl the duration of the override
+     * @throws NullPointerException if {@code featureID} or {@code ttl} is
+     *             {@code null}
+     * @throws IllegalArgumentException if {@code featureID} is empty, if
+     *             {@code ttl} is not positive or if no such (non-composite)
+     *             feature is known
+     * @since 1.1
+     */
+    void overrideFeature(String featureID, boolean isEnabled, Duration ttl);
+
+    /**
+     * Removes the transient override of the specified feature before it
+     * expires such that the configured state of the feature applies again
+     *
+     * @param featureID The feature ID
+     * @throws NullPointerException if {@code featureID} is {@code null}
+     * @throws IllegalArgumentException if {@code featureID} is empty
+     * @since 1.1
+     */
+    void resetOverride(String featureID);
+
+    /**
+     * Returns all transient overrides that have not yet expired
+     *
+     * @return the overrides (Key: Feature ID Value: Override)
+     * @since 1.1
+     */
+    Map<String, Boolean> getTransientOverrides();
+
+    /**
+     * Discards all feature updates that have been applied but not yet written
+     * to the configurations, for example by an implementation that persists
+     * the updates in the background. The affected features fall back to their
+     * configured states.
+     *
+     * @return the IDs of the features whose updates have been discarded
+     * @since 1.1
+     */
+    Set<String> clearOverrides();
+
+    /**
+     * Checks whether the specified feature is enabled in the specified
+     * evaluation context. The expression of a composite feature can refer to
+     * context attributes, for example {@code newCheckout && @country == 'DE'}.
+     * The global kill switch takes precedence over any context.
+     *
+     * <p>
+     * The results are cached per feature and per values of the context
+     * attributes that are referenced by the expression of the feature.
+     * </p>
+     *
+     * @param featureID The feature ID
+     * @param context the context attributes
+     * @return {@code true} if any known feature with the specified ID is enabled
+     *         in the context, otherwise {@code false}
+     * @throws NullPointerException if any of the specified arguments is
+     *             {@code null}
+     * @throws IllegalArgumentException if {@code featureID} is empty
+     * @see #METATYPE_COMPOSITE_FEATURE_ID_PREFIX
+     * @see #getEvaluationCacheStats()
+     * @since 1.1
+     */
+    boolean isEnabled(String featureID, Map<String, ?> context);
+
+    /**
+     * Retrieves the statistics of the cache of the contextual evaluations
+     *
+     * @return the cache statistics
+     * @see #isEnabled(String, Map)
+     * @since 1.1
+     */
+    EvaluationCacheStatsDTO getEvaluationCacheStats();
+
+    /**
+     * Checks whether the specified feature is enabled for the specified tenant.
+     * A tenant override takes precedence over the configured state of the
+     * feature whereas the global kill switch takes precedence over any tenant
+     * override.
+     *
+     * @param tenant the tenant
+     * @param featureID The feature ID
+     * @return {@code true} if any known feature with the specified ID is enabled
+     *         for the tenant, otherwise {@code false}
+     * @throws NullPointerException if any of the specified arguments is
+     *             {@code null}
+     * @throws IllegalArgumentException if any of the specified arguments is
+     *             empty
+     * @see #updateTenantFeature(String, String, boolean)
+     * @since 1.1
+     */
+    boolean isEnabled(String tenant, String featureID);
+
+    /**
+     * Overrides the specified feature for the specified tenant. The override is
+     * persisted in OSGi configuration.
+     *
+     * @param tenant the tenant
+     * @param featureID The feature ID
+     * @param isEnabled the value for the enablement of the feature for the
+     *            tenant
+     * @throws NullPointerException if {@code tenant} or {@code featureID} is
+     *             {@code null}
+     * @throws IllegalArgumentException if {@code tenant} or {@code featureID} is
+     *             empty or if no such feature is known
+     * @throws IllegalStateException if the tenant has reached the maximum number
+     *             of overrides
+     * @since 1.1
+     */
+    void updateTenantFeature(String tenant, String featureID, boolean isEnabled);
+
+    /**
+     * Removes the override of the specified feature for the specified tenant
+     * such that the configured state of the feature applies again
+     *
+     * @param tenant the tenant
+     * @param featureID The feature ID
+     * @throws NullPointerException if any of the specified arguments is
+     *             {@code null}
+     * @throws IllegalArgumentException if any of the specified arguments is
+     *             empty
+     * @since 1.1
+     */
+    void resetTenantFeature(String tenant, String featureID);
+
+    /**
+     * Returns all overrides of the specified tenant
+     *
+     * @param tenant the tenant
+     * @return the unmodifiable overrides (Key: Feature ID Value: Override)
+     * @throws NullPointerException if {@code tenant} is {@code null}
+     * @throws IllegalArgumentException if {@code tenant} is empty
+     * @since 1.1
+     */
+    Map<String, Boolean> getTenantOverrides(String tenant);
+
+    /**
+     * Exports the configured states of all (known) non-composite features. The
+     * export consists of a header line starting with {@code #} followed by a
+     * line per feature with the tab-separated feature ID, configuration PID,
+     * bundle identifier and state ({@code true} or {@code false}).
+     *
+     * <p>
+     * The features are written to the specified writer while they are read
+     * from the registry. The writer is not closed.
+     * </p>
+     *
+     * @param writer the writer to export to
+     * @throws IOException if the features cannot be written
+     * @throws NullPointerException if {@code writer} is {@code null}
+     * @see #importFeatures(Reader)
+     * @since 1.1
+     */
+    void exportFeatures(Writer writer) throws IOException;
+
+    /**
+     * Imports feature states in the format written by
+     * {@link #exportFeatures(Writer)}. Empty lines and lines starting with
+     * {@code #} are ignored. The bundle identifier is informational only since
+     * it differs between runtimes.
+     *
+     * <p>
+     * Every feature state is validated against the known features of the
+     * specified configuration PID. Invalid feature states are rejected whereas
+     * all valid feature states are applied with a single configuration update
+     * per configuration PID. The reader is not closed.
+     * </p>
+     *
+     * @param reader the reader to import from
+     * @return the result of the import
+     * @throws IOException if the feature states cannot be read
+     * @throws NullPointerException if {@code reader} is {@code null}
+     * @since 1.1
+     */
+    FeatureImportDTO importFeatures(Reader reader) throws IOException;
+
+    /**
+     * Retrieves the evaluation statistics of all (known) features. An evaluation
+     * is recorded whenever the state or the variant of a feature is evaluated by
+     * its identifier, that is, by {@link #isEnabled(String, Map)},
+     * {@link #isEnabled(String, String)}, {@link #getVariant(String)} and the
+     * lookups of a {@link FeatureSnapshot}. Reading the {@link FeatureDTO}s of a
+     * feature is not an evaluation.
+     *
+     * @return the evaluation statistics of the known features
+     * @see #isEnabled(String, Map)
+     * @since 1.1
+     */
+    Stream<FeatureStatsDTO> getFeatureStats();
+
+    /**
+     * Retrieves the evaluation statistics of all (known) features that have not
+     * been evaluated within the specified duration. Such features are candidates
+     * for removal.
+     *
+     * <p>
+     * A feature that has never been evaluated is only reported once it has been
+     * tracked for longer than the specified duration.
+     * </p>
+     *
+     * @param idle the duration without any evaluation
+     * @return the evaluation statistics of the stale features
+     * @throws NullPointerException if {@code idle} is {@code null}
+     * @throws IllegalArgumentException if {@code idle} is negative
+     * @since 1.1
+     */
+    Stream<FeatureStatsDTO> getStaleFeatures(Duration idle);
+
+    /**
+     * Retrieves the statistics of the reconciliation between the feature
+     * registry and the persisted configurations. The reconciliation re-applies
+     * every configuration whose change count differs from the one that has last
+     * been applied to the features.
+     *
+     * @return the reconciliation statistics
+     * @since 1.1
+     */
+    ReconciliationStatsDTO getReconciliationStats();
+
+    /**
+     * Retrieves the most recently recorded events such as feature toggles,
+     * feature updates and configuration changes in the order of their
+     * occurrence. The events are kept in a bounded buffer and hence older
+     * events might not be available anymore.
+     *
+     * @param count the maximum number of events to retrieve
+     * @return the recent events
+     * @throws IllegalArgumentException if {@code count} is negative
+     * @since 1.1
+     */
+    Stream<FeatureEventDTO> getRecentEvents(int count);
+
+    /**
+     * Retrieves the changes of the feature registry since the specified
+     * registry version, that is, the features that have been added, removed or
+     * whose effective states have changed.
+     *
+     * <p>
+     * The registry version is incremented with every change. A client starts
+     * polling with version {@code 0} and passes the returned
+     * {@link FeatureChangesDTO#version} to the next invocation. The changes are
+     * kept in a bounded log and therefore a resync is required if the requested
+     * changes are no longer available or if the version is unknown, for instance
+     * after a restart.
+     * </p>
+     *
+     * @param version the registry version of the last poll
+     * @return the changes since the specified version
+     * @throws IllegalArgumentException if {@code version} is negative
+     * @since 1.1
+     */
+    FeatureChangesDTO getChangesSince(long version);
+
+    /**
+     * Returns an immutable snapshot of the effective feature states pinned to
+     * the current version of the feature registry.
+     *
+     * <p>
+     * Taking a snapshot is cheap as long as the registry has not changed since
+     * the last snapshot has been taken, since the same snapshot is shared by all
+     * callers until the next change. A request should therefore take a snapshot
+     * once and perform all of its checks against it instead of looking up the
+     * features repeatedly.
+     * </p>
+     *
+     * @return the snapshot
+     * @since 1.1
+     */
+    FeatureSnapshot snapshot();
+
+    /**
+     * Reports the outcome of a call guarded by the specified feature to its
+     * circuit breaker. The outcome is ignored if the feature is not guarded by
+     * a circuit breaker.
+     *
+     * <p>
+     * The outcomes are counted in striped counters such that reporting them is
+     * cheap and does not contend even if the feature is heavily used.
+     * </p>
+     *
+     * @param featureID the feature ID
+     * @param isSuccess {@code true} if the call has succeeded, otherwise
+     *            {@code false}
+     * @throws NullPointerException if {@code featureID} is {@code null}
+     * @throws IllegalArgumentException if {@code featureID} is empty
+     * @see #setCircuitBreaker(String, CircuitBreakerPolicyDTO)
+     * @since 1.1
+     */
+    void recordOutcome(String featureID, boolean isSuccess);
+
+    /**
+     * Guards the specified feature by a circuit breaker with the specified
+     * policy or removes its circuit breaker.
+     *
+     * <p>
+     * The circuit breaker disables the feature in memory as soon as the
+     * reported failures cross the threshold of the policy and records the
+     * update through {@link #updateFeature(String, boolean)}. After the open
+     * duration of the policy, the feature is enabled again to probe whether it
+     * has recovered. Removing or replacing an open circuit breaker enables the
+     * feature right away as it would never be probed otherwise, whereas
+     * removing or replacing any other circuit breaker does not change the
+     * state of the feature. The circuit breakers are not persisted.
+     * </p>
+     *
+     * @param featureID the feature ID
+     * @param policy the policy or {@code null} to remove the circuit breaker
+     * @throws NullPointerException if {@code featureID} is {@code null}
+     * @throws IllegalArgumentException if {@code featureID} is empty or if the
+     *             policy is invalid
+     * @since 1.1
+     */
+    void setCircuitBreaker(String featureID, CircuitBreakerPolicyDTO policy);
+
+    /**
+     * Retrieves the states of all circuit breakers
+     *
+     * @return the states of the circuit breakers
+     * @since 1.1
+     */
+    Stream<CircuitBreakerDTO> getCircuitBreakers();
+
+    /**
+     * Engages the global kill switch. As long as the kill switch is engaged, all
+     * features except the essential ones are reported as disabled.
+     *
+     * <p>
+     * The kill switch takes effect instantly and does not modify any OSGi
+     * configuration. Therefore the configured states of the features are
+     * restored as soon as the kill switch gets released.
+     * </p>
+     *
+     * @see #METATYPE_ESSENTIAL_FEATURE_ID_PREFIX
+     * @since 1.1
+     */
+    void engageKillSwitch();
+
+    /**
+     * Releases the global kill switch such that all features are reported with
+     * their configured states again
+     *
+     * @since 1.1
+     */
+    void releaseKillSwitch();
+
+    /**
+     * Checks whether the global kill switch is engaged
+     *
+     * @return {@code true} if the kill switch is engaged, otherwise {@code false}
+     * @since 1.1
+     */
+    boolean isKillSwitchEngaged();
+
+    /**
+     * Subscribes the specified subscriber to the changes of all (known)
+     * features whose identifiers match the specified filter. A change is
+     * published whenever a feature becomes known or unknown and whenever its
+     * effective state changes.
+     *
+     * <p>
+     * Events are buffered per subscriber and delivered asynchronously as
+     * requested by the subscriber. A slow subscriber never blocks the
+     * publication of changes. Instead, the specified {@link OverflowPolicy} is
+     * applied once its buffer is full.
+     * </p>
+     *
+     * @param subscriber the subscriber
+     * @param filter the feature ID, a feature ID prefix followed by {@code *}
+     *            or {@code null} to subscribe to all features
+     * @param bufferSize the maximum number of buffered events
+     * @param policy the policy to apply once the buffer is full
+     * @throws NullPointerException if {@code subscriber} or {@code policy} is
+     *             {@code null}
+     * @throws IllegalArgumentException if {@code bufferSize} is not positive
+     * @since 1.1
+     */
+    void subscribe(FeatureChangeSubscriber subscriber, String filter, int bufferSize, OverflowPolicy policy);
 }
\ No newline at end of file
@@ -0,0 +1,62 @@
+package com.amitinside.featureflags.api;
+
+import org.osgi.annotation.versioning.ProviderType;
+
+/**
+ * Immutable view of the effective feature states pinned to a single version of
+ * the feature registry.
+ *
+ * <p>
+ * All lookups of a snapshot are evaluated against the same states regardless
+ * of concurrent configuration changes, feature updates or kill switch flips.
+ * A snapshot can therefore be taken once per request and be passed to any
+ * thread processing the request such that all checks of the request are
+ * consistent.
+ * </p>
+ *
+ * @noimplement This interface is not intended to be implemented by consumers.
+ *
+ * @see FeatureManager#snapshot()
+ *
+ * @ThreadSafe
+ * @since 1.1
+ */
+@ProviderType
+public interface FeatureSnapshot {
+
+    /**
+     * Returns the version of the feature registry the snapshot has been taken
+     * at. The snapshot reflects at least all changes up to this version and
+     * hence the version can be passed to
+     * {@link FeatureManager#getChangesSince(long)}.
+     *
+     * @return the registry version
+     */
+    long getVersion();
+
+    /**
+     * Checks whether any of the features with the specified feature identifier
+     * has been effectively enabled when the snapshot has been taken. The lookup
+     * costs a constant time.
+     *
+     * @param featureID the feature ID
+     * @return {@code true} if enabled, otherwise {@code false} (also if no such
+     *         feature exists)
+     * @throws NullPointerException if {@code featureID} is {@code null}
+     * @throws IllegalArgumentException if {@code featureID} is empty
+     */
+    boolean isEnabled(String featureID);
+
+    /**
+     * Returns the effective variant of the multivariate feature with the
+     * specified feature identifier when the snapshot has been taken.
+     *
+     * @param featureID the feature ID
+     * @return the variant or {@code null} if no multivariate feature with the
+     *         specified identifier exists
+     * @throws NullPointerException if {@code featureID} is {@code null}
+     * @throws IllegalArgumentException if {@code featureID} is empty
+     */
+    String getVariant(String featureID);
+
+}
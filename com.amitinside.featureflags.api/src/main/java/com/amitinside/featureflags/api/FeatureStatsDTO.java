@@ -0,0 +1,51 @@
+package com.amitinside.featureflags.api;
+
+import org.osgi.dto.DTO;
+
+/**
+ * Data Transfer Object for the evaluation statistics of a feature.
+ *
+ * <p>
+ * The statistics are recorded whenever the state or the variant of a feature
+ * is evaluated by its identifier and are kept in memory only. Therefore the statistics are reset
+ * whenever the {@link FeatureManager} service is restarted.
+ * </p>
+ *
+ * @noextend This class is not intended to be extended by consumers.
+ *
+ * @see FeatureManager#getFeatureStats()
+ * @see FeatureManager#getStaleFeatures(java.time.Duration)
+ *
+ * @NotThreadSafe
+ * @since 1.1
+ */
+public class FeatureStatsDTO extends DTO {
+
+    /**
+     * The identifier of the feature
+     */
+    public String id;
+
+    /**
+     * The bundle identifier containing the feature
+     */
+    public long   bundleId;
+
+    /**
+     * The number of evaluations of the feature
+     */
+    public long   evaluationCount;
+
+    /**
+     * The time of the last evaluation in milliseconds since the epoch or
+     * {@code 0} if the feature has not yet been evaluated
+     */
+    public long   lastEvaluated;
+
+    /**
+     * The time since when the evaluations of the feature are recorded in
+     * milliseconds since the epoch
+     */
+    public long   trackedSince;
+
+}
@@ -0,0 +1,24 @@
+package com.amitinside.featureflags.api;
+
+/**
+ * Policy that is applied whenever a {@link FeatureChangeSubscriber} does not
+ * keep up with the published {@link FeatureChangeEvent}s and its buffer is
+ * full.
+ *
+ * @since 1.1
+ */
+public enum OverflowPolicy {
+
+    /**
+     * Discards the oldest buffered event to make room for the new event
+     */
+    DROP_OLDEST,
+
+    /**
+     * Replaces a buffered event of the same feature with the new event such
+     * that only the latest state of a feature is delivered. Discards the oldest
+     * buffered event if the buffer is still full.
+     */
+    CONFLATE
+
+}
@@ -0,0 +1,58 @@
+package com.amitinside.featureflags.api;
+
+import org.osgi.dto.DTO;
+
+/**
+ * Data Transfer Object for the statistics of the reconciliation between the
+ * feature registry and the persisted configurations.
+ *
+ * <p>
+ * The reconciliation periodically compares the change count of every
+ * configuration with the change count that has last been applied to the
+ * features and re-applies only the configurations that have drifted, for
+ * instance due to a missed configuration event.
+ * </p>
+ *
+ * @noextend This class is not intended to be extended by consumers.
+ *
+ * @see FeatureManager#getReconciliationStats()
+ *
+ * @NotThreadSafe
+ * @since 1.1
+ */
+public class ReconciliationStatsDTO extends DTO {
+
+    /**
+     * The number of reconciliation runs
+     */
+    public long runs;
+
+    /**
+     * The number of checked configurations over all runs
+     */
+    public long checkedConfigurations;
+
+    /**
+     * The number of drifted (and therefore re-applied) configurations over all
+     * runs
+     */
+    public long driftedConfigurations;
+
+    /**
+     * The number of configurations that could not be checked within the time
+     * budget of the last run and are checked first by the next run
+     */
+    public long deferredConfigurations;
+
+    /**
+     * The time of the last run in milliseconds since the epoch or {@code 0} if
+     * no reconciliation has yet been run
+     */
+    public long lastRun;
+
+    /**
+     * The duration of the last run in milliseconds
+     */
+    public long lastRunDuration;
+
+}
@@ -0,0 +1,143 @@
+package com.amitinside.featureflags.shared;
+
+import java.nio.ByteOrder;
+
+/**
+ * Describes the fixed layout of the memory-mapped feature table. All values are
+ * stored in {@link ByteOrder#LITTLE_ENDIAN little endian} byte order.
+ *
+ * <pre>
+ * Header (64 bytes)
+ *   0  int   magic number ({@link #MAGIC})
+ *   4  int   layout version ({@link #LAYOUT_VERSION})
+ *   8  long  generation - incremented whenever a new table is published
+ *  16  int   number of slots in the ID hash table (power of two)
+ *  20  int   number of features
+ *  24  int   offset of the string area
+ *  28  int   capacity of the string area in characters
+ *  32  int   offset of the bit array
+ *  36  int   capacity of the bit array in longs
+ *  40  int   superseded - {@code 1} once a newer generation has been published
+ *
+ * ID Hash Table (slots * 16 bytes, open addressing with linear probing)
+ *   0  int   hash of the feature ID ({@code 0} denotes an empty slot)
+ *   4  int   offset of the feature ID in the string area in characters
+ *   8  int   length of the feature ID in characters
+ *  12  int   index of the feature in the bit array
+ *
+ * String Area (UTF-16 characters of all feature IDs)
+ *
+ * Bit Array (one bit per feature denoting whether it is enabled)
+ * </pre>
+ *
+ * <p>
+ * A feature ID occurs only once in the table. If the same feature ID is known
+ * in several bundles or configurations, the feature is enabled if any of them
+ * is enabled.
+ * </p>
+ *
+ * <p>
+ * A published table is never modified except for its superseded flag. Every
+ * change of the feature states is written to a new file in the same directory
+ * which then atomically replaces the table. Afterwards the previous table is
+ * flagged as superseded such that readers map the file again. Readers
+ * therefore never observe a partially written table and need neither locks nor
+ * memory fences.
+ * </p>
+ *
+ * @noinstantiate This class is not intended to be instantiated by consumers.
+ * @since 1.0
+ */
+public final class SharedFeatureTable {
+
+    /** The magic number identifying a feature table ('FFLG') */
+    public static final int       MAGIC                   = 0x46464C47;
+
+    /** The version of the layout */
+    public static final int       LAYOUT_VERSION          = 2;
+
+    /** The byte order of all values */
+    public static final ByteOrder BYTE_ORDER              = ByteOrder.LITTLE_ENDIAN;
+
+    /** The size of the header in bytes */
+    public static final int       HEADER_SIZE             = 64;
+
+    /** The size of a single slot of the ID hash table in bytes */
+    public static final int       SLOT_SIZE               = 16;
+
+    /** Header offset of the magic number */
+    public static final int       MAGIC_OFFSET            = 0;
+
+    /** Header offset of the layout version */
+    public static final int       VERSION_OFFSET          = 4;
+
+    /** Header offset of the generation */
+    public static final int       GENERATION_OFFSET       = 8;
+
+    /** Header offset of the number of slots */
+    public static final int       SLOTS_OFFSET            = 16;
+
+    /** Header offset of the number of features */
+    public static final int       COUNT_OFFSET            = 20;
+
+    /** Header offset of the offset of the string area */
+    public static final int       STRINGS_OFFSET          = 24;
+
+    /** Header offset of the capacity of the string area */
+    public static final int       STRINGS_CAPACITY_OFFSET = 28;
+
+    /** Header offset of the offset of the bit array */
+    public static final int       BITS_OFFSET             = 32;
+
+    /** Header offset of the capacity of the bit array */
+    public static final int       BITS_CAPACITY_OFFSET    = 36;
+
+    /** Header offset of the superseded flag */
+    public static final int       SUPERSEDED_OFFSET       = 40;
+
+    /** Constructor */
+    private SharedFeatureTable() {
+        throw new IllegalAccessError("Non-Instantiable");
+    }
+
+    /**
+     * Computes the (non-zero) FNV-1a hash of the specified feature ID without
+     * any allocation
+     *
+     * @param featureID the feature ID
+     * @return the hash
+     */
+    public static int hash(final CharSequence featureID) {
+        int hash = 0x811C9DC5;
+        for (int i = 0; i < featureID.length(); i++) {
+            hash ^= featureID.charAt(i);
+            hash *= 0x01000193;
+        }
+        return hash == 0 ? 1 : hash;
+    }
+
+    /**
+     * Computes the number of slots of the ID hash table for the specified
+     * capacity such that the load factor does not exceed {@code 0.5}
+     *
+     * @param capacity the maximum number of features
+     * @return the number of slots (power of two)
+     */
+    public static int slots(final int capacity) {
+        final int slots = Integer.highestOneBit(Math.max(1, capacity) * 2 - 1) << 1;
+        return Math.max(slots, 2);
+    }
+
+    /**
+     * Computes the size of the table in bytes
+     *
+     * @param slots the number of slots of the ID hash table
+     * @param stringCapacity the capacity of the string area in characters
+     * @param bitCapacity the capacity of the bit array in longs
+     * @return the size in bytes
+     */
+    public static long size(final int slots, final int stringCapacity, final int bitCapacity) {
+        return HEADER_SIZE + (long) slots * SLOT_SIZE + stringCapacity * 2L + bitCapacity * 8L;
+    }
+
+}
@@ -0,0 +1,241 @@
+package com.amitinside.featureflags.shared;
+
+import static com.amitinside.featureflags.shared.SharedFeatureTable.BITS_CAPACITY_OFFSET;
+import static com.amitinside.featureflags.shared.SharedFeatureTable.BITS_OFFSET;
+import static com.amitinside.featureflags.shared.SharedFeatureTable.BYTE_ORDER;
+import static com.amitinside.featureflags.shared.SharedFeatureTable.GENERATION_OFFSET;
+import static com.amitinside.featureflags.shared.SharedFeatureTable.HEADER_SIZE;
+import static com.amitinside.featureflags.shared.SharedFeatureTable.LAYOUT_VERSION;
+import static com.amitinside.featureflags.shared.SharedFeatureTable.MAGIC;
+import static com.amitinside.featureflags.shared.SharedFeatureTable.MAGIC_OFFSET;
+import static com.amitinside.featureflags.shared.SharedFeatureTable.SLOTS_OFFSET;
+import static com.amitinside.featureflags.shared.SharedFeatureTable.SLOT_SIZE;
+import static com.amitinside.featureflags.shared.SharedFeatureTable.STRINGS_CAPACITY_OFFSET;
+import static com.amitinside.featureflags.shared.SharedFeatureTable.STRINGS_OFFSET;
+import static com.amitinside.featureflags.shared.SharedFeatureTable.SUPERSEDED_OFFSET;
+import static com.amitinside.featureflags.shared.SharedFeatureTable.VERSION_OFFSET;
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.util.Objects.requireNonNull;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+
+/**
+ * Reads feature states from a memory-mapped feature table that is exported by
+ * the feature flags provider.
+ *
+ * <p>
+ * Lookups are lock-free and do not allocate. Since a published table is never
+ * modified, a lookup only checks whether the table has been superseded by a
+ * newer generation and maps the new generation in that case.
+ * </p>
+ *
+ * @see SharedFeatureTable
+ *
+ * @ThreadSafe
+ * @since 1.0
+ */
+public final class SharedFeatureTableReader implements Closeable {
+
+    /** Result of a lookup of an enabled feature */
+    public static final int ENABLED  = 1;
+
+    /** Result of a lookup of a disabled feature */
+    public static final int DISABLED = 0;
+
+    /** Result of a lookup of an unknown feature */
+    public static final int UNKNOWN  = -1;
+
+    private final Path      path;
+    private volatile Table  table;
+
+    private SharedFeatureTableReader(final Path path, final Table table) {
+        this.path  = path;
+        this.table = table;
+    }
+
+    /**
+     * Maps the feature table at the specified path
+     *
+     * @param path the path of the feature table
+     * @return the reader
+     * @throws IOException if the file cannot be mapped or is not a feature table
+     *             of a supported layout
+     * @throws NullPointerException if {@code path} is {@code null}
+     */
+    public static SharedFeatureTableReader open(final Path path) throws IOException {
+        requireNonNull(path, "Path cannot be null");
+        return new SharedFeatureTableReader(path, Table.map(path));
+    }
+
+    /**
+     * Checks whether the specified feature is enabled
+     *
+     * @param featureID the feature ID
+     * @return {@code true} if the feature is known and enabled, otherwise
+     *         {@code false}
+     * @throws NullPointerException if {@code featureID} is {@code null}
+     */
+    public boolean isEnabled(final CharSequence featureID) {
+        return lookup(featureID) == ENABLED;
+    }
+
+    /**
+     * Looks up the state of the specified feature
+     *
+     * @param featureID the feature ID
+     * @return {@link #ENABLED}, {@link #DISABLED} or {@link #UNKNOWN}
+     * @throws NullPointerException if {@code featureID} is {@code null}
+     */
+    public int lookup(final CharSequence featureID) {
+        requireNonNull(featureID, "Feature ID cannot be null");
+
+        Table current = table;
+        if (current.isSuperseded()) {
+            current = remap(current);
+        }
+        return current.find(featureID, SharedFeatureTable.hash(featureID));
+    }
+
+    /**
+     * Checks whether a newer generation of the table has been published that
+     * has not yet been mapped. The next lookup maps the newer generation.
+     *
+     * @return {@code true} if the reader is stale, otherwise {@code false}
+     */
+    public boolean isStale() {
+        return table.isSuperseded();
+    }
+
+    /**
+     * Returns the generation of the currently mapped table which changes
+     * whenever a new table gets published
+     *
+     * @return the generation
+     */
+    public long generation() {
+        return table.generation;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        table.channel.close();
+    }
+
+    /**
+     * Maps the newest generation of the table. If the table cannot be mapped,
+     * for instance because it has been deleted, the superseded generation
+     * remains in use.
+     *
+     * @param superseded the superseded table
+     * @return the newest table
+     */
+    private synchronized Table remap(final Table superseded) {
+        if (table != superseded) {
+            return table;
+        }
+        try {
+            table = Table.map(path);
+            superseded.channel.close();
+        } catch (final IOException e) {
+            return superseded;
+        }
+        return table;
+    }
+
+    /**
+     * A single immutable generation of the table
+     */
+    private static final class Table {
+
+        private final FileChannel      channel;
+        private final MappedByteBuffer buffer;
+        private final int              slots;
+        private final int              slotsOffset;
+        private final int              stringsOffset;
+        private final int              stringCapacity;
+        private final int              bitsOffset;
+        private final int              bitCapacity;
+        private final long             generation;
+
+        private Table(final FileChannel channel, final MappedByteBuffer buffer) {
+            this.channel   = channel;
+            this.buffer    = buffer;
+            slots          = buffer.getInt(SLOTS_OFFSET);
+            slotsOffset    = HEADER_SIZE;
+            stringsOffset  = buffer.getInt(STRINGS_OFFSET);
+            stringCapacity = buffer.getInt(STRINGS_CAPACITY_OFFSET);
+            bitsOffset     = buffer.getInt(BITS_OFFSET);
+            bitCapacity    = buffer.getInt(BITS_CAPACITY_OFFSET);
+            generation     = buffer.getLong(GENERATION_OFFSET);
+        }
+
+        private static Table map(final Path path) throws IOException {
+            final FileChannel channel = FileChannel.open(path, READ);
+            try {
+                final long size = channel.size();
+                if (size < HEADER_SIZE) {
+                    throw new IOException("Not a feature table: " + path);
+                }
+                final MappedByteBuffer buffer = channel.map(READ_ONLY, 0, size);
+                buffer.order(BYTE_ORDER);
+                if (buffer.getInt(MAGIC_OFFSET) != MAGIC) {
+                    throw new IOException("Not a feature table: " + path);
+                }
+                if (buffer.getInt(VERSION_OFFSET) != LAYOUT_VERSION) {
+                    throw new IOException(
+                            "Unsupported feature table layout version: " + buffer.getInt(VERSION_OFFSET));
+                }
+                final Table table = new Table(channel, buffer);
+                if (SharedFeatureTable.size(table.slots, table.stringCapacity, table.bitCapacity) > size) {
+                    throw new IOException("Truncated feature table: " + path);
+                }
+                return table;
+            } catch (final IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        private boolean isSuperseded() {
+            return buffer.getInt(SUPERSEDED_OFFSET) != 0;
+        }
+
+        private int find(final CharSequence featureID, final int hash) {
+            final int mask = slots - 1;
+            for (int probe = 0, slot = hash & mask; probe < slots; probe++, slot = (slot + 1) & mask) {
+                final int offset   = slotsOffset + slot * SLOT_SIZE;
+                final int slotHash = buffer.getInt(offset);
+                if (slotHash == 0) {
+                    return UNKNOWN;
+                }
+                if (slotHash == hash && matches(featureID, buffer.getInt(offset + 4), buffer.getInt(offset + 8))) {
+                    final int index = buffer.getInt(offset + 12);
+                    if (index < 0 || index >>> 6 >= bitCapacity) {
+                        return UNKNOWN;
+                    }
+                    final long word = buffer.getLong(bitsOffset + (index >>> 6) * 8);
+                    return (word & 1L << (index & 63)) != 0 ? ENABLED : DISABLED;
+                }
+            }
+            return UNKNOWN;
+        }
+
+        private boolean matches(final CharSequence featureID, final int start, final int length) {
+            if (length != featureID.length() || start < 0 || start + length > stringCapacity) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (buffer.getChar(stringsOffset + (start + i) * 2) != featureID.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+}
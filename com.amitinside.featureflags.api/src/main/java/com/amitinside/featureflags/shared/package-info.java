@@ -0,0 +1,18 @@
+/**
+ * Provides a reader for the memory-mapped feature table that can be shared with
+ * co-located processes
+ *
+ * <p>
+ * This package does not depend on any OSGi API. Therefore it can also be used
+ * by plain Java processes that run on the same host as the OSGi framework.
+ *
+ * <p>
+ * Example import for consumers using the API in this package:
+ * <p>
+ * {@code  Import-Package: com.amitinside.featureflags.shared;version="[1.0,2.0)"}
+ *
+ * @since 1.0
+ */
+@org.osgi.annotation.bundle.Export
+@org.osgi.annotation.versioning.Version("1.0")
+package com.amitinside.featureflags.shared;
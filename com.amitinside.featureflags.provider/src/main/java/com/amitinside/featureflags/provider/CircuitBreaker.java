@@ -0,0 +1,199 @@
+package com.amitinside.featureflags.provider;
+
+import static com.amitinside.featureflags.provider.ManagerHelper.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.amitinside.featureflags.api.CircuitBreakerDTO;
+import com.amitinside.featureflags.api.CircuitBreakerPolicyDTO;
+
+/**
+ * Circuit breaker of a single feature.
+ *
+ * <p>
+ * The breaker is {@link State#CLOSED closed} as long as the failure rate
+ * within the sliding window stays below the threshold of its policy. Crossing
+ * the threshold {@link State#OPEN opens} the breaker whereupon the feature is
+ * disabled and the reported outcomes are ignored. Once the open duration has
+ * elapsed, the breaker becomes {@link State#HALF_OPEN half-open} and the
+ * feature is enabled again to probe it. The breaker closes after the required
+ * number of successful probe calls and opens again on the first failed one.
+ * </p>
+ *
+ * <p>
+ * Every state transition is performed by exactly one thread which is notified
+ * by the return value of the respective method and is responsible for
+ * applying the transition to the feature.
+ * </p>
+ *
+ * @ThreadSafe
+ */
+public final class CircuitBreaker {
+
+    /** The ID of the guarded feature */
+    private final String                  featureID;
+
+    /** The policy of the breaker */
+    private final CircuitBreakerPolicyDTO policy;
+
+    /** The outcomes of the calls within the sliding window */
+    private final SlidingWindowCounter    outcomes;
+
+    /** The current state */
+    private final AtomicReference<State>  state          = new AtomicReference<>(State.CLOSED);
+
+    /** The number of successful probe calls in the current half-open state */
+    private final AtomicInteger           probeSuccesses = new AtomicInteger();
+
+    /** The number of times the breaker has opened */
+    private final AtomicLong              trips          = new AtomicLong();
+
+    /** The time the breaker has last opened in milliseconds */
+    private volatile long                 lastTripped;
+
+    /**
+     * Constructor
+     *
+     * @param featureID the ID of the guarded feature
+     * @param policy the policy of the breaker
+     *
+     * @throws NullPointerException if any of the specified arguments is
+     *             {@code null}
+     * @throws IllegalArgumentException if the policy is invalid
+     */
+    public CircuitBreaker(final String featureID, final CircuitBreakerPolicyDTO policy) {
+        requireNonNull(policy, "Circuit breaker policy cannot be null");
+        checkArgument(policy.failureRateThreshold > 0 && policy.failureRateThreshold <= 1,
+                "Failure rate threshold must be within (0, 1]");
+        checkArgument(policy.minimumCalls > 0, "Minimum calls must be positive");
+        checkArgument(policy.openDuration > 0, "Open duration must be positive");
+        checkArgument(policy.probeCalls > 0, "Probe calls must be positive");
+
+        this.featureID = requireNonNull(featureID, "Feature ID cannot be null");
+        this.policy    = copy(policy);
+        this.outcomes  = new SlidingWindowCounter(policy.window);
+    }
+
+    /**
+     * Records the outcome of a call
+     *
+     * @param isSuccess {@code true} if the call has succeeded, otherwise
+     *            {@code false}
+     * @param now the current time in milliseconds
+     * @return the state the breaker has transitioned to or {@code null} if the
+     *         state has not changed
+     */
+    public State record(final boolean isSuccess, final long now) {
+        switch (state.get()) {
+            case CLOSED:
+                outcomes.record(isSuccess, now);
+                // the failure rate is only evaluated on failures
+                if (!isSuccess && isThresholdCrossed(now) && state.compareAndSet(State.CLOSED, State.OPEN)) {
+                    return trip(now);
+                }
+                return null;
+            case HALF_OPEN:
+                if (!isSuccess) {
+                    return state.compareAndSet(State.HALF_OPEN, State.OPEN) ? trip(now) : null;
+                }
+                if (probeSuccesses.incrementAndGet() >= policy.probeCalls
+                        && state.compareAndSet(State.HALF_OPEN, State.CLOSED)) {
+                    outcomes.reset();
+                    return State.CLOSED;
+                }
+                return null;
+            default:
+                // the outcomes of the calls that have been started before the
+                // feature got disabled are ignored
+                return null;
+        }
+    }
+
+    /**
+     * Transitions the open breaker to the half-open state
+     *
+     * @return {@code true} if the breaker has transitioned, otherwise
+     *         {@code false}
+     */
+    public boolean halfOpen() {
+        if (state.get() != State.OPEN) {
+            return false;
+        }
+        probeSuccesses.set(0);
+        return state.compareAndSet(State.OPEN, State.HALF_OPEN);
+    }
+
+    /**
+     * Returns the current state
+     *
+     * @return the current state
+     */
+    public State getState() {
+        return state.get();
+    }
+
+    /**
+     * Returns the duration in milliseconds for which the breaker stays open
+     *
+     * @return the open duration
+     */
+    public long getOpenDuration() {
+        return policy.openDuration;
+    }
+
+    /**
+     * Returns a snapshot of the breaker
+     *
+     * @param now the current time in milliseconds
+     * @return the snapshot
+     */
+    public CircuitBreakerDTO toDTO(final long now) {
+        final CircuitBreakerDTO dto = new CircuitBreakerDTO();
+        dto.id          = featureID;
+        dto.state       = state.get()
+                .name();
+        dto.successes   = outcomes.getSuccesses(now);
+        dto.failures    = outcomes.getFailures(now);
+        dto.trips       = trips.get();
+        dto.lastTripped = lastTripped;
+        return dto;
+    }
+
+    private boolean isThresholdCrossed(final long now) {
+        final long failures = outcomes.getFailures(now);
+        final long calls    = failures + outcomes.getSuccesses(now);
+        return calls >= policy.minimumCalls && failures >= policy.failureRateThreshold * calls;
+    }
+
+    private State trip(final long now) {
+        trips.incrementAndGet();
+        lastTripped = now;
+        return State.OPEN;
+    }
+
+    private static CircuitBreakerPolicyDTO copy(final CircuitBreakerPolicyDTO policy) {
+        final CircuitBreakerPolicyDTO copy = new CircuitBreakerPolicyDTO();
+        copy.failureRateThreshold = policy.failureRateThreshold;
+        copy.minimumCalls         = policy.minimumCalls;
+        copy.window               = policy.window;
+        copy.openDuration         = policy.openDuration;
+        copy.probeCalls           = policy.probeCalls;
+        return copy;
+    }
+
+    /**
+     * The states of a circuit breaker
+     */
+    public enum State {
+        /** The feature is guarded */
+        CLOSED,
+        /** The feature has been disabled */
+        OPEN,
+        /** The feature is enabled again to probe it */
+        HALF_OPEN
+    }
+
+}
@@ -0,0 +1,428 @@
+package com.amitinside.featureflags.provider;
+
+import static java.util.Objects.requireNonNull;
+import static org.apache.felix.utils.log.Logger.LOG_ERROR;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+import org.apache.felix.utils.log.Logger;
+
+import com.amitinside.featureflags.provider.ManagerHelper.Feature;
+
+/**
+ * Maintains the compiled expressions of all composite features together with
+ * the dependency graph between the feature IDs.
+ *
+ * <p>
+ * The expressions are compiled and checked for cycles whenever the structure
+ * of the features changes, that is, whenever a bundle gets added or removed or
+ * whenever a configured expression changes. A state change of a plain feature
+ * only re-evaluates the composite features that transitively depend on it.
+ * </p>
+ *
+ * <p>
+ * Composite features that cannot be compiled or that are part of a cycle are
+ * always disabled. The referenced features are evaluated with the kill switch
+ * applied such that an essential composite feature is disabled by the kill
+ * switch as soon as it depends on non-essential features.
+ * </p>
+ *
+ * <p>
+ * The compiled expressions and the dependency graph are published as a whole
+ * such that evaluations never lock whereas rebuilds and re-evaluations are
+ * serialized.
+ * </p>
+ *
+ * @ThreadSafe
+ */
+public final class CompositeFeatures {
+
+    /** Logger Instance */
+    private final Logger                          logger;
+
+    /** The supplier of the current feature index */
+    private final Supplier<FeatureIndex>          featureIndex;
+
+    /** The supplier of the current kill switch epoch */
+    private final LongSupplier                    epoch;
+
+    /** The compiled expressions of the last rebuild */
+    private volatile Snapshot                     snapshot = new Snapshot();
+
+    /**
+     * Constructor
+     *
+     * @param logger {@link Logger} instance
+     * @param featureIndex the supplier of the current index of all features in
+     *            the runtime
+     * @param epoch the supplier of the current epoch of the kill switch
+     *
+     * @throws NullPointerException if any of the specified arguments is
+     *             {@code null}
+     */
+    public CompositeFeatures(final Logger logger, final Supplier<FeatureIndex> featureIndex,
+            final LongSupplier epoch) {
+        this.logger       = requireNonNull(logger, "Logger instance cannot be null");
+        this.featureIndex = requireNonNull(featureIndex, "Feature index supplier cannot be null");
+        this.epoch        = requireNonNull(epoch, "Epoch supplier cannot be null");
+    }
+
+    /**
+     * Recompiles all composite features, rebuilds the dependency graph and
+     * evaluates all composite features afresh. Required to be invoked whenever
+     * the features or expressions change structurally.
+     *
+     * @return the composite features whose states have changed by the rebuild
+     */
+    public synchronized Collection<Feature> rebuild() {
+        final List<Feature>         allFeatures    = featureIndex.get()
+                .getFeatures();
+        final Map<Feature, Boolean> previousStates = new IdentityHashMap<>();
+        for (final Feature feature : allFeatures) {
+            if (feature.isComposite()) {
+                previousStates.put(feature, feature.isEnabled);
+            }
+        }
+        final Snapshot next = new Snapshot();
+        for (final Feature feature : allFeatures) {
+            next.featuresByID.computeIfAbsent(feature.id, k -> new ArrayList<>())
+                    .add(feature);
+            if (feature.isComposite()) {
+                compile(next, feature);
+            }
+        }
+        for (final Feature composite : findCycles(next)) {
+            logger.log(LOG_ERROR, String.format("Composite feature [%s] with expression [%s] is part of a cycle",
+                    composite.id, composite.expression));
+            next.expressions.remove(composite);
+            composite.isEnabled = false;
+        }
+        for (final Map.Entry<Feature, FeatureExpression> entry : next.expressions.entrySet()) {
+            for (final String reference : entry.getValue()
+                    .getReferences()) {
+                next.dependents.computeIfAbsent(reference, k -> new ArrayList<>())
+                        .add(entry.getKey());
+            }
+        }
+        for (final Feature composite : next.expressions.keySet()) {
+            collectAttributes(next, composite.id);
+        }
+        evaluate(next, new LinkedHashSet<>(next.expressions.keySet()), epoch.getAsLong());
+        snapshot = next;
+
+        final List<Feature> changed = new ArrayList<>();
+        for (final Map.Entry<Feature, Boolean> entry : previousStates.entrySet()) {
+            if (entry.getKey().isEnabled != entry.getValue()) {
+                changed.add(entry.getKey());
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Re-evaluates only the composite features that transitively depend on the
+     * specified feature IDs
+     *
+     * @param featureIDs the IDs of the features whose states have changed
+     * @return the composite features whose states have changed by the
+     *         re-evaluation
+     */
+    public synchronized Collection<Feature> featuresChanged(final Collection<String> featureIDs) {
+        final Snapshot current = snapshot;
+        return evaluate(current, getDependents(current, featureIDs), epoch.getAsLong());
+    }
+
+    /**
+     * Re-evaluates all composite features without recompiling them. Required to
+     * be invoked whenever the kill switch is engaged or released.
+     *
+     * @return the composite features whose states have changed by the
+     *         re-evaluation
+     */
+    public synchronized Collection<Feature> evaluateAll() {
+        final Snapshot current = snapshot;
+        return evaluate(current, new LinkedHashSet<>(current.expressions.keySet()), epoch.getAsLong());
+    }
+
+    /**
+     * Returns the IDs of the composite features that transitively depend on the
+     * specified feature IDs
+     *
+     * @param featureIDs the feature IDs
+     * @return the IDs of the dependent composite features
+     */
+    public Set<String> getDependentIDs(final Collection<String> featureIDs) {
+        final Set<String> dependentIDs = new HashSet<>();
+        for (final Feature composite : getDependents(snapshot, featureIDs)) {
+            dependentIDs.add(composite.id);
+        }
+        return dependentIDs;
+    }
+
+    /**
+     * Returns the context attributes that are transitively referenced by the
+     * composite features with the specified ID
+     *
+     * @param featureID the feature ID
+     * @return the sorted context attributes (never {@code null})
+     */
+    public List<String> getAttributes(final String featureID) {
+        return snapshot.attributes.getOrDefault(featureID, Collections.emptyList());
+    }
+
+    /**
+     * Checks whether the specified feature is enabled in the specified context
+     * and kill switch epoch. The expression of a composite feature is evaluated
+     * in the context whereby the referenced features are evaluated in the same
+     * context and epoch as well. Otherwise the state of the feature is returned.
+     *
+     * @param feature the feature
+     * @param context the context attributes
+     * @param epoch the kill switch epoch to evaluate in
+     * @return {@code true} if the feature is enabled in the context, otherwise
+     *         {@code false}
+     */
+    public boolean isEnabled(final Feature feature, final Map<String, ?> context, final long epoch) {
+        return isEnabled(snapshot, feature, context, epoch);
+    }
+
+    /**
+     * Checks whether any known feature with the specified ID is effectively
+     * enabled in the current kill switch epoch
+     *
+     * @param featureID the feature ID
+     * @return {@code true} if any feature with the ID is enabled, otherwise
+     *         {@code false}
+     */
+    public boolean isEnabled(final String featureID) {
+        return isEnabled(snapshot, featureID, epoch.getAsLong());
+    }
+
+    private static boolean isEnabled(final Snapshot current, final String featureID, final long epoch) {
+        for (final Feature feature : current.featuresByID.getOrDefault(featureID, Collections.emptyList())) {
+            if (KillSwitch.isEnabled(feature, epoch)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isEnabled(final Snapshot current, final Feature feature, final Map<String, ?> context,
+            final long epoch) {
+        if (!feature.isEssential && KillSwitch.isEngaged(epoch)) {
+            return false;
+        }
+        final FeatureExpression expression = current.expressions.get(feature);
+        if (expression == null) {
+            return feature.isEnabled;
+        }
+        return expression.evaluate(id -> isEnabled(current, id, context, epoch), context);
+    }
+
+    private static boolean isEnabled(final Snapshot current, final String featureID, final Map<String, ?> context,
+            final long epoch) {
+        for (final Feature feature : current.featuresByID.getOrDefault(featureID, Collections.emptyList())) {
+            if (isEnabled(current, feature, context, epoch)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Set<Feature> getDependents(final Snapshot current, final Collection<String> featureIDs) {
+        final Set<Feature>  affected = new LinkedHashSet<>();
+        final Deque<String> pending  = new ArrayDeque<>(featureIDs);
+        final Set<String>   visited  = new HashSet<>(featureIDs);
+        while (!pending.isEmpty()) {
+            for (final Feature composite : current.dependents.getOrDefault(pending.poll(),
+                    Collections.emptyList())) {
+                affected.add(composite);
+                if (visited.add(composite.id)) {
+                    pending.add(composite.id);
+                }
+            }
+        }
+        return affected;
+    }
+
+    /**
+     * Collects the context attributes referenced by the composite features with
+     * the specified ID and by the composite features they reference. The
+     * dependency graph is acyclic at this point.
+     */
+    private static List<String> collectAttributes(final Snapshot next, final String featureID) {
+        final List<String> collected = next.attributes.get(featureID);
+        if (collected != null) {
+            return collected;
+        }
+        final Set<String> names = new HashSet<>();
+        for (final Feature feature : next.featuresByID.getOrDefault(featureID, Collections.emptyList())) {
+            final FeatureExpression expression = next.expressions.get(feature);
+            if (expression != null) {
+                names.addAll(expression.getAttributes());
+                for (final String reference : expression.getReferences()) {
+                    names.addAll(collectAttributes(next, reference));
+                }
+            }
+        }
+        final List<String> sorted = new ArrayList<>(names);
+        Collections.sort(sorted);
+        final List<String> unmodifiable = Collections.unmodifiableList(sorted);
+        next.attributes.put(featureID, unmodifiable);
+        return unmodifiable;
+    }
+
+    private void compile(final Snapshot next, final Feature composite) {
+        try {
+            next.expressions.put(composite, FeatureExpression.compile(composite.expression));
+        } catch (final IllegalArgumentException e) {
+            logger.log(LOG_ERROR, String.format("Composite feature [%s] cannot be compiled", composite.id), e);
+            composite.isEnabled = false;
+        }
+    }
+
+    /**
+     * Evaluates the specified composite features in topological order such that
+     * every composite is evaluated after the composites it references
+     */
+    private static Collection<Feature> evaluate(final Snapshot current, final Set<Feature> pending,
+            final long epoch) {
+        final List<Feature> changed = new ArrayList<>();
+        while (!pending.isEmpty()) {
+            final Feature composite = pending.iterator()
+                    .next();
+            evaluate(current, composite, pending, changed, epoch);
+        }
+        return changed;
+    }
+
+    private static void evaluate(final Snapshot current, final Feature composite, final Set<Feature> pending,
+            final List<Feature> changed, final long epoch) {
+        pending.remove(composite);
+        final FeatureExpression expression = current.expressions.get(composite);
+        for (final String reference : expression.getReferences()) {
+            for (final Feature feature : current.featuresByID.getOrDefault(reference, Collections.emptyList())) {
+                if (pending.contains(feature)) {
+                    evaluate(current, feature, pending, changed, epoch);
+                }
+            }
+        }
+        final boolean isEnabled = expression.evaluate(id -> isEnabled(current, id, epoch));
+        if (composite.isEnabled != isEnabled) {
+            composite.isEnabled = isEnabled;
+            changed.add(composite);
+        }
+    }
+
+    /**
+     * Finds all composite features that are part of a cycle in the dependency
+     * graph using Tarjan's strongly connected components algorithm
+     */
+    private static Set<Feature> findCycles(final Snapshot next) {
+        final Map<String, Set<String>> graph = new HashMap<>();
+        for (final Map.Entry<Feature, FeatureExpression> entry : next.expressions.entrySet()) {
+            graph.computeIfAbsent(entry.getKey().id, k -> new HashSet<>())
+                    .addAll(entry.getValue()
+                            .getReferences());
+        }
+        final Set<String>  cyclicIDs = new Tarjan(graph).run();
+        final Set<Feature> cyclic    = new HashSet<>();
+        for (final Feature composite : next.expressions.keySet()) {
+            if (cyclicIDs.contains(composite.id)) {
+                cyclic.add(composite);
+            }
+        }
+        return cyclic;
+    }
+
+    /**
+     * The compiled expressions together with the dependency graph. A snapshot
+     * is only populated by a rebuild before it gets published.
+     */
+    private static final class Snapshot {
+        /** Index -> Key: Feature ID Value: Features with the ID */
+        final Map<String, List<Feature>>      featuresByID = new HashMap<>();
+
+        /** Compiled expressions -> Key: Composite Feature Value: Evaluation Tree */
+        final Map<Feature, FeatureExpression> expressions  = new IdentityHashMap<>();
+
+        /** Dependency graph -> Key: Feature ID Value: Composites referencing the ID */
+        final Map<String, List<Feature>>      dependents   = new HashMap<>();
+
+        /** Key: Feature ID Value: Sorted context attributes referenced transitively */
+        final Map<String, List<String>>       attributes   = new HashMap<>();
+    }
+
+    private static final class Tarjan {
+        private final Map<String, Set<String>> graph;
+        private final Map<String, Integer>     indices  = new HashMap<>();
+        private final Map<String, Integer>     lowLinks = new HashMap<>();
+        private final Deque<String>            stack    = new ArrayDeque<>();
+        private final Set<String>              onStack  = new HashSet<>();
+        private final Set<String>              cyclic   = new HashSet<>();
+        private int                            index;
+
+        Tarjan(final Map<String, Set<String>> graph) {
+            this.graph = graph;
+        }
+
+        Set<String> run() {
+            for (final String node : graph.keySet()) {
+                if (!indices.containsKey(node)) {
+                    connect(node);
+                }
+            }
+            return cyclic;
+        }
+
+        private void connect(final String node) {
+            indices.put(node, index);
+            lowLinks.put(node, index);
+            index++;
+            stack.push(node);
+            onStack.add(node);
+
+            final Set<String> successors = graph.getOrDefault(node, Collections.emptySet());
+            for (final String successor : successors) {
+                if (!graph.containsKey(successor)) {
+                    // plain features cannot be part of a cycle
+                    continue;
+                }
+                if (!indices.containsKey(successor)) {
+                    connect(successor);
+                    lowLinks.put(node, Math.min(lowLinks.get(node), lowLinks.get(successor)));
+                } else if (onStack.contains(successor)) {
+                    lowLinks.put(node, Math.min(lowLinks.get(node), indices.get(successor)));
+                }
+            }
+            if (lowLinks.get(node)
+                    .equals(indices.get(node))) {
+                final List<String> component = new ArrayList<>();
+                String             member;
+                do {
+                    member = stack.pop();
+                    onStack.remove(member);
+                    component.add(member);
+                } while (!member.equals(node));
+
+                if (component.size() > 1 || successors.contains(node)) {
+                    cyclic.addAll(component);
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,234 @@
+package com.amitinside.featureflags.provider;
+
+import static java.util.Objects.requireNonNull;
+import static org.osgi.framework.Constants.SERVICE_PID;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.osgi.framework.InvalidSyntaxException;
+import org.osgi.service.cm.Configuration;
+import org.osgi.service.cm.ConfigurationAdmin;
+
+/**
+ * Cache of the {@link Configuration} handles per configuration PID.
+ *
+ * <p>
+ * A handle reflects the current properties and change count of its
+ * configuration and hence stays valid until the configuration gets deleted or
+ * its location changes, whereupon it is required to be
+ * {@link #invalidate(String) invalidated}.
+ * </p>
+ *
+ * <p>
+ * The existing configurations are looked up using
+ * {@link ConfigurationAdmin#listConfigurations(String)} such that reading the
+ * state of an unconfigured PID never creates a configuration. Only
+ * {@link #getOrCreate(String)} creates a configuration which is intended for
+ * writing feature states.
+ * </p>
+ *
+ * @ThreadSafe
+ */
+public final class ConfigurationCache {
+
+    /** The maximum number of PIDs that are looked up by a single filter */
+    private static final int                 BATCH_SIZE     = 64;
+
+    /** Configuration Admin Service Instance Reference */
+    private final ConfigurationAdmin         configurationAdmin;
+
+    /** Key: Configuration PID Value: Configuration */
+    private final Map<String, Configuration> configurations = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor
+     *
+     * @param configurationAdmin {@link ConfigurationAdmin} instance
+     *
+     * @throws NullPointerException if {@code configurationAdmin} is
+     *             {@code null}
+     */
+    public ConfigurationCache(final ConfigurationAdmin configurationAdmin) {
+        this.configurationAdmin = requireNonNull(configurationAdmin, "ConfigurationAdmin instance cannot be null");
+    }
+
+    /**
+     * Returns the existing configuration with the specified PID
+     *
+     * @param pid the configuration PID
+     * @return the configuration or {@code null} if the PID is not configured
+     *
+     * @throws IOException if the configuration cannot be looked up
+     */
+    public Configuration get(final String pid) throws IOException {
+        final Configuration cached = getCached(pid);
+        return cached != null ? cached : lookup(pid);
+    }
+
+    /**
+     * Returns the configuration with the specified PID and creates it if it does
+     * not exist
+     *
+     * @param pid the configuration PID
+     * @return the configuration
+     *
+     * @throws IOException if the configuration cannot be looked up
+     */
+    public Configuration getOrCreate(final String pid) throws IOException {
+        final Configuration cached = getCached(pid);
+        if (cached != null) {
+            return cached;
+        }
+        final Configuration configuration = configurationAdmin.getConfiguration(pid, "?");
+        if (configuration != null) {
+            configurations.put(pid, configuration);
+        }
+        return configuration;
+    }
+
+    /**
+     * Looks up the existing configuration with the specified PID bypassing the
+     * cache and refreshes the cache accordingly
+     *
+     * @param pid the configuration PID
+     * @return the configuration or {@code null} if the PID is not configured
+     *
+     * @throws IOException if the configuration cannot be looked up
+     */
+    public Configuration lookup(final String pid) throws IOException {
+        final Configuration[] result        = list("(" + SERVICE_PID + "=" + escape(pid) + ")");
+        final Configuration   configuration = result == null || result.length == 0 ? null : result[0];
+        if (configuration == null) {
+            configurations.remove(pid);
+        } else {
+            configurations.put(pid, configuration);
+        }
+        return configuration;
+    }
+
+    /**
+     * Looks up the existing configurations with the specified PIDs in batches
+     * bypassing the cache and refreshes the cache accordingly
+     *
+     * @param pids the configuration PIDs
+     * @return Key: Configuration PID Value: Configuration whereby unconfigured
+     *         PIDs are absent
+     *
+     * @throws IOException if the configurations cannot be looked up
+     */
+    public Map<String, Configuration> lookupAll(final Collection<String> pids) throws IOException {
+        final Map<String, Configuration> result = new HashMap<>();
+        final List<String>               batch  = new ArrayList<>(BATCH_SIZE);
+        for (final String pid : pids) {
+            batch.add(pid);
+            if (batch.size() == BATCH_SIZE) {
+                lookupBatch(batch, result);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            lookupBatch(batch, result);
+        }
+        return result;
+    }
+
+    /**
+     * Invalidates the cached handle of the specified configuration PID
+     *
+     * @param pid the configuration PID
+     */
+    public void invalidate(final String pid) {
+        configurations.remove(pid);
+    }
+
+    /**
+     * Invalidates the cached handles of all configuration PIDs except the
+     * specified ones
+     *
+     * @param pids the configuration PIDs to retain
+     */
+    public void retain(final Collection<String> pids) {
+        configurations.keySet()
+                .retainAll(pids);
+    }
+
+    private Configuration getCached(final String pid) {
+        final Configuration cached = configurations.get(pid);
+        if (cached == null) {
+            return null;
+        }
+        try {
+            // fails if the configuration has been deleted in the meantime
+            cached.getChangeCount();
+            return cached;
+        } catch (final IllegalStateException e) {
+            configurations.remove(pid, cached);
+            return null;
+        }
+    }
+
+    private void lookupBatch(final List<String> pids, final Map<String, Configuration> result) throws IOException {
+        if (pids.size() == 1) {
+            final String        pid           = pids.get(0);
+            final Configuration configuration = lookup(pid);
+            if (configuration != null) {
+                result.put(pid, configuration);
+            }
+            return;
+        }
+        final StringBuilder filter = new StringBuilder("(|");
+        for (final String pid : pids) {
+            filter.append('(')
+                    .append(SERVICE_PID)
+                    .append('=')
+                    .append(escape(pid))
+                    .append(')');
+        }
+        final Configuration[] configurations = list(filter.append(')')
+                .toString());
+        if (configurations != null) {
+            for (final Configuration configuration : configurations) {
+                result.put(configuration.getPid(), configuration);
+            }
+        }
+        for (final String pid : pids) {
+            final Configuration configuration = result.get(pid);
+            if (configuration == null) {
+                this.configurations.remove(pid);
+            } else {
+                this.configurations.put(pid, configuration);
+            }
+        }
+    }
+
+    /**
+     * Escapes the characters of the specified value that have a special meaning
+     * in an LDAP filter
+     */
+    private static String escape(final String value) {
+        final StringBuilder escaped = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c == '\\' || c == '(' || c == ')' || c == '*') {
+                escaped.append('\\');
+            }
+            escaped.append(c);
+        }
+        return escaped.toString();
+    }
+
+    private Configuration[] list(final String filter) throws IOException {
+        try {
+            return configurationAdmin.listConfigurations(filter);
+        } catch (final InvalidSyntaxException e) {
+            throw new IOException(String.format("Invalid configuration filter [%s]", filter), e);
+        }
+    }
+
+}
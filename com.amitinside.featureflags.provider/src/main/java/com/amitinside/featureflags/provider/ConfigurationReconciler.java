@@ -0,0 +1,276 @@
+package com.amitinside.featureflags.provider;
+
+import static java.util.Objects.requireNonNull;
+import static org.apache.felix.utils.log.Logger.LOG_ERROR;
+import static org.apache.felix.utils.log.Logger.LOG_WARNING;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.felix.utils.log.Logger;
+import org.osgi.service.cm.Configuration;
+import org.osgi.service.cm.ConfigurationAdmin;
+
+import com.amitinside.featureflags.api.ReconciliationStatsDTO;
+
+/**
+ * Detects and repairs the drift between the feature registry and the
+ * persisted configurations.
+ *
+ * <p>
+ * The registry is only updated by configuration events. Events that are
+ * missed, for instance while the {@link ConfigurationAdmin} service restarts,
+ * leave the registry diverged from the persisted configurations. Therefore the
+ * change count that has last been applied is tracked per configuration PID and
+ * a reconciliation run re-applies only the configurations whose current change
+ * count differs. A run stops as soon as its time budget is exhausted and the
+ * next run continues with the configurations that have not been checked.
+ * </p>
+ *
+ * <p>
+ * The configurations are looked up using
+ * {@link ConfigurationAdmin#listConfigurations(String)} such that no
+ * configuration gets created for an unconfigured PID. The configurations of
+ * newly added features are looked up in batches.
+ * </p>
+ *
+ * @ThreadSafe
+ */
+public final class ConfigurationReconciler {
+
+    /** The change count denoting a non-existent configuration */
+    private static final long            ABSENT              = -1L;
+
+    /** Logger Instance */
+    private final Logger                 logger;
+
+    /** Configuration Cache Instance Reference */
+    private final ConfigurationCache     configurations;
+
+    /** Target to apply the drifted configurations to */
+    private final Target                 target;
+
+    /** Key: Configuration PID Value: Last applied change count */
+    private final Map<String, Long>      appliedChangeCounts = new ConcurrentHashMap<>();
+
+    /** The statistics of all runs */
+    private final ReconciliationStatsDTO stats               = new ReconciliationStatsDTO();
+
+    /** The position to continue the next run from */
+    private int                          cursor;
+
+    /**
+     * Constructor
+     *
+     * @param logger {@link Logger} instance
+     * @param configurations the cache to look up the configurations with
+     * @param target the target to apply the drifted configurations to
+     *
+     * @throws NullPointerException if any of the specified arguments is
+     *             {@code null}
+     */
+    public ConfigurationReconciler(final Logger logger, final ConfigurationCache configurations,
+            final Target target) {
+        this.logger         = requireNonNull(logger, "Logger instance cannot be null");
+        this.configurations = requireNonNull(configurations, "Configuration cache instance cannot be null");
+        this.target         = requireNonNull(target, "Reconciliation target instance cannot be null");
+    }
+
+    /**
+     * Checks the specified configuration PIDs until the specified time budget
+     * is exhausted, starting with the PIDs that have not been checked by the
+     * previous run. At least one PID is checked by every run.
+     *
+     * @param pids the configuration PIDs to check (in a stable order)
+     * @param budget the time budget
+     * @param unit the unit of the time budget
+     *
+     * @throws NullPointerException if {@code pids} or {@code unit} is
+     *             {@code null}
+     */
+    public synchronized void reconcile(final List<String> pids, final long budget, final TimeUnit unit) {
+        requireNonNull(pids, "Configuration PIDs cannot be null");
+        requireNonNull(unit, "Time unit cannot be null");
+
+        final long startMillis = System.currentTimeMillis();
+        final long start       = System.nanoTime();
+        final long budgetNanos = unit.toNanos(budget);
+        final int  size        = pids.size();
+        int        checked     = 0;
+        int        drifted     = 0;
+        while (checked < size && (checked == 0 || System.nanoTime() - start < budgetNanos)) {
+            if (reconcile(pids.get((cursor + checked) % size))) {
+                drifted++;
+            }
+            checked++;
+        }
+        cursor = size == 0 ? 0 : (cursor + checked) % size;
+
+        stats.runs++;
+        stats.checkedConfigurations += checked;
+        stats.driftedConfigurations += drifted;
+        stats.deferredConfigurations = size - checked;
+        stats.lastRun                = startMillis;
+        stats.lastRunDuration        = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    /**
+     * Checks all specified configuration PIDs regardless of the time budget.
+     * This is intended for the PIDs of newly added features whose
+     * configurations have not been applied yet.
+     *
+     * @param pids the configuration PIDs to check
+     *
+     * @throws NullPointerException if {@code pids} is {@code null}
+     */
+    public synchronized void reconcile(final Collection<String> pids) {
+        requireNonNull(pids, "Configuration PIDs cannot be null");
+
+        final Map<String, Configuration> existing;
+        try {
+            existing = configurations.lookupAll(pids);
+        } catch (final IOException e) {
+            logger.log(LOG_ERROR, String.format("Cannot look up configurations %s", pids), e);
+            return;
+        }
+        for (final String pid : pids) {
+            stats.checkedConfigurations++;
+            if (reconcile(pid, existing.get(pid))) {
+                stats.driftedConfigurations++;
+            }
+        }
+    }
+
+    /**
+     * Records the change count of the specified configuration PID whose
+     * properties have been applied by the caller
+     *
+     * @param pid the configuration PID
+     * @param changeCount the applied change count
+     */
+    public void applied(final String pid, final long changeCount) {
+        appliedChangeCounts.put(pid, changeCount);
+    }
+
+    /**
+     * Records that the features of the specified configuration PID have been
+     * reverted to their default states by the caller
+     *
+     * @param pid the configuration PID
+     */
+    public void reverted(final String pid) {
+        appliedChangeCounts.put(pid, ABSENT);
+    }
+
+    /**
+     * Forgets the change count that has been applied for the specified PID such
+     * that the next reconciliation applies the configuration again
+     *
+     * @param pid the configuration PID
+     */
+    public void forget(final String pid) {
+        appliedChangeCounts.remove(pid);
+    }
+
+    /**
+     * Forgets the applied change counts of all configuration PIDs except the
+     * specified ones such that a configuration gets applied again once its
+     * features are re-added
+     *
+     * @param pids the configuration PIDs to retain
+     */
+    public void retain(final Collection<String> pids) {
+        appliedChangeCounts.keySet()
+                .retainAll(pids);
+    }
+
+    /**
+     * Returns the statistics of all runs
+     *
+     * @return the statistics
+     */
+    public synchronized ReconciliationStatsDTO getStats() {
+        final ReconciliationStatsDTO copy = new ReconciliationStatsDTO();
+        copy.runs                   = stats.runs;
+        copy.checkedConfigurations  = stats.checkedConfigurations;
+        copy.driftedConfigurations  = stats.driftedConfigurations;
+        copy.deferredConfigurations = stats.deferredConfigurations;
+        copy.lastRun                = stats.lastRun;
+        copy.lastRunDuration        = stats.lastRunDuration;
+        return copy;
+    }
+
+    /**
+     * Applies the specified configuration if it has not been applied yet or if
+     * it has drifted
+     *
+     * @return {@code true} if the configuration has drifted, otherwise
+     *         {@code false}
+     */
+    private boolean reconcile(final String pid) {
+        final Configuration configuration;
+        try {
+            configuration = configurations.lookup(pid);
+        } catch (final IOException e) {
+            logger.log(LOG_ERROR, String.format("Cannot look up configuration [%s]", pid), e);
+            return false;
+        }
+        return reconcile(pid, configuration);
+    }
+
+    /**
+     * Applies the specified configuration if it has not been applied yet or if
+     * it has drifted
+     *
+     * @param configuration the current configuration or {@code null} if the PID
+     *            is not configured
+     * @return {@code true} if the configuration has drifted, otherwise
+     *         {@code false}
+     */
+    private boolean reconcile(final String pid, final Configuration configuration) {
+        final long changeCount = configuration == null ? ABSENT : configuration.getChangeCount();
+        final Long applied     = appliedChangeCounts.get(pid);
+        if (applied == null && configuration == null) {
+            // the features of an unconfigured PID are in their default states
+            appliedChangeCounts.put(pid, ABSENT);
+            return false;
+        }
+        if (applied != null && applied == changeCount) {
+            return false;
+        }
+        if (applied != null) {
+            logger.log(LOG_WARNING, String.format("Configuration [%s] has drifted (applied: %d, current: %d)", pid,
+                    applied, changeCount));
+        }
+        if (configuration == null) {
+            target.revert(pid);
+        } else {
+            target.apply(pid, ManagerHelper.asMap(configuration.getProperties()));
+        }
+        appliedChangeCounts.put(pid, changeCount);
+        return applied != null;
+    }
+
+    /**
+     * The target of the reconciliation
+     */
+    public interface Target {
+
+        /**
+         * Applies the specified configuration properties to the features of the
+         * specified configuration PID
+         */
+        void apply(String pid, Map<String, Object> properties);
+
+        /**
+         * Reverts the features of the specified configuration PID to their
+         * default states as the configuration does not exist
+         */
+        void revert(String pid);
+    }
+
+}
@@ -0,0 +1,257 @@
+package com.amitinside.featureflags.provider;
+
+import static com.amitinside.featureflags.provider.ManagerHelper.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+import com.amitinside.featureflags.api.EvaluationCacheStatsDTO;
+
+/**
+ * Bounded cache of the results of contextual feature evaluations.
+ *
+ * <p>
+ * An entry is keyed by the feature ID and the fingerprint of the evaluation
+ * context, that is, the values of only those context attributes that are
+ * referenced by the rules of the feature. Contexts which differ in other
+ * attributes therefore share the same entry.
+ * </p>
+ *
+ * <p>
+ * Every entry records the version of its feature at the time of the
+ * evaluation. Invalidating a feature increments its version such that its
+ * entries become stale without scanning the cache and the entries of all other
+ * features remain valid. Stale entries are replaced on their next lookup or
+ * evicted in the order of the configured {@link EvictionPolicy}. Lookups read
+ * the versions without any lock whereas invalidations are serialized.
+ * </p>
+ *
+ * @ThreadSafe
+ */
+public final class EvaluationCache {
+
+    /** The maximum number of cached entries (0 if disabled) */
+    private final int               capacity;
+
+    /** Cached results in the order of the eviction policy */
+    private final Map<Key, Result>  entries;
+
+    /** Key: Feature ID Value: Version of the last invalidation */
+    private final Map<String, Long> versions      = new ConcurrentHashMap<>();
+
+    /** The source of all versions */
+    private final AtomicLong        clock         = new AtomicLong();
+
+    /** The version of the last invalidation of all features */
+    private volatile long           generation;
+
+    /** The number of lookups answered by a cached result */
+    private final LongAdder         hits          = new LongAdder();
+
+    /** The number of lookups that required an evaluation */
+    private final LongAdder         misses        = new LongAdder();
+
+    /** The number of results evicted due to the capacity */
+    private final LongAdder         evictions     = new LongAdder();
+
+    /** The number of invalidations */
+    private final LongAdder         invalidations = new LongAdder();
+
+    /**
+     * Constructor
+     *
+     * @param capacity the maximum number of cached entries or {@code 0} to
+     *            disable the cache
+     * @param policy the eviction policy
+     *
+     * @throws NullPointerException if {@code policy} is {@code null}
+     * @throws IllegalArgumentException if {@code capacity} is negative
+     */
+    public EvaluationCache(final int capacity, final EvictionPolicy policy) {
+        requireNonNull(policy, "Eviction policy cannot be null");
+        checkArgument(capacity >= 0, "Evaluation cache capacity cannot be negative");
+
+        this.capacity = capacity;
+        entries       = new LinkedHashMap<>(16, 0.75f, policy == EvictionPolicy.LRU);
+    }
+
+    /**
+     * Returns the cached result of the evaluation of the specified feature in
+     * the context with the specified fingerprint or evaluates the feature using
+     * the specified evaluator if there is no valid cached result
+     *
+     * @param featureID the feature ID
+     * @param fingerprint the supplier of the values of the context attributes
+     *            that are referenced by the rules of the feature
+     * @param evaluator the evaluator of the feature
+     * @return the result of the evaluation
+     *
+     * @throws NullPointerException if any of the specified arguments is
+     *             {@code null}
+     */
+    public boolean get(final String featureID, final Supplier<Object[]> fingerprint,
+            final BooleanSupplier evaluator) {
+        requireNonNull(featureID, "Feature ID cannot be null");
+        requireNonNull(fingerprint, "Fingerprint cannot be null");
+        requireNonNull(evaluator, "Evaluator cannot be null");
+
+        if (capacity == 0) {
+            misses.increment();
+            return evaluator.getAsBoolean();
+        }
+        // the version is read before the fingerprint and the evaluation such
+        // that an invalidation in between renders the stored result stale
+        final long version = versionOf(featureID);
+        final Key  key     = new Key(featureID, fingerprint.get());
+        synchronized (entries) {
+            final Result result = entries.get(key);
+            if (result != null && result.version == version) {
+                hits.increment();
+                return result.value;
+            }
+        }
+        misses.increment();
+        final boolean value = evaluator.getAsBoolean();
+        synchronized (entries) {
+            entries.put(key, new Result(value, version));
+            if (entries.size() > capacity) {
+                final Iterator<Key> it = entries.keySet()
+                        .iterator();
+                it.next();
+                it.remove();
+                evictions.increment();
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Invalidates the cached results of the specified features
+     *
+     * @param featureIDs the feature IDs
+     */
+    public synchronized void invalidate(final Collection<String> featureIDs) {
+        for (final String featureID : featureIDs) {
+            versions.put(featureID, clock.incrementAndGet());
+            invalidations.increment();
+        }
+    }
+
+    /**
+     * Invalidates the cached results of all features. Required to be invoked
+     * whenever the features change structurally.
+     */
+    public synchronized void invalidateAll() {
+        // the lock keeps the versions of a concurrent invalidation from being
+        // cleared after they have been drawn past the new generation
+        generation = clock.incrementAndGet();
+        versions.clear();
+        invalidations.increment();
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    /**
+     * Returns the fingerprint of the specified context with respect to the
+     * specified context attributes
+     *
+     * @param attributes the referenced context attributes
+     * @param context the context
+     * @return the fingerprint
+     */
+    public static Object[] fingerprint(final List<String> attributes, final Map<String, ?> context) {
+        final Object[] fingerprint = new Object[attributes.size()];
+        for (int i = 0; i < fingerprint.length; i++) {
+            final Object value = context.get(attributes.get(i));
+            // the rules compare the string representations only
+            fingerprint[i] = value == null ? null : String.valueOf(value);
+        }
+        return fingerprint;
+    }
+
+    /**
+     * Returns the statistics of the cache
+     *
+     * @return the statistics
+     */
+    public EvaluationCacheStatsDTO getStats() {
+        final EvaluationCacheStatsDTO stats = new EvaluationCacheStatsDTO();
+        stats.capacity      = capacity;
+        stats.hits          = hits.sum();
+        stats.misses        = misses.sum();
+        stats.evictions     = evictions.sum();
+        stats.invalidations = invalidations.sum();
+        synchronized (entries) {
+            stats.size = entries.size();
+        }
+        final long lookups = stats.hits + stats.misses;
+        stats.hitRatio = lookups == 0 ? 0 : (double) stats.hits / lookups;
+        return stats;
+    }
+
+    private long versionOf(final String featureID) {
+        return Math.max(generation, versions.getOrDefault(featureID, 0L));
+    }
+
+    /**
+     * The order in which the cached results are evicted once the capacity is
+     * reached
+     */
+    public enum EvictionPolicy {
+        /** Evicts the least recently used result first */
+        LRU,
+        /** Evicts the least recently evaluated result first */
+        FIFO
+    }
+
+    private static final class Result {
+        private final boolean value;
+        private final long    version;
+
+        Result(final boolean value, final long version) {
+            this.value   = value;
+            this.version = version;
+        }
+    }
+
+    private static final class Key {
+        private final String   featureID;
+        private final Object[] fingerprint;
+        private final int      hash;
+
+        Key(final String featureID, final Object[] fingerprint) {
+            this.featureID   = featureID;
+            this.fingerprint = fingerprint;
+            hash             = 31 * featureID.hashCode() + Arrays.hashCode(fingerprint);
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) obj;
+            return featureID.equals(other.featureID) && Arrays.equals(fingerprint, other.fingerprint);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+}
@@ -0,0 +1,112 @@
+package com.amitinside.featureflags.provider;
+
+import static com.amitinside.featureflags.api.FeatureChangeEvent.Type.ADDED;
+import static com.amitinside.featureflags.api.FeatureChangeEvent.Type.UPDATED;
+import static com.amitinside.featureflags.provider.ManagerHelper.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.amitinside.featureflags.api.FeatureChangeEvent;
+import com.amitinside.featureflags.api.FeatureChangesDTO;
+
+/**
+ * Bounded log of the changes of the feature registry.
+ *
+ * <p>
+ * Every recorded change increments the version of the registry. The log keeps
+ * the changes of the most recent versions in a ring such that the changes since
+ * any of these versions can be determined without looking at the features.
+ * </p>
+ *
+ * @ThreadSafe
+ */
+public final class FeatureChangeLog {
+
+    /** The changes -> Index: (Version - 1) modulo capacity */
+    private final FeatureChangeEvent[] changes;
+
+    /** The current version of the feature registry */
+    private volatile long              version;
+
+    /**
+     * Constructor
+     *
+     * @param capacity the maximum number of logged changes
+     *
+     * @throws IllegalArgumentException if {@code capacity} is not positive
+     */
+    public FeatureChangeLog(final int capacity) {
+        checkArgument(capacity > 0, "Change log capacity must be positive");
+        changes = new FeatureChangeEvent[capacity];
+    }
+
+    /**
+     * Records the specified change and increments the version
+     *
+     * @param change the change
+     *
+     * @throws NullPointerException if {@code change} is {@code null}
+     */
+    public synchronized void record(final FeatureChangeEvent change) {
+        requireNonNull(change, "Change cannot be null");
+        changes[(int) (version++ % changes.length)] = change;
+    }
+
+    /**
+     * Returns the current version of the feature registry
+     *
+     * @return the current version
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns the changes since the specified version whereby only the latest
+     * change of every feature of a bundle is retained
+     *
+     * @param since the version
+     * @return the changes
+     *
+     * @throws IllegalArgumentException if {@code since} is negative
+     */
+    public FeatureChangesDTO getChangesSince(final long since) {
+        checkArgument(since >= 0, "Version cannot be negative");
+
+        final FeatureChangesDTO               result = new FeatureChangesDTO();
+        final Map<String, FeatureChangeEvent> latest = new LinkedHashMap<>();
+        synchronized (this) {
+            result.version = version;
+            // the version is unknown (for instance due to a restart) or the
+            // changes have already been overwritten
+            if (since > version || version - since > changes.length) {
+                result.isResyncRequired = true;
+                result.changes          = Collections.emptyList();
+                return result;
+            }
+            for (long v = since; v < version; v++) {
+                final FeatureChangeEvent change = changes[(int) (v % changes.length)];
+                final String             key    = change.bundleId + ":" + change.id;
+                final FeatureChangeEvent last   = latest.remove(key);
+                latest.put(key, copy(change, last != null && last.type == ADDED && change.type == UPDATED));
+            }
+        }
+        result.changes = new ArrayList<>(latest.values());
+        return result;
+    }
+
+    private static FeatureChangeEvent copy(final FeatureChangeEvent change, final boolean isAdded) {
+        final FeatureChangeEvent copy = new FeatureChangeEvent();
+        copy.type      = isAdded ? ADDED : change.type;
+        copy.id        = change.id;
+        copy.bundleId  = change.bundleId;
+        copy.isEnabled = change.isEnabled;
+        copy.timestamp = change.timestamp;
+        return copy;
+    }
+
+}
@@ -0,0 +1,270 @@
+package com.amitinside.featureflags.provider;
+
+import static com.amitinside.featureflags.api.OverflowPolicy.CONFLATE;
+import static com.amitinside.featureflags.provider.ManagerHelper.checkArgument;
+import static java.util.Objects.requireNonNull;
+import static org.apache.felix.utils.log.Logger.LOG_ERROR;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+import org.apache.felix.utils.log.Logger;
+
+import com.amitinside.featureflags.api.FeatureChangeEvent;
+import com.amitinside.featureflags.api.FeatureChangeSubscriber;
+import com.amitinside.featureflags.api.FeatureChangeSubscription;
+import com.amitinside.featureflags.api.OverflowPolicy;
+
+/**
+ * Publishes {@link FeatureChangeEvent}s to the subscribers.
+ *
+ * <p>
+ * Every subscriber has its own bounded buffer. Publishing only appends to the
+ * buffers and never blocks whereas the buffered events are delivered on the
+ * specified executor as requested by the subscribers. Events of a single
+ * subscriber are delivered by at most one thread at a time.
+ * </p>
+ *
+ * @ThreadSafe
+ */
+public final class FeatureChangePublisher {
+
+    /** Logger Instance */
+    private final Logger                 logger;
+
+    /** Executor delivering the events */
+    private final Executor               executor;
+
+    /** All active subscriptions */
+    private final List<SubscriptionImpl> subscriptions = new CopyOnWriteArrayList<>();
+
+    /**
+     * Constructor
+     *
+     * @param logger {@link Logger} instance
+     * @param executor the executor to deliver the events on
+     *
+     * @throws NullPointerException if any of the specified arguments is
+     *             {@code null}
+     */
+    public FeatureChangePublisher(final Logger logger, final Executor executor) {
+        this.logger   = requireNonNull(logger, "Logger instance cannot be null");
+        this.executor = requireNonNull(executor, "Executor instance cannot be null");
+    }
+
+    /**
+     * Subscribes the specified subscriber
+     *
+     * @param subscriber the subscriber
+     * @param filter the feature ID, a feature ID prefix followed by {@code *}
+     *            or {@code null} for all features
+     * @param bufferSize the maximum number of buffered events
+     * @param policy the policy to apply once the buffer is full
+     *
+     * @throws NullPointerException if {@code subscriber} or {@code policy} is
+     *             {@code null}
+     * @throws IllegalArgumentException if {@code bufferSize} is not positive
+     */
+    public void subscribe(final FeatureChangeSubscriber subscriber, final String filter, final int bufferSize,
+            final OverflowPolicy policy) {
+        requireNonNull(subscriber, "Subscriber cannot be null");
+        requireNonNull(policy, "Overflow policy cannot be null");
+        checkArgument(bufferSize > 0, "Buffer size must be positive");
+
+        final SubscriptionImpl subscription = new SubscriptionImpl(subscriber, toPredicate(filter), bufferSize,
+                policy);
+        subscriptions.add(subscription);
+        subscription.schedule();
+    }
+
+    /**
+     * Checks whether there exists any subscriber such that callers can avoid
+     * creating events nobody receives
+     *
+     * @return {@code true} if there exists any subscriber, otherwise
+     *         {@code false}
+     */
+    public boolean hasSubscribers() {
+        return !subscriptions.isEmpty();
+    }
+
+    /**
+     * Publishes the specified event to all subscribers whose filter matches
+     *
+     * @param event the event to publish
+     */
+    public void publish(final FeatureChangeEvent event) {
+        for (final SubscriptionImpl subscription : subscriptions) {
+            if (subscription.filter.test(event.id)) {
+                subscription.offer(event);
+            }
+        }
+    }
+
+    /**
+     * Completes all subscriptions once their buffered events have been
+     * delivered
+     */
+    public void close() {
+        for (final SubscriptionImpl subscription : subscriptions) {
+            subscription.complete();
+        }
+    }
+
+    private static Predicate<String> toPredicate(final String filter) {
+        if (filter == null || filter.equals("*")) {
+            return id -> true;
+        }
+        if (filter.endsWith("*")) {
+            final String prefix = filter.substring(0, filter.length() - 1);
+            return id -> id.startsWith(prefix);
+        }
+        return filter::equals;
+    }
+
+    private final class SubscriptionImpl implements FeatureChangeSubscription {
+        private final FeatureChangeSubscriber        subscriber;
+        private final Predicate<String>              filter;
+        private final int                            bufferSize;
+        private final OverflowPolicy                 policy;
+        private final ArrayDeque<FeatureChangeEvent> buffer;
+        private final AtomicInteger                  pendingSignals = new AtomicInteger();
+        private long                                 requested;
+        private boolean                              isCompleted;
+        private Throwable                            error;
+        private boolean                              isSubscribed;
+        private volatile boolean                     isCancelled;
+
+        SubscriptionImpl(final FeatureChangeSubscriber subscriber, final Predicate<String> filter,
+                final int bufferSize, final OverflowPolicy policy) {
+            this.subscriber = subscriber;
+            this.filter     = filter;
+            this.bufferSize = bufferSize;
+            this.policy     = policy;
+            buffer          = new ArrayDeque<>(Math.min(bufferSize, 64));
+        }
+
+        @Override
+        public void request(final long n) {
+            synchronized (this) {
+                if (n <= 0) {
+                    error = new IllegalArgumentException("Number of requested events must be positive");
+                } else {
+                    requested = requested + n < 0 ? Long.MAX_VALUE : requested + n;
+                }
+            }
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            isCancelled = true;
+            subscriptions.remove(this);
+            synchronized (this) {
+                buffer.clear();
+            }
+        }
+
+        void offer(final FeatureChangeEvent event) {
+            synchronized (this) {
+                if (policy == CONFLATE) {
+                    final Iterator<FeatureChangeEvent> it = buffer.iterator();
+                    while (it.hasNext()) {
+                        final FeatureChangeEvent buffered = it.next();
+                        if (buffered.bundleId == event.bundleId && buffered.id.equals(event.id)) {
+                            it.remove();
+                            break;
+                        }
+                    }
+                }
+                if (buffer.size() == bufferSize) {
+                    buffer.pollFirst();
+                }
+                buffer.addLast(event);
+            }
+            schedule();
+        }
+
+        void complete() {
+            synchronized (this) {
+                isCompleted = true;
+            }
+            schedule();
+        }
+
+        void schedule() {
+            if (pendingSignals.getAndIncrement() == 0) {
+                try {
+                    executor.execute(this::drain);
+                } catch (final RejectedExecutionException e) {
+                    pendingSignals.set(0);
+                }
+            }
+        }
+
+        /**
+         * Delivers the requested events until no further signal is pending
+         */
+        private void drain() {
+            int missed = 1;
+            do {
+                if (!isSubscribed) {
+                    isSubscribed = true;
+                    if (!signal(() -> subscriber.onSubscribe(this))) {
+                        return;
+                    }
+                }
+                while (!isCancelled) {
+                    final FeatureChangeEvent event;
+                    final Throwable          failure;
+                    final boolean            isDone;
+                    synchronized (this) {
+                        failure = error;
+                        isDone  = isCompleted && buffer.isEmpty();
+                        event   = failure == null && requested > 0 ? buffer.pollFirst() : null;
+                        if (event != null && requested != Long.MAX_VALUE) {
+                            requested--;
+                        }
+                    }
+                    if (failure != null || isDone) {
+                        cancel();
+                        signal(() -> {
+                            if (failure != null) {
+                                subscriber.onError(failure);
+                            } else {
+                                subscriber.onComplete();
+                            }
+                        });
+                        return;
+                    }
+                    if (event == null || !signal(() -> subscriber.onNext(event))) {
+                        break;
+                    }
+                }
+                missed = pendingSignals.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        /**
+         * Invokes the subscriber and cancels the subscription if the subscriber
+         * violates the contract by throwing an exception
+         */
+        private boolean signal(final Runnable signal) {
+            try {
+                signal.run();
+                return true;
+            } catch (final RuntimeException e) {
+                logger.log(LOG_ERROR, "Feature change subscriber failed - the subscription has been cancelled", e);
+                cancel();
+                return false;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,171 @@
+package com.amitinside.featureflags.provider;
+
+import static java.util.Objects.requireNonNull;
+import static org.apache.felix.utils.log.Logger.LOG_ERROR;
+import static org.osgi.service.condition.Condition.CONDITION_ID;
+
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.apache.felix.utils.log.Logger;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceRegistration;
+import org.osgi.service.condition.Condition;
+
+/**
+ * Registers an OSGi {@link Condition} service with the property
+ * {@code osgi.condition.id=feature.X} for every enabled feature {@code X}.
+ *
+ * <p>
+ * Components can therefore be gated on a feature declaratively by referencing
+ * the condition with a target filter such as
+ * {@code (osgi.condition.id=feature.X)}. The conditions are registered and
+ * unregistered incrementally by the specified executor in the order of the
+ * updates such that the services are never (un)registered while the caller
+ * holds any lock.
+ * </p>
+ *
+ * @ThreadSafe
+ */
+public final class FeatureConditions {
+
+    /** The prefix of the condition IDs of the features */
+    public static final String                                CONDITION_ID_PREFIX = "feature.";
+
+    /** Logger Instance */
+    private final Logger                                      logger;
+
+    /** The context to register the conditions with */
+    private final BundleContext                               bundleContext;
+
+    /** Executor (un)registering the conditions */
+    private final Executor                                    executor;
+
+    /** Key: Feature ID Value: Registration of the condition of the feature */
+    private final Map<String, ServiceRegistration<Condition>> registrations       = new HashMap<>();
+
+    /** The flag denoting whether the conditions have been unregistered */
+    private boolean                                           isClosed;
+
+    /**
+     * Constructor
+     *
+     * @param logger the logger
+     * @param bundleContext the context to register the conditions with
+     * @param executor the executor (un)registering the conditions which is
+     *            required to execute the tasks in the order of their submission
+     *
+     * @throws NullPointerException if any of the specified arguments is
+     *             {@code null}
+     */
+    public FeatureConditions(final Logger logger, final BundleContext bundleContext, final Executor executor) {
+        this.logger        = requireNonNull(logger, "Logger instance cannot be null");
+        this.bundleContext = requireNonNull(bundleContext, "Bundle context cannot be null");
+        this.executor      = requireNonNull(executor, "Executor cannot be null");
+    }
+
+    /**
+     * Updates the conditions of the specified features whereas the conditions
+     * of all other features are retained
+     *
+     * @param states Key: Feature ID Value: Effective state of the feature
+     */
+    public void update(final Map<String, Boolean> states) {
+        submit(states, false);
+    }
+
+    /**
+     * Updates the conditions of the specified features and unregisters the
+     * conditions of all other features
+     *
+     * @param states Key: Feature ID Value: Effective state of the feature
+     */
+    public void reset(final Map<String, Boolean> states) {
+        submit(states, true);
+    }
+
+    /**
+     * Unregisters all conditions. Subsequent updates are ignored.
+     */
+    public synchronized void close() {
+        isClosed = true;
+        registrations.values()
+                .forEach(FeatureConditions::unregister);
+        registrations.clear();
+    }
+
+    /**
+     * Returns the number of registered conditions
+     *
+     * @return the number of registered conditions
+     */
+    public synchronized int size() {
+        return registrations.size();
+    }
+
+    private void submit(final Map<String, Boolean> states, final boolean isComplete) {
+        try {
+            executor.execute(() -> apply(states, isComplete));
+        } catch (final RejectedExecutionException e) {
+            // the feature manager has been deactivated
+        }
+    }
+
+    private synchronized void apply(final Map<String, Boolean> states, final boolean isComplete) {
+        if (isClosed) {
+            return;
+        }
+        if (isComplete) {
+            final Iterator<Entry<String, ServiceRegistration<Condition>>> it = registrations.entrySet()
+                    .iterator();
+            while (it.hasNext()) {
+                final Entry<String, ServiceRegistration<Condition>> entry = it.next();
+                if (!states.getOrDefault(entry.getKey(), false)) {
+                    unregister(entry.getValue());
+                    it.remove();
+                }
+            }
+        }
+        for (final Entry<String, Boolean> entry : states.entrySet()) {
+            final String featureID = entry.getKey();
+            if (entry.getValue()) {
+                if (!registrations.containsKey(featureID)) {
+                    register(featureID);
+                }
+            } else {
+                final ServiceRegistration<Condition> registration = registrations.remove(featureID);
+                if (registration != null) {
+                    unregister(registration);
+                }
+            }
+        }
+    }
+
+    private void register(final String featureID) {
+        final Hashtable<String, Object> properties = new Hashtable<>();
+        properties.put(CONDITION_ID, CONDITION_ID_PREFIX + featureID);
+        try {
+            final ServiceRegistration<Condition> registration = bundleContext.registerService(Condition.class,
+                    Condition.INSTANCE, properties);
+            if (registration != null) {
+                registrations.put(featureID, registration);
+            }
+        } catch (final IllegalStateException e) {
+            logger.log(LOG_ERROR, String.format("Cannot register the condition of feature [%s]", featureID), e);
+        }
+    }
+
+    private static void unregister(final ServiceRegistration<Condition> registration) {
+        try {
+            registration.unregister();
+        } catch (final IllegalStateException e) {
+            // the condition has already been unregistered by the framework
+        }
+    }
+
+}
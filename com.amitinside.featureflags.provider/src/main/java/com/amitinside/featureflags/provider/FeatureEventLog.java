@@ -0,0 +1,261 @@
+package com.amitinside.featureflags.provider;
+
+import static com.amitinside.featureflags.provider.ManagerHelper.checkArgument;
+import static java.util.Objects.requireNonNull;
+import static org.apache.felix.utils.log.Logger.LOG_DEBUG;
+import static org.apache.felix.utils.log.Logger.LOG_INFO;
+import static org.apache.felix.utils.log.Logger.LOG_WARNING;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.apache.felix.utils.log.Logger;
+
+import com.amitinside.featureflags.api.FeatureEventDTO;
+
+/**
+ * Bounded ring buffer of the events of the feature manager.
+ *
+ * <p>
+ * The buffer consists of preallocated parallel arrays. Recording an event only
+ * claims the next sequence number and stores the type, the references to the
+ * already existing subject and detail strings, a value and the timestamp in the
+ * slot of the sequence. Hence recording neither allocates nor formats any
+ * message. The messages are only formatted by the {@link #drain() drain} if the
+ * log level of the logger enables the event, or whenever the recent events are
+ * requested.
+ * </p>
+ *
+ * <p>
+ * Every slot carries the sequence of its event which is invalidated before and
+ * published after the event is written. Readers skip events that have been
+ * overwritten in the meantime.
+ * </p>
+ *
+ * @ThreadSafe
+ */
+public final class FeatureEventLog {
+
+    /** Logger Instance */
+    private final Logger          logger;
+
+    /** The mask of the slot of a sequence (capacity - 1) */
+    private final int             mask;
+
+    /** The types of the events */
+    private final Type[]          types;
+
+    /** The subjects of the events */
+    private final String[]        subjects;
+
+    /** The details of the events */
+    private final String[]        details;
+
+    /** The values of the events */
+    private final long[]          values;
+
+    /** The timestamps of the events */
+    private final long[]          timestamps;
+
+    /** The sequences of the events (-1 while an event is written) */
+    private final AtomicLongArray sequences;
+
+    /** The sequence of the next event */
+    private final AtomicLong      head = new AtomicLong();
+
+    /** The sequence of the next event to forward to the logger */
+    private long                  drained;
+
+    /**
+     * Constructor
+     *
+     * @param logger the logger to forward the events to
+     * @param capacity the number of buffered events which gets rounded up to
+     *            the next power of two
+     *
+     * @throws NullPointerException if {@code logger} is {@code null}
+     * @throws IllegalArgumentException if {@code capacity} is not positive or
+     *             exceeds 2^30
+     */
+    public FeatureEventLog(final Logger logger, final int capacity) {
+        this.logger = requireNonNull(logger, "Logger instance cannot be null");
+        checkArgument(capacity > 0 && capacity <= 1 << 30, "Event log capacity must be between 1 and 2^30");
+
+        final int size = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        mask       = size - 1;
+        types      = new Type[size];
+        subjects   = new String[size];
+        details    = new String[size];
+        values     = new long[size];
+        timestamps = new long[size];
+        sequences  = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, -1);
+        }
+    }
+
+    /**
+     * Records the specified event without any allocation
+     *
+     * @param type the type of the event
+     * @param subject the subject of the event
+     * @param detail the detail of the event (can be {@code null})
+     * @param value the value of the event
+     */
+    public void record(final Type type, final String subject, final String detail, final long value) {
+        final long sequence = head.getAndIncrement();
+        final int  slot     = (int) sequence & mask;
+        sequences.set(slot, -1);
+        types[slot]      = type;
+        subjects[slot]   = subject;
+        details[slot]    = detail;
+        values[slot]     = value;
+        timestamps[slot] = System.currentTimeMillis();
+        sequences.lazySet(slot, sequence);
+    }
+
+    /**
+     * Records the specified event whose value denotes a feature state
+     *
+     * @param type the type of the event
+     * @param subject the subject of the event
+     * @param detail the detail of the event (can be {@code null})
+     * @param state the feature state
+     */
+    public void record(final Type type, final String subject, final String detail, final boolean state) {
+        record(type, subject, detail, state ? 1 : 0);
+    }
+
+    /**
+     * Forwards the events recorded since the last drain to the logger. The
+     * messages of the events are only formatted if the log level of the logger
+     * enables their types. Required to be invoked periodically by a single
+     * thread.
+     */
+    public synchronized void drain() {
+        final long end   = head.get();
+        final int  level = logger.getLogLevel();
+        long       next  = Math.max(drained, end - types.length);
+        if (next > drained) {
+            logger.log(LOG_WARNING, String.format("[%d] events have been overwritten before they were logged",
+                    next - drained));
+        }
+        for (; next < end; next++) {
+            final int slot = (int) next & mask;
+            if (sequences.get(slot) < next) {
+                // the event is still being written and is forwarded next time
+                break;
+            }
+            final FeatureEventDTO event = read(next, level);
+            if (event != null) {
+                logger.log(Type.valueOf(event.type).level, event.message);
+            }
+        }
+        drained = next;
+    }
+
+    /**
+     * Returns the most recent events in the order of their occurrence
+     *
+     * @param count the maximum number of events
+     * @return the recent events
+     *
+     * @throws IllegalArgumentException if {@code count} is negative
+     */
+    public List<FeatureEventDTO> getRecentEvents(final int count) {
+        checkArgument(count >= 0, "Count cannot be negative");
+
+        final long                  end    = head.get();
+        final long                  start  = Math.max(0, end - Math.min(count, types.length));
+        final List<FeatureEventDTO> events = new ArrayList<>((int) (end - start));
+        for (long sequence = start; sequence < end; sequence++) {
+            final FeatureEventDTO event = read(sequence, LOG_DEBUG);
+            if (event != null) {
+                events.add(event);
+            }
+        }
+        return events;
+    }
+
+    /**
+     * Reads the event with the specified sequence
+     *
+     * @return the event or {@code null} if the event is not available or its
+     *         type is not enabled by the specified log level
+     */
+    private FeatureEventDTO read(final long sequence, final int level) {
+        final int slot = (int) sequence & mask;
+        if (sequences.get(slot) != sequence) {
+            return null;
+        }
+        final Type type = types[slot];
+        if (type.level > level) {
+            return null;
+        }
+        final FeatureEventDTO event = new FeatureEventDTO();
+        event.sequence  = sequence;
+        event.type      = type.name();
+        event.subject   = subjects[slot];
+        event.detail    = details[slot];
+        event.value     = values[slot];
+        event.timestamp = timestamps[slot];
+        // the event has been overwritten while being read
+        if (sequences.get(slot) != sequence) {
+            return null;
+        }
+        event.message = String.format(type.format, event.subject, event.detail, event.value, event.value == 1);
+        return event;
+    }
+
+    /**
+     * The types of the recorded events whereby the format arguments are the
+     * subject, the detail, the value and the value as feature state
+     */
+    public enum Type {
+        /** A feature state is written to a configuration */
+        FEATURE_TOGGLED(LOG_INFO, "Updating feature [%1$s] to [%4$b] in configuration [%2$s]"),
+        /** A feature state is overridden in the override store */
+        FEATURE_OVERRIDDEN(LOG_INFO, "Overriding feature [%1$s] to [%4$b]"),
+        /** An override has been removed from the override store before it has been written */
+        OVERRIDE_DISCARDED(LOG_INFO, "Discarded the stored override of feature [%1$s] due to [%2$s]"),
+        /** A feature state is overridden transiently */
+        TRANSIENT_OVERRIDE_SET(LOG_INFO, "Overriding feature [%1$s] to [%4$b] for [%2$s] ms"),
+        /** A transient override has expired or has been reset */
+        TRANSIENT_OVERRIDE_REMOVED(LOG_INFO, "Removed the transient override of feature [%1$s]"),
+        /** A feature state is overridden for a tenant */
+        TENANT_FEATURE_TOGGLED(LOG_INFO, "Updating feature [%1$s] to [%4$b] for tenant [%2$s]"),
+        /** A tenant override of a feature is reset */
+        TENANT_FEATURE_RESET(LOG_INFO, "Resetting feature [%1$s] for tenant [%2$s]"),
+        /** A configuration has changed the state of a feature */
+        FEATURE_UPDATED(LOG_INFO, "Updated feature [%1$s] of configuration [%2$s] to [%4$b]"),
+        /** A configuration has changed the variant of a feature */
+        VARIANT_UPDATED(LOG_INFO, "Updated feature [%1$s] to variant [%2$s]"),
+        /** A configuration has changed the expression of a composite feature */
+        EXPRESSION_UPDATED(LOG_INFO, "Updated composite feature [%1$s] to [%2$s]"),
+        /** A configuration has been updated */
+        CONFIGURATION_UPDATED(LOG_DEBUG, "Configuration [%1$s] updated"),
+        /** The features of a configuration are reverted to their defaults */
+        CONFIGURATION_REVERTED(LOG_INFO, "Reverting the features of configuration [%1$s] to their defaults"),
+        /** A circuit breaker has disabled a feature */
+        CIRCUIT_OPENED(LOG_WARNING, "Circuit breaker disabled feature [%1$s] after [%2$s] failed calls"),
+        /** A circuit breaker probes a feature */
+        CIRCUIT_HALF_OPENED(LOG_INFO, "Circuit breaker restored feature [%1$s] to probe it"),
+        /** A circuit breaker has closed after a successful probe */
+        CIRCUIT_CLOSED(LOG_INFO, "Circuit breaker of feature [%1$s] closed"),
+        /** An open circuit breaker has been removed or replaced */
+        CIRCUIT_RELEASED(LOG_INFO, "Restored feature [%1$s] as its open circuit breaker has been removed"),
+        /** The extender has processed a bundle */
+        BUNDLE_EXTENDED(LOG_DEBUG, "[%1$s] %2$s");
+
+        private final int    level;
+        private final String format;
+
+        Type(final int level, final String format) {
+            this.level  = level;
+            this.format = format;
+        }
+    }
+
+}
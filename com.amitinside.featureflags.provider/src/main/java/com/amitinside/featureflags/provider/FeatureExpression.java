@@ -0,0 +1,361 @@
+package com.amitinside.featureflags.provider;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Compiled evaluation tree of a composite feature expression.
+ *
+ * <p>
+ * The grammar of an expression is as follows:
+ * </p>
+ *
+ * <pre>
+ * expression := or
+ * or         := and ( '||' and )*
+ * and        := unary ( '&amp;&amp;' unary )*
+ * unary      := '!' unary | primary
+ * primary    := '(' or ')' | 'true' | 'false' | attribute | featureID
+ * attribute  := '@' name ( ( '==' | '!=' ) '\'' value '\'' )?
+ * </pre>
+ *
+ * An attribute predicate refers to an attribute of the evaluation context. A
+ * bare attribute holds if the context contains the attribute whereas a
+ * comparison holds if the string representation of the attribute value
+ * (in)equals the specified value. Without any context, all attributes are
+ * absent.
+ *
+ * <p>
+ * An expression is compiled once whenever the configuration is applied and can
+ * then be evaluated any number of times without reparsing.
+ * </p>
+ *
+ * @Immutable
+ */
+public abstract class FeatureExpression {
+
+    /** The referenced feature IDs */
+    private Set<String> references;
+
+    /** The referenced context attributes */
+    private Set<String> attributes;
+
+    /** Constructor */
+    FeatureExpression() {
+        // only the nested node types are allowed to extend
+    }
+
+    /**
+     * Compiles the specified expression to an evaluation tree
+     *
+     * @param expression the expression to compile
+     * @return the compiled expression
+     *
+     * @throws NullPointerException if {@code expression} is {@code null}
+     * @throws IllegalArgumentException if {@code expression} is malformed
+     */
+    public static FeatureExpression compile(final String expression) {
+        requireNonNull(expression, "Expression cannot be null");
+
+        final Parser            parser   = new Parser(expression);
+        final FeatureExpression compiled = parser.parseOr();
+        parser.skipWhitespaces();
+        if (!parser.isAtEnd()) {
+            throw parser.error("Unexpected character");
+        }
+
+        final Set<String> references = new LinkedHashSet<>();
+        final Set<String> attributes = new LinkedHashSet<>();
+        compiled.collectReferences(references, attributes);
+        compiled.references = Collections.unmodifiableSet(references);
+        compiled.attributes = Collections.unmodifiableSet(attributes);
+        return compiled;
+    }
+
+    /**
+     * Evaluates the expression without any context
+     *
+     * @param states the function returning the enablement of a feature ID
+     * @return the result of the evaluation
+     */
+    public boolean evaluate(final Predicate<String> states) {
+        return evaluate(states, Collections.emptyMap());
+    }
+
+    /**
+     * Evaluates the expression in the specified context
+     *
+     * @param states the function returning the enablement of a feature ID
+     * @param context the context attributes
+     * @return the result of the evaluation
+     */
+    public abstract boolean evaluate(Predicate<String> states, Map<String, ?> context);
+
+    /**
+     * Returns the feature IDs that are referenced in this expression
+     *
+     * @return the referenced feature IDs (never {@code null})
+     */
+    public Set<String> getReferences() {
+        return references;
+    }
+
+    /**
+     * Returns the context attributes that are referenced in this expression
+     *
+     * @return the referenced context attributes (never {@code null})
+     */
+    public Set<String> getAttributes() {
+        return attributes;
+    }
+
+    abstract void collectReferences(Set<String> references, Set<String> attributes);
+
+    private static final class Constant extends FeatureExpression {
+        private final boolean value;
+
+        Constant(final boolean value) {
+            this.value = value;
+        }
+
+        @Override
+        public boolean evaluate(final Predicate<String> states, final Map<String, ?> context) {
+            return value;
+        }
+
+        @Override
+        void collectReferences(final Set<String> references, final Set<String> attributes) {
+            // no reference
+        }
+    }
+
+    private static final class Reference extends FeatureExpression {
+        private final String featureID;
+
+        Reference(final String featureID) {
+            this.featureID = featureID;
+        }
+
+        @Override
+        public boolean evaluate(final Predicate<String> states, final Map<String, ?> context) {
+            return states.test(featureID);
+        }
+
+        @Override
+        void collectReferences(final Set<String> references, final Set<String> attributes) {
+            references.add(featureID);
+        }
+    }
+
+    private static final class Attribute extends FeatureExpression {
+        private final String  name;
+        private final String  value;
+        private final boolean isNegated;
+
+        Attribute(final String name, final String value, final boolean isNegated) {
+            this.name      = name;
+            this.value     = value;
+            this.isNegated = isNegated;
+        }
+
+        @Override
+        public boolean evaluate(final Predicate<String> states, final Map<String, ?> context) {
+            final Object actual = context.get(name);
+            if (value == null) {
+                return actual != null;
+            }
+            return value.equals(actual == null ? null : String.valueOf(actual)) != isNegated;
+        }
+
+        @Override
+        void collectReferences(final Set<String> references, final Set<String> attributes) {
+            attributes.add(name);
+        }
+    }
+
+    private static final class Not extends FeatureExpression {
+        private final FeatureExpression operand;
+
+        Not(final FeatureExpression operand) {
+            this.operand = operand;
+        }
+
+        @Override
+        public boolean evaluate(final Predicate<String> states, final Map<String, ?> context) {
+            return !operand.evaluate(states, context);
+        }
+
+        @Override
+        void collectReferences(final Set<String> references, final Set<String> attributes) {
+            operand.collectReferences(references, attributes);
+        }
+    }
+
+    private static final class And extends FeatureExpression {
+        private final FeatureExpression left;
+        private final FeatureExpression right;
+
+        And(final FeatureExpression left, final FeatureExpression right) {
+            this.left  = left;
+            this.right = right;
+        }
+
+        @Override
+        public boolean evaluate(final Predicate<String> states, final Map<String, ?> context) {
+            return left.evaluate(states, context) && right.evaluate(states, context);
+        }
+
+        @Override
+        void collectReferences(final Set<String> references, final Set<String> attributes) {
+            left.collectReferences(references, attributes);
+            right.collectReferences(references, attributes);
+        }
+    }
+
+    private static final class Or extends FeatureExpression {
+        private final FeatureExpression left;
+        private final FeatureExpression right;
+
+        Or(final FeatureExpression left, final FeatureExpression right) {
+            this.left  = left;
+            this.right = right;
+        }
+
+        @Override
+        public boolean evaluate(final Predicate<String> states, final Map<String, ?> context) {
+            return left.evaluate(states, context) || right.evaluate(states, context);
+        }
+
+        @Override
+        void collectReferences(final Set<String> references, final Set<String> attributes) {
+            left.collectReferences(references, attributes);
+            right.collectReferences(references, attributes);
+        }
+    }
+
+    /**
+     * Recursive descent parser for feature expressions
+     */
+    private static final class Parser {
+        private final String expression;
+        private int          position;
+
+        Parser(final String expression) {
+            this.expression = expression;
+        }
+
+        FeatureExpression parseOr() {
+            FeatureExpression left = parseAnd();
+            while (consume("||")) {
+                left = new Or(left, parseAnd());
+            }
+            return left;
+        }
+
+        FeatureExpression parseAnd() {
+            FeatureExpression left = parseUnary();
+            while (consume("&&")) {
+                left = new And(left, parseUnary());
+            }
+            return left;
+        }
+
+        FeatureExpression parseUnary() {
+            if (consume("!")) {
+                return new Not(parseUnary());
+            }
+            return parsePrimary();
+        }
+
+        FeatureExpression parsePrimary() {
+            if (consume("(")) {
+                final FeatureExpression inner = parseOr();
+                if (!consume(")")) {
+                    throw error("Missing closing parenthesis");
+                }
+                return inner;
+            }
+            if (consume("@")) {
+                return parseAttribute();
+            }
+            final String identifier = parseIdentifier("Feature ID expected");
+            if ("true".equals(identifier)) {
+                return new Constant(true);
+            }
+            if ("false".equals(identifier)) {
+                return new Constant(false);
+            }
+            return new Reference(identifier);
+        }
+
+        FeatureExpression parseAttribute() {
+            final String name = parseIdentifier("Attribute name expected");
+            if (consume("==")) {
+                return new Attribute(name, parseValue(), false);
+            }
+            if (consume("!=")) {
+                return new Attribute(name, parseValue(), true);
+            }
+            return new Attribute(name, null, false);
+        }
+
+        String parseIdentifier(final String message) {
+            skipWhitespaces();
+            final int start = position;
+            while (!isAtEnd() && isIdentifierPart(expression.charAt(position))) {
+                position++;
+            }
+            if (start == position) {
+                throw error(message);
+            }
+            return expression.substring(start, position);
+        }
+
+        String parseValue() {
+            if (!consume("'")) {
+                throw error("Quoted value expected");
+            }
+            final int end = expression.indexOf('\'', position);
+            if (end < 0) {
+                throw error("Missing closing quote");
+            }
+            final String value = expression.substring(position, end);
+            position = end + 1;
+            return value;
+        }
+
+        boolean consume(final String token) {
+            skipWhitespaces();
+            if (expression.startsWith(token, position)) {
+                position += token.length();
+                return true;
+            }
+            return false;
+        }
+
+        void skipWhitespaces() {
+            while (!isAtEnd() && Character.isWhitespace(expression.charAt(position))) {
+                position++;
+            }
+        }
+
+        boolean isAtEnd() {
+            return position >= expression.length();
+        }
+
+        IllegalArgumentException error(final String message) {
+            return new IllegalArgumentException(
+                    String.format("%s at position [%d] in expression [%s]", message, position, expression));
+        }
+
+        private static boolean isIdentifierPart(final char c) {
+            return Character.isLetterOrDigit(c) || c == '_' || c == '-' || c == '.';
+        }
+    }
+
+}
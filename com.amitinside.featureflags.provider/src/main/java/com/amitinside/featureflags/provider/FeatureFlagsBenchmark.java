@@ -0,0 +1,301 @@
+package com.amitinside.featureflags.provider;
+
+import static com.amitinside.featureflags.provider.ManagerHelper.checkArgument;
+import static com.amitinside.featureflags.provider.ManagerHelper.namedDaemonThreads;
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static java.util.stream.Collectors.toList;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.amitinside.featureflags.api.FeatureDTO;
+import com.amitinside.featureflags.api.FeatureManager;
+
+/**
+ * Micro-benchmark that runs a timed lookup and update load against a live
+ * {@link FeatureManager} and reports throughput and latency.
+ *
+ * <p>
+ * The update load is restricted to the features of a dedicated configuration
+ * PID that are not declared by any other configuration. Every update writes the
+ * configured state of the feature as exported by
+ * {@link FeatureManager#exportFeatures(java.io.Writer)}, not its effective
+ * state, such that the benchmark exercises the complete update path without
+ * persisting a kill switch, override or circuit breaker state. Asynchronous
+ * updates are measured until their promises have been resolved such that the
+ * synchronous and the batched asynchronous update paths can be compared.
+ * </p>
+ */
+public final class FeatureFlagsBenchmark {
+
+    /** Feature Manager Instance under benchmark */
+    private final FeatureManager featureManager;
+
+    /**
+     * Constructor
+     *
+     * @param featureManager {@link FeatureManager} instance
+     *
+     * @throws NullPointerException if the specified argument is {@code null}
+     */
+    public FeatureFlagsBenchmark(final FeatureManager featureManager) {
+        this.featureManager = requireNonNull(featureManager, "Feature Manager instance cannot be null");
+    }
+
+    /**
+     * Runs the benchmark and prints the result
+     *
+     * @param out the stream to print the result to
+     * @param threads the number of concurrent threads
+     * @param warmupSeconds the duration of the warm-up phase in seconds
+     * @param durationSeconds the duration of the measurement in seconds
+     * @param updatePercentage the percentage of update operations
+     * @param updatePID the configuration PID dedicated to the update load or
+     *            {@code null} if no updates are performed
+     * @param isAsync {@code true} to perform the updates asynchronously
+     * @throws InterruptedException if interrupted while waiting for the threads
+     *
+     * @throws IllegalArgumentException if any of the numbers is out of range or
+     *             if updates are requested without a configuration PID
+     */
+    public void run(final PrintStream out, final int threads, final int warmupSeconds, final int durationSeconds,
+            final int updatePercentage, final String updatePID, final boolean isAsync) throws InterruptedException {
+        checkArgument(threads > 0, "Number of threads must be positive");
+        checkArgument(durationSeconds > 0, "Duration must be positive");
+        checkArgument(updatePercentage >= 0 && updatePercentage <= 100, "Update percentage must be between 0 and 100");
+        checkArgument(updatePercentage == 0 || updatePID != null && !updatePID.isEmpty(),
+                "Updates require a dedicated configuration PID");
+
+        final List<FeatureDTO> features = featureManager.getFeatures()
+                .filter(f -> f.expression == null)
+                .collect(toList());
+        if (features.isEmpty()) {
+            out.println("No features available to benchmark");
+            return;
+        }
+        final List<UpdateTarget> targets = updatePercentage == 0 ? Collections.emptyList()
+                : getUpdateTargets(updatePID);
+        if (updatePercentage > 0 && targets.isEmpty()) {
+            out.println(String.format("No features of configuration [%s] available to update", updatePID));
+            return;
+        }
+        out.println(String.format("Benchmarking %d features with %d thread(s) and %d%% %s updates",
+                features.size(), threads, updatePercentage, isAsync ? "asynchronous" : "synchronous"));
+
+        if (warmupSeconds > 0) {
+            execute(features, targets, threads, warmupSeconds, updatePercentage, isAsync);
+        }
+        final long         start   = System.nanoTime();
+        final List<Worker> workers = execute(features, targets, threads, durationSeconds, updatePercentage,
+                isAsync);
+        final long         elapsed = System.nanoTime() - start;
+
+        final LatencyHistogram lookups       = new LatencyHistogram();
+        final LatencyHistogram updates       = new LatencyHistogram();
+        long                   failedUpdates = 0;
+        for (final Worker worker : workers) {
+            lookups.add(worker.lookups);
+            updates.add(worker.updates);
+            failedUpdates += worker.failedUpdates;
+        }
+        final double seconds = (double) elapsed / SECONDS.toNanos(1);
+        out.println(String.format("Throughput: %.0f ops/s (%d ops in %.2f s)",
+                (lookups.count() + updates.count()) / seconds, lookups.count() + updates.count(), seconds));
+        lookups.print(out, "Lookup");
+        updates.print(out, "Update");
+        if (failedUpdates > 0) {
+            out.println(String.format("Failed updates: %d", failedUpdates));
+        }
+    }
+
+    /**
+     * Returns the configured states of the features that are exclusively
+     * declared by the specified configuration PID
+     */
+    private List<UpdateTarget> getUpdateTargets(final String pid) {
+        final StringWriter writer = new StringWriter();
+        try {
+            featureManager.exportFeatures(writer);
+        } catch (final IOException e) {
+            // cannot happen for a string writer
+            throw new UncheckedIOException(e);
+        }
+        final Map<String, UpdateTarget> targets  = new LinkedHashMap<>();
+        final Set<String>               excluded = new HashSet<>();
+        for (final String line : writer.toString()
+                .split("\n")) {
+            final String[] fields = line.split("\t");
+            if (line.startsWith("#") || fields.length != 4) {
+                continue;
+            }
+            if (pid.equals(fields[1])) {
+                targets.put(fields[0], new UpdateTarget(fields[0], Boolean.parseBoolean(fields[3])));
+            } else {
+                excluded.add(fields[0]);
+            }
+        }
+        targets.keySet()
+                .removeAll(excluded);
+        return new ArrayList<>(targets.values());
+    }
+
+    private List<Worker> execute(final List<FeatureDTO> features, final List<UpdateTarget> targets,
+            final int threads, final int durationSeconds, final int updatePercentage, final boolean isAsync)
+            throws InterruptedException {
+        final long           deadline = System.nanoTime() + SECONDS.toNanos(durationSeconds);
+        final CountDownLatch done     = new CountDownLatch(threads);
+        final List<Worker>   workers  = new ArrayList<>(threads);
+        for (int i = 0; i < threads; i++) {
+            final Worker worker = new Worker(features, targets, deadline, updatePercentage, isAsync, done);
+            workers.add(worker);
+            namedDaemonThreads("featureflags-bench-" + i)
+                    .newThread(worker)
+                    .start();
+        }
+        done.await();
+        return workers;
+    }
+
+    /**
+     * A feature of the dedicated configuration and its configured state
+     */
+    private static final class UpdateTarget {
+        private final String  featureID;
+        private final boolean isEnabled;
+
+        UpdateTarget(final String featureID, final boolean isEnabled) {
+            this.featureID = featureID;
+            this.isEnabled = isEnabled;
+        }
+    }
+
+    private final class Worker implements Runnable {
+        private final List<FeatureDTO>   features;
+        private final List<UpdateTarget> targets;
+        private final long               deadline;
+        private final int                updatePercentage;
+        private final boolean            isAsync;
+        private final CountDownLatch     done;
+        private final LatencyHistogram   lookups = new LatencyHistogram();
+        private final LatencyHistogram   updates = new LatencyHistogram();
+        private long                     failedUpdates;
+
+        Worker(final List<FeatureDTO> features, final List<UpdateTarget> targets, final long deadline,
+                final int updatePercentage, final boolean isAsync, final CountDownLatch done) {
+            this.features         = features;
+            this.targets          = targets;
+            this.deadline         = deadline;
+            this.updatePercentage = updatePercentage;
+            this.isAsync          = isAsync;
+            this.done             = done;
+        }
+
+        @Override
+        public void run() {
+            try {
+                final ThreadLocalRandom random = ThreadLocalRandom.current();
+                long                    now    = System.nanoTime();
+                while (now < deadline) {
+                    if (random.nextInt(100) < updatePercentage) {
+                        update(targets.get(random.nextInt(targets.size())));
+                        final long end = System.nanoTime();
+                        updates.record(end - now);
+                        now = end;
+                    } else {
+                        featureManager.getFeatures(features.get(random.nextInt(features.size())).id)
+                                .findAny();
+                        final long end = System.nanoTime();
+                        lookups.record(end - now);
+                        now = end;
+                    }
+                }
+            } catch (final InterruptedException e) {
+                Thread.currentThread()
+                        .interrupt();
+            } finally {
+                done.countDown();
+            }
+        }
+
+        private void update(final UpdateTarget target) throws InterruptedException {
+            if (!isAsync) {
+                featureManager.updateFeature(target.featureID, target.isEnabled);
+                return;
+            }
+            try {
+                featureManager.updateFeatureAsync(target.featureID, target.isEnabled)
+                        .getValue();
+            } catch (final InvocationTargetException e) {
+                failedUpdates++;
+            }
+        }
+    }
+
+    /**
+     * Allocation-free latency histogram with power of two buckets
+     */
+    static final class LatencyHistogram {
+        private final long[] buckets = new long[64];
+        private long         count;
+        private long         max;
+
+        void record(final long nanos) {
+            buckets[63 - Long.numberOfLeadingZeros(Math.max(1, nanos))]++;
+            count++;
+            max = Math.max(max, nanos);
+        }
+
+        void add(final LatencyHistogram other) {
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] += other.buckets[i];
+            }
+            count += other.count;
+            max = Math.max(max, other.max);
+        }
+
+        long count() {
+            return count;
+        }
+
+        /** Returns the upper bound of the bucket containing the percentile */
+        long percentile(final double percentile) {
+            final long rank       = (long) Math.ceil(count * percentile / 100);
+            long       cumulative = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                cumulative += buckets[i];
+                if (cumulative >= rank) {
+                    return Math.min(max, (2L << i) - 1);
+                }
+            }
+            return max;
+        }
+
+        void print(final PrintStream out, final String operation) {
+            if (count == 0) {
+                return;
+            }
+            out.println(String.format("%s latency (us): p50 <= %.1f, p90 <= %.1f, p99 <= %.1f, max = %.1f [%d ops]",
+                    operation, micros(percentile(50)), micros(percentile(90)), micros(percentile(99)), micros(max),
+                    count));
+        }
+
+        private static double micros(final long nanos) {
+            return (double) nanos / MICROSECONDS.toNanos(1);
+        }
+    }
+
+}
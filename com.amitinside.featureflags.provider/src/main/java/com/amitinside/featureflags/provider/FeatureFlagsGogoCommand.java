@@ -1,16 +1,35 @@
 package com.amitinside.featureflags.provider;
 
-import static java.util.stream.Collectors.toList;
+import static com.amitinside.featureflags.provider.ManagerHelper.checkArgument;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.apache.felix.service.command.CommandProcessor.COMMAND_FUNCTION;
 import static org.apache.felix.service.command.CommandProcessor.COMMAND_SCOPE;
 
-import java.util.List;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
+import org.apache.felix.service.command.Descriptor;
+import org.apache.felix.service.command.Parameter;
 import org.osgi.service.component.annotations.Component;
 import org.osgi.service.component.annotations.Reference;
 
+import com.amitinside.featureflags.api.EvaluationCacheStatsDTO;
+import com.amitinside.featureflags.api.FeatureChangesDTO;
 import com.amitinside.featureflags.api.FeatureDTO;
+import com.amitinside.featureflags.api.FeatureImportDTO;
 import com.amitinside.featureflags.api.FeatureManager;
+import com.amitinside.featureflags.api.FeatureStatsDTO;
+import com.amitinside.featureflags.api.ReconciliationStatsDTO;
 
 //@formatter:off
 @Component(
@@ -20,18 +39,90 @@ import com.amitinside.featureflags.api.FeatureManager;
               COMMAND_FUNCTION + "=features",
               COMMAND_FUNCTION + "=updatefeature",
               COMMAND_FUNCTION + "=enablefeature",
-              COMMAND_FUNCTION + "=disablefeature"
+              COMMAND_FUNCTION + "=disablefeature",
+              COMMAND_FUNCTION + "=overridefeature",
+              COMMAND_FUNCTION + "=resetoverride",
+              COMMAND_FUNCTION + "=transientoverrides",
+              COMMAND_FUNCTION + "=clearoverrides",
+              COMMAND_FUNCTION + "=killswitch",
+              COMMAND_FUNCTION + "=engagekillswitch",
+              COMMAND_FUNCTION + "=releasekillswitch",
+              COMMAND_FUNCTION + "=featurestats",
+              COMMAND_FUNCTION + "=stalefeatures",
+              COMMAND_FUNCTION + "=bench",
+              COMMAND_FUNCTION + "=exportfeatures",
+              COMMAND_FUNCTION + "=importfeatures",
+              COMMAND_FUNCTION + "=reconciliation",
+              COMMAND_FUNCTION + "=evaluationcache",
+              COMMAND_FUNCTION + "=events",
+              COMMAND_FUNCTION + "=changes",
+              COMMAND_FUNCTION + "=breakers"
          }
 )
 //@formatter:on
 public final class FeatureFlagsGogoCommand {
 
+    /** The format of a single line of the feature listing */
+    private static final String FEATURE_FORMAT  = "%-40s %-9s %-7s %s";
+
+    /** The format of a single line of the feature statistics listing */
+    private static final String STATS_FORMAT    = "%-40s %-7s %-12s %s";
+
+    /** The format of a single line of the event listing */
+    private static final String EVENT_FORMAT    = "%-8d %-24s %s";
+
+    /** The format of a single line of the change listing */
+    private static final String CHANGE_FORMAT   = "%-8s %-40s %-7s %s";
+
+    /** The format of a single line of the circuit breaker listing */
+    private static final String BREAKER_FORMAT  = "%-40s %-9s %-10s %-9s %-6s %s";
+
+    /** The format of a single line of the transient override listing */
+    private static final String OVERRIDE_FORMAT = "%-40s %s";
+
     @Reference
     private FeatureManager featureManager;
 
-    public List<FeatureDTO> features() {
-        return featureManager.getFeatures()
-                .collect(toList());
+    @Descriptor("Lists the known features")
+    public void features(
+    //@formatter:off
+            @Descriptor("the feature ID filter which can contain * as wildcard")
+            @Parameter(names = { "-f", "--filter" }, absentValue = "*") final String filter,
+            @Descriptor("the state of the features to list (enabled, disabled or all)")
+            @Parameter(names = { "-s", "--state" }, absentValue = "all") final String state,
+            @Descriptor("the identifier of the bundle whose features to list")
+            @Parameter(names = { "-b", "--bundle" }, absentValue = "-1") final long bundleId,
+            @Descriptor("the number of the page to list starting from 1 (requires a page size)")
+            @Parameter(names = { "-p", "--page" }, absentValue = "1") final int page,
+            @Descriptor("the number of features per page (0 lists all features)")
+            @Parameter(names = { "-n", "--size" }, absentValue = "0") final int size,
+            @Descriptor("the locale of the feature names such as en_US (uses the default localization if absent)")
+            @Parameter(names = { "-l", "--locale" }, absentValue = "") final String locale) {
+    //@formatter:on
+        checkArgument(page > 0, "Page number must be positive");
+        checkArgument(size >= 0, "Page size cannot be negative");
+
+        final PrintStream out = System.out;
+        out.println(String.format(FEATURE_FORMAT, "ID", "STATE", "BUNDLE", "NAME"));
+
+        Stream<FeatureDTO> features = featureManager.getLocalizedFeatures(locale.isEmpty() ? null : locale)
+                .filter(toPredicate(filter, state, bundleId));
+        if (size > 0) {
+            features = features.skip((long) (page - 1) * size)
+                    .limit(size);
+        }
+        features.forEach(f -> out.println(String.format(FEATURE_FORMAT, f.id,
+                f.isEnabled ? "enabled" : "disabled", f.bundleId, f.name)));
+    }
+
+    @Descriptor("Lists the evaluation statistics of the known features")
+    public void featurestats() {
+        printStats(featureManager.getFeatureStats());
+    }
+
+    @Descriptor("Lists the features that have not been evaluated within the specified number of days")
+    public void stalefeatures(@Descriptor("the number of days without any evaluation") final long days) {
+        printStats(featureManager.getStaleFeatures(Duration.ofDays(days)));
     }
 
     public void updatefeature(final String featureID, final boolean isEnabled) {
@@ -45,4 +136,190 @@ public final class FeatureFlagsGogoCommand {
     public void disablefeature(final String featureID) {
         updatefeature(featureID, false);
     }
+
+    @Descriptor("Overrides the specified feature in memory for the specified number of seconds")
+    public void overridefeature(@Descriptor("the feature ID") final String featureID,
+            @Descriptor("the overridden state") final boolean isEnabled,
+            @Descriptor("the duration of the override in seconds") final long seconds) {
+        featureManager.overrideFeature(featureID, isEnabled, Duration.ofSeconds(seconds));
+    }
+
+    @Descriptor("Removes the transient override of the specified feature")
+    public void resetoverride(@Descriptor("the feature ID") final String featureID) {
+        featureManager.resetOverride(featureID);
+    }
+
+    @Descriptor("Lists the transient overrides that have not yet expired")
+    public void transientoverrides() {
+        final PrintStream out = System.out;
+        out.println(String.format(OVERRIDE_FORMAT, "ID", "STATE"));
+        featureManager.getTransientOverrides()
+                .forEach((id, isEnabled) -> out.println(String.format(OVERRIDE_FORMAT, id,
+                        isEnabled ? "enabled" : "disabled")));
+    }
+
+    @Descriptor("Discards the updates that are held in the override store and not yet written to the configurations")
+    public String clearoverrides() {
+        return String.format("Discarded [%d] stored overrides", featureManager.clearOverrides()
+                .size());
+    }
+
+    public String killswitch() {
+        return featureManager.isKillSwitchEngaged() ? "Kill switch is engaged" : "Kill switch is released";
+    }
+
+    public String engagekillswitch() {
+        featureManager.engageKillSwitch();
+        return killswitch();
+    }
+
+    public String releasekillswitch() {
+        featureManager.releaseKillSwitch();
+        return killswitch();
+    }
+
+    @Descriptor("Runs a timed lookup and update load against the feature manager")
+    public void bench(
+    //@formatter:off
+            @Descriptor("the number of concurrent threads")
+            @Parameter(names = { "-t", "--threads" }, absentValue = "1") final int threads,
+            @Descriptor("the duration of the warm-up phase in seconds")
+            @Parameter(names = { "-w", "--warmup" }, absentValue = "2") final int warmup,
+            @Descriptor("the duration of the measurement in seconds")
+            @Parameter(names = { "-d", "--duration" }, absentValue = "10") final int duration,
+            @Descriptor("the percentage of update operations (updates rewrite the configured state)")
+            @Parameter(names = { "-u", "--updates" }, absentValue = "0") final int updates,
+            @Descriptor("the configuration PID dedicated to the update load")
+            @Parameter(names = { "-p", "--pid" }, absentValue = "") final String pid,
+            @Descriptor("performs the updates asynchronously and waits for their completion")
+            @Parameter(names = { "-a", "--async" }, presentValue = "true", absentValue = "false") final boolean async) throws InterruptedException {
+    //@formatter:on
+        new FeatureFlagsBenchmark(featureManager).run(System.out, threads, warmup, duration, updates, pid, async);
+    }
+
+    @Descriptor("Exports the states of all non-composite features")
+    public void exportfeatures(
+    //@formatter:off
+            @Descriptor("the file to export to (prints the export if absent)")
+            @Parameter(names = { "-o", "--output" }, absentValue = "") final String output) throws IOException {
+    //@formatter:on
+        if (output.isEmpty()) {
+            featureManager.exportFeatures(new OutputStreamWriter(System.out, UTF_8));
+            return;
+        }
+        try (Writer writer = Files.newBufferedWriter(Paths.get(output), UTF_8)) {
+            featureManager.exportFeatures(writer);
+        }
+    }
+
+    @Descriptor("Imports the feature states from the specified file")
+    public void importfeatures(@Descriptor("the file to import from") final String input) throws IOException {
+        final FeatureImportDTO result;
+        try (Reader reader = Files.newBufferedReader(Paths.get(input), UTF_8)) {
+            result = featureManager.importFeatures(reader);
+        }
+        final PrintStream out = System.out;
+        out.println(String.format("Imported %d feature state(s) and rejected %d feature state(s)", result.imported,
+                result.rejected));
+        result.errors.forEach(out::println);
+    }
+
+    @Descriptor("Prints the statistics of the reconciliation between the features and their configurations")
+    public void reconciliation() {
+        final ReconciliationStatsDTO stats = featureManager.getReconciliationStats();
+        final PrintStream            out   = System.out;
+        out.println(String.format("Runs: %d", stats.runs));
+        out.println(String.format("Checked configurations: %d", stats.checkedConfigurations));
+        out.println(String.format("Drifted configurations: %d", stats.driftedConfigurations));
+        out.println(String.format("Deferred configurations: %d", stats.deferredConfigurations));
+        out.println(String.format("Last run: %s (%d ms)",
+                stats.lastRun == 0 ? "never" : Instant.ofEpochMilli(stats.lastRun), stats.lastRunDuration));
+    }
+
+    @Descriptor("Prints the statistics of the cache of the contextual feature evaluations")
+    public void evaluationcache() {
+        final EvaluationCacheStatsDTO stats = featureManager.getEvaluationCacheStats();
+        final PrintStream             out   = System.out;
+        out.println(String.format("Size: %d of %d", stats.size, stats.capacity));
+        out.println(String.format("Hits: %d", stats.hits));
+        out.println(String.format("Misses: %d", stats.misses));
+        out.println(String.format("Hit ratio: %.2f%%", stats.hitRatio * 100));
+        out.println(String.format("Evictions: %d", stats.evictions));
+        out.println(String.format("Invalidations: %d", stats.invalidations));
+    }
+
+    @Descriptor("Prints the most recent feature events")
+    public void events(
+    //@formatter:off
+            @Descriptor("the maximum number of events to print")
+            @Parameter(names = { "-n", "--count" }, absentValue = "50") final int count) {
+    //@formatter:on
+        final PrintStream out = System.out;
+        featureManager.getRecentEvents(count)
+                .forEach(e -> out.println(String.format(EVENT_FORMAT, e.sequence, Instant.ofEpochMilli(e.timestamp),
+                        e.message)));
+    }
+
+    @Descriptor("Prints the feature changes since the specified registry version")
+    public void changes(@Descriptor("the registry version of the last invocation (0 initially)") final long version) {
+        final FeatureChangesDTO changes = featureManager.getChangesSince(version);
+        final PrintStream       out     = System.out;
+        out.println(String.format("Version: %d", changes.version));
+        if (changes.isResyncRequired) {
+            out.println("Changes no longer available - all features have to be retrieved again");
+            return;
+        }
+        out.println(String.format(CHANGE_FORMAT, "TYPE", "ID", "BUNDLE", "ENABLED"));
+        changes.changes.forEach(c -> out.println(String.format(CHANGE_FORMAT, c.type, c.id, c.bundleId, c.isEnabled)));
+    }
+
+    @Descriptor("Lists the circuit breakers of the features")
+    public void breakers() {
+        final PrintStream out = System.out;
+        out.println(String.format(BREAKER_FORMAT, "ID", "STATE", "SUCCESSES", "FAILURES", "TRIPS", "LAST TRIPPED"));
+        featureManager.getCircuitBreakers()
+                .forEach(b -> out.println(String.format(BREAKER_FORMAT, b.id, b.state, b.successes, b.failures,
+                        b.trips, b.lastTripped == 0 ? "never" : Instant.ofEpochMilli(b.lastTripped))));
+    }
+
+    private static void printStats(final Stream<FeatureStatsDTO> stats) {
+        final PrintStream out = System.out;
+        out.println(String.format(STATS_FORMAT, "ID", "BUNDLE", "EVALUATIONS", "LAST EVALUATED"));
+        stats.forEach(s -> out.println(String.format(STATS_FORMAT, s.id, s.bundleId, s.evaluationCount,
+                s.lastEvaluated == 0 ? "never" : Instant.ofEpochMilli(s.lastEvaluated))));
+    }
+
+    private static Predicate<FeatureDTO> toPredicate(final String filter, final String state, final long bundleId) {
+        final Pattern         pattern   = toPattern(filter);
+        Predicate<FeatureDTO> predicate = f -> pattern.matcher(f.id)
+                .matches();
+        switch (state) {
+            case "enabled":
+                predicate = predicate.and(f -> f.isEnabled);
+                break;
+            case "disabled":
+                predicate = predicate.and(f -> !f.isEnabled);
+                break;
+            case "all":
+                break;
+            default:
+                throw new IllegalArgumentException("State must be one of enabled, disabled or all");
+        }
+        if (bundleId >= 0) {
+            predicate = predicate.and(f -> f.bundleId == bundleId);
+        }
+        return predicate;
+    }
+
+    private static Pattern toPattern(final String glob) {
+        final StringBuilder regex = new StringBuilder();
+        final String[]      parts = glob.split("\\*", -1);
+        for (int i = 0; i < parts.length; i++) {
+            if (i > 0) {
+                regex.append(".*");
+            }
+            regex.append(Pattern.quote(parts[i]));
+        }
+        return Pattern.compile(regex.toString());
+    }
 }
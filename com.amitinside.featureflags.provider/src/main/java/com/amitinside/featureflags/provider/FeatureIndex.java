@@ -0,0 +1,172 @@
+package com.amitinside.featureflags.provider;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+
+import com.amitinside.featureflags.provider.ManagerHelper.Feature;
+
+/**
+ * Index of the features by their IDs, configuration PIDs and bundles. The
+ * index is rebuilt whenever the structure of the features changes such that
+ * every lookup costs at most two hash lookups.
+ *
+ * @Immutable
+ */
+public final class FeatureIndex {
+
+    /** The index without any feature */
+    public static final FeatureIndex                    EMPTY = new FeatureIndex(new Feature[0],
+            Collections.emptyMap(), Collections.emptyMap(), Collections.emptyMap(), Collections.emptyMap());
+
+    /** All features in the order of their configuration PIDs */
+    private final Feature[]                             features;
+
+    /** Unmodifiable view of all features */
+    private final List<Feature>                         featureList;
+
+    /** Index -> Key: Feature ID Value: Features with the ID */
+    private final Map<String, List<Feature>>            featuresByID;
+
+    /** Index -> Key: Configuration PID Value: Features of the configuration */
+    private final Map<String, List<Feature>>            featuresByPID;
+
+    /** Index -> Key: Bundle ID Value: Features of the bundle */
+    private final Map<Long, List<Feature>>              featuresByBundle;
+
+    /** Index -> Key: Bundle ID Value: (Key: Feature ID Value: Features) */
+    private final Map<Long, Map<String, List<Feature>>> featuresByBundleAndID;
+
+    private FeatureIndex(final Feature[] features, final Map<String, List<Feature>> featuresByID,
+            final Map<String, List<Feature>> featuresByPID, final Map<Long, List<Feature>> featuresByBundle,
+            final Map<Long, Map<String, List<Feature>>> featuresByBundleAndID) {
+        this.features              = features;
+        this.featureList           = Collections.unmodifiableList(Arrays.asList(features));
+        this.featuresByID          = featuresByID;
+        this.featuresByPID         = featuresByPID;
+        this.featuresByBundle      = featuresByBundle;
+        this.featuresByBundleAndID = featuresByBundleAndID;
+    }
+
+    /**
+     * Builds the index of the specified features
+     *
+     * @param allFeatures container of all features in the runtime
+     * @return the index
+     *
+     * @throws NullPointerException if {@code allFeatures} is {@code null}
+     */
+    public static FeatureIndex build(final Map<String, List<Feature>> allFeatures) {
+        requireNonNull(allFeatures, "All features map instance cannot be null");
+
+        final List<Feature>                         features              = new ArrayList<>();
+        final Map<String, List<Feature>>            featuresByID          = new HashMap<>();
+        final Map<String, List<Feature>>            featuresByPID         = new HashMap<>();
+        final Map<Long, List<Feature>>              featuresByBundle      = new HashMap<>();
+        final Map<Long, Map<String, List<Feature>>> featuresByBundleAndID = new HashMap<>();
+        for (final Entry<String, List<Feature>> entry : allFeatures.entrySet()) {
+            featuresByPID.put(entry.getKey(), Collections.unmodifiableList(new ArrayList<>(entry.getValue())));
+            for (final Feature feature : entry.getValue()) {
+                features.add(feature);
+                add(featuresByID, feature.id, feature);
+                add(featuresByBundle, feature.bundleId, feature);
+                add(featuresByBundleAndID.computeIfAbsent(feature.bundleId, k -> new HashMap<>()), feature.id,
+                        feature);
+            }
+        }
+        featuresByID.replaceAll((k, v) -> Collections.unmodifiableList(v));
+        featuresByBundle.replaceAll((k, v) -> Collections.unmodifiableList(v));
+        featuresByBundleAndID.values()
+                .forEach(m -> m.replaceAll((k, v) -> Collections.unmodifiableList(v)));
+        return new FeatureIndex(features.toArray(new Feature[0]), featuresByID, featuresByPID, featuresByBundle,
+                featuresByBundleAndID);
+    }
+
+    /**
+     * Returns all features
+     *
+     * @return the features (never {@code null})
+     */
+    public List<Feature> getFeatures() {
+        return featureList;
+    }
+
+    /**
+     * Returns a spliterator over all features. The spliterator is backed by a
+     * flat array and hence reports its exact size and splits evenly such that
+     * parallel streams divide the features equally among their workers.
+     *
+     * @return the {@link Spliterator#SIZED}, {@link Spliterator#SUBSIZED} and
+     *         {@link Spliterator#IMMUTABLE} spliterator
+     */
+    public Spliterator<Feature> spliterator() {
+        return Spliterators.spliterator(features, Spliterator.IMMUTABLE | Spliterator.ORDERED | Spliterator.NONNULL);
+    }
+
+    /**
+     * Returns all features with the specified ID
+     *
+     * @param featureID the feature ID
+     * @return the features (never {@code null})
+     */
+    public List<Feature> getFeatures(final String featureID) {
+        return featuresByID.getOrDefault(featureID, Collections.emptyList());
+    }
+
+    /**
+     * Returns all features with the specified ID that are registered by the
+     * specified bundle
+     *
+     * @param bundleId the bundle ID
+     * @param featureID the feature ID
+     * @return the features (never {@code null})
+     */
+    public List<Feature> getFeatures(final long bundleId, final String featureID) {
+        final Map<String, List<Feature>> features = featuresByBundleAndID.get(bundleId);
+        return features == null ? Collections.emptyList() : features.getOrDefault(featureID, Collections.emptyList());
+    }
+
+    /**
+     * Returns all features of the specified configuration PID
+     *
+     * @param pid the configuration PID
+     * @return the features (never {@code null})
+     */
+    public List<Feature> getFeaturesByPID(final String pid) {
+        return featuresByPID.getOrDefault(pid, Collections.emptyList());
+    }
+
+    /**
+     * Returns the configuration PIDs of all features
+     *
+     * @return the unmodifiable PIDs (never {@code null})
+     */
+    public Set<String> getPIDs() {
+        return Collections.unmodifiableSet(featuresByPID.keySet());
+    }
+
+    /**
+     * Returns all features that are registered by the specified bundle
+     *
+     * @param bundleId the bundle ID
+     * @return the features (never {@code null})
+     */
+    public List<Feature> getFeaturesByBundle(final long bundleId) {
+        return featuresByBundle.getOrDefault(bundleId, Collections.emptyList());
+    }
+
+    private static <K> void add(final Map<K, List<Feature>> index, final K key, final Feature feature) {
+        index.computeIfAbsent(key, k -> new ArrayList<>(1))
+                .add(feature);
+    }
+
+}
@@ -0,0 +1,111 @@
+package com.amitinside.featureflags.provider;
+
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
+
+import com.amitinside.featureflags.provider.EvaluationCache.EvictionPolicy;
+import com.amitinside.featureflags.provider.OverrideStore.Durability;
+
+/**
+ * Configuration of the {@link FeatureManagerProvider}
+ */
+@ObjectClassDefinition(name = "Feature Manager", description = "Configuration of the Feature Manager")
+public @interface FeatureManagerConfig {
+
+    @AttributeDefinition(name = "Shared Table", description = "Exports the feature states to a memory-mapped table")
+    boolean sharedTableEnabled() default false;
+
+    @AttributeDefinition(name = "Shared Table Path",
+            description = "The file of the memory-mapped table (defaults to a file in the bundle data area)",
+            required = false)
+    String sharedTablePath() default "";
+
+    @AttributeDefinition(name = "Shared Table Capacity",
+            description = "The maximum number of distinct feature IDs in the memory-mapped table",
+            min = "1", max = "8388608")
+    int sharedTableCapacity() default 4096;
+
+    @AttributeDefinition(name = "Tenant Overrides Capacity",
+            description = "The maximum number of feature overrides per tenant", min = "1")
+    int tenantOverridesCapacity() default 1024;
+
+    @AttributeDefinition(name = "Reconciliation Interval",
+            description = "The interval in seconds between the reconciliations of the features with their "
+                    + "configurations (0 disables the periodic reconciliation)",
+            min = "0")
+    long reconciliationInterval() default 60;
+
+    @AttributeDefinition(name = "Reconciliation Budget",
+            description = "The maximum duration in milliseconds of a single reconciliation", min = "1")
+    long reconciliationBudget() default 50;
+
+    @AttributeDefinition(name = "Metadata Cache Capacity",
+            description = "The maximum number of configurations whose localized feature names and descriptions "
+                    + "are cached per locale (0 follows the number of configurations of all features)",
+            min = "0")
+    int metadataCacheCapacity() default 0;
+
+    @AttributeDefinition(name = "Evaluation Cache Capacity",
+            description = "The maximum number of cached results of contextual feature evaluations (0 disables the "
+                    + "cache)",
+            min = "0")
+    int evaluationCacheCapacity() default 4096;
+
+    @AttributeDefinition(name = "Evaluation Cache Eviction",
+            description = "The order in which the cached results of contextual feature evaluations are evicted")
+    EvictionPolicy evaluationCacheEviction() default EvictionPolicy.LRU;
+
+    @AttributeDefinition(name = "Event Log Capacity",
+            description = "The number of recent feature events kept for troubleshooting (rounded up to the next "
+                    + "power of two)",
+            min = "1")
+    int eventLogCapacity() default 1024;
+
+    @AttributeDefinition(name = "Event Log Drain Interval",
+            description = "The interval in milliseconds in which the recorded feature events are forwarded to the "
+                    + "log",
+            min = "1")
+    long eventLogDrainInterval() default 250;
+
+    @AttributeDefinition(name = "Feature Conditions",
+            description = "Registers an OSGi condition service with the ID feature.X for every enabled feature X")
+    boolean conditionsEnabled() default true;
+
+    @AttributeDefinition(name = "Override Store",
+            description = "Applies the feature updates in memory immediately and persists them in the background "
+                    + "instead of updating the configurations synchronously")
+    boolean overrideStoreEnabled() default false;
+
+    @AttributeDefinition(name = "Override Durability",
+            description = "The persistence of the overridden feature states (MEMORY, FILE or CONFIGURATION)")
+    Durability overrideDurability() default Durability.FILE;
+
+    @AttributeDefinition(name = "Override Flush Interval",
+            description = "The interval in milliseconds in which the overridden feature states are written to the "
+                    + "override file",
+            min = "1")
+    long overrideFlushInterval() default 1000;
+
+    @AttributeDefinition(name = "Override Sync Interval",
+            description = "The interval in seconds in which the overridden feature states are written to the "
+                    + "configurations (only with CONFIGURATION durability)",
+            min = "1")
+    long overrideSyncInterval() default 30;
+
+    @AttributeDefinition(name = "Change Log Capacity",
+            description = "The number of recent feature changes that can be polled incrementally", min = "1")
+    int changeLogCapacity() default 1024;
+
+    @AttributeDefinition(name = "Bundle Update Grace Period",
+            description = "The duration in milliseconds for which the features of an updated or refreshed bundle are "
+                    + "retained such that its restart only applies the changed features (0 to remove the features "
+                    + "immediately)",
+            min = "0")
+    long bundleUpdateGracePeriod() default 0;
+
+    @AttributeDefinition(name = "Transient Override Plugin",
+            description = "Registers a configuration plugin that injects the transient feature overrides into the "
+                    + "configurations delivered to the managed services")
+    boolean transientOverridePluginEnabled() default true;
+
+}
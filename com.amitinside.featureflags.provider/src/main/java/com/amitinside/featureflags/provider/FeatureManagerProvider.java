@@ -1,57 +1,232 @@
 package com.amitinside.featureflags.provider;
 
+import static com.amitinside.featureflags.api.FeatureChangeEvent.Type.ADDED;
+import static com.amitinside.featureflags.api.FeatureChangeEvent.Type.REMOVED;
+import static com.amitinside.featureflags.api.FeatureChangeEvent.Type.UPDATED;
+import static com.amitinside.featureflags.provider.FeatureEventLog.Type.CIRCUIT_CLOSED;
+import static com.amitinside.featureflags.provider.FeatureEventLog.Type.CIRCUIT_HALF_OPENED;
+import static com.amitinside.featureflags.provider.FeatureEventLog.Type.CIRCUIT_OPENED;
+import static com.amitinside.featureflags.provider.FeatureEventLog.Type.CIRCUIT_RELEASED;
+import static com.amitinside.featureflags.provider.FeatureEventLog.Type.CONFIGURATION_REVERTED;
+import static com.amitinside.featureflags.provider.FeatureEventLog.Type.CONFIGURATION_UPDATED;
+import static com.amitinside.featureflags.provider.FeatureEventLog.Type.EXPRESSION_UPDATED;
+import static com.amitinside.featureflags.provider.FeatureEventLog.Type.FEATURE_OVERRIDDEN;
+import static com.amitinside.featureflags.provider.FeatureEventLog.Type.FEATURE_TOGGLED;
+import static com.amitinside.featureflags.provider.FeatureEventLog.Type.FEATURE_UPDATED;
+import static com.amitinside.featureflags.provider.FeatureEventLog.Type.OVERRIDE_DISCARDED;
+import static com.amitinside.featureflags.provider.FeatureEventLog.Type.TENANT_FEATURE_RESET;
+import static com.amitinside.featureflags.provider.FeatureEventLog.Type.TENANT_FEATURE_TOGGLED;
+import static com.amitinside.featureflags.provider.FeatureEventLog.Type.TRANSIENT_OVERRIDE_REMOVED;
+import static com.amitinside.featureflags.provider.FeatureEventLog.Type.TRANSIENT_OVERRIDE_SET;
+import static com.amitinside.featureflags.provider.FeatureEventLog.Type.VARIANT_UPDATED;
 import static com.amitinside.featureflags.provider.ManagerHelper.checkArgument;
+import static com.amitinside.featureflags.provider.ManagerHelper.getConfiguredEssentials;
+import static com.amitinside.featureflags.provider.ManagerHelper.getConfiguredExpressions;
 import static com.amitinside.featureflags.provider.ManagerHelper.getConfiguredFeatures;
+import static com.amitinside.featureflags.provider.ManagerHelper.getConfiguredVariants;
+import static com.amitinside.featureflags.provider.ManagerHelper.getDefaultProperties;
+import static com.amitinside.featureflags.provider.ManagerHelper.namedDaemonThreads;
 import static java.util.Objects.requireNonNull;
-import static org.apache.felix.utils.log.Logger.LOG_INFO;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.apache.felix.utils.log.Logger.LOG_ERROR;
+import static org.apache.felix.utils.log.Logger.LOG_WARNING;
+import static org.osgi.framework.Constants.SERVICE_PID;
+import static org.osgi.service.cm.ConfigurationEvent.CM_DELETED;
+import static org.osgi.service.cm.ConfigurationEvent.CM_LOCATION_CHANGED;
 import static org.osgi.service.cm.ConfigurationEvent.CM_UPDATED;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Dictionary;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Hashtable;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import org.apache.felix.utils.log.Logger;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceReference;
+import org.osgi.framework.ServiceRegistration;
 import org.osgi.service.cm.Configuration;
 import org.osgi.service.cm.ConfigurationAdmin;
 import org.osgi.service.cm.ConfigurationEvent;
 import org.osgi.service.cm.ConfigurationListener;
+import org.osgi.service.cm.ConfigurationPlugin;
 import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
 import org.osgi.service.component.annotations.Deactivate;
 import org.osgi.service.component.annotations.Reference;
 import org.osgi.service.metatype.MetaTypeService;
+import org.osgi.service.metatype.annotations.Designate;
+import org.osgi.util.promise.Promise;
+import org.osgi.util.promise.Promises;
 
+import com.amitinside.featureflags.api.CircuitBreakerDTO;
+import com.amitinside.featureflags.api.CircuitBreakerPolicyDTO;
+import com.amitinside.featureflags.api.EvaluationCacheStatsDTO;
+import com.amitinside.featureflags.api.FeatureChangeEvent;
+import com.amitinside.featureflags.api.FeatureChangeSubscriber;
+import com.amitinside.featureflags.api.FeatureChangesDTO;
 import com.amitinside.featureflags.api.FeatureDTO;
+import com.amitinside.featureflags.api.FeatureEventDTO;
+import com.amitinside.featureflags.api.FeatureImportDTO;
 import com.amitinside.featureflags.api.FeatureManager;
+import com.amitinside.featureflags.api.FeatureSnapshot;
+import com.amitinside.featureflags.api.FeatureStatsDTO;
+import com.amitinside.featureflags.api.OverflowPolicy;
+import com.amitinside.featureflags.api.ReconciliationStatsDTO;
+import com.amitinside.featureflags.provider.CircuitBreaker.State;
 import com.amitinside.featureflags.provider.ManagerHelper.Feature;
+import com.amitinside.featureflags.provider.OverrideStore.Durability;
 
 /**
  * This implements the {@link FeatureManager}.
  */
 @ProvideFeatureCapability
 @Component(name = "FeatureManager")
+@Designate(ocd = FeatureManagerConfig.class)
 public final class FeatureManagerProvider implements FeatureManager, ConfigurationListener {
 
-    /** Data container -> Key: Configuration PID Value: Feature DTOs */
-    private final Map<String, List<Feature>> allFeatures = new HashMap<>();
+    /** The name of the shared feature table file in the bundle data area */
+    private static final String              SHARED_TABLE_FILE = "features.table";
+
+    /** The name of the override file in the bundle data area */
+    private static final String              OVERRIDE_FILE     = "overrides.dat";
+
+    /** The ranking of the transient override plugin such that it is invoked last */
+    private static final int                 PLUGIN_RANKING    = 1000;
+
+    /**
+     * Data container -> Key: Configuration PID Value: Feature DTOs (guarded by
+     * the extender, all other readers use the feature index)
+     */
+    private final Map<String, List<Feature>> allFeatures       = new HashMap<>();
 
     /** Data container -> Key: Bundle Instance Value: Configuration PID(s) */
-    private final Map<Bundle, List<String>>  bundlePIDs  = new HashMap<>();
+    private final Map<Bundle, List<String>>  bundlePIDs        = new HashMap<>();
 
     /** Logger Instance */
     private Logger                           logger;
 
+    /** Event Log Instance Reference */
+    private FeatureEventLog                  eventLog;
+
+    /** Executor forwarding the recorded events to the log */
+    private ScheduledExecutorService         eventExecutor;
+
     /** Metatype Extender Instance Reference */
     private MetaTypeExtender                 extender;
 
+    /** Executor removing the features of the stopped bundles */
+    private ScheduledExecutorService         extenderExecutor;
+
+    /** Composite Features Instance Reference */
+    private CompositeFeatures                compositeFeatures;
+
+    /** Global Kill Switch */
+    private final KillSwitch                 killSwitch        = new KillSwitch();
+
+    /** Variants of the multivariate features */
+    private final VariantTable               variants          = new VariantTable();
+
+    /** Shared Feature Table Instance Reference (null if not enabled) */
+    private SharedFeatureTableExporter       sharedTable;
+
+    /** Executor (un)registering the feature conditions */
+    private ExecutorService                  conditionExecutor;
+
+    /** Feature Conditions Instance Reference (null if not enabled) */
+    private FeatureConditions                conditions;
+
+    /** Executor delivering the feature change events */
+    private ExecutorService                  changeExecutor;
+
+    /** Feature Change Publisher Instance Reference */
+    private FeatureChangePublisher           changePublisher;
+
+    /** Feature Change Log Instance Reference */
+    private FeatureChangeLog                 changeLog;
+
+    /** Configuration Cache Instance Reference */
+    private ConfigurationCache               configurations;
+
+    /** Executor writing the asynchronous feature updates */
+    private ExecutorService                  updateExecutor;
+
+    /** Feature Update Pipeline Instance Reference */
+    private FeatureUpdatePipeline            updatePipeline;
+
+    /** Feature State Transfer Instance Reference */
+    private FeatureStateTransfer             stateTransfer;
+
+    /** Tenant Overlays Instance Reference */
+    private TenantOverlays                   tenantOverlays;
+
+    /** Immutable index of the features rebuilt whenever the features change */
+    private volatile FeatureIndex            featureIndex      = FeatureIndex.EMPTY;
+
+    /** The most recent snapshot of the feature registry (null if not yet taken) */
+    private volatile FeatureRegistrySnapshot snapshot;
+
+    /** Feature Metadata Cache Instance Reference */
+    private FeatureMetadataCache             metadataCache;
+
+    /** Executor running the reconciliations */
+    private ScheduledExecutorService         reconcileExecutor;
+
+    /** Configuration Reconciler Instance Reference */
+    private ConfigurationReconciler          reconciler;
+
+    /** The maximum duration of a single reconciliation in milliseconds */
+    private long                             reconciliationBudget;
+
+    /** Evaluation Cache Instance Reference */
+    private EvaluationCache                  evaluationCache;
+
+    /** Override Store Instance Reference (null if not enabled) */
+    private OverrideStore                    overrideStore;
+
+    /** Executor persisting the overrides */
+    private ScheduledExecutorService         overrideExecutor;
+
+    /** Key: Feature ID Value: Circuit Breaker guarding the feature */
+    private Map<String, CircuitBreaker>      circuitBreakers;
+
+    /** Executor probing the features disabled by circuit breakers */
+    private ScheduledExecutorService         breakerExecutor;
+
+    /** Transient Overrides Instance Reference */
+    private TransientOverrides               transientOverrides;
+
+    /** Registration of the transient override plugin (null if not enabled) */
+    private ServiceRegistration<?>           pluginRegistration;
+
+    /** Whether the configurations are delivered again whenever a transient override changes */
+    private boolean                          redeliverOverrides;
+
     /** Metatype Service Instance Reference */
     @Reference
     private MetaTypeService                  metaTypeService;
@@ -61,15 +236,97 @@ public final class FeatureManagerProvider implements FeatureManager, Configurati
     private ConfigurationAdmin               configurationAdmin;
 
     @Activate
-    protected void activate(final BundleContext bundleContext) throws Exception {
-        logger   = new Logger(bundleContext);
-        extender = new MetaTypeExtender(metaTypeService, logger, bundlePIDs, allFeatures);
+    protected void activate(final BundleContext bundleContext, final FeatureManagerConfig config) throws Exception {
+        logger            = new Logger(bundleContext);
+        eventLog          = new FeatureEventLog(logger, config.eventLogCapacity());
+        eventExecutor     = Executors.newSingleThreadScheduledExecutor(namedDaemonThreads("featureflags-event-drain"));
+        eventExecutor.scheduleWithFixedDelay(this::drainEvents, config.eventLogDrainInterval(),
+                config.eventLogDrainInterval(), MILLISECONDS);
+        compositeFeatures = new CompositeFeatures(logger, () -> featureIndex, killSwitch::epoch);
+        changeExecutor    = Executors.newCachedThreadPool(namedDaemonThreads("featureflags-change-publisher"));
+        changePublisher   = new FeatureChangePublisher(logger, changeExecutor);
+        changeLog         = new FeatureChangeLog(config.changeLogCapacity());
+        configurations    = new ConfigurationCache(configurationAdmin);
+        updateExecutor    = Executors.newSingleThreadExecutor(namedDaemonThreads("featureflags-update-pipeline"));
+        updatePipeline    = new FeatureUpdatePipeline(logger, configurations, updateExecutor);
+        stateTransfer     = new FeatureStateTransfer(logger, configurations, () -> featureIndex);
+        tenantOverlays    = new TenantOverlays(logger, configurationAdmin, config.tenantOverridesCapacity());
+        tenantOverlays.load();
+        reconciler           = new ConfigurationReconciler(logger, configurations, new ReconciliationTarget());
+        reconciliationBudget = config.reconciliationBudget();
+        reconcileExecutor    = Executors
+                .newSingleThreadScheduledExecutor(namedDaemonThreads("featureflags-reconciler"));
+        if (config.reconciliationInterval() > 0) {
+            reconcileExecutor.scheduleWithFixedDelay(this::reconcile, config.reconciliationInterval(),
+                    config.reconciliationInterval(), SECONDS);
+        }
+        circuitBreakers    = new ConcurrentHashMap<>();
+        breakerExecutor    = Executors
+                .newSingleThreadScheduledExecutor(namedDaemonThreads("featureflags-circuit-breakers"));
+        transientOverrides = new TransientOverrides();
+        evaluationCache    = new EvaluationCache(config.evaluationCacheCapacity(), config.evaluationCacheEviction());
+        if (config.sharedTableEnabled()) {
+            sharedTable = openSharedTable(bundleContext, config);
+        }
+        if (config.conditionsEnabled()) {
+            conditions = openConditions(bundleContext);
+        }
+        if (config.overrideStoreEnabled()) {
+            overrideStore = openOverrideStore(bundleContext, config);
+        }
+        if (config.transientOverridePluginEnabled()) {
+            final Dictionary<String, Object> properties = new Hashtable<>();
+            properties.put(ConfigurationPlugin.CM_RANKING, PLUGIN_RANKING);
+            pluginRegistration = bundleContext.registerService(ConfigurationPlugin.class,
+                    new TransientOverridePlugin(), properties);
+            redeliverOverrides = true;
+        }
+        if (config.metadataCacheCapacity() > 0) {
+            metadataCache = new FeatureMetadataCache(logger, metaTypeService, config.metadataCacheCapacity());
+        } else {
+            // the texts of all configurations are cached per locale
+            metadataCache = new FeatureMetadataCache(logger, metaTypeService, () -> featureIndex.getPIDs()
+                    .size());
+        }
+        extenderExecutor = Executors.newSingleThreadScheduledExecutor(namedDaemonThreads("featureflags-extender"));
+        extender         = new MetaTypeExtender(metaTypeService, logger, eventLog, bundlePIDs, allFeatures,
+                new RegistryListener(), extenderExecutor, config.bundleUpdateGracePeriod());
         extender.start(bundleContext);
     }
 
     @Deactivate
     protected void deactivate(final BundleContext bundleContext) throws Exception {
+        if (pluginRegistration != null) {
+            pluginRegistration.unregister();
+            pluginRegistration = null;
+        }
         extender.stop(bundleContext);
+        extenderExecutor.shutdown();
+        changePublisher.close();
+        changeExecutor.shutdown();
+        updateExecutor.shutdown();
+        reconcileExecutor.shutdown();
+        breakerExecutor.shutdownNow();
+        if (sharedTable != null) {
+            try {
+                sharedTable.close();
+            } catch (final IOException e) {
+                logger.log(LOG_ERROR, "Cannot close the shared feature table", e);
+            }
+            sharedTable = null;
+        }
+        if (conditions != null) {
+            conditionExecutor.shutdown();
+            conditions.close();
+            conditions = null;
+        }
+        if (overrideStore != null) {
+            overrideExecutor.shutdown();
+            flushOverrides();
+            overrideStore = null;
+        }
+        eventExecutor.shutdown();
+        eventLog.drain();
     }
 
     /**
@@ -82,22 +339,244 @@ public final class FeatureManagerProvider implements FeatureManager, Configurati
 
     @Override
     public Stream<FeatureDTO> getFeatures() {
-        return allFeatures.values()
-                .stream()
-                .flatMap(List::stream)
-                .map(ManagerHelper::toFeatureDTO);
+        return getLocalizedFeatures(null);
+    }
+
+    @Override
+    public Stream<FeatureDTO> getLocalizedFeatures(final String locale) {
+        // the flat spliterator of the index splits evenly in parallel streams
+        return StreamSupport.stream(featureIndex.spliterator(), false)
+                .map(f -> toFeatureDTO(f, locale));
     }
 
     @Override
     public Stream<FeatureDTO> getFeatures(final String featureID) {
+        return getFeatures(featureID, null);
+    }
+
+    @Override
+    public Stream<FeatureDTO> getFeatures(final String featureID, final String locale) {
+        requireNonNull(featureID, "Feature ID cannot be null");
+        checkArgument(!featureID.isEmpty(), "Feature ID cannot be empty");
+
+        return featureIndex.getFeatures(featureID)
+                .stream()
+                .map(f -> toFeatureDTO(f, locale));
+    }
+
+    @Override
+    public Optional<FeatureDTO> getFeature(final long bundleId, final String featureID) {
         requireNonNull(featureID, "Feature ID cannot be null");
         checkArgument(!featureID.isEmpty(), "Feature ID cannot be empty");
 
-        return allFeatures.values()
+        final List<Feature> features = featureIndex.getFeatures(bundleId, featureID);
+        if (features.isEmpty()) {
+            return Optional.empty();
+        }
+        return Optional.of(toFeatureDTO(features.get(0), null));
+    }
+
+    @Override
+    public Stream<FeatureDTO> getFeaturesByPid(final String pid) {
+        requireNonNull(pid, "Configuration PID cannot be null");
+        checkArgument(!pid.isEmpty(), "Configuration PID cannot be empty");
+
+        return featureIndex.getFeaturesByPID(pid)
+                .stream()
+                .map(f -> toFeatureDTO(f, null));
+    }
+
+    @Override
+    public Stream<FeatureDTO> getFeaturesByBundle(final long bundleId) {
+        return featureIndex.getFeaturesByBundle(bundleId)
+                .stream()
+                .map(f -> toFeatureDTO(f, null));
+    }
+
+    @Override
+    public boolean isEnabled(final String tenant, final String featureID) {
+        requireNonNull(tenant, "Tenant cannot be null");
+        requireNonNull(featureID, "Feature ID cannot be null");
+        checkArgument(!tenant.isEmpty(), "Tenant cannot be empty");
+        checkArgument(!featureID.isEmpty(), "Feature ID cannot be empty");
+
+        final long    epoch     = killSwitch.epoch();
+        final Boolean override  = tenantOverlays.getOverride(tenant, featureID);
+        boolean       isEnabled = false;
+        for (final Feature feature : featureIndex.getFeatures(featureID)) {
+            feature.recordEvaluation();
+            final boolean state = override != null ? override : feature.isEnabled;
+            isEnabled |= state && (feature.isEssential || !KillSwitch.isEngaged(epoch));
+        }
+        return isEnabled;
+    }
+
+    @Override
+    public boolean isEnabled(final String featureID, final Map<String, ?> context) {
+        requireNonNull(featureID, "Feature ID cannot be null");
+        requireNonNull(context, "Context cannot be null");
+        checkArgument(!featureID.isEmpty(), "Feature ID cannot be empty");
+
+        for (final Feature feature : featureIndex.getFeatures(featureID)) {
+            feature.recordEvaluation();
+        }
+        final Supplier<Object[]> fingerprint = () -> EvaluationCache
+                .fingerprint(compositeFeatures.getAttributes(featureID), context);
+        return evaluationCache.get(featureID, fingerprint, () -> evaluate(featureID, context));
+    }
+
+    /**
+     * Evaluates the specified feature in the specified context
+     */
+    private boolean evaluate(final String featureID, final Map<String, ?> context) {
+        final long epoch = killSwitch.epoch();
+        for (final Feature feature : featureIndex.getFeatures(featureID)) {
+            if (compositeFeatures.isEnabled(feature, context, epoch)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public EvaluationCacheStatsDTO getEvaluationCacheStats() {
+        return evaluationCache.getStats();
+    }
+
+    @Override
+    public void updateTenantFeature(final String tenant, final String featureID, final boolean isEnabled) {
+        requireNonNull(tenant, "Tenant cannot be null");
+        requireNonNull(featureID, "Feature ID cannot be null");
+        checkArgument(!tenant.isEmpty(), "Tenant cannot be empty");
+        checkArgument(!featureID.isEmpty(), "Feature ID cannot be empty");
+        checkArgument(!featureIndex.getFeatures(featureID)
+                .isEmpty(), "Feature is not known");
+
+        eventLog.record(TENANT_FEATURE_TOGGLED, featureID, tenant, isEnabled);
+        tenantOverlays.update(tenant, featureID, isEnabled);
+    }
+
+    @Override
+    public void resetTenantFeature(final String tenant, final String featureID) {
+        requireNonNull(tenant, "Tenant cannot be null");
+        requireNonNull(featureID, "Feature ID cannot be null");
+        checkArgument(!tenant.isEmpty(), "Tenant cannot be empty");
+        checkArgument(!featureID.isEmpty(), "Feature ID cannot be empty");
+
+        eventLog.record(TENANT_FEATURE_RESET, featureID, tenant, 0);
+        tenantOverlays.update(tenant, featureID, null);
+    }
+
+    @Override
+    public Map<String, Boolean> getTenantOverrides(final String tenant) {
+        requireNonNull(tenant, "Tenant cannot be null");
+        checkArgument(!tenant.isEmpty(), "Tenant cannot be empty");
+
+        return tenantOverlays.getOverrides(tenant);
+    }
+
+    @Override
+    public void exportFeatures(final Writer writer) throws IOException {
+        stateTransfer.exportFeatures(writer);
+    }
+
+    @Override
+    public FeatureImportDTO importFeatures(final Reader reader) throws IOException {
+        return stateTransfer.importFeatures(reader, featureID -> discardOverride(featureID, "import"));
+    }
+
+    @Override
+    public Stream<FeatureStatsDTO> getFeatureStats() {
+        return featureIndex.getFeatures()
+                .stream()
+                .map(ManagerHelper::toFeatureStatsDTO);
+    }
+
+    @Override
+    public Stream<FeatureStatsDTO> getStaleFeatures(final Duration idle) {
+        requireNonNull(idle, "Idle duration cannot be null");
+        checkArgument(!idle.isNegative(), "Idle duration cannot be negative");
+
+        final long idleMillis = idle.toMillis();
+        final long now        = System.currentTimeMillis();
+        return featureIndex.getFeatures()
                 .stream()
-                .flatMap(List::stream)
-                .filter(f -> f.id.equals(featureID))
-                .map(ManagerHelper::toFeatureDTO);
+                .filter(f -> ManagerHelper.isStale(f, idleMillis, now))
+                .map(ManagerHelper::toFeatureStatsDTO);
+    }
+
+    @Override
+    public ReconciliationStatsDTO getReconciliationStats() {
+        return reconciler.getStats();
+    }
+
+    @Override
+    public Stream<FeatureEventDTO> getRecentEvents(final int count) {
+        return eventLog.getRecentEvents(count)
+                .stream();
+    }
+
+    @Override
+    public FeatureChangesDTO getChangesSince(final long version) {
+        return changeLog.getChangesSince(version);
+    }
+
+    @Override
+    public FeatureSnapshot snapshot() {
+        final FeatureRegistrySnapshot current = snapshot;
+        if (current != null && current.isCurrent(featureIndex, changeLog.getVersion(), killSwitch.epoch())) {
+            return current;
+        }
+        return takeSnapshot();
+    }
+
+    /**
+     * Takes a snapshot of the feature registry unless a concurrent caller has
+     * already taken a current one
+     */
+    private synchronized FeatureRegistrySnapshot takeSnapshot() {
+        // the version is read first such that a change in flight is detected by
+        // the next caller whereupon a new snapshot is taken
+        final long                    version = changeLog.getVersion();
+        final long                    epoch   = killSwitch.epoch();
+        final FeatureIndex            index   = featureIndex;
+        final FeatureRegistrySnapshot current = snapshot;
+        if (current != null && current.isCurrent(index, version, epoch)) {
+            return current;
+        }
+        final FeatureRegistrySnapshot taken = FeatureRegistrySnapshot.take(index, version, epoch,
+                f -> getVariant(f, epoch));
+        snapshot = taken;
+        return taken;
+    }
+
+    @Override
+    public String getVariant(final String featureID) {
+        requireNonNull(featureID, "Feature ID cannot be null");
+        checkArgument(!featureID.isEmpty(), "Feature ID cannot be empty");
+
+        final List<Feature> features = featureIndex.getFeatures(featureID);
+        // indexed loop to avoid the allocation of an iterator
+        for (int i = 0; i < features.size(); i++) {
+            final Feature feature = features.get(i);
+            if (feature.variantSlot >= 0) {
+                feature.recordEvaluation();
+                return getVariant(feature, killSwitch.epoch());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the effective variant of the specified multivariate feature in the
+     * specified kill switch epoch
+     */
+    private String getVariant(final Feature feature, final long epoch) {
+        if (feature.isEssential || !KillSwitch.isEngaged(epoch)) {
+            final int slot = feature.variantSlot;
+            return slot >= 0 ? variants.get(slot) : feature.defaultVariant;
+        }
+        return feature.defaultVariant;
     }
 
     @Override
@@ -105,49 +584,1001 @@ public final class FeatureManagerProvider implements FeatureManager, Configurati
         requireNonNull(featureID, "Feature ID cannot be null");
         checkArgument(!featureID.isEmpty(), "Feature ID cannot be empty");
 
-        logger.log(LOG_INFO, String.format("Updating feature [%s] to [%b]", featureID, isEnabled));
+        final List<String> pids = getConfigurationPIDs(featureIndex.getFeatures(featureID));
+        if (overrideStore != null) {
+            storeOverride(featureID, pids, isEnabled);
+            return;
+        }
+        for (final String pid : pids) {
+            writeFeature(pid, featureID, isEnabled);
+        }
+    }
+
+    /**
+     * Overrides the features with the specified ID in the override store
+     */
+    private void storeOverride(final String featureID, final List<String> pids, final boolean isEnabled) {
+        if (!pids.isEmpty()) {
+            eventLog.record(FEATURE_OVERRIDDEN, featureID, null, isEnabled);
+            overrideStore.put(featureID, isEnabled);
+            // an open circuit breaker or a transient override takes precedence
+            refreshStates(featureID);
+        }
+    }
+
+    /**
+     * Removes the stored override of the specified feature (if any) and
+     * restores the configured states of its features
+     */
+    private void discardOverride(final String featureID, final String reason) {
+        final OverrideStore store = overrideStore;
+        if (store != null && store.remove(featureID)) {
+            eventLog.record(OVERRIDE_DISCARDED, featureID, reason, 0);
+            restoreFeature(featureID);
+        }
+    }
+
+    @Override
+    public Set<String> clearOverrides() {
+        final OverrideStore store = overrideStore;
+        if (store == null) {
+            return Collections.emptySet();
+        }
+        final Set<String> featureIDs = store.clear();
+        for (final String featureID : featureIDs) {
+            eventLog.record(OVERRIDE_DISCARDED, featureID, "clear", 0);
+            restoreFeature(featureID);
+        }
+        return featureIDs;
+    }
+
+    /**
+     * Applies the states determined by the specified function to the features
+     * with the specified ID
+     */
+    private synchronized void applyStates(final String featureID, final Predicate<Feature> state) {
+        final Set<Feature> changedFeatures = new LinkedHashSet<>();
+        for (final Feature feature : featureIndex.getFeatures(featureID)) {
+            if (feature.isComposite() || feature.isMultivariate()) {
+                continue;
+            }
+            final boolean isEnabled = state.test(feature);
+            if (feature.isEnabled != isEnabled) {
+                eventLog.record(FEATURE_UPDATED, feature.id, feature.pid, isEnabled);
+                feature.isEnabled = isEnabled;
+                changedFeatures.add(feature);
+            }
+        }
+        featuresChanged(changedFeatures);
+        publishChanges(UPDATED, changedFeatures);
+    }
+
+    @Override
+    public void updateFeature(final String pid, final String featureID, final boolean isEnabled) {
+        requireNonNull(pid, "Configuration PID cannot be null");
+        requireNonNull(featureID, "Feature ID cannot be null");
+        checkArgument(!pid.isEmpty(), "Configuration PID cannot be empty");
+        checkArgument(!featureID.isEmpty(), "Feature ID cannot be empty");
+        checkArgument(featureIndex.getFeaturesByPID(pid)
+                .stream()
+                .anyMatch(f -> !f.isComposite() && !f.isMultivariate() && f.id.equals(featureID)),
+                "Feature is not known");
+
+        writeFeature(pid, featureID, isEnabled);
+        // the override store holds the overrides per feature ID only and hence
+        // a pending override would mask the configured state
+        discardOverride(featureID, "configuration update");
+    }
+
+    @Override
+    public void updateFeature(final long bundleId, final String featureID, final boolean isEnabled) {
+        requireNonNull(featureID, "Feature ID cannot be null");
+        checkArgument(!featureID.isEmpty(), "Feature ID cannot be empty");
+
+        final List<String> pids = getConfigurationPIDs(featureIndex.getFeatures(bundleId, featureID));
+        checkArgument(!pids.isEmpty(), "Feature is not known");
+
+        for (final String pid : pids) {
+            writeFeature(pid, featureID, isEnabled);
+        }
+        discardOverride(featureID, "configuration update");
+    }
 
+    /**
+     * Persists the specified feature state in the configuration with the
+     * specified PID
+     */
+    private void writeFeature(final String pid, final String featureID, final boolean isEnabled) {
+        eventLog.record(FEATURE_TOGGLED, featureID, pid, isEnabled);
         try {
-            final List<String> configurations = allFeatures.entrySet()
-                    .stream()
-                    .filter(e -> e.getValue()
-                            .stream()
-                            .anyMatch(f -> f.id.equals(featureID)))
-                    .map(Entry::getKey)
-                    .collect(Collectors.toList());
-            for (final String configurationPID : configurations) {
-                final Configuration configuration = configurationAdmin.getConfiguration(configurationPID, "?");
+            final Configuration configuration = configurations.getOrCreate(pid);
+            if (configuration != null) {
+                final Dictionary<String, Object> existingProps = configuration.getProperties();
+                final Map<String, Object>        newProps      = ManagerHelper.asMap(existingProps);
+                newProps.put(METATYPE_FEATURE_ID_PREFIX + featureID, isEnabled);
+                configuration.updateIfDifferent(new Hashtable<>(newProps));
+            }
+        } catch (final Exception e) {
+            logger.log(LOG_ERROR, String.format("Cannot update configuration [%s]", pid), e);
+        }
+    }
+
+    @Override
+    public Promise<Void> updateFeatureAsync(final String featureID, final boolean isEnabled) {
+        requireNonNull(featureID, "Feature ID cannot be null");
+        checkArgument(!featureID.isEmpty(), "Feature ID cannot be empty");
+
+        final List<String> pids = getConfigurationPIDs(featureIndex.getFeatures(featureID));
+        if (overrideStore != null) {
+            // the override store persists the override in the background
+            storeOverride(featureID, pids, isEnabled);
+            return Promises.resolved(null);
+        }
+        return updatePipeline.update(pids, featureID, isEnabled);
+    }
+
+    /**
+     * Returns the distinct PIDs of the configurations containing the specified
+     * features whereby composite and multivariate features are skipped
+     */
+    private static List<String> getConfigurationPIDs(final Collection<Feature> features) {
+        return features.stream()
+                .filter(f -> !f.isComposite() && !f.isMultivariate())
+                .map(f -> f.pid)
+                .distinct()
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public void overrideFeature(final String featureID, final boolean isEnabled, final Duration ttl) {
+        requireNonNull(featureID, "Feature ID cannot be null");
+        requireNonNull(ttl, "TTL cannot be null");
+        checkArgument(!featureID.isEmpty(), "Feature ID cannot be empty");
+        checkArgument(!ttl.isNegative() && !ttl.isZero(), "TTL must be positive");
+        checkArgument(!getConfigurationPIDs(featureIndex.getFeatures(featureID)).isEmpty(), "Feature is not known");
+
+        final long duration = ttl.toMillis();
+        eventLog.record(TRANSIENT_OVERRIDE_SET, featureID, String.valueOf(duration), isEnabled);
+        transientOverrides.put(featureID, isEnabled, System.currentTimeMillis() + duration);
+        // an open circuit breaker takes precedence
+        refreshStates(featureID);
+        redeliverConfigurations(featureID);
+        try {
+            reconcileExecutor.schedule(() -> expireOverride(featureID), duration, MILLISECONDS);
+        } catch (final RejectedExecutionException e) {
+            // the feature manager has been deactivated
+        }
+    }
+
+    @Override
+    public void resetOverride(final String featureID) {
+        requireNonNull(featureID, "Feature ID cannot be null");
+        checkArgument(!featureID.isEmpty(), "Feature ID cannot be empty");
+
+        if (transientOverrides.remove(featureID)) {
+            eventLog.record(TRANSIENT_OVERRIDE_REMOVED, featureID, null, 0);
+            restoreFeature(featureID);
+            redeliverConfigurations(featureID);
+        }
+    }
+
+    @Override
+    public Map<String, Boolean> getTransientOverrides() {
+        return transientOverrides.getOverrides(System.currentTimeMillis());
+    }
+
+    /**
+     * Restores the configured state of the specified feature if its transient
+     * override has expired. The override might have been reset or replaced by a
+     * later one in the meantime.
+     */
+    private void expireOverride(final String featureID) {
+        if (transientOverrides.expire(featureID, System.currentTimeMillis())) {
+            eventLog.record(TRANSIENT_OVERRIDE_REMOVED, featureID, null, 0);
+            restoreFeature(featureID);
+            redeliverConfigurations(featureID);
+        }
+    }
+
+    /**
+     * Delivers the configurations of the features with the specified ID to their
+     * managed services again such that they observe the transient override
+     * injected (or no longer injected) by the {@link TransientOverridePlugin}
+     * right away. The configurations are updated without properties which
+     * initiates the delivery without modifying them.
+     */
+    private void redeliverConfigurations(final String featureID) {
+        if (!redeliverOverrides) {
+            return;
+        }
+        final List<String> pids = getConfigurationPIDs(featureIndex.getFeatures(featureID));
+        try {
+            reconcileExecutor.execute(() -> {
+                for (final String pid : pids) {
+                    try {
+                        final Configuration configuration = configurations.get(pid);
+                        if (configuration != null) {
+                            configuration.update();
+                        }
+                    } catch (final IOException | IllegalStateException e) {
+                        // the configuration might have been deleted in the meantime
+                        logger.log(LOG_WARNING, String.format("Cannot deliver configuration [%s] again", pid), e);
+                    }
+                }
+            });
+        } catch (final RejectedExecutionException e) {
+            // the feature manager has been deactivated
+        }
+    }
+
+    /**
+     * Applies the configurations of the features with the specified ID again
+     * whereby the features that are not configured are reverted to their
+     * defaults
+     */
+    private void restoreFeature(final String featureID) {
+        for (final String pid : getConfigurationPIDs(featureIndex.getFeatures(featureID))) {
+            final Map<String, Object> properties = getDefaultProperties(featureIndex.getFeaturesByPID(pid));
+            try {
+                final Configuration configuration = configurations.get(pid);
                 if (configuration != null) {
-                    final Dictionary<String, Object> existingProps = configuration.getProperties();
-                    final Map<String, Object>        newProps      = ManagerHelper.asMap(existingProps);
-                    newProps.put(METATYPE_FEATURE_ID_PREFIX + featureID, isEnabled);
-                    configuration.updateIfDifferent(new Hashtable<>(newProps));
+                    properties.putAll(ManagerHelper.asMap(configuration.getProperties()));
                 }
+            } catch (final IOException e) {
+                logger.log(LOG_ERROR, String.format("Cannot read configuration [%s]", pid), e);
+                continue;
             }
-        } catch (final Exception e) {
-            // never occur since configuration location check has been ignored
+            applyConfiguration(pid, properties);
+        }
+    }
+
+    /**
+     * Returns the override of the specified feature whereby an open circuit
+     * breaker takes precedence over a transient override which in turn takes
+     * precedence over the override store
+     */
+    private Boolean getOverride(final String featureID) {
+        final CircuitBreaker breaker = circuitBreakers.get(featureID);
+        if (breaker != null && breaker.getState() == State.OPEN) {
+            return Boolean.FALSE;
+        }
+        final Boolean override = transientOverrides.get(featureID, System.currentTimeMillis());
+        return override != null || overrideStore == null ? override : overrideStore.get(featureID);
+    }
+
+    /**
+     * Applies the override of the features with the specified ID or, if there is
+     * none, their configured states
+     */
+    private void refreshStates(final String featureID) {
+        final Boolean override = getOverride(featureID);
+        applyStates(featureID, feature -> override != null ? override : feature.isConfiguredEnabled());
+    }
+
+    @Override
+    public void recordOutcome(final String featureID, final boolean isSuccess) {
+        requireNonNull(featureID, "Feature ID cannot be null");
+        checkArgument(!featureID.isEmpty(), "Feature ID cannot be empty");
+
+        final CircuitBreaker breaker = circuitBreakers.get(featureID);
+        if (breaker == null || !isEffectivelyEnabled(featureID)) {
+            return;
+        }
+        final long  now        = System.currentTimeMillis();
+        final State transition = breaker.record(isSuccess, now);
+        if (transition == State.OPEN) {
+            openCircuit(featureID, breaker, now);
+        } else if (transition == State.CLOSED) {
+            eventLog.record(CIRCUIT_CLOSED, featureID, null, true);
+        }
+    }
+
+    @Override
+    public void setCircuitBreaker(final String featureID, final CircuitBreakerPolicyDTO policy) {
+        requireNonNull(featureID, "Feature ID cannot be null");
+        checkArgument(!featureID.isEmpty(), "Feature ID cannot be empty");
+
+        final CircuitBreaker previous = policy == null ? circuitBreakers.remove(featureID)
+                : circuitBreakers.put(featureID, new CircuitBreaker(featureID, policy));
+        if (previous != null && previous.getState() == State.OPEN) {
+            releaseCircuit(featureID);
+        }
+    }
+
+    @Override
+    public Stream<CircuitBreakerDTO> getCircuitBreakers() {
+        final long now = System.currentTimeMillis();
+        return circuitBreakers.values()
+                .stream()
+                .map(b -> b.toDTO(now));
+    }
+
+    /**
+     * Checks whether any of the non-composite features with the specified ID
+     * is effectively enabled
+     */
+    private boolean isEffectivelyEnabled(final String featureID) {
+        final long epoch = killSwitch.epoch();
+        for (final Feature feature : featureIndex.getFeatures(featureID)) {
+            if (!feature.isComposite() && KillSwitch.isEnabled(feature, epoch)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Disables the features guarded by the specified tripped circuit breaker.
+     * The breaker only overrides the states in memory and never writes them to
+     * the configurations or the override store.
+     */
+    private void openCircuit(final String featureID, final CircuitBreaker breaker, final long now) {
+        eventLog.record(CIRCUIT_OPENED, featureID, String.valueOf(breaker.toDTO(now).failures), false);
+        refreshStates(featureID);
+        try {
+            breakerExecutor.schedule(() -> probeCircuit(featureID, breaker), breaker.getOpenDuration(),
+                    MILLISECONDS);
+        } catch (final RejectedExecutionException e) {
+            // the feature manager has been deactivated
+        }
+    }
+
+    /**
+     * Restores the states of the features guarded by the specified open circuit
+     * breaker to probe whether they have recovered
+     */
+    private void probeCircuit(final String featureID, final CircuitBreaker breaker) {
+        // the circuit breaker might have been removed or replaced meanwhile
+        if (circuitBreakers.get(featureID) != breaker || !breaker.halfOpen()) {
+            return;
+        }
+        eventLog.record(CIRCUIT_HALF_OPENED, featureID, null, true);
+        refreshStates(featureID);
+    }
+
+    /**
+     * Restores the states of the features that have been disabled by an open
+     * circuit breaker which has been removed or replaced in the meantime and
+     * therefore will never probe them. A replacing circuit breaker starts closed
+     * and guards the restored features right away.
+     */
+    private void releaseCircuit(final String featureID) {
+        eventLog.record(CIRCUIT_RELEASED, featureID, null, true);
+        refreshStates(featureID);
+    }
+
+    @Override
+    public void engageKillSwitch() {
+        if (killSwitch.engage()) {
+            logger.log(LOG_WARNING, "Kill switch engaged - all non-essential features are disabled");
+            final Set<Feature> changedFeatures = new LinkedHashSet<>(getNonEssentialFeatures());
+            // essential composites referencing non-essential features
+            changedFeatures.addAll(compositeFeatures.evaluateAll());
+            evaluationCache.invalidateAll();
+            exportSharedTable();
+            resetConditions();
+            publishChanges(UPDATED, changedFeatures);
+        }
+    }
+
+    @Override
+    public void releaseKillSwitch() {
+        if (killSwitch.release()) {
+            logger.log(LOG_WARNING, "Kill switch released - all features are restored to their configured states");
+            final Set<Feature> changedFeatures = new LinkedHashSet<>(compositeFeatures.evaluateAll());
+            changedFeatures.addAll(getNonEssentialFeatures());
+            evaluationCache.invalidateAll();
+            exportSharedTable();
+            resetConditions();
+            publishChanges(UPDATED, changedFeatures);
         }
     }
 
+    @Override
+    public boolean isKillSwitchEngaged() {
+        return killSwitch.isEngaged();
+    }
+
+    @Override
+    public void subscribe(final FeatureChangeSubscriber subscriber, final String filter, final int bufferSize,
+            final OverflowPolicy policy) {
+        changePublisher.subscribe(subscriber, filter, bufferSize, policy);
+    }
+
     @Override
     public void configurationEvent(final ConfigurationEvent event) {
         final int    type = event.getType();
         final String pid  = event.getPid();
+        if (TenantOverlays.FACTORY_PID.equals(event.getFactoryPid())) {
+            if (type == CM_UPDATED) {
+                tenantOverlays.configurationUpdated(pid);
+            } else {
+                tenantOverlays.configurationDeleted(pid);
+            }
+            return;
+        }
+        if (type == CM_DELETED || type == CM_LOCATION_CHANGED) {
+            // the cached handle is stale
+            configurations.invalidate(pid);
+        }
+        if (featureIndex.getFeaturesByPID(pid)
+                .isEmpty()) {
+            return;
+        }
         if (type == CM_UPDATED) {
-            final Map<String, Boolean> configuredFeatures = getConfiguredFeatures(pid, configurationAdmin);
-            for (final Entry<String, Boolean> entry : configuredFeatures.entrySet()) {
-                final String              featureID = entry.getKey();
-                final boolean             isEnabled = entry.getValue();
-                final Collection<Feature> features  = allFeatures.get(pid);
-                features.stream()
-                        .filter(f -> f.id.equalsIgnoreCase(featureID))
-                        .peek(f -> logger.log(LOG_INFO,
-                                String.format("Updated feature [%s] to [%b]", f.toString(), isEnabled)))
-                        .forEach(f -> f.isEnabled = isEnabled);
+            eventLog.record(CONFIGURATION_UPDATED, pid, null, 0);
+            final Configuration configuration;
+            try {
+                configuration = configurations.get(pid);
+            } catch (final IOException e) {
+                logger.log(LOG_ERROR, String.format("Cannot read configuration [%s]", pid), e);
+                return;
+            }
+            if (configuration == null) {
+                // the configuration has been deleted in the meantime
+                return;
             }
+            // the change count is read first such that a concurrent update is
+            // detected as drift by the next reconciliation
+            final long changeCount = configuration.getChangeCount();
+            applyConfiguration(pid, ManagerHelper.asMap(configuration.getProperties()));
+            reconciler.applied(pid, changeCount);
+        } else if (type == CM_DELETED) {
+            revertConfiguration(pid);
+            reconciler.reverted(pid);
+        }
+    }
+
+    /**
+     * Applies the specified configuration properties to the features of the
+     * specified configuration PID
+     */
+    private synchronized void applyConfiguration(final String pid, final Map<String, Object> properties) {
+        final Collection<Feature> features = featureIndex.getFeaturesByPID(pid);
+        if (features.isEmpty()) {
+            return;
+        }
+        final Map<String, Boolean> configuredFeatures    = getConfiguredFeatures(properties);
+        final Set<String>          supersededIDs         = updateConfiguredStates(features, configuredFeatures);
+        // the transient overrides take precedence until they expire and the
+        // stored overrides until they are written to the configurations or
+        // superseded by a newer configuration
+        for (final Feature feature : features) {
+            final Boolean override = getOverride(feature.id);
+            if (override != null) {
+                configuredFeatures.put(feature.id, override);
+            }
+        }
+        final Map<String, String>  configuredExpressions = getConfiguredExpressions(properties);
+        final Set<Feature>         changedFeatures       = new LinkedHashSet<>();
+        for (final Entry<String, Boolean> entry : configuredFeatures.entrySet()) {
+            final String  featureID = entry.getKey();
+            final boolean isEnabled = entry.getValue();
+            features.stream()
+                    .filter(f -> !f.isComposite() && !f.isMultivariate())
+                    .filter(f -> f.id.equalsIgnoreCase(featureID))
+                    .filter(f -> f.isEnabled != isEnabled)
+                    .peek(f -> eventLog.record(FEATURE_UPDATED, f.id, f.pid, isEnabled))
+                    .peek(changedFeatures::add)
+                    .forEach(f -> f.isEnabled = isEnabled);
+        }
+        changedFeatures.addAll(updateVariants(features, getConfiguredVariants(properties)));
+        changedFeatures.addAll(updateEssentials(features, getConfiguredEssentials(properties)));
+        if (updateExpressions(features, configuredExpressions)) {
+            changedFeatures.addAll(compositeFeatures.rebuild());
+            evaluationCache.invalidateAll();
+            exportSharedTable();
+            resetConditions();
         } else {
-            allFeatures.remove(pid);
+            featuresChanged(changedFeatures);
+        }
+        publishChanges(UPDATED, changedFeatures);
+        // the features with the same ID in other configurations still carry the
+        // discarded overrides
+        for (final String featureID : supersededIDs) {
+            restoreFeature(featureID);
+        }
+    }
+
+    /**
+     * Records the configured states of the specified features and discards the
+     * stored overrides of the features whose configured states have changed
+     * since the previous configuration. The first configuration applied after
+     * a restart is not compared as the previous one is not known.
+     *
+     * @return the IDs of the features whose overrides have been discarded
+     */
+    private Set<String> updateConfiguredStates(final Collection<Feature> features,
+            final Map<String, Boolean> configuredFeatures) {
+        final Set<String> supersededIDs = new HashSet<>();
+        for (final Entry<String, Boolean> entry : configuredFeatures.entrySet()) {
+            for (final Feature feature : features) {
+                if (feature.isComposite() || feature.isMultivariate() || !feature.id.equalsIgnoreCase(entry.getKey())) {
+                    continue;
+                }
+                final Boolean previous = feature.configuredState;
+                feature.configuredState = entry.getValue();
+                if (previous != null && !previous.equals(entry.getValue()) && overrideStore != null
+                        && overrideStore.remove(feature.id)) {
+                    eventLog.record(OVERRIDE_DISCARDED, feature.id, "configuration update", 0);
+                    supersededIDs.add(feature.id);
+                }
+            }
+        }
+        return supersededIDs;
+    }
+
+    /**
+     * Propagates the changes of the specified non-composite features to the
+     * dependent composites, the caches, the shared feature table and the
+     * conditions whereby the changed composites are added to the specified
+     * features
+     */
+    private void featuresChanged(final Set<Feature> changedFeatures) {
+        if (!changedFeatures.isEmpty()) {
+            final Set<String> changedIDs = changedFeatures.stream()
+                    .map(f -> f.id)
+                    .collect(Collectors.toSet());
+            // the contextual results of the dependent composites may
+            // change even if their states without any context do not
+            final Set<String> invalidIDs = compositeFeatures.getDependentIDs(changedIDs);
+            invalidIDs.addAll(changedIDs);
+            evaluationCache.invalidate(invalidIDs);
+            changedFeatures.addAll(compositeFeatures.featuresChanged(changedIDs));
+        }
+        // includes the composites that have changed along
+        final Set<String> updatedIDs = changedFeatures.stream()
+                .map(f -> f.id)
+                .collect(Collectors.toSet());
+        updateSharedTable(updatedIDs);
+        updateConditions(updatedIDs);
+    }
+
+    /**
+     * Reverts the features of the specified configuration PID to the states
+     * declared by their attribute definitions
+     */
+    private synchronized void revertConfiguration(final String pid) {
+        final Collection<Feature> features = featureIndex.getFeaturesByPID(pid);
+        if (!features.isEmpty()) {
+            eventLog.record(CONFIGURATION_REVERTED, pid, null, 0);
+            applyConfiguration(pid, getDefaultProperties(features));
+        }
+    }
+
+    /**
+     * Reconciles the features with their configurations within the configured
+     * time budget
+     */
+    private void reconcile() {
+        try {
+            final List<String> pids = new ArrayList<>(featureIndex.getPIDs());
+            Collections.sort(pids);
+            reconciler.reconcile(pids, reconciliationBudget, MILLISECONDS);
+        } catch (final RuntimeException e) {
+            // an exception would suppress all subsequent runs
+            logger.log(LOG_ERROR, "Cannot reconcile the features with their configurations", e);
+        }
+    }
+
+    private FeatureDTO toFeatureDTO(final Feature feature, final String locale) {
+        final long epoch = killSwitch.epoch();
+        return ManagerHelper.toFeatureDTO(feature, epoch, metadataCache.get(feature, locale),
+                feature.isMultivariate() ? getVariant(feature, epoch) : null);
+    }
+
+    /**
+     * Forwards the recorded events to the log
+     */
+    private void drainEvents() {
+        try {
+            eventLog.drain();
+        } catch (final RuntimeException e) {
+            // an exception would suppress all subsequent runs
+            logger.log(LOG_ERROR, "Cannot forward the recorded events to the log", e);
+        }
+    }
+
+    /**
+     * Records the changes of the specified features in the change log and
+     * publishes them to the subscribers
+     */
+    private void publishChanges(final FeatureChangeEvent.Type type, final Collection<Feature> features) {
+        if (features.isEmpty()) {
+            return;
+        }
+        final long    epoch          = killSwitch.epoch();
+        final boolean hasSubscribers = changePublisher.hasSubscribers();
+        for (final Feature feature : features) {
+            final FeatureChangeEvent event = ManagerHelper.toFeatureChangeEvent(feature, type, epoch);
+            changeLog.record(event);
+            if (hasSubscribers) {
+                changePublisher.publish(event);
+            }
         }
     }
 
+    /**
+     * Returns the enabled non-essential features whose effective states depend
+     * on the kill switch
+     */
+    private List<Feature> getNonEssentialFeatures() {
+        return featureIndex.getFeatures()
+                .stream()
+                .filter(f -> f.isEnabled && !f.isEssential)
+                .collect(Collectors.toList());
+    }
+
+    private SharedFeatureTableExporter openSharedTable(final BundleContext bundleContext,
+            final FeatureManagerConfig config) {
+        final String path = config.sharedTablePath();
+        final File   file = path.isEmpty() ? bundleContext.getDataFile(SHARED_TABLE_FILE) : new File(path);
+        if (file == null) {
+            logger.log(LOG_WARNING, "Shared feature table not available due to missing file system support");
+            return null;
+        }
+        try {
+            return new SharedFeatureTableExporter(file, config.sharedTableCapacity());
+        } catch (final IOException | IllegalArgumentException e) {
+            logger.log(LOG_ERROR, String.format("Cannot create the shared feature table [%s]", file), e);
+            return null;
+        }
+    }
+
+    /**
+     * Rewrites the complete shared feature table (if enabled)
+     */
+    private void exportSharedTable() {
+        if (sharedTable == null) {
+            return;
+        }
+        try {
+            if (!sharedTable.export(getEffectiveStates(id -> true))) {
+                logger.log(LOG_WARNING, "Shared feature table capacity exceeded - the table has not been updated");
+            }
+        } catch (final IOException e) {
+            logger.log(LOG_ERROR, "Cannot publish the shared feature table", e);
+        }
+    }
+
+    /**
+     * Updates the states of the specified features in the shared feature table
+     * (if enabled) and falls back to a rewrite if any of the features is not yet
+     * exported
+     */
+    private void updateSharedTable(final Collection<String> featureIDs) {
+        if (sharedTable == null || featureIDs.isEmpty()) {
+            return;
+        }
+        try {
+            if (!sharedTable.update(getEffectiveStates(featureIDs::contains))) {
+                exportSharedTable();
+            }
+        } catch (final IOException e) {
+            logger.log(LOG_ERROR, "Cannot publish the shared feature table", e);
+        }
+    }
+
+    private OverrideStore openOverrideStore(final BundleContext bundleContext, final FeatureManagerConfig config) {
+        final Durability durability = config.overrideDurability();
+        File             file       = null;
+        if (durability != Durability.MEMORY) {
+            file = bundleContext.getDataFile(OVERRIDE_FILE);
+            if (file == null) {
+                logger.log(LOG_WARNING, "Overrides are kept in memory only due to missing file system support");
+            }
+        }
+        final OverrideStore store = new OverrideStore(file);
+        try {
+            store.load();
+        } catch (final IOException e) {
+            logger.log(LOG_ERROR, String.format("Cannot load the overrides from [%s]", file), e);
+        }
+        overrideExecutor = Executors.newSingleThreadScheduledExecutor(namedDaemonThreads("featureflags-overrides"));
+        if (file != null) {
+            overrideExecutor.scheduleWithFixedDelay(this::flushOverrides, config.overrideFlushInterval(),
+                    config.overrideFlushInterval(), MILLISECONDS);
+        }
+        if (durability == Durability.CONFIGURATION) {
+            overrideExecutor.scheduleWithFixedDelay(this::syncOverrides, config.overrideSyncInterval(),
+                    config.overrideSyncInterval(), SECONDS);
+        }
+        return store;
+    }
+
+    /**
+     * Writes the overrides to the override file
+     */
+    private void flushOverrides() {
+        final OverrideStore store = overrideStore;
+        try {
+            if (store != null) {
+                store.flush();
+            }
+        } catch (final IOException e) {
+            logger.log(LOG_ERROR, "Cannot write the overrides", e);
+        }
+    }
+
+    /**
+     * Writes the overrides to the configurations and removes the written ones
+     * from the override store
+     */
+    private void syncOverrides() {
+        final OverrideStore store = overrideStore;
+        if (store == null) {
+            return;
+        }
+        try {
+            for (final Entry<String, Boolean> entry : store.getOverrides()
+                    .entrySet()) {
+                final String       featureID = entry.getKey();
+                final boolean      isEnabled = entry.getValue();
+                final List<String> pids      = getConfigurationPIDs(featureIndex.getFeatures(featureID));
+                if (pids.isEmpty()) {
+                    // the feature is currently not installed
+                    continue;
+                }
+                eventLog.record(FEATURE_TOGGLED, featureID, String.join(",", pids), isEnabled);
+                if (updatePipeline.update(pids, featureID, isEnabled)
+                        .getFailure() == null) {
+                    store.remove(featureID, isEnabled);
+                }
+            }
+            store.flush();
+        } catch (final InterruptedException e) {
+            Thread.currentThread()
+                    .interrupt();
+        } catch (final IOException | RuntimeException e) {
+            // an exception would suppress all subsequent runs
+            logger.log(LOG_ERROR, "Cannot write the overrides to the configurations", e);
+        }
+    }
+
+    private FeatureConditions openConditions(final BundleContext bundleContext) {
+        conditionExecutor = Executors.newSingleThreadExecutor(namedDaemonThreads("featureflags-conditions"));
+        try {
+            return new FeatureConditions(logger, bundleContext, conditionExecutor);
+        } catch (final NoClassDefFoundError e) {
+            // the condition package is imported optionally
+            logger.log(LOG_WARNING, "Feature conditions not available due to missing OSGi condition package");
+            conditionExecutor.shutdown();
+            return null;
+        }
+    }
+
+    /**
+     * Updates the conditions of the specified features (if enabled)
+     */
+    private void updateConditions(final Collection<String> featureIDs) {
+        if (conditions != null && !featureIDs.isEmpty()) {
+            conditions.update(getEffectiveStates(featureIDs::contains));
+        }
+    }
+
+    /**
+     * Updates the conditions of all features (if enabled) and unregisters the
+     * conditions of the unknown features
+     */
+    private void resetConditions() {
+        if (conditions != null) {
+            conditions.reset(getEffectiveStates(id -> true));
+        }
+    }
+
+    private Map<String, Boolean> getEffectiveStates(final Predicate<String> filter) {
+        final long epoch = killSwitch.epoch();
+        return featureIndex.getFeatures()
+                .stream()
+                .filter(f -> filter.test(f.id))
+                .collect(Collectors.toMap(f -> f.id, f -> KillSwitch.isEnabled(f, epoch), Boolean::logicalOr));
+    }
+
+    /**
+     * Updates the essential flags of the specified features
+     *
+     * @return the features whose effective states have changed
+     */
+    private List<Feature> updateEssentials(final Collection<Feature> features,
+            final Map<String, Boolean> configuredEssentials) {
+        final long          epoch   = killSwitch.epoch();
+        final List<Feature> changed = new ArrayList<>();
+        for (final Entry<String, Boolean> entry : configuredEssentials.entrySet()) {
+            final String  featureID   = entry.getKey();
+            final boolean isEssential = entry.getValue();
+            features.stream()
+                    .filter(f -> f.id.equalsIgnoreCase(featureID))
+                    .filter(f -> f.isEssential != isEssential)
+                    .peek(f -> f.isEssential = isEssential)
+                    .filter(f -> f.isEnabled && KillSwitch.isEngaged(epoch))
+                    .forEach(changed::add);
+        }
+        return changed;
+    }
+
+    /**
+     * Updates the variants of the specified multivariate features
+     *
+     * @return the features whose variants have changed
+     */
+    private List<Feature> updateVariants(final Collection<Feature> features,
+            final Map<String, Object> configuredVariants) {
+        final List<Feature> changed = new ArrayList<>();
+        for (final Entry<String, Object> entry : configuredVariants.entrySet()) {
+            final String featureID = entry.getKey();
+            for (final Feature feature : features) {
+                if (feature.variantSlot < 0 || !feature.id.equalsIgnoreCase(featureID)) {
+                    continue;
+                }
+                final String variant = ManagerHelper.toVariant(feature, entry.getValue());
+                if (variant == null) {
+                    logger.log(LOG_WARNING, String.format("Ignoring invalid variant [%s] of feature [%s]",
+                            entry.getValue(), feature.id));
+                } else if (variants.set(feature.variantSlot, variant)) {
+                    eventLog.record(VARIANT_UPDATED, feature.id, variant, 0);
+                    changed.add(feature);
+                }
+            }
+        }
+        return changed;
+    }
+
+    private boolean updateExpressions(final Collection<Feature> features,
+            final Map<String, String> configuredExpressions) {
+        boolean isExpressionChanged = false;
+        for (final Entry<String, String> entry : configuredExpressions.entrySet()) {
+            final String featureID  = entry.getKey();
+            final String expression = entry.getValue();
+            for (final Feature feature : features) {
+                if (feature.isComposite() && feature.id.equalsIgnoreCase(featureID)
+                        && !feature.expression.equals(expression)) {
+                    eventLog.record(EXPRESSION_UPDATED, feature.id, expression, 0);
+                    feature.expression  = expression;
+                    isExpressionChanged = true;
+                }
+            }
+        }
+        return isExpressionChanged;
+    }
+
+    private final class RegistryListener implements FeatureRegistryListener {
+
+        @Override
+        public void featuresAdded(final Bundle bundle, final Collection<Feature> features) {
+            for (final Feature feature : features) {
+                if (feature.isMultivariate()) {
+                    feature.variantSlot = variants.allocate(feature.defaultVariant);
+                } else if (!feature.isComposite()) {
+                    final Boolean override = getOverride(feature.id);
+                    if (override != null) {
+                        feature.isEnabled = override;
+                    }
+                }
+            }
+            // the composites are rebuilt from the index
+            featureIndex = FeatureIndex.build(allFeatures);
+            final Collection<Feature> changedFeatures = compositeFeatures.rebuild();
+            evaluationCache.invalidateAll();
+            changedFeatures.removeAll(features);
+            exportSharedTable();
+            resetConditions();
+            publishChanges(ADDED, features);
+            publishChanges(UPDATED, changedFeatures);
+            // the features are created in their default states and hence the
+            // configurations of the bundle have to be applied
+            final List<String> pids = new ArrayList<>(bundlePIDs.getOrDefault(bundle, Collections.emptyList()));
+            try {
+                reconcileExecutor.execute(() -> reconciler.reconcile(pids));
+            } catch (final RejectedExecutionException e) {
+                // the feature manager has been deactivated
+            }
+        }
+
+        @Override
+        public void featuresRemoved(final Bundle bundle, final Collection<Feature> features) {
+            metadataCache.invalidate(bundle.getBundleId());
+            for (final Feature feature : features) {
+                if (feature.variantSlot >= 0) {
+                    variants.release(feature.variantSlot);
+                    feature.variantSlot = -1;
+                }
+            }
+            featureIndex = FeatureIndex.build(allFeatures);
+            final Collection<Feature> changedFeatures = compositeFeatures.rebuild();
+            evaluationCache.invalidateAll();
+            reconciler.retain(featureIndex.getPIDs());
+            configurations.retain(featureIndex.getPIDs());
+            exportSharedTable();
+            resetConditions();
+            publishChanges(REMOVED, features);
+            publishChanges(UPDATED, changedFeatures);
+        }
+
+        @Override
+        public void featuresUpdated(final Bundle bundle, final Collection<Feature> added,
+                final Collection<Feature> removed) {
+            metadataCache.invalidate(bundle.getBundleId());
+            for (final Feature feature : removed) {
+                if (feature.variantSlot >= 0) {
+                    variants.release(feature.variantSlot);
+                    feature.variantSlot = -1;
+                }
+            }
+            for (final Feature feature : added) {
+                if (feature.isMultivariate()) {
+                    feature.variantSlot = variants.allocate(feature.defaultVariant);
+                } else if (!feature.isComposite()) {
+                    final Boolean override = getOverride(feature.id);
+                    if (override != null) {
+                        feature.isEnabled = override;
+                    }
+                }
+            }
+            featureIndex = FeatureIndex.build(allFeatures);
+            final Collection<Feature> changedFeatures = compositeFeatures.rebuild();
+            evaluationCache.invalidateAll();
+            reconciler.retain(featureIndex.getPIDs());
+            configurations.retain(featureIndex.getPIDs());
+            changedFeatures.removeAll(added);
+            exportSharedTable();
+            resetConditions();
+            publishChanges(REMOVED, removed);
+            publishChanges(ADDED, added);
+            publishChanges(UPDATED, changedFeatures);
+            // the retained features keep their states whereas the configurations
+            // of the PIDs with added features have to be applied again
+            final List<String> pids = added.stream()
+                    .map(f -> f.pid)
+                    .distinct()
+                    .collect(Collectors.toList());
+            if (pids.isEmpty()) {
+                return;
+            }
+            pids.forEach(reconciler::forget);
+            try {
+                reconcileExecutor.execute(() -> reconciler.reconcile(pids));
+            } catch (final RejectedExecutionException e) {
+                // the feature manager has been deactivated
+            }
+        }
+    }
+
+    /**
+     * Injects the transient overrides into the configurations of the features
+     * whenever they are delivered to the managed services
+     */
+    private final class TransientOverridePlugin implements ConfigurationPlugin {
+
+        @Override
+        public void modifyConfiguration(final ServiceReference<?> reference,
+                final Dictionary<String, Object> properties) {
+            final Object pid = properties.get(SERVICE_PID);
+            if (transientOverrides.isEmpty() || !(pid instanceof String)) {
+                return;
+            }
+            final long now = System.currentTimeMillis();
+            for (final Feature feature : featureIndex.getFeaturesByPID((String) pid)) {
+                if (feature.isComposite() || feature.isMultivariate()) {
+                    continue;
+                }
+                final Boolean override = transientOverrides.get(feature.id, now);
+                if (override != null) {
+                    properties.put(METATYPE_FEATURE_ID_PREFIX + feature.id, override);
+                }
+            }
+        }
+    }
+
+    private final class ReconciliationTarget implements ConfigurationReconciler.Target {
+
+        @Override
+        public void apply(final String pid, final Map<String, Object> properties) {
+            applyConfiguration(pid, properties);
+        }
+
+        @Override
+        public void revert(final String pid) {
+            revertConfiguration(pid);
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,274 @@
+package com.amitinside.featureflags.provider;
+
+import static com.amitinside.featureflags.api.FeatureManager.METATYPE_COMPOSITE_FEATURE_ID_PREFIX;
+import static com.amitinside.featureflags.api.FeatureManager.METATYPE_FEATURE_ID_PREFIX;
+import static com.amitinside.featureflags.provider.ManagerHelper.checkArgument;
+import static java.util.Objects.requireNonNull;
+import static org.apache.felix.utils.log.Logger.LOG_WARNING;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntSupplier;
+
+import org.apache.felix.utils.log.Logger;
+import org.osgi.service.metatype.AttributeDefinition;
+import org.osgi.service.metatype.MetaTypeService;
+
+import com.amitinside.featureflags.provider.ManagerHelper.Feature;
+
+/**
+ * Loads the names and descriptions of the features lazily from the
+ * {@link MetaTypeService}.
+ *
+ * <p>
+ * The feature registry only holds the identifiers and states of the features
+ * whereas the rarely read (and possibly localized) texts are loaded on demand
+ * per bundle, configuration PID and locale. The loaded texts are kept in a
+ * cache which evicts the least recently used entries of a locale once its
+ * capacity per locale is reached. The capacity can follow the number of
+ * configuration PIDs of the registry such that a scan over all features, for
+ * instance by {@code FeatureManager#getFeatures()}, does not evict the entries
+ * it is about to read again on the next scan.
+ * </p>
+ *
+ * <p>
+ * A lookup of a cached entry does not lock such that parallel streams over
+ * all features do not serialize on the cache. The recency of an entry is
+ * approximated by the number of entries loaded before its last access, hence
+ * the eviction that runs on loading an entry is only as exact as the loads are
+ * frequent.
+ * </p>
+ *
+ * @ThreadSafe
+ */
+public final class FeatureMetadataCache {
+
+    /** Logger Instance */
+    private final Logger                         logger;
+
+    /** Metatype Service Instance Reference */
+    private final MetaTypeService                metaTypeService;
+
+    /** The maximum number of cached entries per locale */
+    private final IntSupplier                                          capacity;
+
+    /**
+     * Key: Locale (empty for the default locale) Value: (Key: Bundle and PID
+     * Value: Cached metadata of the PID)
+     */
+    private final ConcurrentMap<String, ConcurrentMap<Key, CacheEntry>> entries = new ConcurrentHashMap<>();
+
+    /** Incremented whenever an entry is loaded */
+    private final AtomicLong                                           clock   = new AtomicLong();
+
+    /**
+     * Constructor
+     *
+     * @param logger {@link Logger} instance
+     * @param metaTypeService {@link MetaTypeService} instance
+     * @param capacity the maximum number of cached entries per locale whereby
+     *            an entry holds the texts of a single configuration PID
+     *
+     * @throws NullPointerException if {@code logger} or
+     *             {@code metaTypeService} is {@code null}
+     * @throws IllegalArgumentException if {@code capacity} is not positive
+     */
+    public FeatureMetadataCache(final Logger logger, final MetaTypeService metaTypeService, final int capacity) {
+        this(logger, metaTypeService, () -> capacity);
+        checkArgument(capacity > 0, "Metadata cache capacity must be positive");
+    }
+
+    /**
+     * Constructor
+     *
+     * @param logger {@link Logger} instance
+     * @param metaTypeService {@link MetaTypeService} instance
+     * @param capacity supplies the maximum number of cached entries per locale
+     *            whenever an entry is loaded, for instance the number of
+     *            configuration PIDs of the registry (values less than
+     *            {@code 1} are treated as {@code 1})
+     *
+     * @throws NullPointerException if any of the specified arguments is
+     *             {@code null}
+     */
+    public FeatureMetadataCache(final Logger logger, final MetaTypeService metaTypeService,
+            final IntSupplier capacity) {
+        this.logger          = requireNonNull(logger, "Logger instance cannot be null");
+        this.metaTypeService = requireNonNull(metaTypeService, "MetaTypeService instance cannot be null");
+        this.capacity        = requireNonNull(capacity, "Capacity cannot be null");
+    }
+
+    /**
+     * Returns the metadata of the specified feature in the specified locale
+     *
+     * @param feature the feature
+     * @param locale the locale or {@code null} for the default locale
+     * @return the metadata (never {@code null})
+     *
+     * @throws NullPointerException if {@code feature} is {@code null}
+     */
+    public Metadata get(final Feature feature, final String locale) {
+        requireNonNull(feature, "Feature cannot be null");
+
+        if (feature.bundle == null || feature.pid == null) {
+            return new Metadata(feature.id, null);
+        }
+        final ConcurrentMap<Key, CacheEntry> localized = entries.computeIfAbsent(locale == null ? "" : locale,
+                l -> new ConcurrentHashMap<>());
+        final Key                            key       = new Key(feature.bundle.getBundleId(), feature.pid);
+        CacheEntry                           entry     = localized.get(key);
+        if (entry == null) {
+            // loaded without holding any lock as the metatype service may parse
+            // localization files
+            final CacheEntry loaded = new CacheEntry(load(feature, locale), clock.incrementAndGet());
+            entry = localized.putIfAbsent(key, loaded);
+            if (entry == null) {
+                entry = loaded;
+                evict(localized);
+            }
+        } else {
+            entry.touch(clock.get());
+        }
+        final String adID = (feature.isComposite() ? METATYPE_COMPOSITE_FEATURE_ID_PREFIX
+                : METATYPE_FEATURE_ID_PREFIX) + feature.id;
+        return entry.metadata.getOrDefault(adID, new Metadata(feature.id, null));
+    }
+
+    /**
+     * Removes all cached entries of the specified bundle
+     *
+     * @param bundleId the bundle ID
+     */
+    public void invalidate(final long bundleId) {
+        for (final ConcurrentMap<Key, CacheEntry> localized : entries.values()) {
+            localized.keySet()
+                    .removeIf(key -> key.bundleId == bundleId);
+        }
+    }
+
+    /**
+     * Returns the number of cached entries of all locales
+     *
+     * @return the number of cached entries
+     */
+    public int size() {
+        return entries.values()
+                .stream()
+                .mapToInt(Map::size)
+                .sum();
+    }
+
+    /**
+     * Removes the least recently used entries of a locale until its capacity is
+     * no longer exceeded
+     */
+    private void evict(final ConcurrentMap<Key, CacheEntry> localized) {
+        final int max = Math.max(1, capacity.getAsInt());
+        while (localized.size() > max) {
+            Entry<Key, CacheEntry> eldest = null;
+            for (final Entry<Key, CacheEntry> entry : localized.entrySet()) {
+                if (eldest == null || entry.getValue().accessed < eldest.getValue().accessed) {
+                    eldest = entry;
+                }
+            }
+            if (eldest == null) {
+                return;
+            }
+            localized.remove(eldest.getKey(), eldest.getValue());
+        }
+    }
+
+    private Map<String, Metadata> load(final Feature feature, final String locale) {
+        final Map<String, Metadata> metadata = new HashMap<>();
+        try {
+            for (final AttributeDefinition ad : ManagerHelper.getAttributeDefinitions(feature.bundle, feature.pid,
+                    locale, metaTypeService)) {
+                final String id = ad.getID();
+                if (ManagerHelper.isFeature(id)) {
+                    final String name = ad.getName();
+                    metadata.put(id, new Metadata(name != null ? name : toFeatureID(id), ad.getDescription()));
+                }
+            }
+        } catch (final RuntimeException e) {
+            logger.log(LOG_WARNING, String.format("Cannot load the metadata of configuration [%s] in locale [%s]",
+                    feature.pid, locale), e);
+            // the metatype service rejects unsupported locales
+            if (locale != null) {
+                return load(feature, null);
+            }
+        }
+        return metadata;
+    }
+
+    private static String toFeatureID(final String adID) {
+        return adID.startsWith(METATYPE_COMPOSITE_FEATURE_ID_PREFIX) ? ManagerHelper.getCompositeFeatureID(adID)
+                : ManagerHelper.getFeatureID(adID);
+    }
+
+    /**
+     * The name and description of a feature
+     *
+     * @Immutable
+     */
+    public static final class Metadata {
+        public final String name;
+        public final String description;
+
+        Metadata(final String name, final String description) {
+            this.name        = name;
+            this.description = description;
+        }
+    }
+
+    /**
+     * The metadata of a PID in a locale along with the time of its last access
+     */
+    private static final class CacheEntry {
+        private final Map<String, Metadata> metadata;
+        private volatile long               accessed;
+
+        CacheEntry(final Map<String, Metadata> metadata, final long accessed) {
+            this.metadata = metadata;
+            this.accessed = accessed;
+        }
+
+        void touch(final long now) {
+            // avoids contended writes of entries that are read by many threads
+            if (accessed != now) {
+                accessed = now;
+            }
+        }
+    }
+
+    private static final class Key {
+        private final long   bundleId;
+        private final String pid;
+
+        Key(final long bundleId, final String pid) {
+            this.bundleId = bundleId;
+            this.pid      = pid;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) obj;
+            return bundleId == other.bundleId && pid.equals(other.pid);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Long.hashCode(bundleId) + pid.hashCode();
+        }
+    }
+
+}
@@ -0,0 +1,43 @@
+package com.amitinside.featureflags.provider;
+
+import java.util.Collection;
+
+import org.osgi.framework.Bundle;
+
+import com.amitinside.featureflags.provider.ManagerHelper.Feature;
+
+/**
+ * Gets notified whenever the structure of the feature registry changes, that
+ * is, whenever the features of a bundle get added, removed or updated.
+ */
+public interface FeatureRegistryListener {
+
+    /**
+     * Invoked after the features of the specified bundle have been added
+     *
+     * @param bundle the bundle
+     * @param features the added features
+     */
+    void featuresAdded(Bundle bundle, Collection<Feature> features);
+
+    /**
+     * Invoked after the features of the specified bundle have been removed
+     *
+     * @param bundle the bundle
+     * @param features the removed features
+     */
+    void featuresRemoved(Bundle bundle, Collection<Feature> features);
+
+    /**
+     * Invoked after the features of the specified bundle have been updated
+     * whereby the features that are declared identically have been retained
+     * with their current states. A feature whose declaration has changed is
+     * removed and added again.
+     *
+     * @param bundle the updated bundle
+     * @param added the added features
+     * @param removed the removed features
+     */
+    void featuresUpdated(Bundle bundle, Collection<Feature> added, Collection<Feature> removed);
+
+}
@@ -0,0 +1,133 @@
+package com.amitinside.featureflags.provider;
+
+import static com.amitinside.featureflags.provider.ManagerHelper.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import com.amitinside.featureflags.api.FeatureSnapshot;
+import com.amitinside.featureflags.provider.ManagerHelper.Feature;
+
+/**
+ * Snapshot of the effective feature states at a single version of the feature
+ * registry.
+ *
+ * <p>
+ * The effective states and variants are captured once when the snapshot is
+ * taken such that every lookup costs a single hash lookup. The features
+ * themselves are only referenced by the shared {@link FeatureIndex} of the
+ * snapshot to record their evaluations.
+ * </p>
+ *
+ * @Immutable
+ */
+public final class FeatureRegistrySnapshot implements FeatureSnapshot {
+
+    /** The version of the feature registry */
+    private final long                 version;
+
+    /** The kill switch epoch the states have been evaluated in */
+    private final long                 epoch;
+
+    /** The index of the features at the version */
+    private final FeatureIndex         index;
+
+    /** Key: Feature ID Value: Effective state */
+    private final Map<String, Boolean> states;
+
+    /** Key: Feature ID Value: Effective variant of the multivariate feature */
+    private final Map<String, String>  variants;
+
+    private FeatureRegistrySnapshot(final long version, final long epoch, final FeatureIndex index,
+            final Map<String, Boolean> states, final Map<String, String> variants) {
+        this.version  = version;
+        this.epoch    = epoch;
+        this.index    = index;
+        this.states   = states;
+        this.variants = variants;
+    }
+
+    /**
+     * Takes a snapshot of the specified features
+     *
+     * @param index the index of the features
+     * @param version the current version of the feature registry
+     * @param epoch the current kill switch epoch
+     * @param variantFunction returns the effective variant of a multivariate
+     *            feature in the specified epoch
+     * @return the snapshot
+     *
+     * @throws NullPointerException if {@code index} or {@code variantFunction}
+     *             is {@code null}
+     */
+    public static FeatureRegistrySnapshot take(final FeatureIndex index, final long version, final long epoch,
+            final Function<Feature, String> variantFunction) {
+        requireNonNull(index, "Feature index cannot be null");
+        requireNonNull(variantFunction, "Variant function cannot be null");
+
+        final List<Feature>        features = index.getFeatures();
+        final Map<String, Boolean> states   = new HashMap<>(features.size() * 4 / 3 + 1);
+        final Map<String, String>  variants = new HashMap<>();
+        for (final Feature feature : features) {
+            states.merge(feature.id, KillSwitch.isEnabled(feature, epoch), Boolean::logicalOr);
+            if (feature.variantSlot >= 0) {
+                variants.putIfAbsent(feature.id, variantFunction.apply(feature));
+            }
+        }
+        return new FeatureRegistrySnapshot(version, epoch, index, Collections.unmodifiableMap(states),
+                Collections.unmodifiableMap(variants));
+    }
+
+    /**
+     * Checks whether the snapshot reflects the specified state of the feature
+     * registry
+     *
+     * @param index the current index of the features
+     * @param version the current version of the feature registry
+     * @param epoch the current kill switch epoch
+     * @return {@code true} if the snapshot is current, otherwise {@code false}
+     */
+    public boolean isCurrent(final FeatureIndex index, final long version, final long epoch) {
+        return this.index == index && this.version == version && this.epoch == epoch;
+    }
+
+    @Override
+    public long getVersion() {
+        return version;
+    }
+
+    @Override
+    public boolean isEnabled(final String featureID) {
+        requireNonNull(featureID, "Feature ID cannot be null");
+        checkArgument(!featureID.isEmpty(), "Feature ID cannot be empty");
+
+        recordEvaluation(featureID);
+        return states.getOrDefault(featureID, Boolean.FALSE);
+    }
+
+    @Override
+    public String getVariant(final String featureID) {
+        requireNonNull(featureID, "Feature ID cannot be null");
+        checkArgument(!featureID.isEmpty(), "Feature ID cannot be empty");
+
+        final String variant = variants.get(featureID);
+        if (variant != null) {
+            recordEvaluation(featureID);
+        }
+        return variant;
+    }
+
+    private void recordEvaluation(final String featureID) {
+        final List<Feature> features = index.getFeatures(featureID);
+        // indexed loop to avoid the allocation of an iterator
+        for (int i = 0; i < features.size(); i++) {
+            features.get(i)
+                    .recordEvaluation();
+        }
+    }
+
+}
@@ -0,0 +1,220 @@
+package com.amitinside.featureflags.provider;
+
+import static com.amitinside.featureflags.api.FeatureManager.METATYPE_FEATURE_ID_PREFIX;
+import static java.util.Objects.requireNonNull;
+import static org.apache.felix.utils.log.Logger.LOG_ERROR;
+import static org.apache.felix.utils.log.Logger.LOG_INFO;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Hashtable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import org.apache.felix.utils.log.Logger;
+import org.osgi.service.cm.Configuration;
+
+import com.amitinside.featureflags.api.FeatureImportDTO;
+import com.amitinside.featureflags.provider.ManagerHelper.Feature;
+
+/**
+ * Exports and imports the configured feature states in a line-delimited
+ * format. The export ignores the overrides, the kill switch and the circuit
+ * breakers as they are not part of the configurations.
+ *
+ * <pre>
+ * # featureflags 1
+ * &lt;feature ID&gt;\t&lt;configuration PID&gt;\t&lt;bundle ID&gt;\t&lt;true|false&gt;
+ * </pre>
+ *
+ * <p>
+ * Both directions stream the lines such that neither the registry nor the
+ * imported file is materialized. An import only retains the validated
+ * feature states which are bounded by the number of known features.
+ * </p>
+ */
+public final class FeatureStateTransfer {
+
+    /** The header line of an export */
+    public static final String               HEADER       = "# featureflags 1";
+
+    /** The maximum number of reported errors of an import */
+    private static final int                 MAX_ERRORS   = 100;
+
+    /** The separator of the fields of a line */
+    private static final char                SEPARATOR    = '\t';
+
+    /** The number of fields of a line */
+    private static final int                 FIELDS_COUNT = 4;
+
+    /** Logger Instance */
+    private final Logger                     logger;
+
+    /** Configuration Cache Instance Reference */
+    private final ConfigurationCache         configurations;
+
+    /** The supplier of the current feature index */
+    private final Supplier<FeatureIndex>     featureIndex;
+
+    /**
+     * Constructor
+     *
+     * @param logger {@link Logger} instance
+     * @param configurations the cache to look up the configurations with
+     * @param featureIndex the supplier of the current index of all features in
+     *            the runtime
+     *
+     * @throws NullPointerException if any of the specified arguments is
+     *             {@code null}
+     */
+    public FeatureStateTransfer(final Logger logger, final ConfigurationCache configurations,
+            final Supplier<FeatureIndex> featureIndex) {
+        this.logger         = requireNonNull(logger, "Logger instance cannot be null");
+        this.configurations = requireNonNull(configurations, "Configuration cache instance cannot be null");
+        this.featureIndex   = requireNonNull(featureIndex, "Feature index supplier cannot be null");
+    }
+
+    /**
+     * Writes the configured states of all boolean (non-composite and
+     * non-multivariate) features
+     *
+     * @param writer the writer to export to
+     * @throws IOException if the features cannot be written
+     *
+     * @throws NullPointerException if {@code writer} is {@code null}
+     */
+    public void exportFeatures(final Writer writer) throws IOException {
+        requireNonNull(writer, "Writer cannot be null");
+
+        writer.write(HEADER);
+        writer.write('\n');
+        for (final Feature feature : featureIndex.get()
+                .getFeatures()) {
+            if (feature.isComposite() || feature.isMultivariate()) {
+                continue;
+            }
+            writer.write(feature.id);
+            writer.write(SEPARATOR);
+            writer.write(feature.pid);
+            writer.write(SEPARATOR);
+            writer.write(Long.toString(feature.bundleId));
+            writer.write(SEPARATOR);
+            writer.write(Boolean.toString(feature.isConfiguredEnabled()));
+            writer.write('\n');
+        }
+        writer.flush();
+    }
+
+    /**
+     * Validates and applies the feature states read from the specified reader
+     *
+     * @param reader the reader to import from
+     * @param imported the consumer of the IDs of the features whose states have
+     *            been written to their configurations
+     * @return the result of the import
+     * @throws IOException if the feature states cannot be read
+     *
+     * @throws NullPointerException if any of the specified arguments is
+     *             {@code null}
+     */
+    public FeatureImportDTO importFeatures(final Reader reader, final Consumer<String> imported)
+            throws IOException {
+        requireNonNull(reader, "Reader cannot be null");
+        requireNonNull(imported, "Imported feature consumer cannot be null");
+
+        final FeatureImportDTO result = new FeatureImportDTO();
+        result.errors = new ArrayList<>();
+
+        // Key: Configuration PID Value: (Key: Property Key Value: State)
+        final Map<String, Map<String, Object>> pendingStates = new LinkedHashMap<>();
+        // Key: Configuration PID Value: Number of imported lines
+        final Map<String, Long>                pendingLines  = new LinkedHashMap<>();
+
+        final BufferedReader lines  = new BufferedReader(reader);
+        long                 number = 0;
+        String               line;
+        while ((line = lines.readLine()) != null) {
+            number++;
+            line = line.trim();
+            if (line.isEmpty() || line.charAt(0) == '#') {
+                continue;
+            }
+            final String[] fields = line.split("\\s+");
+            final String   error  = validate(fields);
+            if (error != null) {
+                reject(result, String.format("Line %d: %s", number, error));
+                continue;
+            }
+            final String pid = fields[1];
+            pendingStates.computeIfAbsent(pid, p -> new LinkedHashMap<>())
+                    .put(METATYPE_FEATURE_ID_PREFIX + fields[0], Boolean.valueOf(fields[3]));
+            pendingLines.merge(pid, 1L, Long::sum);
+        }
+        for (final Entry<String, Map<String, Object>> entry : pendingStates.entrySet()) {
+            final String pid = entry.getKey();
+            try {
+                final Configuration       configuration = configurations.getOrCreate(pid);
+                final Map<String, Object> newProps      = ManagerHelper.asMap(configuration.getProperties());
+                newProps.putAll(entry.getValue());
+                configuration.updateIfDifferent(new Hashtable<>(newProps));
+                result.imported += pendingLines.get(pid);
+                entry.getValue()
+                        .keySet()
+                        .forEach(key -> imported.accept(ManagerHelper.getFeatureID(key)));
+            } catch (final Exception e) {
+                logger.log(LOG_ERROR, String.format("Cannot import feature states to configuration [%s]", pid), e);
+                result.rejected += pendingLines.get(pid);
+                addError(result, String.format("Configuration [%s]: %s", pid, e.getMessage()));
+            }
+        }
+        logger.log(LOG_INFO, String.format("Imported [%d] feature states and rejected [%d] feature states",
+                result.imported, result.rejected));
+        return result;
+    }
+
+    /**
+     * Validates the specified fields against the known features
+     *
+     * @return the error or {@code null} if the fields are valid
+     */
+    private String validate(final String[] fields) {
+        if (fields.length != FIELDS_COUNT) {
+            return String.format("Expected %d fields but found %d", FIELDS_COUNT, fields.length);
+        }
+        final String featureID = fields[0];
+        final String pid       = fields[1];
+        final String state     = fields[3];
+        if (!"true".equalsIgnoreCase(state) && !"false".equalsIgnoreCase(state)) {
+            return String.format("Invalid state [%s]", state);
+        }
+        for (final Feature feature : featureIndex.get()
+                .getFeaturesByPID(pid)) {
+            if (feature.id.equals(featureID)) {
+                if (feature.isComposite()) {
+                    return String.format("Composite feature [%s] cannot be imported", featureID);
+                }
+                return feature.isMultivariate()
+                        ? String.format("Multivariate feature [%s] cannot be imported", featureID) : null;
+            }
+        }
+        return String.format("Unknown feature [%s] in configuration [%s]", featureID, pid);
+    }
+
+    private static void reject(final FeatureImportDTO result, final String error) {
+        result.rejected++;
+        addError(result, error);
+    }
+
+    private static void addError(final FeatureImportDTO result, final String error) {
+        if (result.errors.size() < MAX_ERRORS) {
+            result.errors.add(error);
+        }
+    }
+
+}
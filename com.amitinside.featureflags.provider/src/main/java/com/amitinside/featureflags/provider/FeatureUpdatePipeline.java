@@ -0,0 +1,182 @@
+package com.amitinside.featureflags.provider;
+
+import static com.amitinside.featureflags.api.FeatureManager.METATYPE_FEATURE_ID_PREFIX;
+import static java.util.Objects.requireNonNull;
+import static org.apache.felix.utils.log.Logger.LOG_ERROR;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.felix.utils.log.Logger;
+import org.osgi.service.cm.Configuration;
+import org.osgi.util.promise.Deferred;
+import org.osgi.util.promise.Promise;
+import org.osgi.util.promise.Promises;
+
+/**
+ * Persists feature updates asynchronously.
+ *
+ * <p>
+ * Updates are queued per configuration PID. All updates of a PID that are
+ * queued while the previous batch is being written get merged into a single
+ * configuration write, whereby the latest update of a feature wins. The
+ * specified executor is therefore required to execute the tasks sequentially.
+ * </p>
+ *
+ * @ThreadSafe
+ */
+public final class FeatureUpdatePipeline {
+
+    /** Logger Instance */
+    private final Logger                    logger;
+
+    /** Configuration Cache Instance Reference */
+    private final ConfigurationCache        configurations;
+
+    /** Sequential executor writing the batches */
+    private final Executor                  executor;
+
+    /** Pending writes -> Key: Configuration PID Value: Pending Write */
+    private final Map<String, PendingWrite> pendingWrites = new LinkedHashMap<>();
+
+    /** Flag denoting whether a flush of the pending writes is scheduled */
+    private boolean                         isFlushScheduled;
+
+    /**
+     * Constructor
+     *
+     * @param logger {@link Logger} instance
+     * @param configurations the cache to look up the configurations with
+     * @param executor the sequential executor to write the batches on
+     *
+     * @throws NullPointerException if any of the specified arguments is
+     *             {@code null}
+     */
+    public FeatureUpdatePipeline(final Logger logger, final ConfigurationCache configurations,
+            final Executor executor) {
+        this.logger         = requireNonNull(logger, "Logger instance cannot be null");
+        this.configurations = requireNonNull(configurations, "Configuration cache instance cannot be null");
+        this.executor       = requireNonNull(executor, "Executor instance cannot be null");
+    }
+
+    /**
+     * Queues the update of the specified feature in the specified
+     * configurations
+     *
+     * @param pids the configuration PIDs containing the feature
+     * @param featureID the feature ID
+     * @param isEnabled the value for the enablement of the feature
+     * @return the promise that gets resolved once the feature has been
+     *         persisted in all configurations or that fails with the first
+     *         error
+     *
+     * @throws NullPointerException if any of the specified arguments is
+     *             {@code null}
+     */
+    public Promise<Void> update(final Collection<String> pids, final String featureID, final boolean isEnabled) {
+        requireNonNull(pids, "Configuration PIDs cannot be null");
+        requireNonNull(featureID, "Feature ID cannot be null");
+
+        if (pids.isEmpty()) {
+            return Promises.resolved(null);
+        }
+        final UpdateRequest request = new UpdateRequest(pids.size());
+        final boolean       isFlushRequired;
+        synchronized (this) {
+            for (final String pid : pids) {
+                pendingWrites.computeIfAbsent(pid, PendingWrite::new)
+                        .add(featureID, isEnabled, request);
+            }
+            isFlushRequired  = !isFlushScheduled;
+            isFlushScheduled = true;
+        }
+        if (isFlushRequired) {
+            try {
+                executor.execute(this::flush);
+            } catch (final RejectedExecutionException e) {
+                failPendingWrites(new IllegalStateException("Feature update pipeline has been stopped", e));
+            }
+        }
+        return request.deferred.getPromise();
+    }
+
+    private void flush() {
+        final List<PendingWrite> writes;
+        synchronized (this) {
+            writes = new ArrayList<>(pendingWrites.values());
+            pendingWrites.clear();
+            isFlushScheduled = false;
+        }
+        writes.forEach(PendingWrite::write);
+    }
+
+    private void failPendingWrites(final Throwable failure) {
+        final List<PendingWrite> writes;
+        synchronized (this) {
+            writes = new ArrayList<>(pendingWrites.values());
+            pendingWrites.clear();
+            isFlushScheduled = false;
+        }
+        writes.forEach(w -> w.requests.forEach(r -> r.fail(failure)));
+    }
+
+    private final class PendingWrite {
+        private final String              pid;
+        private final Map<String, Object> properties = new HashMap<>();
+        private final List<UpdateRequest> requests   = new ArrayList<>();
+
+        PendingWrite(final String pid) {
+            this.pid = pid;
+        }
+
+        void add(final String featureID, final boolean isEnabled, final UpdateRequest request) {
+            properties.put(METATYPE_FEATURE_ID_PREFIX + featureID, isEnabled);
+            requests.add(request);
+        }
+
+        void write() {
+            try {
+                final Configuration       configuration = configurations.getOrCreate(pid);
+                final Map<String, Object> newProps      = ManagerHelper.asMap(configuration.getProperties());
+                newProps.putAll(properties);
+                configuration.updateIfDifferent(new Hashtable<>(newProps));
+                requests.forEach(UpdateRequest::written);
+            } catch (final Exception e) {
+                logger.log(LOG_ERROR, String.format("Cannot update configuration [%s]", pid), e);
+                requests.forEach(r -> r.fail(e));
+            }
+        }
+    }
+
+    private static final class UpdateRequest {
+        private final Deferred<Void> deferred = new Deferred<>();
+        private final AtomicInteger  remainingWrites;
+        private final AtomicBoolean  isFailed = new AtomicBoolean();
+
+        UpdateRequest(final int writes) {
+            remainingWrites = new AtomicInteger(writes);
+        }
+
+        void written() {
+            if (remainingWrites.decrementAndGet() == 0 && !isFailed.get()) {
+                deferred.resolve(null);
+            }
+        }
+
+        void fail(final Throwable failure) {
+            if (isFailed.compareAndSet(false, true)) {
+                deferred.fail(failure);
+            }
+        }
+    }
+
+}
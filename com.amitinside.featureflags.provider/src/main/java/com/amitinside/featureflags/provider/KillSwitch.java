@@ -0,0 +1,92 @@
+package com.amitinside.featureflags.provider;
+
+import com.amitinside.featureflags.provider.ManagerHelper.Feature;
+
+/**
+ * Global override that forces all non-essential features to be disabled.
+ *
+ * <p>
+ * The state is encoded in a single epoch that gets incremented whenever the
+ * kill switch is engaged or released. An odd epoch denotes an engaged kill
+ * switch. Every evaluation therefore costs exactly one volatile read and
+ * consumers can detect that the kill switch has been flipped in between by
+ * comparing epochs.
+ * </p>
+ *
+ * @ThreadSafe
+ */
+public final class KillSwitch {
+
+    /** The override epoch -> odd if engaged, even if released */
+    private volatile long epoch;
+
+    /**
+     * Engages the kill switch if it is not yet engaged
+     *
+     * @return {@code true} if the kill switch has been flipped, otherwise
+     *         {@code false}
+     */
+    public synchronized boolean engage() {
+        if (isEngaged(epoch)) {
+            return false;
+        }
+        epoch++;
+        return true;
+    }
+
+    /**
+     * Releases the kill switch if it is engaged
+     *
+     * @return {@code true} if the kill switch has been flipped, otherwise
+     *         {@code false}
+     */
+    public synchronized boolean release() {
+        if (!isEngaged(epoch)) {
+            return false;
+        }
+        epoch++;
+        return true;
+    }
+
+    /**
+     * Returns the current epoch
+     *
+     * @return the epoch
+     */
+    public long epoch() {
+        return epoch;
+    }
+
+    /**
+     * Checks whether the kill switch is engaged
+     *
+     * @return {@code true} if engaged, otherwise {@code false}
+     */
+    public boolean isEngaged() {
+        return isEngaged(epoch);
+    }
+
+    /**
+     * Checks whether the kill switch is engaged in the specified epoch
+     *
+     * @param epoch the epoch to check
+     * @return {@code true} if engaged, otherwise {@code false}
+     */
+    public static boolean isEngaged(final long epoch) {
+        return (epoch & 1) == 1;
+    }
+
+    /**
+     * Returns the effective enablement of the specified feature in the specified
+     * epoch
+     *
+     * @param feature the feature to check
+     * @param epoch the epoch to evaluate in
+     * @return {@code true} if the feature is effectively enabled, otherwise
+     *         {@code false}
+     */
+    public static boolean isEnabled(final Feature feature, final long epoch) {
+        return feature.isEnabled && (feature.isEssential || !isEngaged(epoch));
+    }
+
+}
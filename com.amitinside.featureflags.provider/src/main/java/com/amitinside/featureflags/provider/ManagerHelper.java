@@ -1,35 +1,47 @@
 package com.amitinside.featureflags.provider;
 
+import static com.amitinside.featureflags.api.FeatureManager.METATYPE_COMPOSITE_FEATURE_ID_PREFIX;
+import static com.amitinside.featureflags.api.FeatureManager.METATYPE_ESSENTIAL_FEATURE_ID_PREFIX;
 import static com.amitinside.featureflags.api.FeatureManager.METATYPE_FEATURE_ID_PREFIX;
 import static java.util.Objects.requireNonNull;
 import static java.util.stream.Collectors.toMap;
+import static org.osgi.service.metatype.AttributeDefinition.INTEGER;
+import static org.osgi.service.metatype.AttributeDefinition.LONG;
+import static org.osgi.service.metatype.AttributeDefinition.STRING;
 import static org.osgi.service.metatype.ObjectClassDefinition.ALL;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Dictionary;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Function;
 
-import org.apache.felix.utils.collections.DictionaryAsMap;
 import org.osgi.framework.Bundle;
-import org.osgi.service.cm.Configuration;
-import org.osgi.service.cm.ConfigurationAdmin;
 import org.osgi.service.metatype.AttributeDefinition;
 import org.osgi.service.metatype.MetaTypeInformation;
 import org.osgi.service.metatype.MetaTypeService;
 import org.osgi.service.metatype.ObjectClassDefinition;
 
+import com.amitinside.featureflags.api.FeatureChangeEvent;
 import com.amitinside.featureflags.api.FeatureDTO;
+import com.amitinside.featureflags.api.FeatureStatsDTO;
+import com.amitinside.featureflags.provider.FeatureMetadataCache.Metadata;
 
 /**
  * Feature Manager Helper class
  */
 public final class ManagerHelper {
 
+    /** The resolution of the last evaluation timestamp in milliseconds */
+    private static final long EVALUATION_TIMESTAMP_RESOLUTION = 1000L;
+
     /** Constructor */
     private ManagerHelper() {
         throw new IllegalAccessError("Non-Instantiable");
@@ -41,15 +53,80 @@ public final class ManagerHelper {
         }
     }
 
+    /**
+     * Creates daemon threads with the specified name such that the executors of
+     * the feature manager never keep the framework from shutting down
+     */
+    public static ThreadFactory namedDaemonThreads(final String name) {
+        requireNonNull(name, "Thread name cannot be null");
+        return runnable -> {
+            final Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
     /**
      * Placeholder for Feature DTO. Used for internal purposes.
+     *
+     * <p>
+     * The states that are updated by configurations, overrides and circuit
+     * breakers after the feature has been registered are volatile since the
+     * updates are applied by the executors of the feature manager whereas the
+     * features are evaluated by arbitrary threads without any lock.
+     * </p>
      */
     public static class Feature {
-        public String  id;
-        public long    bundleId;
-        public String  name;
-        public String  description;
-        public boolean isEnabled;
+        public String           id;
+        public String           pid;
+        public long             bundleId;
+        /** The names and descriptions are loaded lazily from the bundle */
+        public Bundle           bundle;
+        public volatile boolean isEnabled;
+        public volatile String  expression;
+        public volatile boolean isEssential;
+
+        /** The states declared by the attribute definitions */
+        public boolean          isEnabledByDefault;
+        public String           defaultExpression;
+        public boolean          isEssentialByDefault;
+
+        /** The state of the last applied configuration (null until applied) */
+        public volatile Boolean configuredState;
+
+        /** The type, options and default of a multivariate feature */
+        public int              variantType;
+        public String[]         variantOptions;
+        public String           defaultVariant;
+        /** The slot of the variant in the variant table (-1 if not allocated) */
+        public volatile int     variantSlot  = -1;
+
+        /** Striped evaluation counter to keep concurrent lookups contention-free */
+        public final LongAdder  evaluations  = new LongAdder();
+        public volatile long    lastEvaluated;
+        public final long       trackedSince = System.currentTimeMillis();
+
+        public boolean isComposite() {
+            return expression != null;
+        }
+
+        public boolean isMultivariate() {
+            return defaultVariant != null;
+        }
+
+        public boolean isConfiguredEnabled() {
+            return configuredState != null ? configuredState : isEnabledByDefault;
+        }
+
+        public void recordEvaluation() {
+            evaluations.increment();
+            final long now = System.currentTimeMillis();
+            // the timestamp is only written once per resolution to avoid
+            // contending on the same cache line for every single evaluation
+            if (now - lastEvaluated >= EVALUATION_TIMESTAMP_RESOLUTION) {
+                lastEvaluated = now;
+            }
+        }
     }
 
     public static String getFeatureID(final String id) {
@@ -57,35 +134,158 @@ public final class ManagerHelper {
         return id.substring(METATYPE_FEATURE_ID_PREFIX.length(), id.length());
     }
 
-    public static FeatureDTO toFeatureDTO(final Feature f) {
+    public static String getCompositeFeatureID(final String id) {
+        requireNonNull(id, "Composite Feature ID cannot be null");
+        return id.substring(METATYPE_COMPOSITE_FEATURE_ID_PREFIX.length(), id.length());
+    }
+
+    public static String getEssentialFeatureID(final String id) {
+        requireNonNull(id, "Essential Feature ID cannot be null");
+        return id.substring(METATYPE_ESSENTIAL_FEATURE_ID_PREFIX.length(), id.length());
+    }
+
+    public static boolean isFeature(final String id) {
+        return id.startsWith(METATYPE_FEATURE_ID_PREFIX) || id.startsWith(METATYPE_COMPOSITE_FEATURE_ID_PREFIX);
+    }
+
+    public static FeatureDTO toFeatureDTO(final Feature f, final long killSwitchEpoch, final Metadata metadata,
+            final String variant) {
         requireNonNull(f, "Feature cannot be null");
+        requireNonNull(metadata, "Metadata cannot be null");
         final FeatureDTO feature = new FeatureDTO();
         feature.id          = f.id;
         feature.bundleId    = f.bundleId;
-        feature.name        = f.name;
-        feature.description = f.description;
-        feature.isEnabled   = f.isEnabled;
+        feature.name        = metadata.name;
+        feature.description = metadata.description;
+        feature.isEnabled   = KillSwitch.isEnabled(f, killSwitchEpoch);
+        feature.expression  = f.expression;
+        feature.isEssential = f.isEssential;
+        feature.variant     = variant;
         return feature;
     }
 
-    public static Feature toFeature(final AttributeDefinition ad, final long bundleId) {
-        requireNonNull(ad, "Attribute Definition cannot be null");
+    public static FeatureStatsDTO toFeatureStatsDTO(final Feature f) {
+        requireNonNull(f, "Feature cannot be null");
+        final FeatureStatsDTO stats = new FeatureStatsDTO();
+        stats.id              = f.id;
+        stats.bundleId        = f.bundleId;
+        stats.evaluationCount = f.evaluations.sum();
+        stats.lastEvaluated   = f.lastEvaluated;
+        stats.trackedSince    = f.trackedSince;
+        return stats;
+    }
 
-        final Feature feature = new Feature();
-        feature.id = getFeatureID(ad.getID());
+    public static FeatureChangeEvent toFeatureChangeEvent(final Feature f, final FeatureChangeEvent.Type type,
+            final long killSwitchEpoch) {
+        requireNonNull(f, "Feature cannot be null");
+        requireNonNull(type, "Type cannot be null");
+        final FeatureChangeEvent event = new FeatureChangeEvent();
+        event.type      = type;
+        event.id        = f.id;
+        event.bundleId  = f.bundleId;
+        event.isEnabled = KillSwitch.isEnabled(f, killSwitchEpoch);
+        event.timestamp = System.currentTimeMillis();
+        return event;
+    }
 
-        final String name = ad.getName();
-        feature.name        = name != null ? name : feature.id;
+    public static boolean isStale(final Feature f, final long idleMillis, final long now) {
+        requireNonNull(f, "Feature cannot be null");
+        return now - Math.max(f.lastEvaluated, f.trackedSince) > idleMillis;
+    }
 
-        feature.description = ad.getDescription();
+    /**
+     * Checks whether the specified features are declared identically, that is,
+     * whether they only differ in their current states
+     */
+    public static boolean isSameDefinition(final Feature f1, final Feature f2) {
+        requireNonNull(f1, "Feature cannot be null");
+        requireNonNull(f2, "Feature cannot be null");
+        return f1.id.equals(f2.id) && f1.isEnabledByDefault == f2.isEnabledByDefault
+                && f1.isEssentialByDefault == f2.isEssentialByDefault
+                && Objects.equals(f1.defaultExpression, f2.defaultExpression) && f1.variantType == f2.variantType
+                && Arrays.equals(f1.variantOptions, f2.variantOptions)
+                && Objects.equals(f1.defaultVariant, f2.defaultVariant);
+    }
 
+    public static Feature toFeature(final AttributeDefinition ad, final long bundleId) {
+        requireNonNull(ad, "Attribute Definition cannot be null");
+
+        final Feature  feature      = new Feature();
+        final String   id           = ad.getID();
         final String[] defaultValue = ad.getDefaultValue();
-        feature.isEnabled = defaultValue == null ? false : Boolean.valueOf(defaultValue[0]);
+        if (id.startsWith(METATYPE_COMPOSITE_FEATURE_ID_PREFIX)) {
+            feature.id         = getCompositeFeatureID(id);
+            // evaluated as soon as the composite feature gets compiled
+            feature.expression = defaultValue == null ? Boolean.FALSE.toString() : defaultValue[0];
+        } else if (isMultivariate(ad.getType())) {
+            feature.id             = getFeatureID(id);
+            // multivariate features are always served with one of their variants
+            feature.isEnabled      = true;
+            feature.variantType    = ad.getType();
+            feature.variantOptions = ad.getOptionValues();
+            feature.defaultVariant = getDefaultVariant(feature, defaultValue);
+        } else {
+            feature.id        = getFeatureID(id);
+            feature.isEnabled = defaultValue == null ? false : Boolean.valueOf(defaultValue[0]);
+        }
+        feature.isEnabledByDefault = feature.isEnabled;
+        feature.defaultExpression  = feature.expression;
 
-        feature.bundleId  = bundleId;
+        feature.bundleId = bundleId;
         return feature;
     }
 
+    /**
+     * Checks whether features of the specified attribute definition type are
+     * multivariate
+     */
+    public static boolean isMultivariate(final int type) {
+        return type == STRING || type == INTEGER || type == LONG;
+    }
+
+    /**
+     * Converts the specified configured value to a variant of the specified
+     * multivariate feature
+     *
+     * @return the variant or {@code null} if the value is not a valid variant
+     */
+    public static String toVariant(final Feature feature, final Object value) {
+        requireNonNull(feature, "Feature cannot be null");
+
+        if (value == null || value instanceof Boolean) {
+            return null;
+        }
+        String variant = String.valueOf(value);
+        try {
+            if (feature.variantType == INTEGER) {
+                variant = String.valueOf(Integer.parseInt(variant.trim()));
+            } else if (feature.variantType == LONG) {
+                variant = String.valueOf(Long.parseLong(variant.trim()));
+            }
+        } catch (final NumberFormatException e) {
+            return null;
+        }
+        if (feature.variantOptions != null && feature.variantOptions.length > 0
+                && !Arrays.asList(feature.variantOptions)
+                        .contains(variant)) {
+            return null;
+        }
+        return variant;
+    }
+
+    private static String getDefaultVariant(final Feature feature, final String[] defaultValue) {
+        if (defaultValue != null && defaultValue.length > 0) {
+            final String variant = toVariant(feature, defaultValue[0]);
+            if (variant != null) {
+                return variant;
+            }
+        }
+        if (feature.variantOptions != null && feature.variantOptions.length > 0) {
+            return feature.variantOptions[0];
+        }
+        return feature.variantType == STRING ? "" : "0";
+    }
+
     public static List<String> getPIDs(final Bundle bundle, final MetaTypeService metaTypeService) {
         requireNonNull(bundle, "Bundle Instance cannot be null");
         requireNonNull(metaTypeService, "MetaType Service Instance cannot be null");
@@ -96,12 +296,17 @@ public final class ManagerHelper {
 
     public static List<AttributeDefinition> getAttributeDefinitions(final Bundle bundle, final String pid,
             final MetaTypeService metaTypeService) {
+        return getAttributeDefinitions(bundle, pid, null, metaTypeService);
+    }
+
+    public static List<AttributeDefinition> getAttributeDefinitions(final Bundle bundle, final String pid,
+            final String locale, final MetaTypeService metaTypeService) {
         requireNonNull(bundle, "Bundle Instance cannot be null");
         requireNonNull(pid, "Configuration PID cannot be null");
         requireNonNull(metaTypeService, "MetaType Service Instance cannot be null");
 
         final MetaTypeInformation   metaTypeInformation = metaTypeService.getMetaTypeInformation(bundle);
-        final ObjectClassDefinition ocd                 = metaTypeInformation.getObjectClassDefinition(pid, null);
+        final ObjectClassDefinition ocd                 = metaTypeInformation.getObjectClassDefinition(pid, locale);
         return asList(ocd.getAttributeDefinitions(ALL));
     }
 
@@ -112,32 +317,82 @@ public final class ManagerHelper {
         requireNonNull(metaTypeService, "MetaType Service Instance cannot be null");
 
         final Map<String, List<Feature>> allFeatures = new HashMap<>();
+        final Map<String, Boolean>       essentials  = new HashMap<>();
         for (final AttributeDefinition ad : getAttributeDefinitions(bundle, pid, metaTypeService)) {
-            if (ad.getID()
-                    .startsWith(METATYPE_FEATURE_ID_PREFIX)) {
+            final String id = ad.getID();
+            if (isFeature(id)) {
                 List<Feature> features = null;
                 features = allFeatures.computeIfAbsent(pid, f -> new ArrayList<>());
-                features.add(toFeature(ad, bundle.getBundleId()));
+                final Feature feature = toFeature(ad, bundle.getBundleId());
+                feature.pid    = pid;
+                feature.bundle = bundle;
+                features.add(feature);
+            } else if (id.startsWith(METATYPE_ESSENTIAL_FEATURE_ID_PREFIX)) {
+                final String[] defaultValue = ad.getDefaultValue();
+                essentials.put(getEssentialFeatureID(id),
+                        defaultValue == null ? false : Boolean.valueOf(defaultValue[0]));
             }
         }
+        allFeatures.getOrDefault(pid, Collections.emptyList())
+                .forEach(f -> f.isEssential = f.isEssentialByDefault = essentials.getOrDefault(f.id, false));
         return allFeatures;
     }
 
-    public static Map<String, Boolean> getConfiguredFeatures(final String configurationPID,
-            final ConfigurationAdmin configurationAdmin) {
-        try {
-            final Configuration       configuration = configurationAdmin.getConfiguration(configurationPID, "?");
-            final Map<String, Object> properties    = new DictionaryAsMap<>(configuration.getProperties());
-            return properties.entrySet()
-                    .stream()
-                    .filter(e -> e.getKey()
-                            .startsWith(METATYPE_FEATURE_ID_PREFIX))
-                    .filter(e -> e.getValue() instanceof Boolean)
-                    .collect(toMap(e -> getFeatureID(e.getKey()), e -> (Boolean) e.getValue()));
-        } catch (final Exception e) {
-            // never occur since configuration location check has been ignored
+    public static Map<String, Boolean> getConfiguredFeatures(final Map<String, Object> properties) {
+        return properties.entrySet()
+                .stream()
+                .filter(e -> e.getKey()
+                        .startsWith(METATYPE_FEATURE_ID_PREFIX))
+                .filter(e -> e.getValue() instanceof Boolean)
+                .collect(toMap(e -> getFeatureID(e.getKey()), e -> (Boolean) e.getValue()));
+    }
+
+    public static Map<String, Object> getConfiguredVariants(final Map<String, Object> properties) {
+        return properties.entrySet()
+                .stream()
+                .filter(e -> e.getKey()
+                        .startsWith(METATYPE_FEATURE_ID_PREFIX))
+                .filter(e -> e.getValue() != null && !(e.getValue() instanceof Boolean))
+                .collect(toMap(e -> getFeatureID(e.getKey()), Map.Entry::getValue));
+    }
+
+    public static Map<String, Boolean> getConfiguredEssentials(final Map<String, Object> properties) {
+        return properties.entrySet()
+                .stream()
+                .filter(e -> e.getKey()
+                        .startsWith(METATYPE_ESSENTIAL_FEATURE_ID_PREFIX))
+                .filter(e -> e.getValue() instanceof Boolean)
+                .collect(toMap(e -> getEssentialFeatureID(e.getKey()), e -> (Boolean) e.getValue()));
+    }
+
+    public static Map<String, String> getConfiguredExpressions(final Map<String, Object> properties) {
+        return properties.entrySet()
+                .stream()
+                .filter(e -> e.getKey()
+                        .startsWith(METATYPE_COMPOSITE_FEATURE_ID_PREFIX))
+                .filter(e -> e.getValue() instanceof String)
+                .collect(toMap(e -> getCompositeFeatureID(e.getKey()), e -> (String) e.getValue()));
+    }
+
+    /**
+     * Returns the configuration properties that restore the states declared by
+     * the attribute definitions of the specified features
+     */
+    public static Map<String, Object> getDefaultProperties(final Collection<Feature> features) {
+        requireNonNull(features, "Features cannot be null");
+
+        final Map<String, Object> properties = new HashMap<>();
+        for (final Feature feature : features) {
+            if (feature.isComposite()) {
+                properties.put(METATYPE_COMPOSITE_FEATURE_ID_PREFIX + feature.id, feature.defaultExpression);
+            } else if (feature.isMultivariate()) {
+                properties.put(METATYPE_FEATURE_ID_PREFIX + feature.id, feature.defaultVariant);
+            } else {
+                properties.put(METATYPE_FEATURE_ID_PREFIX + feature.id, feature.isEnabledByDefault);
+            }
+            properties.put(METATYPE_ESSENTIAL_FEATURE_ID_PREFIX + feature.id, feature.isEssentialByDefault);
         }
-        return Collections.emptyMap();
+        return properties;
     }
 
     public static Map<String, Object> asMap(final Dictionary<String, Object> dictionary) {
@@ -1,22 +1,33 @@
 package com.amitinside.featureflags.provider;
 
+import static com.amitinside.featureflags.provider.FeatureEventLog.Type.BUNDLE_EXTENDED;
 import static com.amitinside.featureflags.provider.ManagerHelper.getFeaturesFromAttributeDefinitions;
 import static com.amitinside.featureflags.provider.ManagerHelper.getPIDs;
+import static com.amitinside.featureflags.provider.ManagerHelper.isSameDefinition;
 import static java.util.Objects.requireNonNull;
-import static org.apache.felix.utils.log.Logger.LOG_DEBUG;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static org.apache.felix.utils.log.Logger.LOG_ERROR;
 import static org.apache.felix.utils.log.Logger.LOG_WARNING;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 
 import org.apache.felix.utils.extender.AbstractExtender;
 import org.apache.felix.utils.extender.Extension;
 import org.apache.felix.utils.extender.SimpleExtension;
 import org.apache.felix.utils.log.Logger;
 import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.SynchronousBundleListener;
+import org.osgi.framework.startlevel.BundleStartLevel;
 import org.osgi.service.metatype.MetaTypeService;
 
 import com.amitinside.featureflags.provider.ManagerHelper.Feature;
@@ -31,39 +42,100 @@ import com.amitinside.featureflags.provider.ManagerHelper.Feature;
  * The extender guarantee that all extensions will be stopped synchronously with
  * the STOPPING event of a given bundle and that all extensions will be stopped
  * before the extender bundle is stopped.
+ *
+ * The features of a bundle that is stopped transiently while it remains
+ * persistently started, that is, due to an update or a refresh, are retained
+ * for a grace period. If the bundle gets started again within the grace period,
+ * the features are compared with the new attribute definitions such that only
+ * the changed features are added or removed whereas the unchanged features
+ * retain their current states. The features of a bundle that is stopped
+ * persistently or uninstalled are removed immediately.
  */
 public final class MetaTypeExtender extends AbstractExtender {
 
     /** Logger Instance */
-    private final Logger                     logger;
+    private final Logger                          logger;
+
+    /** Event Log Instance Reference */
+    private final FeatureEventLog                 eventLog;
 
     /** Metatype Service Instance Reference */
-    private final MetaTypeService            metaTypeService;
+    private final MetaTypeService                 metaTypeService;
 
     /** Data container -> Key: Bundle Instance Value: Configuration PID(s) */
-    private final Map<Bundle, List<String>>  bundlePIDs;
+    private final Map<Bundle, List<String>>       bundlePIDs;
 
     /** Data container -> Key: Configuration PID Value: Feature DTOs */
-    private final Map<String, List<Feature>> allFeatures;
+    private final Map<String, List<Feature>>      allFeatures;
+
+    /** Listener to be notified whenever the features of a bundle change */
+    private final FeatureRegistryListener         listener;
+
+    /** Executor removing the features of the stopped bundles */
+    private final ScheduledExecutorService        executor;
+
+    /** The duration in milliseconds for which the features of an updated bundle are retained */
+    private final long                            gracePeriod;
+
+    /** Key: Stopped Bundle Value: Pending removal of the features of the bundle */
+    private final Map<Bundle, ScheduledFuture<?>> pendingRemovals   = new HashMap<>();
+
+    /** Removes the retained features of an uninstalled bundle immediately */
+    private final SynchronousBundleListener       uninstallListener = this::removeUninstalled;
 
     /**
      * Constructor
      *
      * @param metaTypeService {@link MetaTypeService} instance
+     * @param logger the logger of the warnings and errors
+     * @param eventLog the event log recording the processed bundles
      * @param bundlePIDs container to store all configuration PIDs associated
      *            in a bundle's metatype
      * @param allFeatures container to store all configuration PIDs in the
      *            runtime
+     * @param listener the listener to be notified whenever the features of a
+     *            bundle get added, removed or updated
+     * @param executor the executor removing the features of the stopped
+     *            bundles once the grace period has elapsed
+     * @param gracePeriod the duration in milliseconds for which the features of
+     *            an updated or refreshed bundle are retained (0 to remove them
+     *            immediately)
      *
      * @throws NullPointerException if any of the specified arguments is
      *             {@code null}
      */
     public MetaTypeExtender(final MetaTypeService metaTypeService, final Logger logger,
-            final Map<Bundle, List<String>> bundlePIDs, final Map<String, List<Feature>> allFeatures) {
+            final FeatureEventLog eventLog, final Map<Bundle, List<String>> bundlePIDs,
+            final Map<String, List<Feature>> allFeatures, final FeatureRegistryListener listener,
+            final ScheduledExecutorService executor, final long gracePeriod) {
         this.logger          = requireNonNull(logger, "Logger instance cannot be null");
+        this.eventLog        = requireNonNull(eventLog, "Event log instance cannot be null");
         this.metaTypeService = requireNonNull(metaTypeService, "MetaTypeService instance cannot be null");
         this.bundlePIDs      = requireNonNull(bundlePIDs, "Bundle PIDs map instance cannot be null");
         this.allFeatures     = requireNonNull(allFeatures, "All features map instance cannot be null");
+        this.listener        = requireNonNull(listener, "Feature registry listener instance cannot be null");
+        this.executor        = requireNonNull(executor, "Executor instance cannot be null");
+        this.gracePeriod     = gracePeriod;
+    }
+
+    @Override
+    public void start(final BundleContext context) throws Exception {
+        context.addBundleListener(uninstallListener);
+        super.start(context);
+    }
+
+    @Override
+    public void stop(final BundleContext context) throws Exception {
+        context.removeBundleListener(uninstallListener);
+        super.stop(context);
+        // the retained features are removed before the extender is stopped
+        synchronized (this) {
+            for (final Bundle bundle : new ArrayList<>(pendingRemovals.keySet())) {
+                pendingRemovals.remove(bundle)
+                        .cancel(false);
+                removeFeatures(bundle);
+            }
+        }
     }
 
     @Override
@@ -73,7 +145,7 @@ public final class MetaTypeExtender extends AbstractExtender {
 
     @Override
     protected void debug(final Bundle bundle, final String msg) {
-        logger.log(LOG_DEBUG, " [" + bundle.getSymbolicName() + "] " + msg);
+        eventLog.record(BUNDLE_EXTENDED, bundle.getSymbolicName(), msg, bundle.getBundleId());
     }
 
     @Override
@@ -86,6 +158,134 @@ public final class MetaTypeExtender extends AbstractExtender {
         logger.log(LOG_ERROR, msg, t);
     }
 
+    private synchronized void addFeatures(final Bundle bundle) {
+        final ScheduledFuture<?> pendingRemoval = pendingRemovals.remove(bundle);
+        if (pendingRemoval != null) {
+            pendingRemoval.cancel(false);
+            updateFeatures(bundle);
+            return;
+        }
+        final List<Feature> added = new ArrayList<>();
+        for (final String pid : getPIDs(bundle, metaTypeService)) {
+            final Map<String, List<Feature>> featuresFromADs = getFeaturesFromAttributeDefinitions(bundle, pid,
+                    metaTypeService);
+            allFeatures.putAll(featuresFromADs);
+            featuresFromADs.values()
+                    .forEach(added::addAll);
+            bundlePIDs.computeIfAbsent(bundle, p -> new ArrayList<>())
+                    .add(pid);
+        }
+        listener.featuresAdded(bundle, added);
+    }
+
+    /**
+     * Compares the retained features of the specified restarted bundle with its
+     * current attribute definitions
+     */
+    private void updateFeatures(final Bundle bundle) {
+        final List<Feature> added   = new ArrayList<>();
+        final List<Feature> removed = new ArrayList<>();
+        final List<String>  oldPIDs = bundlePIDs.getOrDefault(bundle, Collections.emptyList());
+        final List<String>  newPIDs = new ArrayList<>();
+        for (final String pid : getPIDs(bundle, metaTypeService)) {
+            final List<Feature> newFeatures = getFeaturesFromAttributeDefinitions(bundle, pid, metaTypeService)
+                    .getOrDefault(pid, Collections.emptyList());
+            final List<Feature> oldFeatures = oldPIDs.contains(pid)
+                    ? allFeatures.getOrDefault(pid, Collections.emptyList())
+                    : Collections.emptyList();
+            final List<Feature> features    = new ArrayList<>(newFeatures.size());
+            for (final Feature newFeature : newFeatures) {
+                final Feature oldFeature = find(oldFeatures, newFeature.id);
+                if (oldFeature != null && isSameDefinition(oldFeature, newFeature)) {
+                    features.add(oldFeature);
+                } else {
+                    features.add(newFeature);
+                    added.add(newFeature);
+                }
+            }
+            for (final Feature oldFeature : oldFeatures) {
+                if (!features.contains(oldFeature)) {
+                    removed.add(oldFeature);
+                }
+            }
+            if (features.isEmpty()) {
+                allFeatures.remove(pid);
+            } else {
+                allFeatures.put(pid, features);
+            }
+            newPIDs.add(pid);
+        }
+        for (final String pid : oldPIDs) {
+            if (!newPIDs.contains(pid)) {
+                final List<Feature> features = allFeatures.remove(pid);
+                if (features != null) {
+                    removed.addAll(features);
+                }
+            }
+        }
+        bundlePIDs.put(bundle, newPIDs);
+        listener.featuresUpdated(bundle, added, removed);
+    }
+
+    private synchronized void retainFeatures(final Bundle bundle) {
+        if (gracePeriod > 0 && isPersistentlyStarted(bundle)) {
+            try {
+                pendingRemovals.put(bundle, executor.schedule(() -> expireFeatures(bundle), gracePeriod, MILLISECONDS));
+                return;
+            } catch (final RejectedExecutionException e) {
+                // the feature manager is being deactivated
+            }
+        }
+        removeFeatures(bundle);
+    }
+
+    private void removeUninstalled(final BundleEvent event) {
+        if (event.getType() == BundleEvent.UNINSTALLED) {
+            expireFeatures(event.getBundle());
+        }
+    }
+
+    private synchronized void expireFeatures(final Bundle bundle) {
+        // the bundle might have been restarted in the meantime
+        if (pendingRemovals.remove(bundle) != null) {
+            removeFeatures(bundle);
+        }
+    }
+
+    private void removeFeatures(final Bundle bundle) {
+        final List<Feature>      removed = new ArrayList<>();
+        final Collection<String> pids    = bundlePIDs.getOrDefault(bundle, Collections.emptyList());
+        for (final String pid : pids) {
+            final List<Feature> features = allFeatures.remove(pid);
+            if (features != null) {
+                removed.addAll(features);
+            }
+        }
+        bundlePIDs.remove(bundle);
+        listener.featuresRemoved(bundle, removed);
+    }
+
+    /**
+     * Checks whether the specified stopping bundle is going to be started again,
+     * that is, whether it is stopped transiently by an update or a refresh
+     */
+    private static boolean isPersistentlyStarted(final Bundle bundle) {
+        if (bundle.getState() == Bundle.UNINSTALLED) {
+            return false;
+        }
+        final BundleStartLevel startLevel = bundle.adapt(BundleStartLevel.class);
+        return startLevel != null && startLevel.isPersistentlyStarted();
+    }
+
+    private static Feature find(final List<Feature> features, final String featureID) {
+        for (final Feature feature : features) {
+            if (feature.id.equals(featureID)) {
+                return feature;
+            }
+        }
+        return null;
+    }
+
     private class MetaTypeExtension extends SimpleExtension {
         private final Bundle bundle;
 
@@ -96,20 +296,12 @@ public final class MetaTypeExtender extends AbstractExtender {
 
         @Override
         protected void doStart() throws Exception {
-            for (final String pid : getPIDs(bundle, metaTypeService)) {
-                final Map<String, List<Feature>> featuresFromADs = getFeaturesFromAttributeDefinitions(bundle, pid,
-                        metaTypeService);
-                allFeatures.putAll(featuresFromADs);
-                bundlePIDs.computeIfAbsent(bundle, p -> new ArrayList<>())
-                        .add(pid);
-            }
+            addFeatures(bundle);
         }
 
         @Override
         protected void doDestroy() throws Exception {
-            final Collection<String> pids = bundlePIDs.get(bundle);
-            pids.forEach(allFeatures::remove);
-            bundlePIDs.remove(bundle);
+            retainFeatures(bundle);
         }
     }
 
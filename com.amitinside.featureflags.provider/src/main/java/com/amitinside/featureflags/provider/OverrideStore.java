@@ -0,0 +1,227 @@
+package com.amitinside.featureflags.provider;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.util.Objects.requireNonNull;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * In-memory store of the feature states that have been updated without going
+ * through the {@code ConfigurationAdmin}.
+ *
+ * <p>
+ * The overrides take effect immediately and take precedence over the
+ * configured states. Depending on the {@link Durability}, they are persisted in
+ * batches to a compact file and eventually written to the configurations,
+ * whereupon they are removed from the store. An override is discarded as well
+ * once the configured state of its feature changes or the feature is updated
+ * in a specific configuration.
+ * </p>
+ *
+ * <p>
+ * The file consists of the number of overrides followed by the feature ID and
+ * the state of every override. It is replaced atomically on every flush.
+ * </p>
+ *
+ * @ThreadSafe
+ */
+public final class OverrideStore {
+
+    /** The version of the file format */
+    private static final int           FORMAT_VERSION = 1;
+
+    /** The file to persist the overrides to (null if not persisted) */
+    private final File                 file;
+
+    /** Key: Feature ID Value: Overridden state */
+    private final Map<String, Boolean> overrides      = new ConcurrentHashMap<>();
+
+    /** The flag denoting whether the overrides have changed since the last flush */
+    private final AtomicBoolean        isDirty        = new AtomicBoolean();
+
+    /**
+     * Constructor
+     *
+     * @param file the file to persist the overrides to or {@code null} to keep
+     *            them in memory only
+     */
+    public OverrideStore(final File file) {
+        this.file = file;
+    }
+
+    /**
+     * Loads the overrides persisted in the file (if any)
+     *
+     * @throws IOException if the file cannot be read
+     */
+    public synchronized void load() throws IOException {
+        if (file == null || !file.isFile()) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            final int version = in.readInt();
+            if (version != FORMAT_VERSION) {
+                throw new IOException(String.format("Unsupported override file version [%d]", version));
+            }
+            final int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                overrides.put(in.readUTF(), in.readBoolean());
+            }
+        }
+    }
+
+    /**
+     * Overrides the state of the specified feature
+     *
+     * @param featureID the feature ID
+     * @param isEnabled the state
+     *
+     * @throws NullPointerException if {@code featureID} is {@code null}
+     */
+    public void put(final String featureID, final boolean isEnabled) {
+        requireNonNull(featureID, "Feature ID cannot be null");
+
+        overrides.put(featureID, isEnabled);
+        isDirty.set(true);
+    }
+
+    /**
+     * Returns the overridden state of the specified feature
+     *
+     * @param featureID the feature ID
+     * @return the overridden state or {@code null} if the feature is not
+     *         overridden
+     */
+    public Boolean get(final String featureID) {
+        return overrides.get(featureID);
+    }
+
+    /**
+     * Removes the override of the specified feature if it still has the
+     * specified state
+     *
+     * @param featureID the feature ID
+     * @param isEnabled the expected state
+     * @return {@code true} if the override has been removed, otherwise
+     *         {@code false}
+     */
+    public boolean remove(final String featureID, final boolean isEnabled) {
+        final boolean isRemoved = overrides.remove(featureID, isEnabled);
+        if (isRemoved) {
+            isDirty.set(true);
+        }
+        return isRemoved;
+    }
+
+    /**
+     * Removes the override of the specified feature regardless of its state
+     *
+     * @param featureID the feature ID
+     * @return {@code true} if the override has been removed, otherwise
+     *         {@code false}
+     */
+    public boolean remove(final String featureID) {
+        final boolean isRemoved = overrides.remove(featureID) != null;
+        if (isRemoved) {
+            isDirty.set(true);
+        }
+        return isRemoved;
+    }
+
+    /**
+     * Removes all overrides
+     *
+     * @return the IDs of the features whose overrides have been removed
+     */
+    public Set<String> clear() {
+        final Set<String> removed = new HashSet<>();
+        for (final String featureID : overrides.keySet()) {
+            if (overrides.remove(featureID) != null) {
+                removed.add(featureID);
+            }
+        }
+        if (!removed.isEmpty()) {
+            isDirty.set(true);
+        }
+        return removed;
+    }
+
+    /**
+     * Returns a snapshot of all overrides
+     *
+     * @return Key: Feature ID Value: Overridden state
+     */
+    public Map<String, Boolean> getOverrides() {
+        return Collections.unmodifiableMap(new HashMap<>(overrides));
+    }
+
+    /**
+     * Persists the overrides to the file if they have changed since the last
+     * flush. The file is synced to the storage device before it replaces the
+     * previous one.
+     *
+     * @return {@code true} if the file has been written, otherwise
+     *         {@code false}
+     * @throws IOException if the file cannot be written
+     */
+    public synchronized boolean flush() throws IOException {
+        if (file == null || !isDirty.getAndSet(false)) {
+            return false;
+        }
+        final Map<String, Boolean> snapshot = new HashMap<>(overrides);
+        final File                 temp     = new File(file.getPath() + ".tmp");
+        try {
+            try (FileOutputStream fileOut = new FileOutputStream(temp);
+                    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut))) {
+                out.writeInt(FORMAT_VERSION);
+                out.writeInt(snapshot.size());
+                for (final Entry<String, Boolean> entry : snapshot.entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    out.writeBoolean(entry.getValue());
+                }
+                out.flush();
+                fileOut.getFD()
+                        .sync();
+            }
+            Files.move(temp.toPath(), file.toPath(), REPLACE_EXISTING, ATOMIC_MOVE);
+        } catch (final IOException e) {
+            // the overrides are written with the next flush
+            isDirty.set(true);
+            throw e;
+        }
+        return true;
+    }
+
+    /**
+     * The guarantees for the persistence of the overrides
+     */
+    public enum Durability {
+        /** The overrides are kept in memory only and get lost on restart */
+        MEMORY,
+        /** The overrides are persisted in batches to a file in the bundle data area */
+        FILE,
+        /**
+         * The overrides are persisted in batches to a file in the bundle data area
+         * and periodically written to the configurations
+         */
+        CONFIGURATION
+    }
+
+}
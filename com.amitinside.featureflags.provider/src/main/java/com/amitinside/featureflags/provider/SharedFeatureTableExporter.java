@@ -0,0 +1,235 @@
+package com.amitinside.featureflags.provider;
+
+import static com.amitinside.featureflags.provider.ManagerHelper.checkArgument;
+import static com.amitinside.featureflags.shared.SharedFeatureTable.BITS_CAPACITY_OFFSET;
+import static com.amitinside.featureflags.shared.SharedFeatureTable.BITS_OFFSET;
+import static com.amitinside.featureflags.shared.SharedFeatureTable.BYTE_ORDER;
+import static com.amitinside.featureflags.shared.SharedFeatureTable.COUNT_OFFSET;
+import static com.amitinside.featureflags.shared.SharedFeatureTable.GENERATION_OFFSET;
+import static com.amitinside.featureflags.shared.SharedFeatureTable.HEADER_SIZE;
+import static com.amitinside.featureflags.shared.SharedFeatureTable.LAYOUT_VERSION;
+import static com.amitinside.featureflags.shared.SharedFeatureTable.MAGIC;
+import static com.amitinside.featureflags.shared.SharedFeatureTable.MAGIC_OFFSET;
+import static com.amitinside.featureflags.shared.SharedFeatureTable.SLOTS_OFFSET;
+import static com.amitinside.featureflags.shared.SharedFeatureTable.SLOT_SIZE;
+import static com.amitinside.featureflags.shared.SharedFeatureTable.STRINGS_CAPACITY_OFFSET;
+import static com.amitinside.featureflags.shared.SharedFeatureTable.STRINGS_OFFSET;
+import static com.amitinside.featureflags.shared.SharedFeatureTable.SUPERSEDED_OFFSET;
+import static com.amitinside.featureflags.shared.SharedFeatureTable.VERSION_OFFSET;
+import static java.nio.channels.FileChannel.MapMode.READ_WRITE;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.util.Objects.requireNonNull;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+
+import com.amitinside.featureflags.shared.SharedFeatureTable;
+
+/**
+ * Mirrors the feature states into a memory-mapped file such that co-located
+ * processes can look up feature states without any remote call.
+ *
+ * <p>
+ * The file has a fixed layout as described in {@link SharedFeatureTable}.
+ * Every change of the feature states writes a new generation of the table to a
+ * temporary file which then atomically replaces the table. The previous
+ * generation is flagged as superseded afterwards such that readers map the new
+ * generation on their next lookup. A published table is therefore never
+ * modified concurrently to its readers.
+ * </p>
+ *
+ * <p>
+ * Creating an exporter publishes an empty table whose generation follows the
+ * generation of an existing table of the same layout.
+ * </p>
+ *
+ * @ThreadSafe
+ */
+public final class SharedFeatureTableExporter implements Closeable {
+
+    /** The average number of characters per feature ID the table is limited to */
+    private static final int        AVERAGE_ID_LENGTH = 64;
+
+    /** The maximum capacity that keeps the size of the table addressable by an int */
+    public static final int         MAX_CAPACITY      = 1 << 23;
+
+    private final Path              path;
+    private final Path              temporaryPath;
+    private final int               capacity;
+    private final int               stringCapacity;
+    private long                    generation;
+
+    /** The currently published table */
+    private MappedByteBuffer        current;
+
+    /** Key: Feature ID Value: State of the currently published table */
+    private Map<String, Boolean>    states            = Collections.emptyMap();
+
+    /**
+     * Constructor
+     *
+     * @param file the file to export to
+     * @param capacity the maximum number of distinct feature IDs
+     * @throws IOException if the table cannot be published
+     *
+     * @throws NullPointerException if {@code file} is {@code null}
+     * @throws IllegalArgumentException if {@code capacity} is not positive or
+     *             exceeds {@link #MAX_CAPACITY}
+     */
+    public SharedFeatureTableExporter(final File file, final int capacity) throws IOException {
+        requireNonNull(file, "File cannot be null");
+        checkArgument(capacity > 0, "Capacity must be positive");
+        checkArgument(capacity <= MAX_CAPACITY, "Capacity cannot exceed " + MAX_CAPACITY);
+
+        this.capacity  = capacity;
+        stringCapacity = capacity * AVERAGE_ID_LENGTH;
+        path           = file.toPath();
+        temporaryPath  = new File(file.getPath() + ".tmp").toPath();
+
+        if (file.length() >= HEADER_SIZE) {
+            try (RandomAccessFile existing = new RandomAccessFile(file, "rw")) {
+                final MappedByteBuffer buffer = existing.getChannel()
+                        .map(READ_WRITE, 0, HEADER_SIZE);
+                buffer.order(BYTE_ORDER);
+                // readers of a different layout would misinterpret the superseded flag
+                if (buffer.getInt(MAGIC_OFFSET) == MAGIC && buffer.getInt(VERSION_OFFSET) == LAYOUT_VERSION) {
+                    current    = buffer;
+                    generation = buffer.getLong(GENERATION_OFFSET);
+                }
+            }
+        }
+        publish(Collections.emptyMap());
+    }
+
+    /**
+     * Publishes a new table with the specified states
+     *
+     * @param states the states of all features (Key: Feature ID Value: State)
+     * @return {@code true} if the table has been published, {@code false} if the
+     *         features exceed the capacity of the table
+     * @throws IOException if the table cannot be published
+     */
+    public synchronized boolean export(final Map<String, Boolean> states) throws IOException {
+        long characters = 0;
+        for (final String featureID : states.keySet()) {
+            characters += featureID.length();
+        }
+        if (states.size() > capacity || characters > stringCapacity) {
+            return false;
+        }
+        publish(new LinkedHashMap<>(states));
+        return true;
+    }
+
+    /**
+     * Updates the states of already exported features and publishes a new table
+     * if any of the states has changed
+     *
+     * @param changed the changed states (Key: Feature ID Value: State)
+     * @return {@code true} if the states have been updated, {@code false} if any
+     *         of the features is not yet exported and the table therefore needs
+     *         to be rewritten
+     * @throws IOException if the table cannot be published
+     */
+    public synchronized boolean update(final Map<String, Boolean> changed) throws IOException {
+        if (!states.keySet()
+                .containsAll(changed.keySet())) {
+            return false;
+        }
+        boolean isChanged = false;
+        for (final Entry<String, Boolean> entry : changed.entrySet()) {
+            isChanged |= !Objects.equals(states.get(entry.getKey()), entry.getValue());
+        }
+        if (isChanged) {
+            final Map<String, Boolean> next = new LinkedHashMap<>(states);
+            next.putAll(changed);
+            publish(next);
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        current = null;
+        Files.deleteIfExists(temporaryPath);
+    }
+
+    /**
+     * Writes the specified states to the temporary file, atomically replaces the
+     * table with it and flags the previous table as superseded
+     */
+    private void publish(final Map<String, Boolean> next) throws IOException {
+        int characters = 0;
+        for (final String featureID : next.keySet()) {
+            characters += featureID.length();
+        }
+        final int slots         = SharedFeatureTable.slots(next.size());
+        final int bitCapacity   = (next.size() + 63) / 64;
+        final int stringsOffset = HEADER_SIZE + slots * SLOT_SIZE;
+        final int bitsOffset    = stringsOffset + characters * 2;
+        final int size          = Math.toIntExact(SharedFeatureTable.size(slots, characters, bitCapacity));
+
+        Files.deleteIfExists(temporaryPath);
+        final MappedByteBuffer buffer;
+        try (RandomAccessFile file = new RandomAccessFile(temporaryPath.toFile(), "rw")) {
+            file.setLength(size);
+            buffer = file.getChannel()
+                    .map(READ_WRITE, 0, size);
+        }
+        buffer.order(BYTE_ORDER);
+        buffer.putInt(MAGIC_OFFSET, MAGIC);
+        buffer.putInt(VERSION_OFFSET, LAYOUT_VERSION);
+        buffer.putLong(GENERATION_OFFSET, generation + 1);
+        buffer.putInt(SLOTS_OFFSET, slots);
+        buffer.putInt(COUNT_OFFSET, next.size());
+        buffer.putInt(STRINGS_OFFSET, stringsOffset);
+        buffer.putInt(STRINGS_CAPACITY_OFFSET, characters);
+        buffer.putInt(BITS_OFFSET, bitsOffset);
+        buffer.putInt(BITS_CAPACITY_OFFSET, bitCapacity);
+
+        final int mask         = slots - 1;
+        int       stringOffset = 0;
+        int       index        = 0;
+        for (final Entry<String, Boolean> entry : next.entrySet()) {
+            final String featureID = entry.getKey();
+            for (int i = 0; i < featureID.length(); i++) {
+                buffer.putChar(stringsOffset + (stringOffset + i) * 2, featureID.charAt(i));
+            }
+            final int hash = SharedFeatureTable.hash(featureID);
+            int       slot = hash & mask;
+            while (buffer.getInt(HEADER_SIZE + slot * SLOT_SIZE) != 0) {
+                slot = (slot + 1) & mask;
+            }
+            final int offset = HEADER_SIZE + slot * SLOT_SIZE;
+            buffer.putInt(offset, hash);
+            buffer.putInt(offset + 4, stringOffset);
+            buffer.putInt(offset + 8, featureID.length());
+            buffer.putInt(offset + 12, index);
+            if (entry.getValue()) {
+                final int bit = bitsOffset + (index >>> 6) * 8;
+                buffer.putLong(bit, buffer.getLong(bit) | 1L << (index & 63));
+            }
+            stringOffset += featureID.length();
+            index++;
+        }
+        Files.move(temporaryPath, path, ATOMIC_MOVE);
+
+        if (current != null) {
+            current.putInt(SUPERSEDED_OFFSET, 1);
+        }
+        current = buffer;
+        states  = next;
+        generation++;
+    }
+
+}
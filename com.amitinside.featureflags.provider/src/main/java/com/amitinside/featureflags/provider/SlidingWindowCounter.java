@@ -0,0 +1,120 @@
+package com.amitinside.featureflags.provider;
+
+import static com.amitinside.featureflags.provider.ManagerHelper.checkArgument;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the successful and failed calls within a sliding time window.
+ *
+ * <p>
+ * The window is divided into a fixed number of buckets whereby every bucket
+ * counts the calls of its time slice in striped counters. Recording a call
+ * therefore never contends on a single memory location. A bucket is reused
+ * once its time slice has left the window. Calls that are recorded
+ * concurrently with the reuse of their bucket might get lost which is
+ * acceptable for the purpose of estimating a failure rate.
+ * </p>
+ *
+ * @ThreadSafe
+ */
+public final class SlidingWindowCounter {
+
+    /** The number of buckets of the window */
+    private static final int      BUCKETS = 10;
+
+    /** The duration of the time slice of a bucket in milliseconds */
+    private final long            bucketDuration;
+
+    /** The successful calls -> Index: Bucket */
+    private final LongAdder[]     successes;
+
+    /** The failed calls -> Index: Bucket */
+    private final LongAdder[]     failures;
+
+    /** The time slices of the buckets -> Index: Bucket */
+    private final AtomicLongArray slices;
+
+    /**
+     * Constructor
+     *
+     * @param window the duration of the window in milliseconds
+     *
+     * @throws IllegalArgumentException if {@code window} is not positive
+     */
+    public SlidingWindowCounter(final long window) {
+        checkArgument(window > 0, "Window must be positive");
+        bucketDuration = Math.max(1, window / BUCKETS);
+        successes      = new LongAdder[BUCKETS];
+        failures       = new LongAdder[BUCKETS];
+        slices         = new AtomicLongArray(BUCKETS);
+        for (int i = 0; i < BUCKETS; i++) {
+            successes[i] = new LongAdder();
+            failures[i]  = new LongAdder();
+            slices.set(i, -1);
+        }
+    }
+
+    /**
+     * Records a call at the specified time
+     *
+     * @param isSuccess {@code true} if the call has succeeded, otherwise
+     *            {@code false}
+     * @param now the current time in milliseconds
+     */
+    public void record(final boolean isSuccess, final long now) {
+        final long slice  = now / bucketDuration;
+        final int  bucket = (int) (slice % BUCKETS);
+        final long last   = slices.get(bucket);
+        if (last != slice && slices.compareAndSet(bucket, last, slice)) {
+            successes[bucket].reset();
+            failures[bucket].reset();
+        }
+        (isSuccess ? successes : failures)[bucket].increment();
+    }
+
+    /**
+     * Returns the number of successful calls within the window
+     *
+     * @param now the current time in milliseconds
+     * @return the number of successful calls
+     */
+    public long getSuccesses(final long now) {
+        return sum(successes, now);
+    }
+
+    /**
+     * Returns the number of failed calls within the window
+     *
+     * @param now the current time in milliseconds
+     * @return the number of failed calls
+     */
+    public long getFailures(final long now) {
+        return sum(failures, now);
+    }
+
+    /**
+     * Discards all recorded calls
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            slices.set(i, -1);
+            successes[i].reset();
+            failures[i].reset();
+        }
+    }
+
+    private long sum(final LongAdder[] counters, final long now) {
+        final long current = now / bucketDuration;
+        long       sum     = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            final long slice = slices.get(i);
+            if (slice > current - BUCKETS && slice <= current) {
+                sum += counters[i].sum();
+            }
+        }
+        return sum;
+    }
+
+}
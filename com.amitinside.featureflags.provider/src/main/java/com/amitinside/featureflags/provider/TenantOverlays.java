@@ -0,0 +1,214 @@
+package com.amitinside.featureflags.provider;
+
+import static com.amitinside.featureflags.api.FeatureManager.METATYPE_FEATURE_ID_PREFIX;
+import static com.amitinside.featureflags.provider.ManagerHelper.checkArgument;
+import static com.amitinside.featureflags.provider.ManagerHelper.getConfiguredFeatures;
+import static java.util.Objects.requireNonNull;
+import static org.apache.felix.utils.log.Logger.LOG_ERROR;
+import static org.apache.felix.utils.log.Logger.LOG_WARNING;
+import static org.osgi.framework.Constants.SERVICE_PID;
+import static org.osgi.service.cm.ConfigurationAdmin.SERVICE_FACTORYPID;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.felix.utils.log.Logger;
+import org.osgi.service.cm.Configuration;
+import org.osgi.service.cm.ConfigurationAdmin;
+
+/**
+ * Maintains the per-tenant feature overrides on top of the feature registry.
+ *
+ * <p>
+ * Every tenant has a sparse layer that only contains the overridden features.
+ * The layers are immutable and replaced as a whole whenever they change
+ * (copy-on-write) such that an override can be looked up with two hash lookups
+ * and without any locking. Every layer is persisted in a factory configuration
+ * of {@link #FACTORY_PID} named after the tenant.
+ * </p>
+ *
+ * @ThreadSafe
+ */
+public final class TenantOverlays {
+
+    /** The factory PID of the tenant configurations */
+    public static final String                                FACTORY_PID     = "com.amitinside.featureflags.tenant";
+
+    /** The property of a tenant configuration denoting the tenant */
+    public static final String                                TENANT_PROPERTY = "tenant";
+
+    /** Logger Instance */
+    private final Logger                                      logger;
+
+    /** Configuration Admin Service Instance Reference */
+    private final ConfigurationAdmin                          configurationAdmin;
+
+    /** The maximum number of overrides per tenant */
+    private final int                                         capacity;
+
+    /** Layers -> Key: Tenant Value: (Key: Feature ID Value: Override) */
+    private final ConcurrentMap<String, Map<String, Boolean>> layers          = new ConcurrentHashMap<>();
+
+    /** Key: Configuration PID Value: Tenant */
+    private final ConcurrentMap<String, String>               tenants         = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor
+     *
+     * @param logger {@link Logger} instance
+     * @param configurationAdmin {@link ConfigurationAdmin} instance
+     * @param capacity the maximum number of overrides per tenant
+     *
+     * @throws NullPointerException if {@code logger} or
+     *             {@code configurationAdmin} is {@code null}
+     * @throws IllegalArgumentException if {@code capacity} is not positive
+     */
+    public TenantOverlays(final Logger logger, final ConfigurationAdmin configurationAdmin, final int capacity) {
+        this.logger             = requireNonNull(logger, "Logger instance cannot be null");
+        this.configurationAdmin = requireNonNull(configurationAdmin, "ConfigurationAdmin instance cannot be null");
+        checkArgument(capacity > 0, "Tenant overrides capacity must be positive");
+        this.capacity = capacity;
+    }
+
+    /**
+     * Loads the layers of all tenants from their configurations
+     */
+    public void load() {
+        try {
+            final Configuration[] configurations = configurationAdmin
+                    .listConfigurations("(" + SERVICE_FACTORYPID + "=" + FACTORY_PID + ")");
+            if (configurations != null) {
+                for (final Configuration configuration : configurations) {
+                    load(configuration);
+                }
+            }
+        } catch (final Exception e) {
+            logger.log(LOG_ERROR, "Cannot load the tenant configurations", e);
+        }
+    }
+
+    /**
+     * Reloads the layer of the tenant configuration with the specified PID
+     *
+     * @param pid the PID of the tenant configuration
+     */
+    public void configurationUpdated(final String pid) {
+        try {
+            final Configuration[] configurations = configurationAdmin
+                    .listConfigurations("(" + SERVICE_PID + "=" + pid + ")");
+            if (configurations != null && configurations.length == 1) {
+                load(configurations[0]);
+            }
+        } catch (final Exception e) {
+            logger.log(LOG_ERROR, String.format("Cannot load the tenant configuration [%s]", pid), e);
+        }
+    }
+
+    /**
+     * Removes the layer of the tenant configuration with the specified PID
+     *
+     * @param pid the PID of the tenant configuration
+     */
+    public void configurationDeleted(final String pid) {
+        final String tenant = tenants.remove(pid);
+        if (tenant != null) {
+            layers.remove(tenant);
+        }
+    }
+
+    /**
+     * Returns the override of the specified feature for the specified tenant
+     *
+     * @param tenant the tenant
+     * @param featureID the feature ID
+     * @return the override or {@code null} if the feature is not overridden
+     */
+    public Boolean getOverride(final String tenant, final String featureID) {
+        final Map<String, Boolean> layer = layers.get(tenant);
+        return layer == null ? null : layer.get(featureID);
+    }
+
+    /**
+     * Returns all overrides of the specified tenant
+     *
+     * @param tenant the tenant
+     * @return the unmodifiable overrides (Key: Feature ID Value: Override)
+     */
+    public Map<String, Boolean> getOverrides(final String tenant) {
+        return layers.getOrDefault(tenant, Collections.emptyMap());
+    }
+
+    /**
+     * Overrides the specified feature for the specified tenant and persists
+     * the layer of the tenant
+     *
+     * @param tenant the tenant
+     * @param featureID the feature ID
+     * @param isEnabled the override or {@code null} to remove the override
+     *
+     * @throws IllegalStateException if the tenant has reached the maximum
+     *             number of overrides
+     */
+    public synchronized void update(final String tenant, final String featureID, final Boolean isEnabled) {
+        final Map<String, Boolean> layer = layers.compute(tenant, (t, current) -> {
+            final Map<String, Boolean> overrides = current == null ? new HashMap<>() : new HashMap<>(current);
+            if (isEnabled == null) {
+                overrides.remove(featureID);
+            } else {
+                if (!overrides.containsKey(featureID) && overrides.size() >= capacity) {
+                    throw new IllegalStateException(
+                            String.format("Tenant [%s] has reached the maximum of [%d] overrides", tenant, capacity));
+                }
+                overrides.put(featureID, isEnabled);
+            }
+            return overrides.isEmpty() ? null : Collections.unmodifiableMap(overrides);
+        });
+        persist(tenant, layer == null ? Collections.emptyMap() : layer);
+    }
+
+    private void load(final Configuration configuration) {
+        final Map<String, Object> properties = ManagerHelper.asMap(configuration.getProperties());
+        final Object              tenant     = properties.get(TENANT_PROPERTY);
+        if (!(tenant instanceof String)) {
+            logger.log(LOG_WARNING,
+                    String.format("Tenant configuration [%s] does not specify a tenant", configuration.getPid()));
+            return;
+        }
+        final Map<String, Boolean> overrides = new HashMap<>(getConfiguredFeatures(properties));
+        if (overrides.size() > capacity) {
+            logger.log(LOG_WARNING, String.format("Tenant [%s] exceeds the maximum of [%d] overrides", tenant,
+                    capacity));
+            final Iterator<String> it = overrides.keySet()
+                    .iterator();
+            while (overrides.size() > capacity) {
+                it.next();
+                it.remove();
+            }
+        }
+        tenants.put(configuration.getPid(), (String) tenant);
+        if (overrides.isEmpty()) {
+            layers.remove(tenant);
+        } else {
+            layers.put((String) tenant, Collections.unmodifiableMap(overrides));
+        }
+    }
+
+    private void persist(final String tenant, final Map<String, Boolean> overrides) {
+        try {
+            final Configuration             configuration = configurationAdmin.getFactoryConfiguration(FACTORY_PID,
+                    tenant, "?");
+            final Hashtable<String, Object> properties    = new Hashtable<>();
+            properties.put(TENANT_PROPERTY, tenant);
+            overrides.forEach((id, isEnabled) -> properties.put(METATYPE_FEATURE_ID_PREFIX + id, isEnabled));
+            configuration.update(properties);
+        } catch (final Exception e) {
+            logger.log(LOG_ERROR, String.format("Cannot persist the overrides of tenant [%s]", tenant), e);
+        }
+    }
+
+}
@@ -0,0 +1,115 @@
+package com.amitinside.featureflags.provider;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory table of the feature states that are overridden for a limited
+ * time.
+ *
+ * <p>
+ * The overrides are never persisted and hence vanish on restart. An override
+ * is treated as absent as soon as its expiry has passed whereas removing it
+ * from the table is up to the caller such that the features can be restored
+ * to their configured states right away.
+ * </p>
+ *
+ * @ThreadSafe
+ */
+public final class TransientOverrides {
+
+    /** Key: Feature ID Value: Override */
+    private final Map<String, TimedState> overrides = new ConcurrentHashMap<>();
+
+    /**
+     * Overrides the state of the specified feature until the specified expiry
+     * whereby an existing override of the feature is replaced
+     *
+     * @param featureID the feature ID
+     * @param isEnabled the overridden state
+     * @param expiry the expiry in milliseconds since the epoch
+     *
+     * @throws NullPointerException if {@code featureID} is {@code null}
+     */
+    public void put(final String featureID, final boolean isEnabled, final long expiry) {
+        requireNonNull(featureID, "Feature ID cannot be null");
+        overrides.put(featureID, new TimedState(isEnabled, expiry));
+    }
+
+    /**
+     * Returns the override of the specified feature
+     *
+     * @param featureID the feature ID
+     * @param now the current time in milliseconds
+     * @return the overridden state or {@code null} if the feature is not
+     *         overridden or the override has expired
+     */
+    public Boolean get(final String featureID, final long now) {
+        final TimedState override = overrides.get(featureID);
+        return override == null || override.expiry <= now ? null : override.isEnabled;
+    }
+
+    /**
+     * Removes the override of the specified feature
+     *
+     * @param featureID the feature ID
+     * @return {@code true} if the feature has been overridden, otherwise
+     *         {@code false}
+     */
+    public boolean remove(final String featureID) {
+        return overrides.remove(featureID) != null;
+    }
+
+    /**
+     * Removes the override of the specified feature if it has expired. An
+     * override that has been replaced by a later one is retained.
+     *
+     * @param featureID the feature ID
+     * @param now the current time in milliseconds
+     * @return {@code true} if an expired override has been removed, otherwise
+     *         {@code false}
+     */
+    public boolean expire(final String featureID, final long now) {
+        final TimedState override = overrides.get(featureID);
+        return override != null && override.expiry <= now && overrides.remove(featureID, override);
+    }
+
+    /**
+     * Checks whether any feature is overridden
+     *
+     * @return {@code true} if no feature is overridden, otherwise {@code false}
+     */
+    public boolean isEmpty() {
+        return overrides.isEmpty();
+    }
+
+    /**
+     * Returns a snapshot of the overrides that have not yet expired
+     *
+     * @param now the current time in milliseconds
+     * @return Key: Feature ID Value: Overridden state
+     */
+    public Map<String, Boolean> getOverrides(final long now) {
+        final Map<String, Boolean> result = new HashMap<>();
+        overrides.forEach((id, o) -> {
+            if (o.expiry > now) {
+                result.put(id, o.isEnabled);
+            }
+        });
+        return result;
+    }
+
+    private static final class TimedState {
+        private final boolean isEnabled;
+        private final long    expiry;
+
+        private TimedState(final boolean isEnabled, final long expiry) {
+            this.isEnabled = isEnabled;
+            this.expiry    = expiry;
+        }
+    }
+
+}
@@ -0,0 +1,194 @@
+package com.amitinside.featureflags.provider;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Storage of the variants of all multivariate features.
+ *
+ * <p>
+ * Every distinct variant value is interned once and identified by its index.
+ * Every multivariate feature occupies a slot of a primitive array that holds
+ * the index of its current variant. Reading a variant therefore costs two
+ * array accesses without any lock or allocation whereas the rare writes are
+ * serialized and published by re-assigning the volatile array references.
+ * </p>
+ *
+ * <p>
+ * The interned values are reference counted by the slots holding them. A value
+ * is released as soon as no slot holds it anymore and its index is reused for
+ * the next interned value. Hence the interned values are bounded by the number
+ * of slots even if the configurations assign arbitrary free-form variants.
+ * </p>
+ *
+ * @ThreadSafe
+ */
+public final class VariantTable {
+
+    /** The initial capacity of the arrays */
+    private static final int           INITIAL_CAPACITY = 16;
+
+    /** Interned variant values -> Index: Variant Index Value: Variant */
+    private volatile String[]          values           = new String[INITIAL_CAPACITY];
+
+    /** Slots -> Index: Slot Value: Variant Index of the feature in the slot */
+    private volatile int[]             variants         = new int[INITIAL_CAPACITY];
+
+    /** Key: Variant Value: Variant Index */
+    private final Map<String, Integer> indexes          = new HashMap<>();
+
+    /** Index: Variant Index Value: Number of slots holding the variant */
+    private int[]                      references       = new int[INITIAL_CAPACITY];
+
+    /** The released variant indexes that are reused first */
+    private int[]                      freeIndexes      = new int[INITIAL_CAPACITY];
+
+    /** The number of released variant indexes */
+    private int                        freeIndexCount;
+
+    /** The number of ever interned variant indexes */
+    private int                        indexCount;
+
+    /** The released slots that are reused first */
+    private int[]                      freeSlots        = new int[INITIAL_CAPACITY];
+
+    /** The number of released slots */
+    private int                        freeCount;
+
+    /** The number of ever allocated slots */
+    private int                        slotCount;
+
+    /**
+     * Allocates a slot holding the specified variant
+     *
+     * @param variant the initial variant
+     * @return the slot
+     *
+     * @throws NullPointerException if {@code variant} is {@code null}
+     */
+    public synchronized int allocate(final String variant) {
+        requireNonNull(variant, "Variant cannot be null");
+
+        final int slot;
+        if (freeCount > 0) {
+            slot = freeSlots[--freeCount];
+        } else {
+            slot = slotCount++;
+            if (slot == variants.length) {
+                variants = Arrays.copyOf(variants, slot * 2);
+            }
+        }
+        final int[] current = variants;
+        current[slot] = intern(variant);
+        variants      = current;
+        return slot;
+    }
+
+    /**
+     * Releases the specified slot such that it can be reused
+     *
+     * @param slot the slot
+     */
+    public synchronized void release(final int slot) {
+        if (freeCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+        }
+        freeSlots[freeCount++] = slot;
+        dereference(variants[slot]);
+    }
+
+    /**
+     * Updates the variant of the specified slot
+     *
+     * @param slot the slot
+     * @param variant the variant
+     * @return {@code true} if the variant has changed, otherwise {@code false}
+     *
+     * @throws NullPointerException if {@code variant} is {@code null}
+     */
+    public synchronized boolean set(final int slot, final String variant) {
+        requireNonNull(variant, "Variant cannot be null");
+
+        final int   index    = intern(variant);
+        final int[] current  = variants;
+        final int   previous = current[slot];
+        if (previous == index) {
+            dereference(index);
+            return false;
+        }
+        current[slot] = index;
+        // publishes the update to the unsynchronized readers
+        variants = current;
+        dereference(previous);
+        return true;
+    }
+
+    /**
+     * Returns the variant of the specified slot
+     *
+     * @param slot the slot
+     * @return the interned variant
+     */
+    public String get(final int slot) {
+        final int      index   = variants[slot];
+        final String[] current = values;
+        // the interned value is published before the index but a reader can
+        // observe a racy index update ahead of its publication or an index that
+        // has been released and reused in the meantime
+        if (index < current.length) {
+            final String variant = current[index];
+            if (variant != null && variants[slot] == index) {
+                return variant;
+            }
+        }
+        synchronized (this) {
+            return values[variants[slot]];
+        }
+    }
+
+    /**
+     * Returns the number of interned variants
+     *
+     * @return the number of interned variants
+     */
+    public synchronized int size() {
+        return indexes.size();
+    }
+
+    private int intern(final String variant) {
+        final Integer existing = indexes.get(variant);
+        if (existing != null) {
+            references[existing]++;
+            return existing;
+        }
+        final int index   = freeIndexCount > 0 ? freeIndexes[--freeIndexCount] : indexCount++;
+        String[]  current = values;
+        if (index == current.length) {
+            current    = Arrays.copyOf(current, index * 2);
+            references = Arrays.copyOf(references, index * 2);
+        }
+        current[index]    = variant;
+        references[index] = 1;
+        values            = current;
+        indexes.put(variant, index);
+        return index;
+    }
+
+    private void dereference(final int index) {
+        if (--references[index] > 0) {
+            return;
+        }
+        final String[] current = values;
+        indexes.remove(current[index]);
+        current[index] = null;
+        values         = current;
+        if (freeIndexCount == freeIndexes.length) {
+            freeIndexes = Arrays.copyOf(freeIndexes, freeIndexCount * 2);
+        }
+        freeIndexes[freeIndexCount++] = index;
+    }
+
+}
@@ -0,0 +1,101 @@
+package com.amitinside.featureflags.provider;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.amitinside.featureflags.api.CircuitBreakerDTO;
+import com.amitinside.featureflags.api.CircuitBreakerPolicyDTO;
+import com.amitinside.featureflags.provider.CircuitBreaker.State;
+
+public final class CircuitBreakerTest {
+
+    @Test
+    public void testTrip() {
+        final CircuitBreaker breaker = new CircuitBreaker("a", policy());
+
+        for (int i = 0; i < 5; i++) {
+            assertNull(breaker.record(true, i));
+        }
+        for (int i = 0; i < 4; i++) {
+            assertNull(breaker.record(false, i));
+        }
+        // 5 out of 10 calls have failed
+        assertEquals(State.OPEN, breaker.record(false, 10));
+        assertEquals(State.OPEN, breaker.getState());
+
+        // the outcomes are ignored while the breaker is open
+        assertNull(breaker.record(false, 11));
+
+        final CircuitBreakerDTO dto = breaker.toDTO(20);
+        assertEquals("a", dto.id);
+        assertEquals("OPEN", dto.state);
+        assertEquals(5, dto.successes);
+        assertEquals(5, dto.failures);
+        assertEquals(1, dto.trips);
+        assertEquals(10, dto.lastTripped);
+    }
+
+    @Test
+    public void testMinimumCalls() {
+        final CircuitBreaker breaker = new CircuitBreaker("a", policy());
+
+        for (int i = 0; i < 9; i++) {
+            assertNull(breaker.record(false, i));
+        }
+        assertEquals(State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void testSuccessfulProbe() {
+        final CircuitBreaker breaker = trippedBreaker();
+
+        assertTrue(breaker.halfOpen());
+        assertFalse(breaker.halfOpen());
+        assertNull(breaker.record(true, 100));
+        assertEquals(State.CLOSED, breaker.record(true, 101));
+
+        // the outcomes before the trip have been discarded
+        assertEquals(0, breaker.toDTO(102).failures);
+    }
+
+    @Test
+    public void testFailedProbe() {
+        final CircuitBreaker breaker = trippedBreaker();
+
+        assertTrue(breaker.halfOpen());
+        assertNull(breaker.record(true, 100));
+        assertEquals(State.OPEN, breaker.record(false, 101));
+        assertEquals(2, breaker.toDTO(102).trips);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidPolicy() {
+        final CircuitBreakerPolicyDTO policy = policy();
+        policy.failureRateThreshold = 1.5;
+        new CircuitBreaker("a", policy);
+    }
+
+    private static CircuitBreaker trippedBreaker() {
+        final CircuitBreaker breaker = new CircuitBreaker("a", policy());
+        for (int i = 0; i < 10; i++) {
+            breaker.record(false, i);
+        }
+        assertEquals(State.OPEN, breaker.getState());
+        return breaker;
+    }
+
+    private static CircuitBreakerPolicyDTO policy() {
+        final CircuitBreakerPolicyDTO policy = new CircuitBreakerPolicyDTO();
+        policy.failureRateThreshold = 0.5;
+        policy.minimumCalls         = 10;
+        policy.window               = 1000;
+        policy.openDuration         = 100;
+        policy.probeCalls           = 2;
+        return policy;
+    }
+
+}
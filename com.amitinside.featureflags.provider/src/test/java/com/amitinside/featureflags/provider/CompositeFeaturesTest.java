@@ -0,0 +1,163 @@
+package com.amitinside.featureflags.provider;
+
+import static java.util.Collections.emptyMap;
+import static java.util.Collections.singleton;
+import static java.util.Collections.singletonMap;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.felix.utils.log.Logger;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.osgi.framework.BundleContext;
+
+import com.amitinside.featureflags.provider.ManagerHelper.Feature;
+
+@RunWith(MockitoJUnitRunner.class)
+public final class CompositeFeaturesTest {
+
+    @Mock
+    private BundleContext bundleContext;
+
+    @Test
+    public void testIncrementalEvaluation() {
+        final Map<String, List<Feature>> allFeatures = new HashMap<>();
+        final Feature                    a           = feature(allFeatures, "a", null, true);
+        final Feature                    b           = feature(allFeatures, "b", null, false);
+        final Feature                    c           = feature(allFeatures, "c", "a && !b", false);
+        final Feature                    d           = feature(allFeatures, "d", "c || b", false);
+
+        final CompositeFeatures composites = new CompositeFeatures(new Logger(bundleContext),
+                () -> FeatureIndex.build(allFeatures), () -> 0L);
+        composites.rebuild();
+
+        assertTrue(c.isEnabled);
+        assertTrue(d.isEnabled);
+
+        a.isEnabled = false;
+        final Collection<Feature> changed = composites.featuresChanged(singleton("a"));
+
+        assertFalse(c.isEnabled);
+        assertFalse(d.isEnabled);
+        assertEquals(2, changed.size());
+
+        b.isEnabled = true;
+        composites.featuresChanged(singleton("b"));
+
+        assertFalse(c.isEnabled);
+        assertTrue(d.isEnabled);
+    }
+
+    @Test
+    public void testCycleDetection() {
+        final Map<String, List<Feature>> allFeatures = new HashMap<>();
+        final Feature                    a           = feature(allFeatures, "a", null, true);
+        final Feature                    x           = feature(allFeatures, "x", "a && y", true);
+        final Feature                    y           = feature(allFeatures, "y", "x", true);
+        final Feature                    z           = feature(allFeatures, "z", "a", false);
+
+        final CompositeFeatures composites = new CompositeFeatures(new Logger(bundleContext),
+                () -> FeatureIndex.build(allFeatures), () -> 0L);
+        composites.rebuild();
+
+        assertTrue(a.isEnabled);
+        assertFalse(x.isEnabled);
+        assertFalse(y.isEnabled);
+        assertTrue(z.isEnabled);
+    }
+
+    @Test
+    public void testMalformedExpression() {
+        final Map<String, List<Feature>> allFeatures = new HashMap<>();
+        final Feature                    x           = feature(allFeatures, "x", "(true", true);
+
+        final CompositeFeatures composites = new CompositeFeatures(new Logger(bundleContext),
+                () -> FeatureIndex.build(allFeatures), () -> 0L);
+        composites.rebuild();
+
+        assertFalse(x.isEnabled);
+        assertFalse(composites.isEnabled("x"));
+    }
+
+    @Test
+    public void testContextualEvaluation() {
+        final Map<String, List<Feature>> allFeatures = new HashMap<>();
+        final Feature                    a           = feature(allFeatures, "a", null, true);
+        final Feature                    x           = feature(allFeatures, "x", "a && @country == 'DE'", false);
+        final Feature                    y           = feature(allFeatures, "y", "x || @beta", false);
+
+        final CompositeFeatures composites = new CompositeFeatures(new Logger(bundleContext),
+                () -> FeatureIndex.build(allFeatures), () -> 0L);
+        composites.rebuild();
+
+        assertFalse(x.isEnabled);
+        assertTrue(composites.isEnabled(x, singletonMap("country", "DE"), 0));
+        assertTrue(composites.isEnabled(y, singletonMap("country", "DE"), 0));
+        assertFalse(composites.isEnabled(y, singletonMap("country", "FR"), 0));
+        assertTrue(composites.isEnabled(a, emptyMap(), 0));
+        assertEquals(Arrays.asList("beta", "country"), composites.getAttributes("y"));
+        assertEquals(new HashSet<>(Arrays.asList("x", "y")), composites.getDependentIDs(singleton("a")));
+    }
+
+    @Test
+    public void testKillSwitchUnderEssentialComposite() {
+        final Map<String, List<Feature>> allFeatures = new HashMap<>();
+        final Feature                    a           = feature(allFeatures, "a", null, true);
+        final Feature                    b           = feature(allFeatures, "b", null, true);
+        final Feature                    x           = feature(allFeatures, "x", "a && b", false);
+        final Feature                    y           = feature(allFeatures, "y", "x || @beta", false);
+        x.isEssential = true;
+        y.isEssential = true;
+
+        final KillSwitch        killSwitch = new KillSwitch();
+        final CompositeFeatures composites = new CompositeFeatures(new Logger(bundleContext),
+                () -> FeatureIndex.build(allFeatures), killSwitch::epoch);
+        composites.rebuild();
+
+        assertTrue(x.isEnabled);
+        assertTrue(composites.isEnabled(y, emptyMap(), killSwitch.epoch()));
+
+        killSwitch.engage();
+
+        assertFalse(composites.isEnabled(x, emptyMap(), killSwitch.epoch()));
+        assertFalse(composites.isEnabled(y, emptyMap(), killSwitch.epoch()));
+        assertTrue(composites.isEnabled(y, singletonMap("beta", true), killSwitch.epoch()));
+        assertEquals(new HashSet<>(Arrays.asList(x, y)), new HashSet<>(composites.evaluateAll()));
+        assertFalse(KillSwitch.isEnabled(x, killSwitch.epoch()));
+        assertFalse(composites.isEnabled("y"));
+
+        // re-evaluations on state changes keep the kill switch applied
+        composites.featuresChanged(singleton("b"));
+
+        assertFalse(x.isEnabled);
+
+        killSwitch.release();
+
+        assertEquals(new HashSet<>(Arrays.asList(x, y)), new HashSet<>(composites.evaluateAll()));
+        assertTrue(KillSwitch.isEnabled(x, killSwitch.epoch()));
+        assertTrue(composites.isEnabled(a, emptyMap(), killSwitch.epoch()));
+    }
+
+    private static Feature feature(final Map<String, List<Feature>> allFeatures, final String id,
+            final String expression, final boolean isEnabled) {
+        final Feature feature = new Feature();
+        feature.id         = id;
+        feature.expression = expression;
+        feature.isEnabled  = isEnabled;
+        allFeatures.computeIfAbsent("pid", k -> new ArrayList<>())
+                .add(feature);
+        return feature;
+    }
+
+}
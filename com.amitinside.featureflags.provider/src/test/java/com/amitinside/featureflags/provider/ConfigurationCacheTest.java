@@ -0,0 +1,144 @@
+package com.amitinside.featureflags.provider;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+import org.osgi.service.cm.Configuration;
+import org.osgi.service.cm.ConfigurationAdmin;
+
+public final class ConfigurationCacheTest {
+
+    /** The filters passed to {@code listConfigurations} */
+    private final List<String>               filters       = new ArrayList<>();
+
+    /** The PIDs passed to {@code getConfiguration} */
+    private final List<String>               createdPIDs   = new ArrayList<>();
+
+    /** Key: Configuration PID Value: Existing configuration */
+    private final Map<String, Configuration> existing      = new HashMap<>();
+
+    /** The PIDs of the deleted configurations */
+    private final Set<String>                deletedPIDs   = new HashSet<>();
+
+    private final ConfigurationCache         configurations = new ConfigurationCache(newConfigurationAdmin());
+
+    @Test
+    public void testCachedHandle() throws Exception {
+        final Configuration configuration = configuration("a");
+
+        assertSame(configuration, configurations.get("a"));
+        assertSame(configuration, configurations.get("a"));
+        assertEquals(1, filters.size());
+
+        configurations.invalidate("a");
+        assertSame(configuration, configurations.get("a"));
+        assertEquals(2, filters.size());
+    }
+
+    @Test
+    public void testDeletedHandle() throws Exception {
+        configuration("a");
+        configurations.get("a");
+
+        deletedPIDs.add("a");
+        existing.remove("a");
+
+        assertNull(configurations.get("a"));
+        assertEquals(2, filters.size());
+    }
+
+    @Test
+    public void testReadNeverCreates() throws Exception {
+        assertNull(configurations.get("a"));
+        assertTrue(configurations.lookupAll(asList("a", "b"))
+                .isEmpty());
+        assertTrue(createdPIDs.isEmpty());
+
+        configurations.getOrCreate("a");
+        assertEquals(asList("a"), createdPIDs);
+    }
+
+    @Test
+    public void testBatchedLookup() throws Exception {
+        final List<String> pids = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            pids.add("pid" + i);
+        }
+        final Configuration configuration = configuration("pid70");
+
+        final Map<String, Configuration> result = configurations.lookupAll(pids);
+
+        assertEquals(1, result.size());
+        assertSame(configuration, result.get("pid70"));
+        assertEquals(2, filters.size());
+        assertTrue(filters.get(0)
+                .startsWith("(|(service.pid=pid0)(service.pid=pid1)"));
+
+        // the looked up handle has been cached
+        configurations.get("pid70");
+        assertEquals(2, filters.size());
+    }
+
+    @Test
+    public void testEscapedFilter() throws Exception {
+        configurations.get("a(*)");
+
+        assertEquals(asList("(service.pid=a\\(\\*\\))"), filters);
+    }
+
+    private Configuration configuration(final String pid) {
+        final Configuration configuration = (Configuration) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { Configuration.class }, (proxy, method, args) -> {
+                    if (deletedPIDs.contains(pid)) {
+                        throw new IllegalStateException("Configuration deleted");
+                    }
+                    switch (method.getName()) {
+                        case "getPid":
+                            return pid;
+                        case "getChangeCount":
+                            return 1L;
+                        default:
+                            return null;
+                    }
+                });
+        existing.put(pid, configuration);
+        return configuration;
+    }
+
+    private ConfigurationAdmin newConfigurationAdmin() {
+        return (ConfigurationAdmin) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { ConfigurationAdmin.class }, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "listConfigurations":
+                            final String filter = (String) args[0];
+                            filters.add(filter);
+                            final List<Configuration> result = new ArrayList<>();
+                            existing.forEach((pid, c) -> {
+                                if (filter.contains("=" + pid + ")")) {
+                                    result.add(c);
+                                }
+                            });
+                            return result.isEmpty() ? null : result.toArray(new Configuration[0]);
+                        case "getConfiguration":
+                            final String pid = (String) args[0];
+                            createdPIDs.add(pid);
+                            return existing.containsKey(pid) ? existing.get(pid) : configuration(pid);
+                        default:
+                            return null;
+                    }
+                });
+    }
+
+}
@@ -0,0 +1,118 @@
+package com.amitinside.featureflags.provider;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.felix.utils.log.Logger;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.osgi.framework.BundleContext;
+import org.osgi.service.cm.Configuration;
+import org.osgi.service.cm.ConfigurationAdmin;
+
+import com.amitinside.featureflags.api.ReconciliationStatsDTO;
+
+@RunWith(MockitoJUnitRunner.class)
+public final class ConfigurationReconcilerTest {
+
+    @Mock
+    private BundleContext      bundleContext;
+    @Mock
+    private ConfigurationAdmin configurationAdmin;
+    @Mock
+    private Configuration      configuration;
+
+    @Test
+    public void testDrift() throws Exception {
+        final RecordingTarget         target     = new RecordingTarget();
+        final ConfigurationReconciler reconciler = new ConfigurationReconciler(new Logger(bundleContext),
+                new ConfigurationCache(configurationAdmin), target);
+        when(configurationAdmin.listConfigurations("(service.pid=a)"))
+                .thenReturn(new Configuration[] { configuration });
+        when(configuration.getProperties()).thenReturn(new Hashtable<>());
+        when(configuration.getChangeCount()).thenReturn(1L);
+
+        reconciler.reconcile(Collections.singletonList("a"));
+        assertEquals(Collections.singletonList("apply:a"), target.calls);
+
+        reconciler.reconcile(Collections.singletonList("a"), 1, MILLISECONDS);
+        assertEquals(1, target.calls.size());
+
+        when(configuration.getChangeCount()).thenReturn(2L);
+        reconciler.reconcile(Collections.singletonList("a"), 1, MILLISECONDS);
+        assertEquals(Arrays.asList("apply:a", "apply:a"), target.calls);
+
+        final ReconciliationStatsDTO stats = reconciler.getStats();
+        assertEquals(2, stats.runs);
+        assertEquals(3, stats.checkedConfigurations);
+        assertEquals(1, stats.driftedConfigurations);
+    }
+
+    @Test
+    public void testMissedDeletion() throws Exception {
+        final RecordingTarget         target     = new RecordingTarget();
+        final ConfigurationReconciler reconciler = new ConfigurationReconciler(new Logger(bundleContext),
+                new ConfigurationCache(configurationAdmin), target);
+        reconciler.applied("a", 1);
+
+        reconciler.reconcile(Collections.singletonList("a"), 1, MILLISECONDS);
+
+        assertEquals(Collections.singletonList("revert:a"), target.calls);
+        assertEquals(1, reconciler.getStats().driftedConfigurations);
+    }
+
+    @Test
+    public void testUnconfigured() throws Exception {
+        final RecordingTarget         target     = new RecordingTarget();
+        final ConfigurationReconciler reconciler = new ConfigurationReconciler(new Logger(bundleContext),
+                new ConfigurationCache(configurationAdmin), target);
+
+        reconciler.reconcile(Collections.singletonList("a"), 1, MILLISECONDS);
+        reconciler.reconcile(Collections.singletonList("a"), 1, MILLISECONDS);
+
+        assertEquals(0, target.calls.size());
+        assertEquals(0, reconciler.getStats().driftedConfigurations);
+    }
+
+    @Test
+    public void testBudget() throws Exception {
+        final RecordingTarget         target     = new RecordingTarget();
+        final ConfigurationReconciler reconciler = new ConfigurationReconciler(new Logger(bundleContext),
+                new ConfigurationCache(configurationAdmin), target);
+        reconciler.applied("a", 1);
+        reconciler.applied("b", 1);
+
+        reconciler.reconcile(Arrays.asList("a", "b"), 0, MILLISECONDS);
+        assertEquals(Collections.singletonList("revert:a"), target.calls);
+        assertEquals(1, reconciler.getStats().deferredConfigurations);
+
+        reconciler.reconcile(Arrays.asList("a", "b"), 0, MILLISECONDS);
+        assertEquals(Arrays.asList("revert:a", "revert:b"), target.calls);
+        assertEquals(1, reconciler.getStats().deferredConfigurations);
+    }
+
+    private static final class RecordingTarget implements ConfigurationReconciler.Target {
+        private final List<String> calls = new ArrayList<>();
+
+        @Override
+        public void apply(final String pid, final Map<String, Object> properties) {
+            calls.add("apply:" + pid);
+        }
+
+        @Override
+        public void revert(final String pid) {
+            calls.add("revert:" + pid);
+        }
+    }
+
+}
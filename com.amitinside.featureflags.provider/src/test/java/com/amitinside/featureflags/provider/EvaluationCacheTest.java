@@ -0,0 +1,136 @@
+package com.amitinside.featureflags.provider;
+
+import static java.util.Collections.singleton;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.amitinside.featureflags.api.EvaluationCacheStatsDTO;
+import com.amitinside.featureflags.provider.EvaluationCache.EvictionPolicy;
+
+public final class EvaluationCacheTest {
+
+    @Test
+    public void testHitsAndMisses() {
+        final EvaluationCache cache       = new EvaluationCache(10, EvictionPolicy.LRU);
+        final AtomicInteger   evaluations = new AtomicInteger();
+
+        assertTrue(cache.get("a", () -> new Object[] { "DE" }, () -> evaluations.incrementAndGet() > 0));
+        assertTrue(cache.get("a", () -> new Object[] { "DE" }, () -> evaluations.incrementAndGet() > 0));
+        assertTrue(cache.get("a", () -> new Object[] { "FR" }, () -> evaluations.incrementAndGet() > 0));
+
+        final EvaluationCacheStatsDTO stats = cache.getStats();
+        assertEquals(2, evaluations.get());
+        assertEquals(1, stats.hits);
+        assertEquals(2, stats.misses);
+        assertEquals(2, stats.size);
+        assertEquals(1 / 3d, stats.hitRatio, 0.001);
+    }
+
+    @Test
+    public void testInvalidation() {
+        final EvaluationCache cache       = new EvaluationCache(10, EvictionPolicy.LRU);
+        final AtomicInteger   evaluations = new AtomicInteger();
+
+        cache.get("a", () -> new Object[0], () -> evaluations.incrementAndGet() > 0);
+        cache.get("b", () -> new Object[0], () -> evaluations.incrementAndGet() > 0);
+        cache.invalidate(singleton("a"));
+        cache.get("a", () -> new Object[0], () -> evaluations.incrementAndGet() > 0);
+        cache.get("b", () -> new Object[0], () -> evaluations.incrementAndGet() > 0);
+
+        assertEquals(3, evaluations.get());
+
+        cache.invalidateAll();
+        cache.get("b", () -> new Object[0], () -> evaluations.incrementAndGet() > 0);
+
+        assertEquals(4, evaluations.get());
+    }
+
+    @Test
+    public void testConcurrentInvalidation() throws Exception {
+        final EvaluationCache cache   = new EvaluationCache(10, EvictionPolicy.LRU);
+        final AtomicBoolean   state   = new AtomicBoolean();
+        final AtomicBoolean   running = new AtomicBoolean(true);
+
+        // a reader and an invalidation of all features race with every update
+        final Thread reader      = new Thread(() -> {
+            while (running.get()) {
+                cache.get("a", () -> new Object[0], state::get);
+            }
+        });
+        final Thread invalidator = new Thread(() -> {
+            while (running.get()) {
+                cache.invalidateAll();
+            }
+        });
+        reader.start();
+        invalidator.start();
+        try {
+            for (int i = 0; i < 100_000; i++) {
+                final boolean next = !state.get();
+                state.set(next);
+                cache.invalidate(singleton("a"));
+
+                assertEquals(next, cache.get("a", () -> new Object[0], state::get));
+            }
+        } finally {
+            running.set(false);
+            reader.join();
+            invalidator.join();
+        }
+    }
+
+    @Test
+    public void testEviction() {
+        final EvaluationCache lru = new EvaluationCache(2, EvictionPolicy.LRU);
+        lru.get("a", () -> new Object[0], () -> true);
+        lru.get("b", () -> new Object[0], () -> true);
+        lru.get("a", () -> new Object[0], () -> true);
+        lru.get("c", () -> new Object[0], () -> true);
+
+        assertTrue(lru.get("a", () -> new Object[0], () -> false));
+        assertFalse(lru.get("b", () -> new Object[0], () -> false));
+        assertEquals(2, lru.getStats().evictions);
+
+        final EvaluationCache fifo = new EvaluationCache(2, EvictionPolicy.FIFO);
+        fifo.get("a", () -> new Object[0], () -> true);
+        fifo.get("b", () -> new Object[0], () -> true);
+        fifo.get("a", () -> new Object[0], () -> true);
+        fifo.get("c", () -> new Object[0], () -> true);
+
+        assertFalse(fifo.get("a", () -> new Object[0], () -> false));
+    }
+
+    @Test
+    public void testDisabled() {
+        final EvaluationCache cache       = new EvaluationCache(0, EvictionPolicy.LRU);
+        final AtomicInteger   evaluations = new AtomicInteger();
+
+        cache.get("a", () -> new Object[0], () -> evaluations.incrementAndGet() > 0);
+        cache.get("a", () -> new Object[0], () -> evaluations.incrementAndGet() > 0);
+
+        assertEquals(2, evaluations.get());
+        assertEquals(0, cache.getStats().size);
+    }
+
+    @Test
+    public void testFingerprint() {
+        final Map<String, Object> context = new HashMap<>();
+        context.put("country", "DE");
+        context.put("tier", 1);
+        context.put("unused", "x");
+
+        final Object[] fingerprint = EvaluationCache.fingerprint(Arrays.asList("country", "beta", "tier"), context);
+
+        assertEquals(Arrays.asList("DE", null, "1"), Arrays.asList(fingerprint));
+    }
+
+}
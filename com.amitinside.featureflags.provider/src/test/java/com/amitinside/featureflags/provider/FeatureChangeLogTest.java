@@ -0,0 +1,72 @@
+package com.amitinside.featureflags.provider;
+
+import static com.amitinside.featureflags.api.FeatureChangeEvent.Type.ADDED;
+import static com.amitinside.featureflags.api.FeatureChangeEvent.Type.REMOVED;
+import static com.amitinside.featureflags.api.FeatureChangeEvent.Type.UPDATED;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.amitinside.featureflags.api.FeatureChangeEvent;
+import com.amitinside.featureflags.api.FeatureChangesDTO;
+
+public final class FeatureChangeLogTest {
+
+    @Test
+    public void testChangesSince() {
+        final FeatureChangeLog changeLog = new FeatureChangeLog(10);
+        changeLog.record(change(ADDED, "a", false));
+        changeLog.record(change(ADDED, "b", false));
+        changeLog.record(change(UPDATED, "a", true));
+
+        final FeatureChangesDTO all = changeLog.getChangesSince(0);
+
+        assertEquals(3, all.version);
+        assertFalse(all.isResyncRequired);
+        assertEquals(2, all.changes.size());
+        assertEquals("b", all.changes.get(0).id);
+        // the feature has been added and updated afterwards
+        assertEquals("a", all.changes.get(1).id);
+        assertEquals(ADDED, all.changes.get(1).type);
+        assertTrue(all.changes.get(1).isEnabled);
+
+        changeLog.record(change(REMOVED, "b", false));
+        final FeatureChangesDTO delta = changeLog.getChangesSince(all.version);
+
+        assertEquals(4, delta.version);
+        assertEquals(1, delta.changes.size());
+        assertEquals(REMOVED, delta.changes.get(0).type);
+        assertTrue(changeLog.getChangesSince(4).changes.isEmpty());
+    }
+
+    @Test
+    public void testResyncRequired() {
+        final FeatureChangeLog changeLog = new FeatureChangeLog(2);
+        changeLog.record(change(ADDED, "a", false));
+        changeLog.record(change(ADDED, "b", false));
+        changeLog.record(change(ADDED, "c", false));
+
+        assertTrue(changeLog.getChangesSince(0).isResyncRequired);
+        assertEquals(3, changeLog.getChangesSince(0).version);
+        assertFalse(changeLog.getChangesSince(1).isResyncRequired);
+        // unknown version, for instance after a restart
+        assertTrue(changeLog.getChangesSince(42).isResyncRequired);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeVersion() {
+        new FeatureChangeLog(2).getChangesSince(-1);
+    }
+
+    private static FeatureChangeEvent change(final FeatureChangeEvent.Type type, final String id,
+            final boolean isEnabled) {
+        final FeatureChangeEvent change = new FeatureChangeEvent();
+        change.type      = type;
+        change.id        = id;
+        change.isEnabled = isEnabled;
+        return change;
+    }
+
+}
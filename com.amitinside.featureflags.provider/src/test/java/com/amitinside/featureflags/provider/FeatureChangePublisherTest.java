@@ -0,0 +1,162 @@
+package com.amitinside.featureflags.provider;
+
+import static com.amitinside.featureflags.api.OverflowPolicy.CONFLATE;
+import static com.amitinside.featureflags.api.OverflowPolicy.DROP_OLDEST;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.felix.utils.log.Logger;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.osgi.framework.BundleContext;
+
+import com.amitinside.featureflags.api.FeatureChangeEvent;
+import com.amitinside.featureflags.api.FeatureChangeSubscriber;
+import com.amitinside.featureflags.api.FeatureChangeSubscription;
+
+@RunWith(MockitoJUnitRunner.class)
+public final class FeatureChangePublisherTest {
+
+    @Mock
+    private BundleContext bundleContext;
+
+    @Test
+    public void testBackpressure() {
+        final FeatureChangePublisher publisher  = new FeatureChangePublisher(new Logger(bundleContext), Runnable::run);
+        final RecordingSubscriber    subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber, null, 10, DROP_OLDEST);
+
+        publisher.publish(event("a", true));
+        publisher.publish(event("b", true));
+        assertTrue(subscriber.events.isEmpty());
+
+        subscriber.subscription.request(1);
+        assertEquals(1, subscriber.events.size());
+        assertEquals("a", subscriber.events.get(0).id);
+
+        subscriber.subscription.request(Long.MAX_VALUE);
+        publisher.publish(event("c", true));
+        assertEquals(3, subscriber.events.size());
+    }
+
+    @Test
+    public void testDropOldest() {
+        final FeatureChangePublisher publisher  = new FeatureChangePublisher(new Logger(bundleContext), Runnable::run);
+        final RecordingSubscriber    subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber, null, 2, DROP_OLDEST);
+
+        publisher.publish(event("a", true));
+        publisher.publish(event("b", true));
+        publisher.publish(event("c", true));
+        subscriber.subscription.request(10);
+
+        assertEquals(2, subscriber.events.size());
+        assertEquals("b", subscriber.events.get(0).id);
+        assertEquals("c", subscriber.events.get(1).id);
+    }
+
+    @Test
+    public void testConflate() {
+        final FeatureChangePublisher publisher  = new FeatureChangePublisher(new Logger(bundleContext), Runnable::run);
+        final RecordingSubscriber    subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber, null, 2, CONFLATE);
+
+        publisher.publish(event("a", true));
+        publisher.publish(event("b", true));
+        publisher.publish(event("a", false));
+        subscriber.subscription.request(10);
+
+        assertEquals(2, subscriber.events.size());
+        assertEquals("b", subscriber.events.get(0).id);
+        assertEquals("a", subscriber.events.get(1).id);
+        assertFalse(subscriber.events.get(1).isEnabled);
+    }
+
+    @Test
+    public void testFilter() {
+        final FeatureChangePublisher publisher  = new FeatureChangePublisher(new Logger(bundleContext), Runnable::run);
+        final RecordingSubscriber    subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber, "checkout.*", 10, DROP_OLDEST);
+        subscriber.subscription.request(Long.MAX_VALUE);
+
+        publisher.publish(event("checkout.new", true));
+        publisher.publish(event("payments", true));
+
+        assertEquals(1, subscriber.events.size());
+        assertEquals("checkout.new", subscriber.events.get(0).id);
+    }
+
+    @Test
+    public void testCancelAndComplete() {
+        final FeatureChangePublisher publisher = new FeatureChangePublisher(new Logger(bundleContext), Runnable::run);
+        final RecordingSubscriber    cancelled = new RecordingSubscriber();
+        final RecordingSubscriber    completed = new RecordingSubscriber();
+        publisher.subscribe(cancelled, null, 10, DROP_OLDEST);
+        publisher.subscribe(completed, null, 10, DROP_OLDEST);
+
+        cancelled.subscription.cancel();
+        publisher.publish(event("a", true));
+        publisher.close();
+
+        assertFalse(cancelled.isCompleted);
+        assertFalse(completed.isCompleted);
+
+        completed.subscription.request(1);
+        assertTrue(completed.isCompleted);
+        assertFalse(publisher.hasSubscribers());
+    }
+
+    @Test
+    public void testInvalidRequest() {
+        final FeatureChangePublisher publisher  = new FeatureChangePublisher(new Logger(bundleContext), Runnable::run);
+        final RecordingSubscriber    subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber, null, 10, DROP_OLDEST);
+
+        subscriber.subscription.request(0);
+
+        assertTrue(subscriber.error instanceof IllegalArgumentException);
+        assertFalse(publisher.hasSubscribers());
+    }
+
+    private static FeatureChangeEvent event(final String id, final boolean isEnabled) {
+        final FeatureChangeEvent event = new FeatureChangeEvent();
+        event.type      = FeatureChangeEvent.Type.UPDATED;
+        event.id        = id;
+        event.isEnabled = isEnabled;
+        return event;
+    }
+
+    private static final class RecordingSubscriber implements FeatureChangeSubscriber {
+        private final List<FeatureChangeEvent> events = new ArrayList<>();
+        private FeatureChangeSubscription      subscription;
+        private Throwable                      error;
+        private boolean                        isCompleted;
+
+        @Override
+        public void onSubscribe(final FeatureChangeSubscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(final FeatureChangeEvent event) {
+            events.add(event);
+        }
+
+        @Override
+        public void onError(final Throwable throwable) {
+            error = throwable;
+        }
+
+        @Override
+        public void onComplete() {
+            isCompleted = true;
+        }
+    }
+
+}
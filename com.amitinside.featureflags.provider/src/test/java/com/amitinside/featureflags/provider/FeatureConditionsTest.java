@@ -0,0 +1,91 @@
+package com.amitinside.featureflags.provider;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.util.Dictionary;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.felix.utils.log.Logger;
+import org.junit.Test;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceRegistration;
+import org.osgi.service.condition.Condition;
+
+public final class FeatureConditionsTest {
+
+    /** The IDs of the currently registered conditions */
+    private final Set<String> registered = new TreeSet<>();
+
+    @Test
+    public void testIncrementalUpdates() {
+        final FeatureConditions conditions = newConditions();
+
+        conditions.reset(states("a", true, "b", false, "c", true));
+        assertEquals(new TreeSet<>(asList("feature.a", "feature.c")), registered);
+
+        conditions.update(states("a", false, "b", true));
+        assertEquals(new TreeSet<>(asList("feature.b", "feature.c")), registered);
+        assertEquals(2, conditions.size());
+    }
+
+    @Test
+    public void testResetUnregistersUnknownFeatures() {
+        final FeatureConditions conditions = newConditions();
+
+        conditions.reset(states("a", true, "b", true));
+        conditions.reset(states("b", true));
+
+        assertEquals(new TreeSet<>(asList("feature.b")), registered);
+    }
+
+    @Test
+    public void testClose() {
+        final FeatureConditions conditions = newConditions();
+
+        conditions.reset(states("a", true));
+        conditions.close();
+        conditions.update(states("b", true));
+
+        assertTrue(registered.isEmpty());
+        assertEquals(0, conditions.size());
+    }
+
+    private FeatureConditions newConditions() {
+        final BundleContext bundleContext = (BundleContext) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { BundleContext.class }, (proxy, method, args) -> {
+                    if ("registerService".equals(method.getName())) {
+                        assertEquals(Condition.INSTANCE, args[1]);
+                        final String id = (String) ((Dictionary<?, ?>) args[2]).get(Condition.CONDITION_ID);
+                        registered.add(id);
+                        return newRegistration(id);
+                    }
+                    return null;
+                });
+        return new FeatureConditions(new Logger(bundleContext), bundleContext, Runnable::run);
+    }
+
+    private ServiceRegistration<?> newRegistration(final String id) {
+        return (ServiceRegistration<?>) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { ServiceRegistration.class }, (proxy, method, args) -> {
+                    if ("unregister".equals(method.getName()) && !registered.remove(id)) {
+                        throw new IllegalStateException("Already unregistered");
+                    }
+                    return null;
+                });
+    }
+
+    private static Map<String, Boolean> states(final Object... states) {
+        final Map<String, Boolean> result = new HashMap<>();
+        for (int i = 0; i < states.length; i += 2) {
+            result.put((String) states[i], (Boolean) states[i + 1]);
+        }
+        return result;
+    }
+
+}
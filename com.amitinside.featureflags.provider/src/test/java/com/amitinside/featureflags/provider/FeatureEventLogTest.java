@@ -0,0 +1,111 @@
+package com.amitinside.featureflags.provider;
+
+import static com.amitinside.featureflags.provider.FeatureEventLog.Type.BUNDLE_EXTENDED;
+import static com.amitinside.featureflags.provider.FeatureEventLog.Type.FEATURE_TOGGLED;
+import static com.amitinside.featureflags.provider.FeatureEventLog.Type.FEATURE_UPDATED;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.felix.utils.log.Logger;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.osgi.framework.BundleContext;
+
+import com.amitinside.featureflags.api.FeatureEventDTO;
+
+@RunWith(MockitoJUnitRunner.class)
+public final class FeatureEventLogTest {
+
+    @Mock
+    private BundleContext bundleContext;
+
+    @Test
+    public void testRecentEvents() {
+        final FeatureEventLog eventLog = new FeatureEventLog(new RecordingLogger(bundleContext, 0), 16);
+        eventLog.record(FEATURE_TOGGLED, "a", "pid", true);
+        eventLog.record(FEATURE_UPDATED, "a", "pid", false);
+
+        final List<FeatureEventDTO> events = eventLog.getRecentEvents(10);
+
+        assertEquals(2, events.size());
+        assertEquals(0, events.get(0).sequence);
+        assertEquals("FEATURE_TOGGLED", events.get(0).type);
+        assertEquals("Updating feature [a] to [true] in configuration [pid]", events.get(0).message);
+        assertEquals("Updated feature [a] of configuration [pid] to [false]", events.get(1).message);
+        assertEquals(1, eventLog.getRecentEvents(1)
+                .get(0).sequence);
+    }
+
+    @Test
+    public void testOverwrite() {
+        final FeatureEventLog eventLog = new FeatureEventLog(new RecordingLogger(bundleContext, 0), 5);
+        for (int i = 0; i < 20; i++) {
+            eventLog.record(FEATURE_TOGGLED, "a", "pid", i);
+        }
+        final List<FeatureEventDTO> events = eventLog.getRecentEvents(100);
+
+        // the capacity is rounded up to 8
+        assertEquals(8, events.size());
+        assertEquals(12, events.get(0).sequence);
+        assertEquals(19, events.get(7).value);
+    }
+
+    @Test
+    public void testDrainHonorsLogLevel() {
+        final RecordingLogger logger   = new RecordingLogger(bundleContext, Logger.LOG_INFO);
+        final FeatureEventLog eventLog = new FeatureEventLog(logger, 16);
+        eventLog.record(FEATURE_TOGGLED, "a", "pid", true);
+        eventLog.record(BUNDLE_EXTENDED, "bundle", "Starting extension", 1);
+
+        eventLog.drain();
+        eventLog.drain();
+
+        assertEquals(1, logger.messages.size());
+        assertEquals("Updating feature [a] to [true] in configuration [pid]", logger.messages.get(0));
+    }
+
+    @Test
+    public void testDrainReportsOverwrittenEvents() {
+        final RecordingLogger logger   = new RecordingLogger(bundleContext, Logger.LOG_INFO);
+        final FeatureEventLog eventLog = new FeatureEventLog(logger, 4);
+        for (int i = 0; i < 6; i++) {
+            eventLog.record(FEATURE_TOGGLED, "a", "pid", true);
+        }
+        eventLog.drain();
+
+        assertEquals(5, logger.messages.size());
+        assertTrue(logger.messages.get(0)
+                .startsWith("[2] events"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidCapacity() {
+        new FeatureEventLog(new RecordingLogger(bundleContext, 0), 0);
+    }
+
+    private static final class RecordingLogger extends Logger {
+        private final int          level;
+        private final List<String> messages = new ArrayList<>();
+
+        RecordingLogger(final BundleContext bundleContext, final int level) {
+            super(bundleContext);
+            this.level = level;
+        }
+
+        @Override
+        public int getLogLevel() {
+            return level;
+        }
+
+        @Override
+        public void log(final int level, final String message) {
+            messages.add(message);
+        }
+    }
+
+}
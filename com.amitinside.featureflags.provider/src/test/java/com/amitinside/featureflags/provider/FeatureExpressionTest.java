@@ -0,0 +1,102 @@
+package com.amitinside.featureflags.provider;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+
+public final class FeatureExpressionTest {
+
+    @Test
+    public void testEvaluation() {
+        final FeatureExpression expression = FeatureExpression.compile("newCheckout && !legacyPayments");
+        final Set<String>       enabled    = new HashSet<>();
+
+        assertFalse(expression.evaluate(enabled::contains));
+
+        enabled.add("newCheckout");
+        assertTrue(expression.evaluate(enabled::contains));
+
+        enabled.add("legacyPayments");
+        assertFalse(expression.evaluate(enabled::contains));
+    }
+
+    @Test
+    public void testOperatorPrecedence() {
+        final FeatureExpression expression = FeatureExpression.compile("a || b && c");
+        final Set<String>       enabled    = new HashSet<>(Arrays.asList("a"));
+
+        assertTrue(expression.evaluate(enabled::contains));
+
+        final FeatureExpression grouped = FeatureExpression.compile("(a || b) && c");
+        assertFalse(grouped.evaluate(enabled::contains));
+    }
+
+    @Test
+    public void testLiterals() {
+        assertTrue(FeatureExpression.compile("true")
+                .evaluate(id -> false));
+        assertFalse(FeatureExpression.compile("!true || false")
+                .evaluate(id -> true));
+    }
+
+    @Test
+    public void testReferences() {
+        final FeatureExpression expression = FeatureExpression.compile("a && (b.c || !d-e) && a");
+
+        assertEquals(new HashSet<>(Arrays.asList("a", "b.c", "d-e")), expression.getReferences());
+    }
+
+    @Test
+    public void testAttributes() {
+        final FeatureExpression   expression = FeatureExpression.compile("a && @country == 'DE' && @tier != 'free'");
+        final Map<String, Object> context    = new HashMap<>();
+        context.put("country", "DE");
+
+        assertTrue(expression.evaluate(id -> true, context));
+        assertFalse(expression.evaluate(id -> false, context));
+        assertFalse(expression.evaluate(id -> true));
+
+        context.put("tier", "free");
+        assertFalse(expression.evaluate(id -> true, context));
+
+        assertTrue(FeatureExpression.compile("@beta")
+                .evaluate(id -> false, Collections.singletonMap("beta", true)));
+        assertEquals(new HashSet<>(Arrays.asList("country", "tier")), expression.getAttributes());
+        assertEquals(Collections.singleton("a"), expression.getReferences());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnquotedAttributeValue() {
+        FeatureExpression.compile("@country == DE");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMissingParenthesis() {
+        FeatureExpression.compile("(a && b");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMissingOperand() {
+        FeatureExpression.compile("a &&");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnexpectedCharacter() {
+        FeatureExpression.compile("a & b");
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void testNullExpression() {
+        FeatureExpression.compile(null);
+    }
+
+}
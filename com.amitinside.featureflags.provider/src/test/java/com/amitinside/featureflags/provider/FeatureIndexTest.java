@@ -0,0 +1,86 @@
+package com.amitinside.featureflags.provider;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.amitinside.featureflags.provider.ManagerHelper.Feature;
+
+public final class FeatureIndexTest {
+
+    @Test
+    public void testLookups() {
+        final Map<String, List<Feature>> allFeatures = new HashMap<>();
+        final Feature                    a1          = feature(allFeatures, "pid1", "a", 1);
+        final Feature                    b1          = feature(allFeatures, "pid1", "b", 1);
+        final Feature                    a2          = feature(allFeatures, "pid2", "a", 2);
+
+        final FeatureIndex index = FeatureIndex.build(allFeatures);
+
+        assertEquals(2, index.getFeatures("a")
+                .size());
+        assertSame(a2, index.getFeatures(2, "a")
+                .get(0));
+        assertTrue(index.getFeatures(2, "b")
+                .isEmpty());
+        assertTrue(index.getFeatures(3, "a")
+                .isEmpty());
+        assertEquals(2, index.getFeaturesByPID("pid1")
+                .size());
+        assertTrue(index.getFeaturesByPID("pid1")
+                .contains(b1));
+        assertTrue(index.getFeaturesByPID("pid3")
+                .isEmpty());
+        assertTrue(index.getFeaturesByBundle(1)
+                .contains(a1));
+        assertEquals(1, index.getFeaturesByBundle(2)
+                .size());
+        assertEquals(3, index.getFeatures()
+                .size());
+        assertEquals(3, index.spliterator()
+                .getExactSizeIfKnown());
+    }
+
+    @Test
+    public void testSnapshot() {
+        final Map<String, List<Feature>> allFeatures = new HashMap<>();
+        feature(allFeatures, "pid1", "a", 1);
+
+        final FeatureIndex index = FeatureIndex.build(allFeatures);
+        feature(allFeatures, "pid1", "b", 1);
+
+        assertEquals(1, index.getFeaturesByPID("pid1")
+                .size());
+        assertTrue(index.getFeatures("b")
+                .isEmpty());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testImmutable() {
+        final Map<String, List<Feature>> allFeatures = new HashMap<>();
+        feature(allFeatures, "pid1", "a", 1);
+
+        FeatureIndex.build(allFeatures)
+                .getFeatures("a")
+                .clear();
+    }
+
+    private static Feature feature(final Map<String, List<Feature>> allFeatures, final String pid, final String id,
+            final long bundleId) {
+        final Feature feature = new Feature();
+        feature.id       = id;
+        feature.pid      = pid;
+        feature.bundleId = bundleId;
+        allFeatures.computeIfAbsent(pid, p -> new ArrayList<>())
+                .add(feature);
+        return feature;
+    }
+
+}
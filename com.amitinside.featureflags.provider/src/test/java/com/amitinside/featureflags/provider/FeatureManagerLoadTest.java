@@ -0,0 +1,512 @@
+package com.amitinside.featureflags.provider;
+
+import static com.amitinside.featureflags.api.FeatureManager.METATYPE_FEATURE_ID_PREFIX;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+import static org.osgi.framework.Bundle.ACTIVE;
+import static org.osgi.framework.Bundle.RESOLVED;
+import static org.osgi.service.cm.ConfigurationEvent.CM_DELETED;
+import static org.osgi.service.cm.ConfigurationEvent.CM_UPDATED;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Dictionary;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.ServiceReference;
+import org.osgi.framework.startlevel.BundleStartLevel;
+import org.osgi.service.cm.Configuration;
+import org.osgi.service.cm.ConfigurationAdmin;
+import org.osgi.service.cm.ConfigurationEvent;
+import org.osgi.service.metatype.AttributeDefinition;
+import org.osgi.service.metatype.MetaTypeInformation;
+import org.osgi.service.metatype.MetaTypeService;
+import org.osgi.service.metatype.ObjectClassDefinition;
+
+import com.amitinside.featureflags.api.FeatureSnapshot;
+
+/**
+ * Replays the start, update, toggle, refresh and stop sequences of a large
+ * framework against the {@link FeatureManagerProvider} using synthetic bundles,
+ * metatype and configurations.
+ *
+ * <p>
+ * The harness only runs if the system property {@code featureflags.load} is
+ * {@code true}. The size of the framework and the limits are specified by the
+ * following system properties such that the harness can also be used to size a
+ * deployment:
+ * </p>
+ *
+ * <ul>
+ * <li>{@code featureflags.load.bundles} - number of bundles (default 200)</li>
+ * <li>{@code featureflags.load.pids} - number of PIDs per bundle (default
+ * 5)</li>
+ * <li>{@code featureflags.load.flags} - number of features per PID (default
+ * 10)</li>
+ * <li>{@code featureflags.load.events} - number of replayed configuration
+ * events and toggles (default 2000)</li>
+ * <li>{@code featureflags.load.maxStartupMillis} - maximum duration until all
+ * features are registered (default 10000)</li>
+ * <li>{@code featureflags.load.maxEventMicros} - maximum 99th percentile of the
+ * event latency (default 20000)</li>
+ * <li>{@code featureflags.load.maxHeapBytes} - maximum retained heap per
+ * feature (default 4096)</li>
+ * </ul>
+ */
+public final class FeatureManagerLoadTest {
+
+    private static final int             BUNDLES            = Integer.getInteger("featureflags.load.bundles", 200);
+    private static final int             PIDS               = Integer.getInteger("featureflags.load.pids", 5);
+    private static final int             FLAGS              = Integer.getInteger("featureflags.load.flags", 10);
+    private static final int             EVENTS             = Integer.getInteger("featureflags.load.events", 2000);
+    private static final long            MAX_STARTUP_MILLIS = Long.getLong("featureflags.load.maxStartupMillis", 10000);
+    private static final long            MAX_EVENT_MICROS   = Long.getLong("featureflags.load.maxEventMicros", 20000);
+    private static final long            MAX_HEAP_BYTES     = Long.getLong("featureflags.load.maxHeapBytes", 4096);
+
+    private final Random                 random             = new Random(42);
+    private final SyntheticFramework     framework          = new SyntheticFramework();
+    private final FeatureManagerProvider manager            = new FeatureManagerProvider();
+
+    @BeforeClass
+    public static void assumeEnabled() {
+        assumeTrue("Load harness is disabled", Boolean.getBoolean("featureflags.load"));
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        inject(manager, "metaTypeService", framework.metaTypeService);
+        inject(manager, "configurationAdmin", framework.configurationAdmin);
+        framework.listener = manager;
+        manager.activate(framework.context, gracePeriodConfig());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        manager.deactivate(framework.context);
+    }
+
+    @Test
+    public void testLargeFramework() throws Exception {
+        final int  total    = BUNDLES * PIDS * FLAGS;
+        final long baseline = usedHeap();
+
+        // start all bundles whereby every third PID is already configured
+        for (int b = 1; b <= BUNDLES; b++) {
+            for (int p = 0; p < PIDS; p += 3) {
+                framework.store(pid(b, p), flag(0), true);
+            }
+        }
+        final long start = System.nanoTime();
+        for (final Bundle bundle : framework.bundles) {
+            manager.getExtender()
+                    .addingBundle(bundle, new BundleEvent(BundleEvent.STARTED, bundle));
+        }
+        awaitOrFail(() -> manager.getFeatures()
+                .count() == total, MAX_STARTUP_MILLIS, "Features have not been registered");
+        final long startupMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        awaitOrFail(() -> manager.getFeaturesByPid(pid(BUNDLES, 0))
+                .anyMatch(f -> f.id.equals(flag(0)) && f.isEnabled), MAX_STARTUP_MILLIS,
+                "Configurations have not been applied");
+
+        final long heapPerFlag = Math.max(0, usedHeap() - baseline) / total;
+
+        // replay configuration updates of random PIDs as delivered by ConfigurationAdmin
+        final long[] updateLatencies = new long[EVENTS];
+        for (int i = 0; i < EVENTS; i++) {
+            final String pid = pid(1 + random.nextInt(BUNDLES), random.nextInt(PIDS));
+            framework.store(pid, flag(random.nextInt(FLAGS)), random.nextBoolean());
+            final long eventStart = System.nanoTime();
+            manager.configurationEvent(framework.event(CM_UPDATED, pid));
+            updateLatencies[i] = System.nanoTime() - eventStart;
+        }
+
+        // replay toggles through the feature manager until they become visible
+        final long[] toggleLatencies = new long[EVENTS];
+        for (int i = 0; i < EVENTS; i++) {
+            final long    bundleId  = 1 + random.nextInt(BUNDLES);
+            final String  featureID = flag(random.nextInt(FLAGS));
+            final boolean isEnabled = !manager.getFeature(bundleId, featureID)
+                    .get().isEnabled;
+            final long    toggleStart = System.nanoTime();
+            manager.updateFeature(bundleId, featureID, isEnabled);
+            toggleLatencies[i] = System.nanoTime() - toggleStart;
+            assertEquals(isEnabled, manager.getFeature(bundleId, featureID)
+                    .get().isEnabled);
+        }
+
+        // a snapshot reflects the toggled states and is shared until the next change
+        final FeatureSnapshot snapshot = manager.snapshot();
+        for (int f = 0; f < FLAGS; f++) {
+            final String featureID = flag(f);
+            assertEquals(manager.getFeatures(featureID)
+                    .anyMatch(d -> d.isEnabled), snapshot.isEnabled(featureID));
+        }
+        assertSame(snapshot, manager.snapshot());
+
+        // a transient override is applied immediately, takes precedence over the
+        // configuration and restores the configured states once it is reset
+        final String               overridden = flag(0);
+        final Map<String, Boolean> configured = new HashMap<>();
+        for (int p = 0; p < PIDS; p++) {
+            final String pid = pid(1, p);
+            manager.getFeaturesByPid(pid)
+                    .filter(f -> f.id.equals(overridden))
+                    .forEach(f -> configured.put(pid, f.isEnabled));
+        }
+        manager.overrideFeature(overridden, false, Duration.ofMinutes(1));
+        manager.configurationEvent(framework.event(CM_UPDATED, pid(1, 0)));
+        assertTrue(manager.getFeatures(overridden)
+                .noneMatch(f -> f.isEnabled));
+        manager.resetOverride(overridden);
+        configured.forEach((pid, isEnabled) -> assertTrue(manager.getFeaturesByPid(pid)
+                .anyMatch(f -> f.id.equals(overridden) && f.isEnabled == isEnabled)));
+
+        // replay configuration deletions which revert the features to their defaults
+        for (int b = 1; b <= BUNDLES; b += 10) {
+            framework.delete(pid(b, 0));
+            manager.configurationEvent(framework.event(CM_DELETED, pid(b, 0)));
+            assertTrue(manager.getFeaturesByPid(pid(b, 0))
+                    .noneMatch(f -> f.isEnabled));
+        }
+
+        // refresh a tenth of the bundles which retains the unchanged features
+        // and their states
+        final Map<String, Boolean> states       = new HashMap<>();
+        final long                 version      = manager.getChangesSince(0).version;
+        final long                 refreshStart = System.nanoTime();
+        for (int b = 0; b < BUNDLES; b += 10) {
+            final Bundle bundle = framework.bundles.get(b);
+            for (int p = 0; p < PIDS; p++) {
+                final String pid = pid((int) bundle.getBundleId(), p);
+                manager.getFeaturesByPid(pid)
+                        .forEach(f -> states.put(pid + "/" + f.id, f.isEnabled));
+            }
+            framework.stopTransiently(bundle);
+            manager.getExtender()
+                    .removedBundle(bundle, new BundleEvent(BundleEvent.STOPPED, bundle), null);
+            framework.start(bundle);
+            manager.getExtender()
+                    .addingBundle(bundle, new BundleEvent(BundleEvent.STARTED, bundle));
+        }
+        final long refreshMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - refreshStart);
+        assertEquals(total, manager.getFeatures()
+                .count());
+        for (final Entry<String, Boolean> entry : states.entrySet()) {
+            final String[] key = entry.getKey()
+                    .split("/");
+            assertTrue(manager.getFeaturesByPid(key[0])
+                    .anyMatch(f -> f.id.equals(key[1]) && f.isEnabled == entry.getValue()));
+        }
+        assertTrue("Refresh has changed features", manager.getChangesSince(version).changes.isEmpty());
+
+        // stop half of the bundles
+        final long stopStart = System.nanoTime();
+        for (int b = 0; b < BUNDLES / 2; b++) {
+            final Bundle bundle = framework.bundles.get(b);
+            framework.stop(bundle);
+            manager.getExtender()
+                    .removedBundle(bundle, new BundleEvent(BundleEvent.STOPPED, bundle), null);
+        }
+        final int remaining = (BUNDLES - BUNDLES / 2) * PIDS * FLAGS;
+        awaitOrFail(() -> manager.getFeatures()
+                .count() == remaining, MAX_STARTUP_MILLIS, "Features have not been removed");
+        final long stopMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - stopStart);
+
+        final long   updateP99 = percentileMicros(updateLatencies, 0.99);
+        final long   toggleP99 = percentileMicros(toggleLatencies, 0.99);
+        final String report    = String.format(
+                " [%d bundles x %d PIDs x %d flags]: startup %d ms, refresh %d ms, stop %d ms, "
+                        + "update p99 %d us, toggle p99 %d us, heap %d bytes/flag",
+                BUNDLES, PIDS, FLAGS, startupMillis, refreshMillis, stopMillis, updateP99, toggleP99,
+                heapPerFlag);
+
+        assertTrue("Event latency exceeded" + report, updateP99 <= MAX_EVENT_MICROS);
+        assertTrue("Toggle latency exceeded" + report, toggleP99 <= MAX_EVENT_MICROS);
+        assertTrue("Heap per flag exceeded" + report, heapPerFlag <= MAX_HEAP_BYTES);
+    }
+
+    private static String pid(final int bundle, final int pid) {
+        return "com.example.bundle" + bundle + ".pid" + pid;
+    }
+
+    private static String flag(final int flag) {
+        return "flag" + flag;
+    }
+
+    private static void awaitOrFail(final BooleanSupplier condition, final long timeoutMillis, final String message)
+            throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (!condition.getAsBoolean()) {
+            assertTrue(message + " within " + timeoutMillis + " ms", System.nanoTime() < deadline);
+            Thread.sleep(5);
+        }
+    }
+
+    private static long percentileMicros(final long[] latencies, final double percentile) {
+        final long[] sorted = latencies.clone();
+        Arrays.sort(sorted);
+        final int index = Math.min(sorted.length - 1, (int) Math.ceil(percentile * sorted.length) - 1);
+        return TimeUnit.NANOSECONDS.toMicros(sorted[Math.max(0, index)]);
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        final Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static FeatureManagerConfig gracePeriodConfig() {
+        return (FeatureManagerConfig) Proxy.newProxyInstance(FeatureManagerConfig.class.getClassLoader(),
+                new Class<?>[] { FeatureManagerConfig.class },
+                (proxy, method, args) -> "bundleUpdateGracePeriod".equals(method.getName()) ? 60_000L
+                        : method.getDefaultValue());
+    }
+
+    private static void inject(final Object target, final String name, final Object value) throws Exception {
+        final Field field = target.getClass()
+                .getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+
+    /**
+     * Creates a stand-in of the specified interface which answers the methods
+     * with the specified answers and all other methods with default values
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> T standIn(final Class<T> type, final Map<String, InvocationHandler> answers) {
+        final InvocationHandler handler = (proxy, method, args) -> {
+            final String name = method.getName();
+            if (answers.containsKey(name)) {
+                return answers.get(name)
+                        .invoke(proxy, method, args);
+            }
+            switch (name) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return type.getSimpleName() + "@" + Integer.toHexString(System.identityHashCode(proxy));
+                default:
+                    break;
+            }
+            final Class<?> returnType = method.getReturnType();
+            if (returnType == boolean.class) {
+                return false;
+            }
+            if (returnType == int.class) {
+                return 0;
+            }
+            if (returnType == long.class) {
+                return 0L;
+            }
+            if (returnType.isArray()) {
+                return Array.newInstance(returnType.getComponentType(), 0);
+            }
+            return null;
+        };
+        return (T) Proxy.newProxyInstance(FeatureManagerLoadTest.class.getClassLoader(), new Class<?>[] { type },
+                handler);
+    }
+
+    /**
+     * Synthetic framework consisting of bundles with metatype information and
+     * an in-memory {@link ConfigurationAdmin}
+     */
+    private static final class SyntheticFramework {
+        private final List<Bundle>                            bundles      = new ArrayList<>();
+        private final Map<Bundle, Integer>                    states       = new ConcurrentHashMap<>();
+        private final Map<Bundle, Boolean>                    persistent   = new ConcurrentHashMap<>();
+        private final Map<String, Dictionary<String, Object>> properties   = new ConcurrentHashMap<>();
+        private final Map<String, Long>                       changeCounts = new ConcurrentHashMap<>();
+        private final BundleContext                           context;
+        private final MetaTypeService                         metaTypeService;
+        private final ConfigurationAdmin                      configurationAdmin;
+        private final ServiceReference<?>                     reference;
+        private FeatureManagerProvider                        listener;
+
+        SyntheticFramework() {
+            final Bundle                         systemBundle   = bundle(0);
+            final Map<String, InvocationHandler> contextAnswers = new HashMap<>();
+            contextAnswers.put("getBundle", (proxy, method, args) -> args == null ? systemBundle
+                    : (Long) args[0] == 0 ? systemBundle : bundles.get((int) (long) (Long) args[0] - 1));
+            context = standIn(BundleContext.class, contextAnswers);
+            for (int b = 1; b <= BUNDLES; b++) {
+                final Bundle bundle = bundle(b);
+                bundles.add(bundle);
+                states.put(bundle, ACTIVE);
+            }
+            metaTypeService    = metaTypeService();
+            configurationAdmin = configurationAdmin();
+            reference          = standIn(ServiceReference.class, new HashMap<>());
+        }
+
+        /**
+         * Updates the persisted configuration without notifying the listener
+         */
+        void store(final String pid, final String featureID, final boolean isEnabled) {
+            properties.computeIfAbsent(pid, p -> new Hashtable<>())
+                    .put(METATYPE_FEATURE_ID_PREFIX + featureID, isEnabled);
+            changeCounts.merge(pid, 1L, Long::sum);
+        }
+
+        void delete(final String pid) {
+            properties.remove(pid);
+            changeCounts.remove(pid);
+        }
+
+        void stop(final Bundle bundle) {
+            states.put(bundle, RESOLVED);
+            persistent.put(bundle, false);
+        }
+
+        /**
+         * Stops the specified bundle as an update or a refresh would
+         */
+        void stopTransiently(final Bundle bundle) {
+            states.put(bundle, RESOLVED);
+        }
+
+        void start(final Bundle bundle) {
+            states.put(bundle, ACTIVE);
+            persistent.put(bundle, true);
+        }
+
+        @SuppressWarnings("unchecked")
+        ConfigurationEvent event(final int type, final String pid) {
+            return new ConfigurationEvent((ServiceReference<ConfigurationAdmin>) reference, type, null, pid);
+        }
+
+        private Bundle bundle(final long id) {
+            final Map<String, InvocationHandler> answers = new HashMap<>();
+            answers.put("getBundleId", (proxy, method, args) -> id);
+            answers.put("getSymbolicName", (proxy, method, args) -> "com.example.bundle" + id);
+            answers.put("getState", (proxy, method, args) -> states.getOrDefault(proxy, ACTIVE));
+            answers.put("getBundleContext", (proxy, method, args) -> context);
+            answers.put("getHeaders", (proxy, method, args) -> new Hashtable<>());
+            answers.put("adapt", (proxy, method, args) -> {
+                final Map<String, InvocationHandler> startLevelAnswers = new HashMap<>();
+                startLevelAnswers.put("isPersistentlyStarted",
+                        (p, m, a) -> persistent.getOrDefault(proxy, true));
+                return args[0] == BundleStartLevel.class ? standIn(BundleStartLevel.class, startLevelAnswers) : null;
+            });
+            return standIn(Bundle.class, answers);
+        }
+
+        private MetaTypeService metaTypeService() {
+            final Map<Bundle, MetaTypeInformation> infos = new HashMap<>();
+            for (final Bundle bundle : bundles) {
+                final int      b    = (int) bundle.getBundleId();
+                final String[] pids = new String[PIDS];
+                for (int p = 0; p < PIDS; p++) {
+                    pids[p] = pid(b, p);
+                }
+                final ObjectClassDefinition          ocd         = ocd();
+                final Map<String, InvocationHandler> infoAnswers = new HashMap<>();
+                infoAnswers.put("getPids", (proxy, method, args) -> pids);
+                infoAnswers.put("getObjectClassDefinition", (proxy, method, args) -> ocd);
+                infos.put(bundle, standIn(MetaTypeInformation.class, infoAnswers));
+            }
+            final Map<String, InvocationHandler> answers = new HashMap<>();
+            answers.put("getMetaTypeInformation", (proxy, method, args) -> infos.get(args[0]));
+            return standIn(MetaTypeService.class, answers);
+        }
+
+        private static ObjectClassDefinition ocd() {
+            final AttributeDefinition[] ads = new AttributeDefinition[FLAGS];
+            for (int f = 0; f < FLAGS; f++) {
+                final String                         id      = METATYPE_FEATURE_ID_PREFIX + flag(f);
+                final Map<String, InvocationHandler> answers = new HashMap<>();
+                answers.put("getID", (proxy, method, args) -> id);
+                answers.put("getName", (proxy, method, args) -> "Feature " + id);
+                answers.put("getDescription", (proxy, method, args) -> "Description of " + id);
+                answers.put("getType", (proxy, method, args) -> AttributeDefinition.BOOLEAN);
+                answers.put("getDefaultValue", (proxy, method, args) -> new String[] { "false" });
+                ads[f] = standIn(AttributeDefinition.class, answers);
+            }
+            final Map<String, InvocationHandler> answers = new HashMap<>();
+            answers.put("getAttributeDefinitions", (proxy, method, args) -> ads);
+            return standIn(ObjectClassDefinition.class, answers);
+        }
+
+        private ConfigurationAdmin configurationAdmin() {
+            final Map<String, InvocationHandler> answers = new HashMap<>();
+            answers.put("getConfiguration", (proxy, method, args) -> configuration((String) args[0]));
+            answers.put("listConfigurations", (proxy, method, args) -> {
+                // either a single PID or a disjunction of PIDs
+                final String              filter = (String) args[0];
+                final String              prefix = "(service.pid=";
+                final List<Configuration> result = new ArrayList<>();
+                int                       start  = filter == null ? -1 : filter.indexOf(prefix);
+                while (start >= 0) {
+                    final int    end = filter.indexOf(')', start);
+                    final String pid = filter.substring(start + prefix.length(), end);
+                    if (properties.containsKey(pid)) {
+                        result.add(configuration(pid));
+                    }
+                    start = filter.indexOf(prefix, end);
+                }
+                return result.isEmpty() ? null : result.toArray(new Configuration[0]);
+            });
+            return standIn(ConfigurationAdmin.class, answers);
+        }
+
+        private Configuration configuration(final String pid) {
+            final Map<String, InvocationHandler> answers = new HashMap<>();
+            answers.put("getPid", (proxy, method, args) -> pid);
+            answers.put("getProperties", (proxy, method, args) -> {
+                final Dictionary<String, Object> props = properties.get(pid);
+                return props == null ? null : new Hashtable<>(toMap(props));
+            });
+            answers.put("getChangeCount", (proxy, method, args) -> changeCounts.getOrDefault(pid, 0L));
+            final InvocationHandler update = (proxy, method, args) -> {
+                @SuppressWarnings("unchecked")
+                final Dictionary<String, Object> props = (Dictionary<String, Object>) args[0];
+                properties.put(pid, new Hashtable<>(toMap(props)));
+                changeCounts.merge(pid, 1L, Long::sum);
+                // delivered synchronously to measure the round trip of a toggle
+                listener.configurationEvent(event(CM_UPDATED, pid));
+                return method.getReturnType() == boolean.class ? Boolean.TRUE : null;
+            };
+            answers.put("update", update);
+            answers.put("updateIfDifferent", update);
+            return standIn(Configuration.class, answers);
+        }
+
+        private static Map<String, Object> toMap(final Dictionary<String, Object> dictionary) {
+            final Map<String, Object> map = new HashMap<>();
+            for (final String key : Collections.list(dictionary.keys())) {
+                map.put(key, dictionary.get(key));
+            }
+            return map;
+        }
+    }
+
+}
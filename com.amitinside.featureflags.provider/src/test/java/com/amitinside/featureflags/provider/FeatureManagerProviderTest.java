@@ -1,28 +1,45 @@
 package com.amitinside.featureflags.provider;
 
+import static com.amitinside.featureflags.api.OverflowPolicy.DROP_OLDEST;
+import static java.util.Collections.emptyMap;
+import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.osgi.framework.Bundle.ACTIVE;
 import static org.osgi.service.metatype.ObjectClassDefinition.ALL;
 
 import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Dictionary;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
 import java.util.stream.Collectors;
 
 import org.apache.felix.utils.collections.MapToDictionary;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.BundleEvent;
+import org.osgi.framework.BundleListener;
 import org.osgi.framework.ServiceReference;
+import org.osgi.framework.startlevel.BundleStartLevel;
 import org.osgi.service.cm.Configuration;
 import org.osgi.service.cm.ConfigurationAdmin;
 import org.osgi.service.cm.ConfigurationEvent;
@@ -31,8 +48,14 @@ import org.osgi.service.metatype.MetaTypeInformation;
 import org.osgi.service.metatype.MetaTypeService;
 import org.osgi.service.metatype.ObjectClassDefinition;
 
+import com.amitinside.featureflags.api.CircuitBreakerPolicyDTO;
+import com.amitinside.featureflags.api.FeatureChangeEvent;
+import com.amitinside.featureflags.api.FeatureChangeSubscriber;
+import com.amitinside.featureflags.api.FeatureChangeSubscription;
 import com.amitinside.featureflags.api.FeatureDTO;
 import com.amitinside.featureflags.api.FeatureManager;
+import com.amitinside.featureflags.api.FeatureStatsDTO;
+import com.amitinside.featureflags.provider.OverrideStore.Durability;
 
 @RunWith(MockitoJUnitRunner.class)
 public final class FeatureManagerProviderTest {
@@ -61,6 +84,8 @@ public final class FeatureManagerProviderTest {
     private AttributeDefinition    ad;
     @Mock
     private Configuration          configuration;
+    @Mock
+    private BundleStartLevel       startLevel;
     @SuppressWarnings("rawtypes")
     @Mock
     private ServiceReference       reference;
@@ -70,7 +95,7 @@ public final class FeatureManagerProviderTest {
 
     @Test
     public void testGetFeaturesFromMetatypeXMLDescriptorWithoutDefaultValue() throws Exception {
-        manager.activate(bundleContext1);
+        manager.activate(bundleContext1, defaultConfig());
 
         final MetaTypeExtender extender    = manager.getExtender();
         final String[]         pids        = new String[] { "a" };
@@ -108,9 +133,49 @@ public final class FeatureManagerProviderTest {
         extender.removedBundle(bundle, bundleEvent, null);
     }
 
+    @Test
+    public void testGracePeriodOnlyRetainsFeaturesOfUpdatedBundles() throws Exception {
+        manager.activate(bundleContext1, gracePeriodConfig());
+
+        final MetaTypeExtender               extender    = manager.getExtender();
+        final BundleEvent                    bundleEvent = new BundleEvent(BundleEvent.STARTED, bundle);
+        final ArgumentCaptor<BundleListener> listener    = ArgumentCaptor.forClass(BundleListener.class);
+        verify(bundleContext1).addBundleListener(listener.capture());
+        extender.setSynchronous(true);
+
+        when(metaTypeService.getMetaTypeInformation(bundle)).thenReturn(metaTypeInfo);
+        when(metaTypeInfo.getPids()).thenReturn(new String[] { "a" });
+        when(metaTypeInfo.getObjectClassDefinition("a", null)).thenReturn(ocd);
+        when(ocd.getAttributeDefinitions(ALL)).thenReturn(new AttributeDefinition[] { ad });
+        mockADWithoutDefaultValue();
+        when(bundleContext1.getBundle(0)).thenReturn(systemBundle);
+        when(bundle.getState()).thenReturn(ACTIVE);
+        when(bundle.getBundleContext()).thenReturn(bundleContext1);
+        when(bundle.adapt(BundleStartLevel.class)).thenReturn(startLevel);
+
+        // an update stops the bundle transiently
+        when(startLevel.isPersistentlyStarted()).thenReturn(true);
+        extender.addingBundle(bundle, bundleEvent);
+        extender.removedBundle(bundle, bundleEvent, null);
+        assertEquals(1, manager.getFeatures()
+                .count());
+
+        listener.getValue()
+                .bundleChanged(new BundleEvent(BundleEvent.UNINSTALLED, bundle));
+        assertEquals(0, manager.getFeatures()
+                .count());
+
+        // a persistent stop does not retain the features
+        when(startLevel.isPersistentlyStarted()).thenReturn(false);
+        extender.addingBundle(bundle, bundleEvent);
+        extender.removedBundle(bundle, bundleEvent, null);
+        assertEquals(0, manager.getFeatures()
+                .count());
+    }
+
     @Test
     public void testGetFeaturesFromMetatypeXMLDescriptorWithDefaultValue() throws Exception {
-        manager.activate(bundleContext1);
+        manager.activate(bundleContext1, defaultConfig());
 
         final MetaTypeExtender extender    = manager.getExtender();
         final String[]         pids        = new String[] { "a" };
@@ -150,7 +215,7 @@ public final class FeatureManagerProviderTest {
 
     @Test
     public void testGetFeaturesFromMetatypeXMLDescriptorWithoutName() throws Exception {
-        manager.activate(bundleContext1);
+        manager.activate(bundleContext1, defaultConfig());
 
         final MetaTypeExtender extender    = manager.getExtender();
         final String[]         pids        = new String[] { "a" };
@@ -193,7 +258,7 @@ public final class FeatureManagerProviderTest {
 
     @Test
     public void testGetFeaturesFromMetatypeXMLDescriptorWithDefaultValueAndProperties() throws Exception {
-        manager.activate(bundleContext1);
+        manager.activate(bundleContext1, defaultConfig());
 
         final MetaTypeExtender extender    = manager.getExtender();
         final String[]         pids        = new String[] { "a" };
@@ -233,7 +298,7 @@ public final class FeatureManagerProviderTest {
 
     @Test
     public void testGetFeaturesFromMetatypeXMLDescriptorWithoutAnySpecifiedFeatures() throws Exception {
-        manager.activate(bundleContext1);
+        manager.activate(bundleContext1, defaultConfig());
 
         final MetaTypeExtender extender    = manager.getExtender();
         final String[]         pids        = new String[] { "a" };
@@ -258,7 +323,7 @@ public final class FeatureManagerProviderTest {
     @SuppressWarnings("unchecked")
     @Test
     public void testConfigurationEventUpdated() throws Exception {
-        manager.activate(bundleContext1);
+        manager.activate(bundleContext1, defaultConfig());
 
         final MetaTypeExtender extender    = manager.getExtender();
         final String[]         pids        = new String[] { "a" };
@@ -296,7 +361,8 @@ public final class FeatureManagerProviderTest {
         final Map<String, Object> properties = new HashMap<>();
         properties.put("osgi.feature.myfeature", true);
 
-        when(configurationAdmin.getConfiguration("a", "?")).thenReturn(configuration);
+        when(configurationAdmin.listConfigurations("(service.pid=a)"))
+                .thenReturn(new Configuration[] { configuration });
         when(configuration.getProperties()).thenReturn(new MapToDictionary(properties));
 
         final ConfigurationEvent configEvent = new ConfigurationEvent(reference, 1, null, "a");
@@ -309,7 +375,7 @@ public final class FeatureManagerProviderTest {
 
     @Test
     public void testConfigurationEventDeleted() throws Exception {
-        manager.activate(bundleContext1);
+        manager.activate(bundleContext1, defaultConfig());
 
         final MetaTypeExtender extender    = manager.getExtender();
         final String[]         pids        = new String[] { "a" };
@@ -344,19 +410,33 @@ public final class FeatureManagerProviderTest {
         assertEquals(FEATURE_DESC, feature.description);
         assertFalse(feature.isEnabled);
 
+        final Map<String, Object> properties = new HashMap<>();
+        properties.put("osgi.feature.myfeature", true);
+
+        when(configurationAdmin.listConfigurations("(service.pid=a)"))
+                .thenReturn(new Configuration[] { configuration });
+        when(configuration.getProperties()).thenReturn(new MapToDictionary(properties));
+
+        @SuppressWarnings("unchecked")
+        final ConfigurationEvent updateEvent = new ConfigurationEvent(reference, 1, null, "a");
+        manager.configurationEvent(updateEvent);
+
+        assertTrue(manager.getFeatures(FEATURE_ID).findAny().get().isEnabled);
+
         @SuppressWarnings("unchecked")
         final ConfigurationEvent configEvent = new ConfigurationEvent(reference, 2, null, "a");
         manager.configurationEvent(configEvent);
 
         final List<FeatureDTO> newFeatures = manager.getFeatures().collect(Collectors.toList());
 
-        assertTrue(newFeatures.isEmpty());
+        assertEquals(1, newFeatures.size());
+        assertFalse(newFeatures.get(0).isEnabled);
     }
 
     @SuppressWarnings("unchecked")
     @Test
     public void testConfigurationEventUpdatedButIOException() throws Exception {
-        manager.activate(bundleContext1);
+        manager.activate(bundleContext1, defaultConfig());
 
         final MetaTypeExtender extender    = manager.getExtender();
         final String[]         pids        = new String[] { "a" };
@@ -391,7 +471,7 @@ public final class FeatureManagerProviderTest {
         assertEquals(FEATURE_DESC, feature.description);
         assertFalse(feature.isEnabled);
 
-        when(configurationAdmin.getConfiguration("a", "?")).thenThrow(IOException.class);
+        when(configurationAdmin.listConfigurations("(service.pid=a)")).thenThrow(IOException.class);
 
         final ConfigurationEvent configEvent = new ConfigurationEvent(reference, 1, null, "a");
         manager.configurationEvent(configEvent);
@@ -403,7 +483,7 @@ public final class FeatureManagerProviderTest {
 
     @Test
     public void testUpdateFeature1() throws Exception {
-        manager.activate(bundleContext1);
+        manager.activate(bundleContext1, defaultConfig());
 
         final MetaTypeExtender extender    = manager.getExtender();
         final String[]         pids        = new String[] { "a" };
@@ -450,7 +530,7 @@ public final class FeatureManagerProviderTest {
 
     @Test
     public void testUpdateFeature2() throws Exception {
-        manager.activate(bundleContext1);
+        manager.activate(bundleContext1, defaultConfig());
 
         final MetaTypeExtender extender    = manager.getExtender();
         final String[]         pids        = new String[] { "a" };
@@ -498,7 +578,7 @@ public final class FeatureManagerProviderTest {
     @SuppressWarnings("unchecked")
     @Test
     public void testUpdateFeature3() throws Exception {
-        manager.activate(bundleContext1);
+        manager.activate(bundleContext1, defaultConfig());
 
         final MetaTypeExtender extender    = manager.getExtender();
         final String[]         pids        = new String[] { "a" };
@@ -543,9 +623,366 @@ public final class FeatureManagerProviderTest {
         manager.deactivate(bundleContext1);
     }
 
+    @Test
+    public void testKillSwitch() throws Exception {
+        manager.activate(bundleContext1, defaultConfig());
+
+        final MetaTypeExtender extender    = manager.getExtender();
+        final String[]         pids        = new String[] { "a" };
+        final BundleEvent      bundleEvent = new BundleEvent(BundleEvent.STARTED, bundle);
+
+        when(metaTypeService.getMetaTypeInformation(bundle)).thenReturn(metaTypeInfo);
+        when(metaTypeInfo.getPids()).thenReturn(pids);
+        when(metaTypeInfo.getObjectClassDefinition("a", null)).thenReturn(ocd);
+        when(ocd.getAttributeDefinitions(ALL)).thenReturn(new AttributeDefinition[] { ad });
+        mockADWithDefaultValue();
+        when(bundleContext1.getBundle(0)).thenReturn(systemBundle);
+        when(bundle.getState()).thenReturn(ACTIVE);
+        when(bundle.getBundleContext()).thenReturn(bundleContext1);
+
+        extender.setSynchronous(true);
+        extender.addingBundle(bundle, bundleEvent);
+
+        assertTrue(manager.getFeatures(FEATURE_ID).findAny().get().isEnabled);
+        assertFalse(manager.isKillSwitchEngaged());
+
+        manager.engageKillSwitch();
+
+        assertTrue(manager.isKillSwitchEngaged());
+        assertFalse(manager.getFeatures(FEATURE_ID).findAny().get().isEnabled);
+
+        manager.releaseKillSwitch();
+
+        assertFalse(manager.isKillSwitchEngaged());
+        assertTrue(manager.getFeatures(FEATURE_ID).findAny().get().isEnabled);
+
+        manager.deactivate(bundleContext1);
+    }
+
+    @Test
+    public void testKillSwitchWithEssentialFeature() throws Exception {
+        manager.activate(bundleContext1, defaultConfig());
+
+        final MetaTypeExtender    extender    = manager.getExtender();
+        final String[]            pids        = new String[] { "a" };
+        final BundleEvent         bundleEvent = new BundleEvent(BundleEvent.STARTED, bundle);
+        final AttributeDefinition essentialAD = mock(AttributeDefinition.class);
+
+        when(metaTypeService.getMetaTypeInformation(bundle)).thenReturn(metaTypeInfo);
+        when(metaTypeInfo.getPids()).thenReturn(pids);
+        when(metaTypeInfo.getObjectClassDefinition("a", null)).thenReturn(ocd);
+        when(ocd.getAttributeDefinitions(ALL)).thenReturn(new AttributeDefinition[] { ad, essentialAD });
+        mockADWithDefaultValue();
+        when(essentialAD.getID()).thenReturn(FeatureManager.METATYPE_ESSENTIAL_FEATURE_ID_PREFIX + FEATURE_ID);
+        when(essentialAD.getDefaultValue()).thenReturn(new String[] { "true" });
+        when(bundleContext1.getBundle(0)).thenReturn(systemBundle);
+        when(bundle.getState()).thenReturn(ACTIVE);
+        when(bundle.getBundleContext()).thenReturn(bundleContext1);
+
+        extender.setSynchronous(true);
+        extender.addingBundle(bundle, bundleEvent);
+
+        manager.engageKillSwitch();
+
+        final FeatureDTO feature = manager.getFeatures(FEATURE_ID).findAny().get();
+
+        assertTrue(feature.isEssential);
+        assertTrue(feature.isEnabled);
+
+        manager.deactivate(bundleContext1);
+    }
+
+    @Test
+    public void testStoredOverrideDiscardedByNewerConfiguration() throws Exception {
+        manager.activate(bundleContext1, overrideStoreConfig());
+
+        final MetaTypeExtender    extender    = manager.getExtender();
+        final String[]            pids        = new String[] { "a" };
+        final BundleEvent         bundleEvent = new BundleEvent(BundleEvent.STARTED, bundle);
+        final Map<String, Object> properties  = new HashMap<>();
+        properties.put("osgi.feature.myfeature", true);
+
+        when(metaTypeService.getMetaTypeInformation(bundle)).thenReturn(metaTypeInfo);
+        when(metaTypeInfo.getPids()).thenReturn(pids);
+        when(metaTypeInfo.getObjectClassDefinition("a", null)).thenReturn(ocd);
+        when(ocd.getAttributeDefinitions(ALL)).thenReturn(new AttributeDefinition[] { ad });
+        mockADWithoutDefaultValue();
+        when(bundleContext1.getBundle(0)).thenReturn(systemBundle);
+        when(bundle.getState()).thenReturn(ACTIVE);
+        when(bundle.getBundleContext()).thenReturn(bundleContext1);
+        when(configurationAdmin.listConfigurations("(service.pid=a)"))
+                .thenReturn(new Configuration[] { configuration });
+        when(configuration.getProperties()).thenReturn(new MapToDictionary(properties));
+
+        extender.setSynchronous(true);
+        extender.addingBundle(bundle, bundleEvent);
+
+        manager.configurationEvent(new ConfigurationEvent(reference, 1, null, "a"));
+        assertTrue(manager.getFeatures(FEATURE_ID).findAny().get().isEnabled);
+
+        manager.updateFeature(FEATURE_ID, false);
+        assertFalse(manager.getFeatures(FEATURE_ID).findAny().get().isEnabled);
+
+        // the configured state has not changed
+        manager.configurationEvent(new ConfigurationEvent(reference, 1, null, "a"));
+        assertFalse(manager.getFeatures(FEATURE_ID).findAny().get().isEnabled);
+
+        properties.put("osgi.feature.myfeature", false);
+        manager.configurationEvent(new ConfigurationEvent(reference, 1, null, "a"));
+        properties.put("osgi.feature.myfeature", true);
+        manager.configurationEvent(new ConfigurationEvent(reference, 1, null, "a"));
+
+        assertTrue(manager.getFeatures(FEATURE_ID).findAny().get().isEnabled);
+        assertTrue(manager.clearOverrides()
+                .isEmpty());
+
+        manager.deactivate(bundleContext1);
+    }
+
+    @Test
+    public void testClearOverrides() throws Exception {
+        manager.activate(bundleContext1, overrideStoreConfig());
+
+        final MetaTypeExtender    extender    = manager.getExtender();
+        final String[]            pids        = new String[] { "a" };
+        final BundleEvent         bundleEvent = new BundleEvent(BundleEvent.STARTED, bundle);
+        final Map<String, Object> properties  = new HashMap<>();
+        properties.put("osgi.feature.myfeature", true);
+
+        when(metaTypeService.getMetaTypeInformation(bundle)).thenReturn(metaTypeInfo);
+        when(metaTypeInfo.getPids()).thenReturn(pids);
+        when(metaTypeInfo.getObjectClassDefinition("a", null)).thenReturn(ocd);
+        when(ocd.getAttributeDefinitions(ALL)).thenReturn(new AttributeDefinition[] { ad });
+        mockADWithoutDefaultValue();
+        when(bundleContext1.getBundle(0)).thenReturn(systemBundle);
+        when(bundle.getState()).thenReturn(ACTIVE);
+        when(bundle.getBundleContext()).thenReturn(bundleContext1);
+        when(configurationAdmin.listConfigurations("(service.pid=a)"))
+                .thenReturn(new Configuration[] { configuration });
+        when(configuration.getProperties()).thenReturn(new MapToDictionary(properties));
+
+        extender.setSynchronous(true);
+        extender.addingBundle(bundle, bundleEvent);
+
+        manager.configurationEvent(new ConfigurationEvent(reference, 1, null, "a"));
+        manager.updateFeatureAsync(FEATURE_ID, false)
+                .getValue();
+
+        assertFalse(manager.getFeatures(FEATURE_ID).findAny().get().isEnabled);
+        assertEquals(Collections.singleton(FEATURE_ID), manager.clearOverrides());
+        assertTrue(manager.getFeatures(FEATURE_ID).findAny().get().isEnabled);
+
+        manager.deactivate(bundleContext1);
+    }
+
+    @Test
+    public void testTransientOverrideRedeliversConfiguration() throws Exception {
+        manager.activate(bundleContext1, defaultConfig());
+
+        final MetaTypeExtender    extender    = manager.getExtender();
+        final String[]            pids        = new String[] { "a" };
+        final BundleEvent         bundleEvent = new BundleEvent(BundleEvent.STARTED, bundle);
+        final Map<String, Object> properties  = new HashMap<>();
+        properties.put("osgi.feature.myfeature", true);
+
+        when(metaTypeService.getMetaTypeInformation(bundle)).thenReturn(metaTypeInfo);
+        when(metaTypeInfo.getPids()).thenReturn(pids);
+        when(metaTypeInfo.getObjectClassDefinition("a", null)).thenReturn(ocd);
+        when(ocd.getAttributeDefinitions(ALL)).thenReturn(new AttributeDefinition[] { ad });
+        mockADWithoutDefaultValue();
+        when(bundleContext1.getBundle(0)).thenReturn(systemBundle);
+        when(bundle.getState()).thenReturn(ACTIVE);
+        when(bundle.getBundleContext()).thenReturn(bundleContext1);
+        when(configurationAdmin.listConfigurations("(service.pid=a)"))
+                .thenReturn(new Configuration[] { configuration });
+        when(configuration.getProperties()).thenReturn(new MapToDictionary(properties));
+
+        extender.setSynchronous(true);
+        extender.addingBundle(bundle, bundleEvent);
+
+        manager.configurationEvent(new ConfigurationEvent(reference, 1, null, "a"));
+        final Semaphore delivered = new Semaphore(0);
+        doAnswer(invocation -> {
+            delivered.release();
+            return null;
+        }).when(configuration)
+                .update();
+        manager.overrideFeature(FEATURE_ID, false, Duration.ofMillis(500));
+
+        assertTrue(delivered.tryAcquire(5, SECONDS));
+        assertFalse(manager.getFeatures(FEATURE_ID).findAny().get().isEnabled);
+        verify(configuration, times(1)).update();
+
+        // the expiry delivers the configuration again without the override
+        assertTrue(delivered.tryAcquire(5, SECONDS));
+        assertTrue(manager.getFeatures(FEATURE_ID).findAny().get().isEnabled);
+        verify(configuration, times(2)).update();
+
+        manager.deactivate(bundleContext1);
+    }
+
+    @Test
+    public void testRemovingOpenCircuitBreakerEnablesFeature() throws Exception {
+        manager.activate(bundleContext1, defaultConfig());
+
+        final MetaTypeExtender    extender    = manager.getExtender();
+        final String[]            pids        = new String[] { "a" };
+        final BundleEvent         bundleEvent = new BundleEvent(BundleEvent.STARTED, bundle);
+        final Map<String, Object> properties  = new HashMap<>();
+        properties.put("osgi.feature.myfeature", true);
+
+        when(metaTypeService.getMetaTypeInformation(bundle)).thenReturn(metaTypeInfo);
+        when(metaTypeInfo.getPids()).thenReturn(pids);
+        when(metaTypeInfo.getObjectClassDefinition("a", null)).thenReturn(ocd);
+        when(ocd.getAttributeDefinitions(ALL)).thenReturn(new AttributeDefinition[] { ad });
+        mockADWithoutDefaultValue();
+        when(bundleContext1.getBundle(0)).thenReturn(systemBundle);
+        when(bundle.getState()).thenReturn(ACTIVE);
+        when(bundle.getBundleContext()).thenReturn(bundleContext1);
+        when(configurationAdmin.listConfigurations("(service.pid=a)"))
+                .thenReturn(new Configuration[] { configuration });
+        when(configuration.getProperties()).thenReturn(new MapToDictionary(properties));
+
+        extender.setSynchronous(true);
+        extender.addingBundle(bundle, bundleEvent);
+
+        manager.configurationEvent(new ConfigurationEvent(reference, 1, null, "a"));
+
+        // the open circuit breaker never probes the feature once it is removed
+        manager.setCircuitBreaker(FEATURE_ID, breakerPolicy());
+        manager.recordOutcome(FEATURE_ID, false);
+        manager.recordOutcome(FEATURE_ID, false);
+        assertFalse(manager.getFeatures(FEATURE_ID).findAny().get().isEnabled);
+
+        manager.setCircuitBreaker(FEATURE_ID, null);
+        assertTrue(manager.getFeatures(FEATURE_ID).findAny().get().isEnabled);
+
+        // neither does it once it is replaced
+        manager.setCircuitBreaker(FEATURE_ID, breakerPolicy());
+        manager.recordOutcome(FEATURE_ID, false);
+        manager.recordOutcome(FEATURE_ID, false);
+        assertFalse(manager.getFeatures(FEATURE_ID).findAny().get().isEnabled);
+
+        manager.setCircuitBreaker(FEATURE_ID, breakerPolicy());
+        assertTrue(manager.getFeatures(FEATURE_ID).findAny().get().isEnabled);
+        assertEquals("CLOSED", manager.getCircuitBreakers().findAny().get().state);
+
+        manager.deactivate(bundleContext1);
+    }
+
+    @Test
+    public void testCircuitBreakerRestoresConfiguredStates() throws Exception {
+        manager.activate(bundleContext1, defaultConfig());
+
+        final MetaTypeExtender    extender       = manager.getExtender();
+        final BundleEvent         bundleEvent    = new BundleEvent(BundleEvent.STARTED, bundle);
+        final Configuration       configurationB = mock(Configuration.class);
+        final Map<String, Object> propertiesA    = new HashMap<>();
+        final Map<String, Object> propertiesB    = new HashMap<>();
+        propertiesA.put("osgi.feature.myfeature", true);
+        propertiesB.put("osgi.feature.myfeature", false);
+
+        when(metaTypeService.getMetaTypeInformation(bundle)).thenReturn(metaTypeInfo);
+        when(metaTypeInfo.getPids()).thenReturn(new String[] { "a", "b" });
+        when(metaTypeInfo.getObjectClassDefinition("a", null)).thenReturn(ocd);
+        when(metaTypeInfo.getObjectClassDefinition("b", null)).thenReturn(ocd);
+        when(ocd.getAttributeDefinitions(ALL)).thenReturn(new AttributeDefinition[] { ad });
+        mockADWithoutDefaultValue();
+        when(bundleContext1.getBundle(0)).thenReturn(systemBundle);
+        when(bundle.getState()).thenReturn(ACTIVE);
+        when(bundle.getBundleContext()).thenReturn(bundleContext1);
+        when(configuration.getPid()).thenReturn("a");
+        when(configurationB.getPid()).thenReturn("b");
+        when(configurationAdmin.listConfigurations("(service.pid=a)"))
+                .thenReturn(new Configuration[] { configuration });
+        when(configurationAdmin.listConfigurations("(service.pid=b)"))
+                .thenReturn(new Configuration[] { configurationB });
+        when(configuration.getProperties()).thenReturn(new MapToDictionary(propertiesA));
+        when(configurationB.getProperties()).thenReturn(new MapToDictionary(propertiesB));
+
+        extender.setSynchronous(true);
+        extender.addingBundle(bundle, bundleEvent);
+
+        manager.configurationEvent(new ConfigurationEvent(reference, 1, null, "a"));
+        manager.configurationEvent(new ConfigurationEvent(reference, 1, null, "b"));
+        assertEquals(Boolean.TRUE, isEnabled("a"));
+        assertEquals(Boolean.FALSE, isEnabled("b"));
+
+        final CircuitBreakerPolicyDTO policy = breakerPolicy();
+        policy.openDuration = 1;
+        policy.probeCalls   = 1;
+        manager.setCircuitBreaker(FEATURE_ID, policy);
+        final CountDownLatch probed = awaitChange(FEATURE_ID, true);
+        manager.recordOutcome(FEATURE_ID, false);
+        manager.recordOutcome(FEATURE_ID, false);
+        assertEquals(Boolean.FALSE, isEnabled("a"));
+
+        // the probe restores the configured states instead of enabling all
+        assertTrue(probed.await(5, SECONDS));
+        assertEquals("HALF_OPEN", manager.getCircuitBreakers().findAny().get().state);
+        assertEquals(Boolean.TRUE, isEnabled("a"));
+        assertEquals(Boolean.FALSE, isEnabled("b"));
+
+        manager.recordOutcome(FEATURE_ID, true);
+        assertEquals("CLOSED", manager.getCircuitBreakers().findAny().get().state);
+        assertEquals(Boolean.TRUE, isEnabled("a"));
+        assertEquals(Boolean.FALSE, isEnabled("b"));
+
+        // the states of a circuit breaker are never persisted
+        verify(configuration, times(0)).updateIfDifferent(any(Dictionary.class));
+        verify(configurationB, times(0)).updateIfDifferent(any(Dictionary.class));
+        manager.deactivate(bundleContext1);
+    }
+
+    @Test
+    public void testFeatureStats() throws Exception {
+        manager.activate(bundleContext1, defaultConfig());
+
+        final MetaTypeExtender extender    = manager.getExtender();
+        final String[]         pids        = new String[] { "a" };
+        final BundleEvent      bundleEvent = new BundleEvent(BundleEvent.STARTED, bundle);
+
+        when(metaTypeService.getMetaTypeInformation(bundle)).thenReturn(metaTypeInfo);
+        when(metaTypeInfo.getPids()).thenReturn(pids);
+        when(metaTypeInfo.getObjectClassDefinition("a", null)).thenReturn(ocd);
+        when(ocd.getAttributeDefinitions(ALL)).thenReturn(new AttributeDefinition[] { ad });
+        mockADWithDefaultValue();
+        when(bundleContext1.getBundle(0)).thenReturn(systemBundle);
+        when(bundle.getState()).thenReturn(ACTIVE);
+        when(bundle.getBundleContext()).thenReturn(bundleContext1);
+
+        extender.setSynchronous(true);
+        extender.addingBundle(bundle, bundleEvent);
+
+        FeatureStatsDTO stats = manager.getFeatureStats().findAny().get();
+
+        assertEquals(FEATURE_ID, stats.id);
+        assertEquals(0, stats.evaluationCount);
+        assertEquals(0, stats.lastEvaluated);
+
+        manager.getFeatures(FEATURE_ID).findAny();
+        manager.getFeature(1, FEATURE_ID);
+
+        stats = manager.getFeatureStats().findAny().get();
+
+        assertEquals(0, stats.evaluationCount);
+
+        manager.isEnabled(FEATURE_ID, emptyMap());
+        manager.snapshot()
+                .isEnabled(FEATURE_ID);
+
+        stats = manager.getFeatureStats().findAny().get();
+
+        assertEquals(2, stats.evaluationCount);
+        assertTrue(stats.lastEvaluated >= stats.trackedSince);
+        assertFalse(manager.getStaleFeatures(Duration.ofDays(1)).findAny().isPresent());
+
+        manager.deactivate(bundleContext1);
+    }
+
     @Test
     public void testPreemptiveShutdown1() throws Exception {
-        manager.activate(bundleContext1);
+        manager.activate(bundleContext1, defaultConfig());
 
         final MetaTypeExtender extender = manager.getExtender();
         extender.error(">>>>ERROR<<<<<", new RuntimeException());
@@ -553,7 +990,7 @@ public final class FeatureManagerProviderTest {
 
     @Test
     public void testPreemptiveShutdown2() throws Exception {
-        manager.activate(bundleContext1);
+        manager.activate(bundleContext1, defaultConfig());
 
         final MetaTypeExtender extender = manager.getExtender();
         extender.warn(bundle, ">>>>WARNING<<<<<", new RuntimeException());
@@ -589,6 +1026,78 @@ public final class FeatureManagerProviderTest {
         manager.updateFeature("", false);
     }
 
+    /**
+     * Returns a latch which is released once the feature with the specified ID
+     * has changed to the specified state
+     */
+    private CountDownLatch awaitChange(final String featureID, final boolean isEnabled) {
+        final CountDownLatch latch = new CountDownLatch(1);
+        manager.subscribe(new FeatureChangeSubscriber() {
+            @Override
+            public void onSubscribe(final FeatureChangeSubscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(final FeatureChangeEvent event) {
+                if (event.isEnabled == isEnabled) {
+                    latch.countDown();
+                }
+            }
+
+            @Override
+            public void onError(final Throwable throwable) {
+                // not required
+            }
+
+            @Override
+            public void onComplete() {
+                // not required
+            }
+        }, featureID, 16, DROP_OLDEST);
+        return latch;
+    }
+
+    private Boolean isEnabled(final String pid) {
+        return manager.getFeaturesByPid(pid)
+                .filter(f -> f.id.equals(FEATURE_ID))
+                .map(f -> f.isEnabled)
+                .findAny()
+                .orElse(null);
+    }
+
+    private static CircuitBreakerPolicyDTO breakerPolicy() {
+        final CircuitBreakerPolicyDTO policy = new CircuitBreakerPolicyDTO();
+        policy.minimumCalls = 2;
+        policy.openDuration = 60_000;
+        return policy;
+    }
+
+    private static FeatureManagerConfig defaultConfig() {
+        return (FeatureManagerConfig) Proxy.newProxyInstance(FeatureManagerConfig.class.getClassLoader(),
+                new Class<?>[] { FeatureManagerConfig.class }, (proxy, method, args) -> method.getDefaultValue());
+    }
+
+    private static FeatureManagerConfig gracePeriodConfig() {
+        return (FeatureManagerConfig) Proxy.newProxyInstance(FeatureManagerConfig.class.getClassLoader(),
+                new Class<?>[] { FeatureManagerConfig.class },
+                (proxy, method, args) -> "bundleUpdateGracePeriod".equals(method.getName()) ? 60_000L
+                        : method.getDefaultValue());
+    }
+
+    private static FeatureManagerConfig overrideStoreConfig() {
+        return (FeatureManagerConfig) Proxy.newProxyInstance(FeatureManagerConfig.class.getClassLoader(),
+                new Class<?>[] { FeatureManagerConfig.class }, (proxy, method, args) -> {
+                    if ("overrideStoreEnabled".equals(method.getName())) {
+                        return true;
+                    }
+                    if ("overrideDurability".equals(method.getName())) {
+                        return Durability.MEMORY;
+                    }
+                    return method.getDefaultValue();
+                });
+    }
+
     private void mockADWithoutDefaultValue() {
         when(ad.getID()).thenReturn(FeatureManager.METATYPE_FEATURE_ID_PREFIX + FEATURE_ID);
         when(ad.getDescription()).thenReturn(FEATURE_DESC);
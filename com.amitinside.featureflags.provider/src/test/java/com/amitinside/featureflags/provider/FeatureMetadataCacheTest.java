@@ -0,0 +1,185 @@
+package com.amitinside.featureflags.provider;
+
+import static com.amitinside.featureflags.api.FeatureManager.METATYPE_FEATURE_ID_PREFIX;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyString;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.osgi.service.metatype.ObjectClassDefinition.ALL;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.felix.utils.log.Logger;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.service.metatype.AttributeDefinition;
+import org.osgi.service.metatype.MetaTypeInformation;
+import org.osgi.service.metatype.MetaTypeService;
+import org.osgi.service.metatype.ObjectClassDefinition;
+
+import com.amitinside.featureflags.provider.FeatureMetadataCache.Metadata;
+import com.amitinside.featureflags.provider.ManagerHelper.Feature;
+
+@RunWith(MockitoJUnitRunner.class)
+public final class FeatureMetadataCacheTest {
+
+    @Mock
+    private BundleContext         bundleContext;
+    @Mock
+    private MetaTypeService       metaTypeService;
+    @Mock
+    private MetaTypeInformation   metaTypeInfo;
+    @Mock
+    private ObjectClassDefinition ocd;
+    @Mock
+    private ObjectClassDefinition localizedOcd;
+    @Mock
+    private AttributeDefinition   ad;
+    @Mock
+    private AttributeDefinition   localizedAd;
+    @Mock
+    private Bundle                bundle;
+
+    @Test
+    public void testLocalizedMetadata() {
+        mockMetaType();
+
+        final FeatureMetadataCache cache   = new FeatureMetadataCache(new Logger(bundleContext), metaTypeService, 10);
+        final Feature              feature = feature();
+
+        assertEquals("My Feature", cache.get(feature, null).name);
+        assertEquals("Mein Feature", cache.get(feature, "de").name);
+        assertEquals("Mein Feature", cache.get(feature, "de").name);
+
+        verify(metaTypeInfo, times(1)).getObjectClassDefinition("pid", null);
+        verify(metaTypeInfo, times(1)).getObjectClassDefinition("pid", "de");
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void testEviction() {
+        mockMetaType();
+        when(metaTypeInfo.getObjectClassDefinition("other", null)).thenReturn(ocd);
+
+        final FeatureMetadataCache cache   = new FeatureMetadataCache(new Logger(bundleContext), metaTypeService, 1);
+        final Feature              feature = feature();
+        final Feature              other   = feature();
+        other.pid = "other";
+
+        cache.get(feature, null);
+        cache.get(feature, "de");
+        cache.get(other, null);
+        cache.get(feature, null);
+        cache.get(feature, "de");
+
+        // the capacity applies per locale
+        assertEquals(2, cache.size());
+        verify(metaTypeInfo, times(2)).getObjectClassDefinition("pid", null);
+        verify(metaTypeInfo, times(1)).getObjectClassDefinition("pid", "de");
+    }
+
+    @Test
+    public void testFullScanWithFixedCapacity() {
+        mockFullScan();
+
+        final FeatureMetadataCache cache    = new FeatureMetadataCache(new Logger(bundleContext), metaTypeService, 256);
+        final List<Feature>        features = features(300);
+
+        features.forEach(f -> cache.get(f, null));
+        features.forEach(f -> cache.get(f, null));
+
+        // a scan over more PIDs than the capacity evicts every entry before it
+        // is read again
+        assertEquals(256, cache.size());
+        verify(metaTypeInfo, times(600)).getObjectClassDefinition(anyString(), any());
+    }
+
+    @Test
+    public void testFullScanWithCapacityOfRegistry() {
+        mockFullScan();
+
+        final List<Feature>        features = features(300);
+        final FeatureMetadataCache cache    = new FeatureMetadataCache(new Logger(bundleContext), metaTypeService,
+                features::size);
+
+        features.forEach(f -> cache.get(f, null));
+        features.forEach(f -> cache.get(f, null));
+
+        assertEquals(300, cache.size());
+        verify(metaTypeInfo, times(300)).getObjectClassDefinition(anyString(), any());
+    }
+
+    @Test
+    public void testInvalidate() {
+        mockMetaType();
+
+        final FeatureMetadataCache cache = new FeatureMetadataCache(new Logger(bundleContext), metaTypeService, 10);
+        cache.get(feature(), null);
+        cache.invalidate(1);
+
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testUnknownBundle() {
+        final FeatureMetadataCache cache   = new FeatureMetadataCache(new Logger(bundleContext), metaTypeService, 10);
+        final Feature              feature = new Feature();
+        feature.id = "myfeature";
+
+        final Metadata metadata = cache.get(feature, null);
+
+        assertEquals("myfeature", metadata.name);
+        assertNull(metadata.description);
+    }
+
+    private void mockMetaType() {
+        when(bundle.getBundleId()).thenReturn(1L);
+        when(metaTypeService.getMetaTypeInformation(bundle)).thenReturn(metaTypeInfo);
+        when(metaTypeInfo.getObjectClassDefinition("pid", null)).thenReturn(ocd);
+        when(metaTypeInfo.getObjectClassDefinition("pid", "de")).thenReturn(localizedOcd);
+        when(ocd.getAttributeDefinitions(ALL)).thenReturn(new AttributeDefinition[] { ad });
+        when(localizedOcd.getAttributeDefinitions(ALL)).thenReturn(new AttributeDefinition[] { localizedAd });
+        when(ad.getID()).thenReturn(METATYPE_FEATURE_ID_PREFIX + "myfeature");
+        when(ad.getName()).thenReturn("My Feature");
+        when(localizedAd.getID()).thenReturn(METATYPE_FEATURE_ID_PREFIX + "myfeature");
+        when(localizedAd.getName()).thenReturn("Mein Feature");
+    }
+
+    private void mockFullScan() {
+        when(bundle.getBundleId()).thenReturn(1L);
+        when(metaTypeService.getMetaTypeInformation(bundle)).thenReturn(metaTypeInfo);
+        when(metaTypeInfo.getObjectClassDefinition(anyString(), any())).thenReturn(ocd);
+        when(ocd.getAttributeDefinitions(ALL)).thenReturn(new AttributeDefinition[0]);
+    }
+
+    /**
+     * Creates a feature per PID
+     */
+    private List<Feature> features(final int pids) {
+        final List<Feature> features = new ArrayList<>();
+        for (int i = 0; i < pids; i++) {
+            final Feature feature = feature();
+            feature.pid = "pid" + i;
+            features.add(feature);
+        }
+        return features;
+    }
+
+    private Feature feature() {
+        final Feature feature = new Feature();
+        feature.id       = "myfeature";
+        feature.pid      = "pid";
+        feature.bundleId = 1;
+        feature.bundle   = bundle;
+        return feature;
+    }
+
+}
@@ -0,0 +1,104 @@
+package com.amitinside.featureflags.provider;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.amitinside.featureflags.provider.ManagerHelper.Feature;
+
+public final class FeatureRegistrySnapshotTest {
+
+    @Test
+    public void testPinnedStates() {
+        final Map<String, List<Feature>> allFeatures = new HashMap<>();
+        final Feature                    a           = feature(allFeatures, "pid1", "a", true);
+        feature(allFeatures, "pid1", "b", false);
+
+        final FeatureIndex            index    = FeatureIndex.build(allFeatures);
+        final FeatureRegistrySnapshot snapshot = FeatureRegistrySnapshot.take(index, 7, 0, f -> null);
+        a.isEnabled = false;
+
+        assertEquals(7, snapshot.getVersion());
+        assertTrue(snapshot.isEnabled("a"));
+        assertFalse(snapshot.isEnabled("b"));
+        assertFalse(snapshot.isEnabled("c"));
+        assertEquals(1, a.evaluations.sum());
+    }
+
+    @Test
+    public void testAnyEnabled() {
+        final Map<String, List<Feature>> allFeatures = new HashMap<>();
+        feature(allFeatures, "pid1", "a", false);
+        feature(allFeatures, "pid2", "a", true);
+
+        final FeatureRegistrySnapshot snapshot = FeatureRegistrySnapshot.take(FeatureIndex.build(allFeatures), 0, 0,
+                f -> null);
+
+        assertTrue(snapshot.isEnabled("a"));
+    }
+
+    @Test
+    public void testKillSwitch() {
+        final Map<String, List<Feature>> allFeatures = new HashMap<>();
+        feature(allFeatures, "pid1", "a", true);
+        feature(allFeatures, "pid1", "b", true).isEssential = true;
+
+        final FeatureRegistrySnapshot snapshot = FeatureRegistrySnapshot.take(FeatureIndex.build(allFeatures), 0, 1,
+                f -> null);
+
+        assertFalse(snapshot.isEnabled("a"));
+        assertTrue(snapshot.isEnabled("b"));
+    }
+
+    @Test
+    public void testVariants() {
+        final Map<String, List<Feature>> allFeatures = new HashMap<>();
+        final Feature                    a           = feature(allFeatures, "pid1", "a", false);
+        a.defaultVariant = "red";
+        a.variantSlot    = 0;
+        feature(allFeatures, "pid1", "b", true);
+
+        final FeatureRegistrySnapshot snapshot = FeatureRegistrySnapshot.take(FeatureIndex.build(allFeatures), 0, 0,
+                f -> "blue");
+
+        assertEquals("blue", snapshot.getVariant("a"));
+        assertNull(snapshot.getVariant("b"));
+    }
+
+    @Test
+    public void testCurrent() {
+        final FeatureIndex            index    = FeatureIndex.build(new HashMap<>());
+        final FeatureRegistrySnapshot snapshot = FeatureRegistrySnapshot.take(index, 3, 2, f -> null);
+
+        assertTrue(snapshot.isCurrent(index, 3, 2));
+        assertFalse(snapshot.isCurrent(index, 4, 2));
+        assertFalse(snapshot.isCurrent(index, 3, 3));
+        assertFalse(snapshot.isCurrent(FeatureIndex.EMPTY, 3, 2));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEmptyFeatureID() {
+        FeatureRegistrySnapshot.take(FeatureIndex.EMPTY, 0, 0, f -> null)
+                .isEnabled("");
+    }
+
+    private static Feature feature(final Map<String, List<Feature>> allFeatures, final String pid, final String id,
+            final boolean isEnabled) {
+        final Feature feature = new Feature();
+        feature.id        = id;
+        feature.pid       = pid;
+        feature.isEnabled = isEnabled;
+        allFeatures.computeIfAbsent(pid, p -> new ArrayList<>())
+                .add(feature);
+        return feature;
+    }
+
+}
@@ -0,0 +1,103 @@
+package com.amitinside.featureflags.provider;
+
+import static com.amitinside.featureflags.api.FeatureManager.METATYPE_FEATURE_ID_PREFIX;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Dictionary;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.felix.utils.log.Logger;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.osgi.framework.BundleContext;
+import org.osgi.service.cm.Configuration;
+import org.osgi.service.cm.ConfigurationAdmin;
+
+import com.amitinside.featureflags.api.FeatureImportDTO;
+import com.amitinside.featureflags.provider.ManagerHelper.Feature;
+
+@RunWith(MockitoJUnitRunner.class)
+public final class FeatureStateTransferTest {
+
+    @Mock
+    private BundleContext      bundleContext;
+    @Mock
+    private ConfigurationAdmin configurationAdmin;
+    @Mock
+    private Configuration      configuration;
+
+    @Test
+    public void testExport() throws Exception {
+        final Map<String, List<Feature>> allFeatures = new HashMap<>();
+        final Feature                    a           = feature(allFeatures, "pid", "a", null, true);
+        feature(allFeatures, "pid", "b", "a", true);
+        // an override does not change the configured state
+        a.isEnabled = false;
+
+        final FeatureStateTransfer transfer = new FeatureStateTransfer(new Logger(bundleContext),
+                new ConfigurationCache(configurationAdmin), () -> FeatureIndex.build(allFeatures));
+        final StringWriter         writer   = new StringWriter();
+        transfer.exportFeatures(writer);
+
+        assertEquals(FeatureStateTransfer.HEADER + "\na\tpid\t1\ttrue\n", writer.toString());
+    }
+
+    @Test
+    public void testImport() throws Exception {
+        final Map<String, List<Feature>> allFeatures = new HashMap<>();
+        feature(allFeatures, "pid", "a", null, true);
+        feature(allFeatures, "pid", "b", null, true);
+        feature(allFeatures, "pid", "c", "a && b", true);
+        when(configurationAdmin.getConfiguration("pid", "?")).thenReturn(configuration);
+
+        final FeatureStateTransfer transfer = new FeatureStateTransfer(new Logger(bundleContext),
+                new ConfigurationCache(configurationAdmin), () -> FeatureIndex.build(allFeatures));
+        final String               input    = FeatureStateTransfer.HEADER + "\n"
+                + "a\tpid\t5\tfalse\n"
+                + "b\tpid\t5\tfalse\n"
+                + "\n"
+                + "c\tpid\t5\tfalse\n"
+                + "d\tpid\t5\tfalse\n"
+                + "a\tother\t5\tfalse\n"
+                + "a\tpid\t5\tmaybe\n"
+                + "a\tpid\n";
+        final List<String>         imported = new ArrayList<>();
+        final FeatureImportDTO     result   = transfer.importFeatures(new StringReader(input), imported::add);
+
+        final Dictionary<String, Object> expected = new Hashtable<>();
+        expected.put(METATYPE_FEATURE_ID_PREFIX + "a", false);
+        expected.put(METATYPE_FEATURE_ID_PREFIX + "b", false);
+        verify(configuration, times(1)).updateIfDifferent(expected);
+        assertEquals(2, result.imported);
+        assertEquals(5, result.rejected);
+        assertEquals(5, result.errors.size());
+        assertEquals(Arrays.asList("a", "b"), imported);
+    }
+
+    private static Feature feature(final Map<String, List<Feature>> allFeatures, final String pid, final String id,
+            final String expression, final boolean isEnabled) {
+        final Feature feature = new Feature();
+        feature.id              = id;
+        feature.pid             = pid;
+        feature.bundleId        = 1;
+        feature.expression      = expression;
+        feature.isEnabled       = isEnabled;
+        feature.configuredState = isEnabled;
+        allFeatures.computeIfAbsent(pid, p -> new ArrayList<>())
+                .add(feature);
+        return feature;
+    }
+
+}
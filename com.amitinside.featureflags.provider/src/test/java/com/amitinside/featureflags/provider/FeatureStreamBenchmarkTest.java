@@ -0,0 +1,183 @@
+package com.amitinside.featureflags.provider;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyString;
+import static org.mockito.Mockito.when;
+import static org.osgi.service.metatype.ObjectClassDefinition.ALL;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.service.cm.ConfigurationAdmin;
+import org.osgi.service.metatype.AttributeDefinition;
+import org.osgi.service.metatype.MetaTypeInformation;
+import org.osgi.service.metatype.MetaTypeService;
+import org.osgi.service.metatype.ObjectClassDefinition;
+
+import com.amitinside.featureflags.api.FeatureDTO;
+import com.amitinside.featureflags.provider.ManagerHelper.Feature;
+
+/**
+ * Compares the streams returned by {@link FeatureManagerProvider#getFeatures()}
+ * which are backed by the flat spliterator of the {@link FeatureIndex} with the
+ * streams concatenated from the features of every PID, both sequentially and in
+ * parallel.
+ *
+ * <p>
+ * The benchmark only runs if the system property
+ * {@code featureflags.stream} is {@code true}. The size of the registry and
+ * the limit are specified by the following system properties:
+ * </p>
+ *
+ * <ul>
+ * <li>{@code featureflags.stream.flags} - number of features (default
+ * 100000)</li>
+ * <li>{@code featureflags.stream.flagsPerPid} - number of features per PID
+ * (default 10)</li>
+ * <li>{@code featureflags.stream.rounds} - number of measured rounds per path
+ * whereby the fastest round is reported (default 20)</li>
+ * <li>{@code featureflags.stream.maxMicros} - maximum duration of the fastest
+ * round of a stream over all features (default 5000000)</li>
+ * </ul>
+ */
+@RunWith(MockitoJUnitRunner.class)
+public final class FeatureStreamBenchmarkTest {
+
+    private static final int       FLAGS         = Integer.getInteger("featureflags.stream.flags", 100_000);
+    private static final int       FLAGS_PER_PID = Integer.getInteger("featureflags.stream.flagsPerPid", 10);
+    private static final int       ROUNDS        = Integer.getInteger("featureflags.stream.rounds", 20);
+    private static final long      MAX_MICROS    = Long.getLong("featureflags.stream.maxMicros", 5_000_000);
+
+    @Mock
+    private BundleContext          bundleContext;
+    @Mock
+    private ConfigurationAdmin     configurationAdmin;
+    @Mock
+    private MetaTypeService        metaTypeService;
+    @Mock
+    private MetaTypeInformation    metaTypeInfo;
+    @Mock
+    private ObjectClassDefinition  ocd;
+    @Mock
+    private Bundle                 bundle;
+
+    @InjectMocks
+    private FeatureManagerProvider manager;
+
+    @BeforeClass
+    public static void assumeEnabled() {
+        assumeTrue("Stream benchmark is disabled", Boolean.getBoolean("featureflags.stream"));
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        when(bundle.getBundleId()).thenReturn(1L);
+        when(metaTypeService.getMetaTypeInformation(bundle)).thenReturn(metaTypeInfo);
+        when(metaTypeInfo.getObjectClassDefinition(anyString(), any())).thenReturn(ocd);
+        when(ocd.getAttributeDefinitions(ALL)).thenReturn(new AttributeDefinition[0]);
+        manager.activate(bundleContext, defaultConfig());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        manager.deactivate(bundleContext);
+    }
+
+    @Test
+    public void testStreams() throws Exception {
+        final Map<String, List<Feature>> allFeatures = new HashMap<>();
+        for (int i = 0; i < FLAGS; i++) {
+            final Feature feature = new Feature();
+            feature.id        = "flag" + i;
+            feature.pid       = "pid" + i / FLAGS_PER_PID;
+            feature.bundleId  = 1;
+            feature.bundle    = bundle;
+            feature.isEnabled = i % 2 == 0;
+            allFeatures.computeIfAbsent(feature.pid, p -> new ArrayList<>())
+                    .add(feature);
+        }
+        final FeatureIndex index   = FeatureIndex.build(allFeatures);
+        final long         enabled = (FLAGS + 1) / 2;
+        inject(manager, "featureIndex", index);
+
+        final Spliterator<Feature> spliterator = index.spliterator();
+        assertTrue(spliterator.hasCharacteristics(Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.IMMUTABLE));
+        assertEquals(FLAGS, spliterator.getExactSizeIfKnown());
+
+        final Supplier<Stream<FeatureDTO>> nested = () -> index.getPIDs()
+                .stream()
+                .flatMap(manager::getFeaturesByPid);
+        final Supplier<Stream<FeatureDTO>> flat   = manager::getFeatures;
+
+        final long nestedMicros         = measure(nested, false, enabled);
+        final long flatMicros           = measure(flat, false, enabled);
+        final long nestedParallelMicros = measure(nested, true, enabled);
+        final long flatParallelMicros   = measure(flat, true, enabled);
+
+        final int    cores  = Runtime.getRuntime()
+                .availableProcessors();
+        final String report = String.format(" [%d features, %d per PID, %d cores]: nested %d us, flat %d us, "
+                + "nested parallel %d us, flat parallel %d us", FLAGS, FLAGS_PER_PID, cores, nestedMicros, flatMicros,
+                nestedParallelMicros, flatParallelMicros);
+
+        assertTrue("Sequential stream exceeded the limit" + report, flatMicros <= MAX_MICROS);
+        assertTrue("Parallel stream exceeded the limit" + report, flatParallelMicros <= MAX_MICROS);
+    }
+
+    /**
+     * Counts the enabled features of the specified streams and returns the
+     * duration of the fastest round in microseconds
+     */
+    private static long measure(final Supplier<Stream<FeatureDTO>> source, final boolean isParallel,
+            final long expected) {
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < ROUNDS; i++) {
+            Stream<FeatureDTO> stream = source.get();
+            if (isParallel) {
+                stream = stream.parallel();
+            }
+            final long start = System.nanoTime();
+            // the filter prevents the count of a sized stream from skipping the
+            // mapping
+            final long count = stream.filter(d -> d.isEnabled)
+                    .count();
+            best = Math.min(best, System.nanoTime() - start);
+            assertEquals(expected, count);
+        }
+        return NANOSECONDS.toMicros(best);
+    }
+
+    private static FeatureManagerConfig defaultConfig() {
+        return (FeatureManagerConfig) Proxy.newProxyInstance(FeatureManagerConfig.class.getClassLoader(),
+                new Class<?>[] { FeatureManagerConfig.class }, (proxy, method, args) -> method.getDefaultValue());
+    }
+
+    private static void inject(final Object target, final String name, final Object value) throws Exception {
+        final Field field = target.getClass()
+                .getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+
+}
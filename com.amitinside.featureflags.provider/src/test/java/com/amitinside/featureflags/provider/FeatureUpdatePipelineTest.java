@@ -0,0 +1,95 @@
+package com.amitinside.featureflags.provider;
+
+import static com.amitinside.featureflags.api.FeatureManager.METATYPE_FEATURE_ID_PREFIX;
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Dictionary;
+import java.util.Hashtable;
+import java.util.List;
+
+import org.apache.felix.utils.log.Logger;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.osgi.framework.BundleContext;
+import org.osgi.service.cm.Configuration;
+import org.osgi.service.cm.ConfigurationAdmin;
+import org.osgi.util.promise.Promise;
+
+@RunWith(MockitoJUnitRunner.class)
+public final class FeatureUpdatePipelineTest {
+
+    @Mock
+    private BundleContext      bundleContext;
+    @Mock
+    private ConfigurationAdmin configurationAdmin;
+    @Mock
+    private Configuration      configuration;
+
+    private final List<Runnable> tasks = new ArrayList<>();
+
+    @Test
+    public void testMergedWrite() throws Exception {
+        when(configurationAdmin.getConfiguration("a", "?")).thenReturn(configuration);
+
+        final FeatureUpdatePipeline pipeline = new FeatureUpdatePipeline(new Logger(bundleContext),
+                new ConfigurationCache(configurationAdmin), tasks::add);
+        final Promise<Void>         first    = pipeline.update(singletonList("a"), "feature1", true);
+        final Promise<Void>         second   = pipeline.update(singletonList("a"), "feature2", false);
+        final Promise<Void>         third    = pipeline.update(singletonList("a"), "feature1", false);
+
+        assertEquals(1, tasks.size());
+        assertFalse(first.isDone());
+        tasks.remove(0)
+                .run();
+
+        final Dictionary<String, Object> expected = new Hashtable<>();
+        expected.put(METATYPE_FEATURE_ID_PREFIX + "feature1", false);
+        expected.put(METATYPE_FEATURE_ID_PREFIX + "feature2", false);
+        verify(configuration, times(1)).updateIfDifferent(expected);
+        assertTrue(first.isDone());
+        assertTrue(second.isDone());
+        assertTrue(third.isDone());
+        assertEquals(null, third.getFailure());
+    }
+
+    @Test
+    public void testFailedWrite() throws Exception {
+        final IOException failure = new IOException();
+        when(configurationAdmin.getConfiguration("a", "?")).thenReturn(configuration);
+        when(configurationAdmin.getConfiguration("b", "?")).thenThrow(failure);
+
+        final FeatureUpdatePipeline pipeline = new FeatureUpdatePipeline(new Logger(bundleContext),
+                new ConfigurationCache(configurationAdmin), tasks::add);
+        final Promise<Void>         promise  = pipeline.update(asList("a", "b"), "feature1", true);
+        tasks.remove(0)
+                .run();
+
+        verify(configuration, times(1)).updateIfDifferent(any());
+        assertTrue(promise.isDone());
+        assertEquals(failure, promise.getFailure());
+    }
+
+    @Test
+    public void testUnknownFeature() throws Exception {
+        final FeatureUpdatePipeline pipeline = new FeatureUpdatePipeline(new Logger(bundleContext),
+                new ConfigurationCache(configurationAdmin), tasks::add);
+        final Promise<Void>         promise  = pipeline.update(emptyList(), "feature1", true);
+
+        assertTrue(promise.isDone());
+        assertTrue(tasks.isEmpty());
+    }
+
+}
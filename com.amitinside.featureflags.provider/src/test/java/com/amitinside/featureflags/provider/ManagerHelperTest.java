@@ -1,7 +1,9 @@
 package com.amitinside.featureflags.provider;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.lang.reflect.Constructor;
@@ -9,6 +11,9 @@ import java.lang.reflect.InvocationTargetException;
 import java.util.List;
 
 import org.junit.Test;
+import org.osgi.service.metatype.AttributeDefinition;
+
+import com.amitinside.featureflags.provider.ManagerHelper.Feature;
 
 public final class ManagerHelperTest {
 
@@ -33,4 +38,59 @@ public final class ManagerHelperTest {
         assertEquals("a", list2.get(0));
     }
 
+    @Test
+    public void testToVariant() {
+        final Feature feature = new Feature();
+        feature.variantType = AttributeDefinition.INTEGER;
+
+        assertEquals("42", ManagerHelper.toVariant(feature, " 42 "));
+        assertEquals("42", ManagerHelper.toVariant(feature, 42));
+        assertNull(ManagerHelper.toVariant(feature, "abc"));
+        assertNull(ManagerHelper.toVariant(feature, Boolean.TRUE));
+        assertNull(ManagerHelper.toVariant(feature, null));
+
+        feature.variantType    = AttributeDefinition.STRING;
+        feature.variantOptions = new String[] { "red", "green" };
+
+        assertEquals("green", ManagerHelper.toVariant(feature, "green"));
+        assertNull(ManagerHelper.toVariant(feature, "blue"));
+    }
+
+    @Test
+    public void testIsSameDefinition() {
+        final Feature feature1 = new Feature();
+        feature1.id                 = "a";
+        feature1.isEnabledByDefault = true;
+        feature1.isEnabled          = true;
+
+        final Feature feature2 = new Feature();
+        feature2.id                 = "a";
+        feature2.isEnabledByDefault = true;
+        feature2.isEnabled          = false;
+
+        // the current states are irrelevant
+        assertTrue(ManagerHelper.isSameDefinition(feature1, feature2));
+
+        feature2.isEssentialByDefault = true;
+        assertFalse(ManagerHelper.isSameDefinition(feature1, feature2));
+
+        feature2.isEssentialByDefault = false;
+        feature2.defaultExpression    = "b";
+        assertFalse(ManagerHelper.isSameDefinition(feature1, feature2));
+
+        feature2.defaultExpression = null;
+        feature2.variantOptions    = new String[] { "red" };
+        assertFalse(ManagerHelper.isSameDefinition(feature1, feature2));
+    }
+
+    @Test
+    public void testNamedDaemonThreads() {
+        final Thread thread = ManagerHelper.namedDaemonThreads("featureflags-test")
+                .newThread(() -> {
+                });
+
+        assertEquals("featureflags-test", thread.getName());
+        assertTrue(thread.isDaemon());
+    }
+
 }
@@ -0,0 +1,72 @@
+package com.amitinside.featureflags.provider;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Collections;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public final class OverrideStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testPutAndRemove() {
+        final OverrideStore store = new OverrideStore(null);
+        store.put("a", true);
+
+        assertEquals(Boolean.TRUE, store.get("a"));
+        assertFalse(store.remove("a", false));
+        assertTrue(store.remove("a", true));
+        assertNull(store.get("a"));
+    }
+
+    @Test
+    public void testClear() {
+        final OverrideStore store = new OverrideStore(null);
+        store.put("a", true);
+        store.put("b", false);
+
+        assertTrue(store.remove("a"));
+        assertFalse(store.remove("a"));
+        assertEquals(Collections.singleton("b"), store.clear());
+        assertTrue(store.getOverrides()
+                .isEmpty());
+    }
+
+    @Test
+    public void testFlushAndLoad() throws Exception {
+        final File          file  = new File(folder.newFolder("data"), "overrides.dat");
+        final OverrideStore store = new OverrideStore(file);
+        store.put("a", true);
+        store.put("b", false);
+
+        assertTrue(store.flush());
+        // nothing has changed since the last flush
+        assertFalse(store.flush());
+
+        final OverrideStore loaded = new OverrideStore(file);
+        loaded.load();
+
+        assertEquals(store.getOverrides(), loaded.getOverrides());
+    }
+
+    @Test
+    public void testMemoryOnly() throws Exception {
+        final OverrideStore store = new OverrideStore(null);
+        store.put("a", true);
+        store.load();
+
+        assertFalse(store.flush());
+        assertEquals(1, store.getOverrides()
+                .size());
+    }
+
+}
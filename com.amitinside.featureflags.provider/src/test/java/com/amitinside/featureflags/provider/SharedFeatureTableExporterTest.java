@@ -0,0 +1,135 @@
+package com.amitinside.featureflags.provider;
+
+import static com.amitinside.featureflags.shared.SharedFeatureTableReader.DISABLED;
+import static com.amitinside.featureflags.shared.SharedFeatureTableReader.ENABLED;
+import static com.amitinside.featureflags.shared.SharedFeatureTableReader.UNKNOWN;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.amitinside.featureflags.shared.SharedFeatureTableReader;
+
+public final class SharedFeatureTableExporterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testExportAndLookup() throws Exception {
+        final File                 file   = folder.newFile("features.table");
+        final Map<String, Boolean> states = new HashMap<>();
+        states.put("a", true);
+        states.put("b", false);
+
+        try (SharedFeatureTableExporter exporter = new SharedFeatureTableExporter(file, 16);
+                SharedFeatureTableReader reader = SharedFeatureTableReader.open(file.toPath())) {
+            assertTrue(exporter.export(states));
+
+            assertEquals(ENABLED, reader.lookup("a"));
+            assertEquals(DISABLED, reader.lookup("b"));
+            assertEquals(UNKNOWN, reader.lookup("c"));
+            assertTrue(reader.isEnabled(new StringBuilder("a")));
+            assertFalse(reader.isStale());
+        }
+    }
+
+    @Test
+    public void testUpdate() throws Exception {
+        final File                 file   = folder.newFile("features.table");
+        final Map<String, Boolean> states = new HashMap<>();
+        states.put("a", true);
+
+        try (SharedFeatureTableExporter exporter = new SharedFeatureTableExporter(file, 16);
+                SharedFeatureTableReader reader = SharedFeatureTableReader.open(file.toPath())) {
+            exporter.export(states);
+            assertTrue(reader.isEnabled("a"));
+            final long generation = reader.generation();
+
+            states.put("a", false);
+            assertTrue(exporter.update(states));
+            assertTrue(reader.isStale());
+            assertFalse(reader.isEnabled("a"));
+            assertFalse(reader.isStale());
+            assertNotEquals(generation, reader.generation());
+
+            assertTrue(exporter.update(states));
+            assertFalse(reader.isStale());
+
+            states.put("b", true);
+            assertFalse(exporter.update(states));
+        }
+    }
+
+    @Test
+    public void testCapacityExceeded() throws Exception {
+        final File                 file   = folder.newFile("features.table");
+        final Map<String, Boolean> states = new HashMap<>();
+        for (int i = 0; i < 3; i++) {
+            states.put("feature" + i, true);
+        }
+        try (SharedFeatureTableExporter exporter = new SharedFeatureTableExporter(file, 2)) {
+            assertFalse(exporter.export(states));
+        }
+    }
+
+    @Test
+    public void testRecreatedWithDifferentCapacity() throws Exception {
+        final File                 file   = folder.newFile("features.table");
+        final Map<String, Boolean> states = new HashMap<>();
+        states.put("a", true);
+
+        try (SharedFeatureTableExporter exporter = new SharedFeatureTableExporter(file, 64)) {
+            exporter.export(states);
+        }
+        try (SharedFeatureTableReader reader = SharedFeatureTableReader.open(file.toPath())) {
+            assertTrue(reader.isEnabled("a"));
+            final long generation = reader.generation();
+
+            try (SharedFeatureTableExporter exporter = new SharedFeatureTableExporter(file, 16)) {
+                assertTrue(reader.isStale());
+                assertEquals(UNKNOWN, reader.lookup("a"));
+
+                states.put("b", false);
+                exporter.export(states);
+
+                assertTrue(reader.isEnabled("a"));
+                assertEquals(DISABLED, reader.lookup("b"));
+                assertEquals(generation + 2, reader.generation());
+            }
+        }
+    }
+
+    @Test
+    public void testLeftoverTemporaryFile() throws Exception {
+        final File file = folder.newFile("features.table");
+        // a writer that has died in the middle of a write leaves its temporary file
+        final File temporary = new File(file.getPath() + ".tmp");
+        Files.write(temporary.toPath(), new byte[] { 1, 2, 3 });
+
+        final Map<String, Boolean> states = new HashMap<>();
+        states.put("a", true);
+        try (SharedFeatureTableExporter exporter = new SharedFeatureTableExporter(file, 16);
+                SharedFeatureTableReader reader = SharedFeatureTableReader.open(file.toPath())) {
+            exporter.export(states);
+
+            assertTrue(reader.isEnabled("a"));
+            assertFalse(temporary.exists());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCapacityTooLarge() throws Exception {
+        new SharedFeatureTableExporter(folder.newFile("features.table"), SharedFeatureTableExporter.MAX_CAPACITY + 1);
+    }
+
+}
@@ -0,0 +1,55 @@
+package com.amitinside.featureflags.provider;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public final class SlidingWindowCounterTest {
+
+    @Test
+    public void testCounts() {
+        final SlidingWindowCounter counter = new SlidingWindowCounter(1000);
+
+        counter.record(true, 0);
+        counter.record(true, 150);
+        counter.record(false, 950);
+
+        assertEquals(2, counter.getSuccesses(999));
+        assertEquals(1, counter.getFailures(999));
+    }
+
+    @Test
+    public void testSlidingWindow() {
+        final SlidingWindowCounter counter = new SlidingWindowCounter(1000);
+
+        counter.record(false, 0);
+        counter.record(false, 500);
+
+        // the bucket of the first call has left the window
+        assertEquals(1, counter.getFailures(1050));
+        assertEquals(0, counter.getFailures(2000));
+
+        // the bucket of the first call is reused
+        counter.record(true, 2010);
+        assertEquals(1, counter.getSuccesses(2010));
+        assertEquals(0, counter.getFailures(2010));
+    }
+
+    @Test
+    public void testReset() {
+        final SlidingWindowCounter counter = new SlidingWindowCounter(1000);
+
+        counter.record(true, 0);
+        counter.record(false, 0);
+        counter.reset();
+
+        assertEquals(0, counter.getSuccesses(0));
+        assertEquals(0, counter.getFailures(0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidWindow() {
+        new SlidingWindowCounter(0);
+    }
+
+}
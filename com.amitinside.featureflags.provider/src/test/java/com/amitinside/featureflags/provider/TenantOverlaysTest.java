@@ -0,0 +1,97 @@
+package com.amitinside.featureflags.provider;
+
+import static com.amitinside.featureflags.api.FeatureManager.METATYPE_FEATURE_ID_PREFIX;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Dictionary;
+import java.util.Hashtable;
+
+import org.apache.felix.utils.log.Logger;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.osgi.framework.BundleContext;
+import org.osgi.service.cm.Configuration;
+import org.osgi.service.cm.ConfigurationAdmin;
+
+@RunWith(MockitoJUnitRunner.class)
+public final class TenantOverlaysTest {
+
+    @Mock
+    private BundleContext      bundleContext;
+    @Mock
+    private ConfigurationAdmin configurationAdmin;
+    @Mock
+    private Configuration      configuration;
+
+    @Test
+    public void testOverride() throws Exception {
+        when(configurationAdmin.getFactoryConfiguration(TenantOverlays.FACTORY_PID, "acme", "?"))
+                .thenReturn(configuration);
+
+        final TenantOverlays overlays = new TenantOverlays(new Logger(bundleContext), configurationAdmin, 10);
+        overlays.update("acme", "a", false);
+
+        assertFalse(overlays.getOverride("acme", "a"));
+        assertNull(overlays.getOverride("acme", "b"));
+        assertNull(overlays.getOverride("other", "a"));
+        assertEquals(1, overlays.getOverrides("acme")
+                .size());
+
+        final Dictionary<String, Object> expected = new Hashtable<>();
+        expected.put(TenantOverlays.TENANT_PROPERTY, "acme");
+        expected.put(METATYPE_FEATURE_ID_PREFIX + "a", false);
+        verify(configuration, times(1)).update(expected);
+    }
+
+    @Test
+    public void testReset() throws Exception {
+        when(configurationAdmin.getFactoryConfiguration(TenantOverlays.FACTORY_PID, "acme", "?"))
+                .thenReturn(configuration);
+
+        final TenantOverlays overlays = new TenantOverlays(new Logger(bundleContext), configurationAdmin, 10);
+        overlays.update("acme", "a", true);
+        overlays.update("acme", "a", null);
+
+        assertNull(overlays.getOverride("acme", "a"));
+        assertTrue(overlays.getOverrides("acme")
+                .isEmpty());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testCapacityExceeded() throws Exception {
+        when(configurationAdmin.getFactoryConfiguration(TenantOverlays.FACTORY_PID, "acme", "?"))
+                .thenReturn(configuration);
+
+        final TenantOverlays overlays = new TenantOverlays(new Logger(bundleContext), configurationAdmin, 1);
+        overlays.update("acme", "a", true);
+        overlays.update("acme", "a", false);
+        overlays.update("acme", "b", true);
+    }
+
+    @Test
+    public void testLoad() throws Exception {
+        final Dictionary<String, Object> properties = new Hashtable<>();
+        properties.put(TenantOverlays.TENANT_PROPERTY, "acme");
+        properties.put(METATYPE_FEATURE_ID_PREFIX + "a", true);
+        when(configuration.getPid()).thenReturn("tenant.pid");
+        when(configuration.getProperties()).thenReturn(properties);
+        when(configurationAdmin.listConfigurations("(service.factoryPid=" + TenantOverlays.FACTORY_PID + ")"))
+                .thenReturn(new Configuration[] { configuration });
+
+        final TenantOverlays overlays = new TenantOverlays(new Logger(bundleContext), configurationAdmin, 10);
+        overlays.load();
+        assertTrue(overlays.getOverride("acme", "a"));
+
+        overlays.configurationDeleted("tenant.pid");
+        assertNull(overlays.getOverride("acme", "a"));
+    }
+
+}
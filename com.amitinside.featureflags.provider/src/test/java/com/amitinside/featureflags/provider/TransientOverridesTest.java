@@ -0,0 +1,57 @@
+package com.amitinside.featureflags.provider;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+
+import org.junit.Test;
+
+public final class TransientOverridesTest {
+
+    private final TransientOverrides overrides = new TransientOverrides();
+
+    @Test
+    public void testExpiry() {
+        overrides.put("a", true, 100);
+
+        assertEquals(Boolean.TRUE, overrides.get("a", 99));
+        assertNull(overrides.get("a", 100));
+        assertNull(overrides.get("b", 0));
+        assertEquals(Collections.singletonMap("a", true), overrides.getOverrides(99));
+        assertTrue(overrides.getOverrides(100)
+                .isEmpty());
+    }
+
+    @Test
+    public void testExpire() {
+        overrides.put("a", false, 100);
+
+        assertFalse(overrides.expire("a", 99));
+        assertTrue(overrides.expire("a", 100));
+        assertFalse(overrides.expire("a", 100));
+        assertTrue(overrides.isEmpty());
+    }
+
+    @Test
+    public void testReplacedOverride() {
+        overrides.put("a", false, 100);
+        overrides.put("a", true, 200);
+
+        // the expiry of the replaced override retains the later one
+        assertFalse(overrides.expire("a", 100));
+        assertEquals(Boolean.TRUE, overrides.get("a", 100));
+    }
+
+    @Test
+    public void testRemove() {
+        overrides.put("a", true, 100);
+
+        assertTrue(overrides.remove("a"));
+        assertFalse(overrides.remove("a"));
+        assertNull(overrides.get("a", 0));
+    }
+
+}
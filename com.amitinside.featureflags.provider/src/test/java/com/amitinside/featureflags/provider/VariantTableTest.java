@@ -0,0 +1,77 @@
+package com.amitinside.featureflags.provider;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public final class VariantTableTest {
+
+    @Test
+    public void testAllocateAndSet() {
+        final VariantTable table = new VariantTable();
+        final int          slot  = table.allocate("red");
+
+        assertEquals("red", table.get(slot));
+        assertTrue(table.set(slot, "green"));
+        assertFalse(table.set(slot, "green"));
+        assertEquals("green", table.get(slot));
+    }
+
+    @Test
+    public void testInterning() {
+        final VariantTable table = new VariantTable();
+        final int          slot1 = table.allocate(new String("red"));
+        final int          slot2 = table.allocate(new String("red"));
+
+        assertEquals(1, table.size());
+        assertSame(table.get(slot1), table.get(slot2));
+    }
+
+    @Test
+    public void testReleasedSlotIsReused() {
+        final VariantTable table = new VariantTable();
+        final int          slot  = table.allocate("red");
+
+        table.allocate("green");
+        table.release(slot);
+
+        assertEquals(slot, table.allocate("blue"));
+        assertEquals("blue", table.get(slot));
+    }
+
+    @Test
+    public void testUnreferencedVariantsAreReleased() {
+        final VariantTable table = new VariantTable();
+        final int          slot  = table.allocate("red");
+
+        for (int i = 0; i < 100; i++) {
+            table.set(slot, "free-form-" + i);
+        }
+        assertEquals(1, table.size());
+        assertEquals("free-form-99", table.get(slot));
+
+        final int other = table.allocate("free-form-99");
+        table.release(slot);
+        assertEquals(1, table.size());
+        assertEquals("free-form-99", table.get(other));
+
+        table.release(other);
+        assertEquals(0, table.size());
+    }
+
+    @Test
+    public void testGrowth() {
+        final VariantTable table = new VariantTable();
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, table.allocate(String.valueOf(i)));
+        }
+        for (int i = 0; i < 100; i++) {
+            assertEquals(String.valueOf(i), table.get(i));
+        }
+        assertEquals(100, table.size());
+    }
+
+}